@@ -1,12 +1,19 @@
 package com.monolith;
 
+import com.monolith.importer.OrderImportRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class Application {
 
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(Application.class, args);
+        if (context.getBean(OrderImportRunner.class).hasImported()) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
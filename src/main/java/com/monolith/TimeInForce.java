@@ -0,0 +1,15 @@
+package com.monolith;
+
+/**
+ * How long an order stays open if it is neither executed nor cancelled.
+ */
+public enum TimeInForce {
+    /** Until the end of the trading day */
+    DAY,
+    /** Good till cancelled, never expires */
+    GTC,
+    /** Good till the given date and time */
+    GTD,
+    /** Immediate or cancel: executed right away, or cancelled if the execution is rejected */
+    IOC
+}
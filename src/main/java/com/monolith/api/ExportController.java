@@ -0,0 +1,84 @@
+package com.monolith.api;
+
+import com.monolith.export.ExportFormat;
+import com.monolith.export.ExportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Streams every order with chunked transfer encoding.
+     *
+     * @param format NDJSON or CSV
+     * @param gzip whether to gzip the body
+     * @return the streamed export
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("orders", format, gzip, outputStream -> exportService.exportOrders(format, outputStream));
+    }
+
+    /**
+     * Streams every position with chunked transfer encoding.
+     *
+     * @param format NDJSON or CSV
+     * @param gzip whether to gzip the body
+     * @return the streamed export
+     */
+    @GetMapping("/positions")
+    public ResponseEntity<StreamingResponseBody> exportPositions(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("positions", format, gzip, outputStream -> exportService.exportPositions(format, outputStream));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, ExportFormat format, boolean gzip, Export export) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream destination = gzip
+                    ? new GZIPOutputStream(outputStream, BUFFER_SIZE)
+                    : new BufferedOutputStream(outputStream, BUFFER_SIZE);
+            export.writeTo(destination);
+        };
+
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(name + "." + format.getExtension() + (gzip ? ".gz" : ""))
+                .build();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @FunctionalInterface
+    private interface Export {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+}
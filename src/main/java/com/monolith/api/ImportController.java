@@ -0,0 +1,48 @@
+package com.monolith.api;
+
+import com.monolith.export.ExportFormat;
+import com.monolith.importer.ImportResult;
+import com.monolith.importer.OrderImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+@RestController
+@RequestMapping("/imports")
+public class ImportController {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OrderImportService orderImportService;
+
+    public ImportController(OrderImportService orderImportService) {
+        this.orderImportService = orderImportService;
+    }
+
+    /**
+     * Imports historical trades from the request body, which is read as a stream and never buffered whole.
+     *
+     * @param format CSV or NDJSON
+     * @param request the request, gzipped bodies are accepted with Content-Encoding: gzip
+     * @return the import summary
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping("/orders")
+    public ResponseEntity<ImportResult> importOrders(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            HttpServletRequest request) throws IOException {
+        InputStream body = "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))
+                ? new GZIPInputStream(request.getInputStream(), BUFFER_SIZE)
+                : new BufferedInputStream(request.getInputStream(), BUFFER_SIZE);
+        return ResponseEntity.ok(orderImportService.importOrders(format, body));
+    }
+}
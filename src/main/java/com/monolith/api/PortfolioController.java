@@ -0,0 +1,132 @@
+package com.monolith.api;
+
+import com.monolith.dto.ExposureResponse;
+import com.monolith.dto.PnlResponse;
+import com.monolith.dto.PortfolioResponse;
+import com.monolith.dto.PositionPnlResponse;
+import com.monolith.dto.PositionResponse;
+import com.monolith.dto.PositionValuationResponse;
+import com.monolith.dto.ValuationResponse;
+import com.monolith.index.PortfolioSnapshot;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.service.PortfolioService;
+import com.monolith.valuation.PortfolioValuation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/portfolios")
+public class PortfolioController {
+
+    private static final int MAX_TOP_LIMIT = 1000;
+
+    private final PortfolioService portfolioService;
+
+    public PortfolioController(PortfolioService portfolioService) {
+        this.portfolioService = portfolioService;
+    }
+
+    /**
+     * Retrieves the buying power and all positions of a portfolio.
+     *
+     * @param id the portfolio ID
+     * @return the portfolio response
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<PortfolioResponse> getPortfolio(@PathVariable String id) {
+        PortfolioSnapshot snapshot = portfolioService.getPortfolio(id);
+
+        PortfolioResponse response = mapToResponse(snapshot);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Retrieves the mark-to-market value and unrealized P&L of a portfolio.
+     *
+     * @param id the portfolio ID
+     * @return the valuation response
+     */
+    @GetMapping("/{id}/valuation")
+    public ResponseEntity<ValuationResponse> getValuation(@PathVariable String id) {
+        PortfolioValuation valuation = portfolioService.getValuation(id);
+
+        ValuationResponse response = mapToResponse(valuation);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Retrieves the average cost and realized P&L of every position a portfolio has traded.
+     *
+     * @param id the portfolio ID
+     * @return the P&L response
+     */
+    @GetMapping("/{id}/pnl")
+    public ResponseEntity<PnlResponse> getPnl(@PathVariable String id) {
+        List<PositionCostEntity> costs = portfolioService.getPositionCosts(id);
+
+        PnlResponse response = mapToResponse(id, costs);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Retrieves the portfolios with the largest gross exposure.
+     *
+     * @param limit the maximum number of portfolios to return, capped at 1000
+     * @return the portfolios, largest exposure first
+     */
+    @GetMapping("/top-exposure")
+    public ResponseEntity<List<ExposureResponse>> getTopByExposure(@RequestParam(defaultValue = "10") int limit) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_TOP_LIMIT));
+        List<ExposureResponse> response = portfolioService.getTopByExposure(boundedLimit).stream()
+                .map(exposure -> new ExposureResponse(exposure.getPortfolioId(), standardize(exposure.getExposure())))
+                .toList();
+        return ResponseEntity.ok(response);
+    }
+
+    private PortfolioResponse mapToResponse(PortfolioSnapshot snapshot) {
+        List<PositionResponse> positions = new ArrayList<>(snapshot.getPositions().size());
+        snapshot.getPositions().forEach((isin, quantity) -> positions.add(new PositionResponse(isin, quantity)));
+        return new PortfolioResponse(snapshot.getPortfolioId(), snapshot.getBuyingPower(), positions);
+    }
+
+    private ValuationResponse mapToResponse(PortfolioValuation valuation) {
+        List<PositionValuationResponse> positions = valuation.getPositions().stream()
+                .map(position -> new PositionValuationResponse(
+                        position.getIsin(),
+                        position.getQuantity(),
+                        position.getPrice(),
+                        standardize(position.getMarketValue()),
+                        standardize(position.getUnrealizedPnl())))
+                .toList();
+        return new ValuationResponse(
+                valuation.getPortfolioId(),
+                standardize(valuation.getMarketValue()),
+                standardize(valuation.getCostBasis()),
+                standardize(valuation.getUnrealizedPnl()),
+                positions);
+    }
+
+    private PnlResponse mapToResponse(String portfolioId, List<PositionCostEntity> costs) {
+        BigDecimal realizedPnl = BigDecimal.ZERO;
+        List<PositionPnlResponse> positions = new ArrayList<>(costs.size());
+        for (PositionCostEntity cost : costs) {
+            realizedPnl = realizedPnl.add(cost.getRealizedPnl());
+            positions.add(new PositionPnlResponse(
+                    cost.getIsin(),
+                    cost.getQuantity(),
+                    cost.getAverageCost(),
+                    standardize(cost.getRealizedPnl())));
+        }
+        return new PnlResponse(portfolioId, standardize(realizedPnl), positions);
+    }
+
+    private static BigDecimal standardize(BigDecimal amount) {
+        // An unknown amount, e.g. the unrealized P&L of a position without cost basis, stays unknown
+        return amount == null ? null : amount.setScale(2, RoundingMode.HALF_UP);
+    }
+}
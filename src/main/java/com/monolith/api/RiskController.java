@@ -0,0 +1,39 @@
+package com.monolith.api;
+
+import com.monolith.dto.RiskLimits;
+import com.monolith.risk.RiskEngine;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/risk")
+public class RiskController {
+
+    private final RiskEngine riskEngine;
+
+    public RiskController(RiskEngine riskEngine) {
+        this.riskEngine = riskEngine;
+    }
+
+    /**
+     * Retrieves the limits of the pre-trade risk checks.
+     *
+     * @return the current limits
+     */
+    @GetMapping("/limits")
+    public ResponseEntity<RiskLimits> getLimits() {
+        return ResponseEntity.ok(riskEngine.getLimits());
+    }
+
+    /**
+     * Replaces the limits of the pre-trade risk checks without a restart. Limits left out are disabled.
+     *
+     * @param limits the new limits
+     * @return the applied limits
+     */
+    @PutMapping("/limits")
+    public ResponseEntity<RiskLimits> updateLimits(@Valid @RequestBody RiskLimits limits) {
+        return ResponseEntity.ok(riskEngine.setLimits(limits));
+    }
+}
@@ -1,42 +1,97 @@
 package com.monolith.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.monolith.OrderSide;
+import com.monolith.OrderStatus;
+import com.monolith.dto.BulkCancelResponse;
+import com.monolith.dto.ExecutionStatus;
 import com.monolith.dto.OrderRequest;
 import com.monolith.dto.OrderResponse;
 import com.monolith.dto.SellOrderResponse;
 import com.monolith.exception.InsufficientBuyingPowerException;
 import com.monolith.exception.InsufficientInventoryException;
+import com.monolith.exception.InvalidOrderStatusException;
+import com.monolith.exception.OrderNotFoundException;
+import com.monolith.exception.RateLimitExceededException;
+import com.monolith.exception.ValidationException;
+import com.monolith.execution.ExecutionQueue;
+import com.monolith.idempotency.IdempotencyService;
+import com.monolith.ratelimit.AdaptiveConcurrencyLimiter;
+import com.monolith.ratelimit.RateLimiter;
 import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryQuery;
 import com.monolith.service.TradingService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/orders")
 public class TradingController {
 
+    private static final int MAX_PAGE_SIZE = 10_000;
+
     private final TradingService tradingService;
+    private final IdempotencyService idempotencyService;
+    private final RateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter executionLimiter;
+    private final ExecutionQueue executionQueue;
+    private final ObjectMapper objectMapper;
 
-    public TradingController(TradingService tradingService) {
+    public TradingController(TradingService tradingService, IdempotencyService idempotencyService,
+                             RateLimiter rateLimiter, AdaptiveConcurrencyLimiter executionLimiter,
+                             ExecutionQueue executionQueue, ObjectMapper objectMapper) {
         this.tradingService = tradingService;
+        this.idempotencyService = idempotencyService;
+        this.rateLimiter = rateLimiter;
+        this.executionLimiter = executionLimiter;
+        this.executionQueue = executionQueue;
+        this.objectMapper = objectMapper;
     }
 
     /**
      * Creates a new BUY or SELL order.
+     * A retry with the same Idempotency-Key returns the current state of the order of the first request instead of
+     * a new order.
+     * Each portfolio is rate limited, so a flood of orders on one portfolio is rejected before it reaches the services.
+     * With {@code autoExecute} the order is executed in the same pass and returned EXECUTED, behind the adaptive
+     * concurrency limiter like any execution.
      *
+     * @param idempotencyKey the optional client-chosen key of the submission
      * @param request the order request
      * @return the created order response
      * @throws InsufficientBuyingPowerException if there's not enough buying power for a buy order
      * @throws InsufficientInventoryException if there's not enough inventory for a sell order
+     * @throws RateLimitExceededException if the portfolio exceeded its rate limit, or an auto-executed order
+     *         could not get a slot from the adaptive limiter
      */
     @PostMapping
-    public ResponseEntity<OrderResponse> createOrder(@Valid @RequestBody OrderRequest request)
+    public ResponseEntity<OrderResponse> createOrder(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody OrderRequest request)
             throws InsufficientBuyingPowerException, InsufficientInventoryException {
 
-        OrderEntity order = tradingService.createOrder(request);
+        rateLimiter.acquirePortfolio(request.getPortfolioId());
 
-        OrderResponse response = mapToResponse(order);
+        Supplier<OrderResponse> create = idempotencyKey != null
+                ? () -> idempotencyService.createOnce(idempotencyKey, request,
+                        recordKey -> mapToResponse(tradingService.createOrder(request, recordKey)),
+                        orderId -> mapToResponse(tradingService.getOrder(orderId)))
+                : () -> mapToResponse(tradingService.createOrder(request));
+
+        OrderResponse response = request.isAutoExecute() ? executionLimiter.execute(create) : create.get();
         return ResponseEntity.ok(response);
     }
 
@@ -54,6 +109,65 @@ public class TradingController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Lists orders page by page. Pass the returned {@code nextCursor} as {@code after} to get the next page;
+     * it is null on the last page. The page is written to the response while it is read.
+     *
+     * @param portfolioId the portfolio ID filter
+     * @param status the status filter
+     * @param isin the ISIN filter
+     * @param from the inclusive lower bound of the creation time
+     * @param to the exclusive upper bound of the creation time
+     * @param after the ID of the last order of the previous page
+     * @param limit the page size, capped at 10000
+     * @return the streamed page
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listOrders(
+            @RequestParam(required = false) String portfolioId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String isin,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        OrderHistoryQuery query = new OrderHistoryQuery(portfolioId, status, isin, from, to, after, pageSize);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                Long[] lastId = new Long[1];
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("orders");
+                int count = tradingService.forEachOrder(query, order -> {
+                    writeOrder(generator, order);
+                    lastId[0] = order.getId();
+                });
+                generator.writeEndArray();
+                generator.writeObjectField("nextCursor", count == pageSize ? lastId[0] : null);
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Cancels all open orders of a portfolio, of a security, or of a security in a portfolio.
+     *
+     * @param portfolioId the portfolio ID filter
+     * @param isin the ISIN filter
+     * @return the number and IDs of the cancelled orders
+     * @throws ValidationException if neither filter is given
+     */
+    @DeleteMapping
+    public ResponseEntity<BulkCancelResponse> cancelOrders(
+            @RequestParam(required = false) String portfolioId,
+            @RequestParam(required = false) String isin) {
+        List<Long> cancelled = tradingService.cancelOrders(portfolioId, isin);
+
+        return ResponseEntity.ok(new BulkCancelResponse(cancelled.size(), cancelled));
+    }
+
     /**
      * Cancels an order by its ID.
      *
@@ -72,21 +186,62 @@ public class TradingController {
      * Executes an order by its ID.
      * For BUY orders: Deducts buying power and adds to inventory.
      * For SELL orders: Removes from inventory and adds to buying power.
+     * Runs behind the adaptive concurrency limiter, so executions beyond the current limit wait or are rejected.
      *
      * @param id the order ID
      * @return the executed order response
      * @throws InsufficientBuyingPowerException if there's not enough buying power for a buy order
      * @throws InsufficientInventoryException if there's not enough inventory for a sell order
+     * @throws RateLimitExceededException if the execution could not get a slot from the adaptive limiter
      */
     @PutMapping("/{id}/execute")
     public ResponseEntity<OrderResponse> executeOrder(@PathVariable Long id)
             throws InsufficientBuyingPowerException, InsufficientInventoryException {
-        OrderEntity executedOrder = tradingService.executeOrder(id);
+        OrderEntity executedOrder = executionLimiter.execute(() -> tradingService.executeOrder(id));
 
         OrderResponse response = mapToResponse(executedOrder);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Queues the execution of an order and answers 202 Accepted without waiting for it.
+     * The Location header points to the status of the execution, and the outcome is also posted to
+     * the configured webhook. Executions of one portfolio run in the order they were queued.
+     *
+     * @param id the order ID
+     * @return the queued execution, or the one of the order already queued or running
+     * @throws InvalidOrderStatusException if the order is no longer CREATED
+     * @throws RateLimitExceededException if the execution queue of the portfolio is full
+     */
+    @PutMapping(value = "/{id}/execute", params = "async=true")
+    public ResponseEntity<ExecutionStatus> executeOrderAsync(@PathVariable Long id) {
+        ExecutionStatus status = executionQueue.submit(id);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/orders/" + id + "/execution"))
+                .body(status);
+    }
+
+    /**
+     * Retrieves the state of the latest asynchronous execution of an order.
+     *
+     * @param id the order ID
+     * @return the execution status
+     * @throws OrderNotFoundException if no execution of the order was queued recently
+     */
+    @GetMapping("/{id}/execution")
+    public ResponseEntity<ExecutionStatus> getExecution(@PathVariable Long id) {
+        return ResponseEntity.ok(executionQueue.getStatus(id));
+    }
+
+    private void writeOrder(JsonGenerator generator, OrderEntity order) {
+        try {
+            generator.writeObject(mapToResponse(order));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private OrderResponse mapToResponse(OrderEntity order) {
         if (order.getSide() == OrderSide.SELL) {
             return new SellOrderResponse(
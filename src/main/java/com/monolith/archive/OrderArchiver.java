@@ -0,0 +1,73 @@
+package com.monolith.archive;
+
+import com.monolith.repository.OrderArchiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Periodically moves EXECUTED and CANCELLED orders older than {@code min-age} to the archive table,
+ * so the order table only holds open and recent orders and lookups by ID stay on a small index.
+ * <p>
+ * Every batch is its own short transaction, so archiving a large backlog never holds locks for long.
+ * A run stops after {@code max-batches} and the next run picks up where it left off.
+ */
+@Component
+public class OrderArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration minAge;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter archivedOrders;
+
+    public OrderArchiver(OrderArchiveRepository orderArchiveRepository,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${trading.archive.min-age:PT24H}") Duration minAge,
+                         @Value("${trading.archive.batch-size:1000}") int batchSize,
+                         @Value("${trading.archive.max-batches:100}") int maxBatches) {
+        this.orderArchiveRepository = orderArchiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minAge = minAge;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.archivedOrders = Counter.builder("trading.orders.archived")
+                .description("Terminal orders moved to the archive table")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the number of archived orders
+     */
+    @Scheduled(initialDelayString = "${trading.archive.initial-delay-ms:60000}",
+            fixedDelayString = "${trading.archive.interval-ms:600000}")
+    public int archive() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(minAge);
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer archived = transactionTemplate.execute(status -> orderArchiveRepository.archiveBatch(cutoff, batchSize));
+            total += archived;
+            archivedOrders.increment(archived);
+            if (archived < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Archived {} orders created before {}", total, cutoff);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,24 @@
+package com.monolith.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes connections of read-only transactions to the read data source and everything else,
+ * including work outside a transaction, to the primary.
+ * <p>
+ * The read-only flag is only bound once a transaction has begun, after the transaction manager asked for
+ * its connection, so this data source has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which fetches the connection
+ * at the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String READ = "read";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READ : PRIMARY;
+    }
+}
@@ -0,0 +1,21 @@
+package com.monolith.dto;
+
+import java.util.List;
+
+public class BulkCancelResponse {
+    private int cancelled;
+    private List<Long> orderIds;
+
+    public BulkCancelResponse(int cancelled, List<Long> orderIds) {
+        this.cancelled = cancelled;
+        this.orderIds = orderIds;
+    }
+
+    public int getCancelled() {
+        return cancelled;
+    }
+
+    public List<Long> getOrderIds() {
+        return orderIds;
+    }
+}
@@ -0,0 +1,79 @@
+package com.monolith.dto;
+
+import com.monolith.OrderStatus;
+import com.monolith.execution.ExecutionState;
+
+import java.time.OffsetDateTime;
+
+/**
+ * The state of an asynchronous execution, returned by the status URL and posted to the webhook.
+ */
+public class ExecutionStatus {
+    private Long orderId;
+    private String portfolioId;
+    private ExecutionState state;
+    private OrderStatus orderStatus;
+    private String error;
+    private OffsetDateTime updatedAt;
+
+    public ExecutionStatus() {
+    }
+
+    public ExecutionStatus(Long orderId, String portfolioId, ExecutionState state, OrderStatus orderStatus,
+                           String error, OffsetDateTime updatedAt) {
+        this.orderId = orderId;
+        this.portfolioId = portfolioId;
+        this.state = state;
+        this.orderStatus = orderStatus;
+        this.error = error;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(String portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public ExecutionState getState() {
+        return state;
+    }
+
+    public void setState(ExecutionState state) {
+        this.state = state;
+    }
+
+    public OrderStatus getOrderStatus() {
+        return orderStatus;
+    }
+
+    public void setOrderStatus(OrderStatus orderStatus) {
+        this.orderStatus = orderStatus;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(OffsetDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,21 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+
+public class ExposureResponse {
+    private String portfolioId;
+    private BigDecimal exposure;
+
+    public ExposureResponse(String portfolioId, BigDecimal exposure) {
+        this.portfolioId = portfolioId;
+        this.exposure = exposure;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public BigDecimal getExposure() {
+        return exposure;
+    }
+}
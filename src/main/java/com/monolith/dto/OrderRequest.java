@@ -1,12 +1,14 @@
 package com.monolith.dto;
 
 import com.monolith.OrderSide;
+import com.monolith.TimeInForce;
 
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 
 public class OrderRequest {
     @NotBlank(message = "Portfolio ID is required")
@@ -22,6 +24,15 @@ public class OrderRequest {
     @DecimalMin(value = "0.0", inclusive = false, message = "Quantity must be greater than zero")
     private BigDecimal quantity;
 
+    @DecimalMin(value = "0.0", inclusive = false, message = "Limit price must be greater than zero")
+    private BigDecimal limitPrice;
+
+    private TimeInForce timeInForce;
+
+    private OffsetDateTime expireAt;
+
+    private boolean autoExecute;
+
     public OrderRequest() {
     }
 
@@ -56,4 +67,48 @@ public class OrderRequest {
     public void setQuantity(BigDecimal quantity) {
         this.quantity = quantity;
     }
+
+    /**
+     * @return the price the client expects, checked against the price band but not used to price the order
+     */
+    public BigDecimal getLimitPrice() {
+        return limitPrice;
+    }
+
+    public void setLimitPrice(BigDecimal limitPrice) {
+        this.limitPrice = limitPrice;
+    }
+
+    /**
+     * @return the time in force, or null for the configured default
+     */
+    public TimeInForce getTimeInForce() {
+        return timeInForce;
+    }
+
+    public void setTimeInForce(TimeInForce timeInForce) {
+        this.timeInForce = timeInForce;
+    }
+
+    /**
+     * @return the expiry time of a GTD order
+     */
+    public OffsetDateTime getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(OffsetDateTime expireAt) {
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * @return true to execute the order as soon as it is created and return it EXECUTED
+     */
+    public boolean isAutoExecute() {
+        return autoExecute;
+    }
+
+    public void setAutoExecute(boolean autoExecute) {
+        this.autoExecute = autoExecute;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class PnlResponse {
+    private String portfolioId;
+    private BigDecimal realizedPnl;
+    private List<PositionPnlResponse> positions;
+
+    public PnlResponse(String portfolioId, BigDecimal realizedPnl, List<PositionPnlResponse> positions) {
+        this.portfolioId = portfolioId;
+        this.realizedPnl = realizedPnl;
+        this.positions = positions;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public BigDecimal getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    public List<PositionPnlResponse> getPositions() {
+        return positions;
+    }
+}
@@ -0,0 +1,28 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class PortfolioResponse {
+    private String portfolioId;
+    private BigDecimal buyingPower;
+    private List<PositionResponse> positions;
+
+    public PortfolioResponse(String portfolioId, BigDecimal buyingPower, List<PositionResponse> positions) {
+        this.portfolioId = portfolioId;
+        this.buyingPower = buyingPower;
+        this.positions = positions;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public BigDecimal getBuyingPower() {
+        return buyingPower;
+    }
+
+    public List<PositionResponse> getPositions() {
+        return positions;
+    }
+}
@@ -0,0 +1,33 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+
+public class PositionPnlResponse {
+    private String isin;
+    private BigDecimal quantity;
+    private BigDecimal averageCost;
+    private BigDecimal realizedPnl;
+
+    public PositionPnlResponse(String isin, BigDecimal quantity, BigDecimal averageCost, BigDecimal realizedPnl) {
+        this.isin = isin;
+        this.quantity = quantity;
+        this.averageCost = averageCost;
+        this.realizedPnl = realizedPnl;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getAverageCost() {
+        return averageCost;
+    }
+
+    public BigDecimal getRealizedPnl() {
+        return realizedPnl;
+    }
+}
@@ -0,0 +1,21 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+
+public class PositionResponse {
+    private String isin;
+    private BigDecimal quantity;
+
+    public PositionResponse(String isin, BigDecimal quantity) {
+        this.isin = isin;
+        this.quantity = quantity;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+}
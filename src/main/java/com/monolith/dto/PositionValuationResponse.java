@@ -0,0 +1,40 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+
+public class PositionValuationResponse {
+    private String isin;
+    private BigDecimal quantity;
+    private BigDecimal price;
+    private BigDecimal marketValue;
+    private BigDecimal unrealizedPnl;
+
+    public PositionValuationResponse(String isin, BigDecimal quantity, BigDecimal price,
+                                     BigDecimal marketValue, BigDecimal unrealizedPnl) {
+        this.isin = isin;
+        this.quantity = quantity;
+        this.price = price;
+        this.marketValue = marketValue;
+        this.unrealizedPnl = unrealizedPnl;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public BigDecimal getMarketValue() {
+        return marketValue;
+    }
+
+    public BigDecimal getUnrealizedPnl() {
+        return unrealizedPnl;
+    }
+}
@@ -0,0 +1,68 @@
+package com.monolith.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+import java.math.BigDecimal;
+
+/**
+ * The limits of the pre-trade risk checks. A limit left null disables its check.
+ */
+public class RiskLimits {
+    @DecimalMin(value = "0.0", inclusive = false, message = "Max order notional must be greater than zero")
+    private BigDecimal maxOrderNotional;
+
+    @DecimalMin(value = "0.0", inclusive = false, message = "Max position must be greater than zero")
+    private BigDecimal maxPosition;
+
+    @Min(value = 1, message = "Max open orders must be at least one")
+    private Integer maxOpenOrders;
+
+    @DecimalMin(value = "0.0", inclusive = false, message = "Price band must be greater than zero")
+    private BigDecimal priceBand;
+
+    public RiskLimits() {
+    }
+
+    public RiskLimits(BigDecimal maxOrderNotional, BigDecimal maxPosition, Integer maxOpenOrders, BigDecimal priceBand) {
+        this.maxOrderNotional = maxOrderNotional;
+        this.maxPosition = maxPosition;
+        this.maxOpenOrders = maxOpenOrders;
+        this.priceBand = priceBand;
+    }
+
+    public BigDecimal getMaxOrderNotional() {
+        return maxOrderNotional;
+    }
+
+    public void setMaxOrderNotional(BigDecimal maxOrderNotional) {
+        this.maxOrderNotional = maxOrderNotional;
+    }
+
+    public BigDecimal getMaxPosition() {
+        return maxPosition;
+    }
+
+    public void setMaxPosition(BigDecimal maxPosition) {
+        this.maxPosition = maxPosition;
+    }
+
+    public Integer getMaxOpenOrders() {
+        return maxOpenOrders;
+    }
+
+    public void setMaxOpenOrders(Integer maxOpenOrders) {
+        this.maxOpenOrders = maxOpenOrders;
+    }
+
+    /**
+     * @return the largest allowed deviation of a limit price from the market price, as a fraction of the latter
+     */
+    public BigDecimal getPriceBand() {
+        return priceBand;
+    }
+
+    public void setPriceBand(BigDecimal priceBand) {
+        this.priceBand = priceBand;
+    }
+}
@@ -0,0 +1,41 @@
+package com.monolith.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ValuationResponse {
+    private String portfolioId;
+    private BigDecimal marketValue;
+    private BigDecimal costBasis;
+    private BigDecimal unrealizedPnl;
+    private List<PositionValuationResponse> positions;
+
+    public ValuationResponse(String portfolioId, BigDecimal marketValue, BigDecimal costBasis,
+                             BigDecimal unrealizedPnl, List<PositionValuationResponse> positions) {
+        this.portfolioId = portfolioId;
+        this.marketValue = marketValue;
+        this.costBasis = costBasis;
+        this.unrealizedPnl = unrealizedPnl;
+        this.positions = positions;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public BigDecimal getMarketValue() {
+        return marketValue;
+    }
+
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    public BigDecimal getUnrealizedPnl() {
+        return unrealizedPnl;
+    }
+
+    public List<PositionValuationResponse> getPositions() {
+        return positions;
+    }
+}
@@ -3,6 +3,8 @@ package com.monolith.exception;
 import com.monolith.dto.ErrorResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -44,12 +46,13 @@ public class GlobalExceptionHandler {
     }
 
     /**
-     * Handles insufficient exceptions.
+     * Handles insufficient and invalid input rejections.
      *
      * @param ex The exception
      * @return ResponseEntity with error details
      */
-    @ExceptionHandler({InsufficientBuyingPowerException.class, InsufficientInventoryException.class})
+    @ExceptionHandler({InsufficientBuyingPowerException.class, InsufficientInventoryException.class,
+            ValidationException.class, RiskLimitExceededException.class})
     public ResponseEntity<ErrorResponse> handleInsufficientException(Exception ex) {
         ErrorResponse errorResponse = new ErrorResponse(
                 BAD_REQUEST.value(),
@@ -73,6 +76,54 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, NOT_FOUND);
     }
 
+    /**
+     * Handles an Idempotency-Key sent again with a different request.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with error details
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                UNPROCESSABLE_ENTITY.value(),
+                ex.getMessage()
+        );
+        return new ResponseEntity<>(errorResponse, UNPROCESSABLE_ENTITY);
+    }
+
+    /**
+     * Handles rate limit rejections, telling the client when to retry.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with error details
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleRateLimitExceededException(RateLimitExceededException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                TOO_MANY_REQUESTS.value(),
+                ex.getMessage()
+        );
+        return ResponseEntity.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    /**
+     * Handles updates that kept losing to concurrent transactions after all retries.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with error details
+     */
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<ErrorResponse> handleConcurrencyFailureException(ConcurrencyFailureException ex) {
+        log.warn(ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse(
+                CONFLICT.value(),
+                "Concurrent update, please retry: " + ex.getMessage()
+        );
+        return new ResponseEntity<>(errorResponse, CONFLICT);
+    }
+
     /**
      * Handles illegal argument exceptions.
      *
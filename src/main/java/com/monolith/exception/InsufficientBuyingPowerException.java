@@ -1,7 +1,7 @@
 package com.monolith.exception;
 
-public class InsufficientBuyingPowerException extends RuntimeException {
-    public InsufficientBuyingPowerException(String message) {
-        super(message);
+public class InsufficientBuyingPowerException extends RejectionException {
+    public InsufficientBuyingPowerException(String format, Object... args) {
+        super(format, args);
     }
-}
\ No newline at end of file
+}
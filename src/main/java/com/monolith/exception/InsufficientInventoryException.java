@@ -1,7 +1,7 @@
 package com.monolith.exception;
 
-public class InsufficientInventoryException extends RuntimeException {
-    public InsufficientInventoryException(String message) {
-        super(message);
+public class InsufficientInventoryException extends RejectionException {
+    public InsufficientInventoryException(String format, Object... args) {
+        super(format, args);
     }
-}
\ No newline at end of file
+}
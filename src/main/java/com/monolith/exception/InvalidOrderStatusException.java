@@ -0,0 +1,42 @@
+package com.monolith.exception;
+
+import com.monolith.OrderStatus;
+
+/**
+ * Rejects the execution or cancellation of an order that is no longer CREATED, which every retried request
+ * runs into. Like a {@link RejectionException} it records no stack trace and builds its message when read,
+ * and it stays an {@link IllegalArgumentException} for the callers that handle those.
+ */
+public class InvalidOrderStatusException extends IllegalArgumentException {
+
+    private static final String INVALID_STATUS_EXC = "Order %d cannot be %s because it's in %s status";
+
+    private final Long orderId;
+    private final String action;
+    private final OrderStatus status;
+    private String message;
+
+    /**
+     * @param orderId the ID of the order
+     * @param action the rejected action, such as "executed"
+     * @param status the current status of the order
+     */
+    public InvalidOrderStatusException(Long orderId, String action, OrderStatus status) {
+        this.orderId = orderId;
+        this.action = action;
+        this.status = status;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = String.format(INVALID_STATUS_EXC, orderId, action, status);
+        }
+        return message;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -5,8 +5,8 @@ package com.monolith.exception;
  * This is a runtime exception as it represents a client error (accessing a non-existent resource)
  * rather than an exceptional condition in the application.
  */
-public class OrderNotFoundException extends RuntimeException {
-    public OrderNotFoundException(String message) {
-        super(message);
+public class OrderNotFoundException extends RejectionException {
+    public OrderNotFoundException(String format, Object... args) {
+        super(format, args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.monolith.exception;
+
+public class RateLimitExceededException extends RejectionException {
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        this(retryAfterSeconds, message);
+    }
+
+    public RateLimitExceededException(long retryAfterSeconds, String format, Object... args) {
+        super(format, args);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,33 @@
+package com.monolith.exception;
+
+/**
+ * Base of the rejections that are normal traffic rather than failures: an order the portfolio cannot cover,
+ * an unknown order, invalid input or a request over its rate limit.
+ * <p>
+ * A rejection records no stack trace, which is most of the cost of throwing, and formats its message
+ * with {@link String#format} only when the message is first read.
+ */
+public abstract class RejectionException extends RuntimeException {
+
+    private final String format;
+    private final Object[] args;
+    private String message;
+
+    /**
+     * @param format the message, or a {@link String#format} pattern if there are arguments
+     * @param args the arguments of the pattern
+     */
+    protected RejectionException(String format, Object... args) {
+        super(null, null, false, false);
+        this.format = format;
+        this.args = args;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = args.length == 0 ? format : String.format(format, args);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,7 @@
+package com.monolith.exception;
+
+public class RiskLimitExceededException extends RejectionException {
+    public RiskLimitExceededException(String format, Object... args) {
+        super(format, args);
+    }
+}
@@ -3,8 +3,8 @@ package com.monolith.exception;
 /**
  * Exception thrown when input validation fails.
  */
-public class ValidationException extends RuntimeException {
-    public ValidationException(String message) {
-        super(message);
+public class ValidationException extends RejectionException {
+    public ValidationException(String format, Object... args) {
+        super(format, args);
     }
 }
\ No newline at end of file
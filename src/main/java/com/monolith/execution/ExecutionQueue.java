@@ -0,0 +1,208 @@
+package com.monolith.execution;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.monolith.OrderStatus;
+import com.monolith.dto.ExecutionStatus;
+import com.monolith.exception.InvalidOrderStatusException;
+import com.monolith.exception.OrderNotFoundException;
+import com.monolith.exception.RateLimitExceededException;
+import com.monolith.exception.RejectionException;
+import com.monolith.repository.OrderEntity;
+import com.monolith.service.TradingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.execution.ExecutionState.*;
+
+/**
+ * Executes orders off the request thread, so the response of an execution request does not wait for settlement.
+ * <p>
+ * Executions are routed by portfolio ID to a fixed set of single-threaded workers, each with a bounded queue,
+ * so the executions of one portfolio run one at a time in the order they were queued while different portfolios
+ * settle in parallel. A full queue rejects the request. The workers bound the concurrent executions themselves,
+ * so they do not go through the adaptive concurrency limiter.
+ * <p>
+ * The state of each execution is kept for the status URL, for {@code status-ttl} and up to {@code status-cache-size}
+ * of them, and the outcome is posted through {@link WebhookNotifier}. Executions still queued at shutdown are
+ * dropped and their orders stay CREATED.
+ */
+@Service
+public class ExecutionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionQueue.class);
+    private static final String QUEUE_FULL_EXC = "Execution queue of portfolio %s is full, retry later";
+
+    private final TradingService tradingService;
+    private final WebhookNotifier webhookNotifier;
+    private final ThreadPoolExecutor[] workers;
+    private final Cache<Long, ExecutionStatus> statuses;
+    private final long shutdownTimeoutMillis;
+
+    private final Map<ExecutionState, Counter> outcomes = new EnumMap<>(ExecutionState.class);
+    private final Counter rejections;
+    private final Timer latency;
+
+    public ExecutionQueue(TradingService tradingService,
+                          WebhookNotifier webhookNotifier,
+                          MeterRegistry meterRegistry,
+                          @Value("${trading.execution.async.workers:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int workerCount,
+                          @Value("${trading.execution.async.queue-capacity:1000}") int queueCapacity,
+                          @Value("${trading.execution.async.status-ttl:PT10M}") Duration statusTtl,
+                          @Value("${trading.execution.async.status-cache-size:100000}") long statusCacheSize,
+                          @Value("${trading.execution.async.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.tradingService = tradingService;
+        this.webhookNotifier = webhookNotifier;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.statuses = CacheBuilder.newBuilder()
+                .maximumSize(statusCacheSize)
+                .expireAfterWrite(statusTtl)
+                .build();
+
+        this.workers = new ThreadPoolExecutor[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String name = "execution-worker-" + i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        for (ExecutionState state : new ExecutionState[]{EXECUTED, REJECTED, FAILED}) {
+            outcomes.put(state, Counter.builder("trading.execution.async.completed")
+                    .description("Asynchronous executions by outcome")
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.rejections = Counter.builder("trading.execution.async.rejections")
+                .description("Asynchronous executions rejected because the queue was full")
+                .register(meterRegistry);
+        this.latency = Timer.builder("trading.execution.async.latency")
+                .description("Time from queueing an execution to its outcome")
+                .register(meterRegistry);
+        Gauge.builder("trading.execution.async.queued", this, ExecutionQueue::queued)
+                .description("Executions waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the execution of an order. An execution of the order that is still queued or running is
+     * returned instead of queueing another one.
+     *
+     * @param orderId the ID of the order to execute
+     * @return the state of the execution
+     * @throws OrderNotFoundException if the order does not exist
+     * @throws InvalidOrderStatusException if the order is no longer CREATED
+     * @throws RateLimitExceededException if the queue of the portfolio is full
+     */
+    public ExecutionStatus submit(Long orderId) {
+        OrderEntity order = tradingService.getOrder(orderId);
+        if (order.getStatus() != CREATED) {
+            throw new InvalidOrderStatusException(orderId, "executed", order.getStatus());
+        }
+
+        ExecutionStatus queued = status(order, QUEUED, null, null);
+        ExecutionStatus current = statuses.asMap().compute(orderId,
+                (id, previous) -> previous != null && !previous.getState().isDone() ? previous : queued);
+        if (current != queued) {
+            return current;
+        }
+
+        long start = System.nanoTime();
+        try {
+            workerOf(order.getPortfolioId()).execute(() -> run(order, start));
+        } catch (RejectedExecutionException e) {
+            statuses.asMap().remove(orderId, queued);
+            rejections.increment();
+            throw new RateLimitExceededException(1, QUEUE_FULL_EXC, order.getPortfolioId());
+        }
+        return queued;
+    }
+
+    /**
+     * @param orderId the ID of the order
+     * @return the state of its latest execution
+     * @throws OrderNotFoundException if the order was not queued for execution within the status TTL
+     */
+    public ExecutionStatus getStatus(Long orderId) {
+        ExecutionStatus status = statuses.getIfPresent(orderId);
+        if (status == null) {
+            throw new OrderNotFoundException("No execution of order %d was queued", orderId);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        int dropped = 0;
+        for (ThreadPoolExecutor worker : workers) {
+            if (!worker.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                dropped += worker.shutdownNow().size();
+            }
+        }
+        if (dropped > 0) {
+            log.warn("Dropped {} queued executions at shutdown, their orders stay CREATED", dropped);
+        }
+    }
+
+    private void run(OrderEntity order, long start) {
+        statuses.put(order.getId(), status(order, RUNNING, null, null));
+
+        ExecutionStatus outcome;
+        try {
+            OrderEntity executed = tradingService.executeOrder(order.getId());
+            outcome = status(order, EXECUTED, executed.getStatus(), null);
+        } catch (RejectionException | InvalidOrderStatusException e) {
+            outcome = status(order, REJECTED, null, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Asynchronous execution of order {} failed", order.getId(), e);
+            outcome = status(order, FAILED, null, e.getMessage());
+        }
+
+        statuses.put(order.getId(), outcome);
+        outcomes.get(outcome.getState()).increment();
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        webhookNotifier.notify(outcome);
+    }
+
+    private ThreadPoolExecutor workerOf(String portfolioId) {
+        return workers[Math.floorMod(portfolioId.hashCode(), workers.length)];
+    }
+
+    private int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor worker : workers) {
+            queued += worker.getQueue().size();
+        }
+        return queued;
+    }
+
+    private static ExecutionStatus status(OrderEntity order, ExecutionState state, OrderStatus orderStatus,
+                                          String error) {
+        return new ExecutionStatus(order.getId(), order.getPortfolioId(), state, orderStatus, error,
+                OffsetDateTime.now());
+    }
+}
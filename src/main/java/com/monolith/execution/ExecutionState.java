@@ -0,0 +1,18 @@
+package com.monolith.execution;
+
+/**
+ * Progress of an execution queued through {@link ExecutionQueue}.
+ */
+public enum ExecutionState {
+    QUEUED,
+    RUNNING,
+    EXECUTED,
+    /** The order could not be executed, such as for lack of buying power or inventory. */
+    REJECTED,
+    /** The execution failed for a reason other than the order itself and can be queued again. */
+    FAILED;
+
+    public boolean isDone() {
+        return this != QUEUED && this != RUNNING;
+    }
+}
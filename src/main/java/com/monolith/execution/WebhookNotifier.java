@@ -0,0 +1,123 @@
+package com.monolith.execution;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.dto.ExecutionStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts the outcome of each asynchronous execution as JSON to the configured webhook URL.
+ * <p>
+ * Deliveries are sent without blocking the execution workers, so they can arrive out of order; the
+ * {@code updatedAt} of the payload orders them. A delivery that fails or gets a non-2xx answer
+ * is retried with exponential backoff up to {@code max-attempts}, and dropped after that or when
+ * {@code max-pending} deliveries are already under way; the status URL still has the outcome.
+ * Without a URL nothing is sent.
+ */
+@Component
+public class WebhookNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookNotifier.class);
+    private static final long BACKOFF_MILLIS = 200;
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final URI url;
+    private final Duration timeout;
+    private final int maxAttempts;
+    private final Semaphore pending;
+
+    private final Counter delivered;
+    private final Counter dropped;
+
+    public WebhookNotifier(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${trading.execution.webhook.url:}") String url,
+                           @Value("${trading.execution.webhook.timeout-ms:2000}") long timeoutMillis,
+                           @Value("${trading.execution.webhook.max-attempts:3}") int maxAttempts,
+                           @Value("${trading.execution.webhook.max-pending:1000}") int maxPending) {
+        this.objectMapper = objectMapper;
+        this.url = url.isBlank() ? null : URI.create(url);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.maxAttempts = maxAttempts;
+        this.pending = new Semaphore(maxPending);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+
+        this.delivered = Counter.builder("trading.execution.webhook.deliveries")
+                .description("Execution outcomes posted to the webhook")
+                .tag("result", "delivered")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("trading.execution.webhook.deliveries")
+                .description("Execution outcomes posted to the webhook")
+                .tag("result", "dropped")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param status the outcome of an execution
+     * @return completes with whether the webhook accepted the outcome, false at once if there is no webhook
+     */
+    public CompletableFuture<Boolean> notify(ExecutionStatus status) {
+        if (url == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!pending.tryAcquire()) {
+            log.warn("Dropping the webhook of order {}, too many deliveries pending", status.getOrderId());
+            dropped.increment();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(url)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(status)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            pending.release();
+            throw new IllegalStateException("Failed to serialize the execution status", e);
+        }
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        send(request, status.getOrderId(), 1, result);
+        return result.whenComplete((accepted, e) -> {
+            pending.release();
+            (Boolean.TRUE.equals(accepted) ? delivered : dropped).increment();
+        });
+    }
+
+    private void send(HttpRequest request, Long orderId, int attempt, CompletableFuture<Boolean> result) {
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+            if (e == null && response.statusCode() / 100 == 2) {
+                result.complete(true);
+                return;
+            }
+            String reason = e != null ? e.toString() : "status " + response.statusCode();
+            if (attempt >= maxAttempts) {
+                log.warn("Giving up the webhook of order {} after {} attempts: {}", orderId, attempt, reason);
+                result.complete(false);
+                return;
+            }
+            long delay = BACKOFF_MILLIS << (attempt - 1);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> send(request, orderId, attempt + 1, result));
+        });
+    }
+}
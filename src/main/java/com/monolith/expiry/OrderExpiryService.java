@@ -0,0 +1,209 @@
+package com.monolith.expiry;
+
+import com.monolith.TimeInForce;
+import com.monolith.dto.OrderRequest;
+import com.monolith.exception.ValidationException;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderExpiryRepository;
+import com.monolith.service.OrderService;
+import com.monolith.service.TransactionRetrier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.monolith.utils.Transactions.afterCommit;
+
+/**
+ * Expires DAY and GTD orders that are still open at their expiry time by cancelling them.
+ * <p>
+ * Expiry times are stored next to the orders and scheduled in a {@link TimingWheel}, loaded once at startup,
+ * so finding the due orders never scans the order table. Every tick cancels the due orders in batches, each in
+ * one transaction that skips the orders executed or cancelled in the meantime. A batch that fails is due again
+ * on the next tick.
+ */
+@Service
+@DependsOn("writeBehindService")
+public class OrderExpiryService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExpiryService.class);
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final TimingWheel wheel;
+    private final OrderService orderService;
+    private final OrderExpiryRepository orderExpiryRepository;
+    private final TransactionRetrier transactionRetrier;
+    private final TransactionTemplate transactionTemplate;
+    private final TimeInForce defaultTimeInForce;
+    private final LocalTime dayEnd;
+    private final ZoneId zone;
+    private final int batchSize;
+    private final Counter expiredOrders;
+
+    public OrderExpiryService(OrderService orderService,
+                              OrderExpiryRepository orderExpiryRepository,
+                              TransactionRetrier transactionRetrier,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${trading.order-expiry.default-time-in-force:GTC}") TimeInForce defaultTimeInForce,
+                              @Value("${trading.order-expiry.day-end:22:00}") String dayEnd,
+                              @Value("${trading.order-expiry.zone:UTC}") ZoneId zone,
+                              @Value("${trading.order-expiry.tick-ms:1000}") long tickMillis,
+                              @Value("${trading.order-expiry.batch-size:500}") int batchSize) {
+        this.orderService = orderService;
+        this.orderExpiryRepository = orderExpiryRepository;
+        this.transactionRetrier = transactionRetrier;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTimeInForce = defaultTimeInForce;
+        this.dayEnd = LocalTime.parse(dayEnd);
+        this.zone = zone;
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+
+        this.expiredOrders = Counter.builder("trading.orders.expired")
+                .description("Open orders cancelled at their expiry time")
+                .register(meterRegistry);
+        Gauge.builder("trading.orders.expiry.scheduled", this, OrderExpiryService::scheduledOrders)
+                .description("Orders waiting in the timing wheel, including ones closed since they were scheduled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules the open orders with an expiry time, after the write-behind recovery has written
+     * the statuses a previous run left. Orders that expired while the application was down are due at once.
+     */
+    @PostConstruct
+    void load() {
+        AtomicLong lastId = new AtomicLong();
+        int loaded = 0;
+        int page;
+        do {
+            page = transactionTemplate.execute(status -> orderExpiryRepository.forEachOpen(lastId.get(), LOAD_PAGE_SIZE,
+                    (orderId, expiresAt) -> {
+                        schedule(orderId, expiresAt);
+                        lastId.set(orderId);
+                    }));
+            loaded += page;
+        } while (page == LOAD_PAGE_SIZE);
+        log.info("Scheduled the expiry of {} open orders", loaded);
+    }
+
+    /**
+     * @param request the new order
+     * @return the time in force of the request, or the default one if it has none
+     */
+    public TimeInForce getTimeInForce(OrderRequest request) {
+        return request.getTimeInForce() != null ? request.getTimeInForce() : defaultTimeInForce;
+    }
+
+    /**
+     * @param request the new order
+     * @return when the order expires, or null if it does not
+     * @throws ValidationException if the expiry time is missing for a GTD order, in the past, or given for another one
+     */
+    public OffsetDateTime getExpiry(OrderRequest request) {
+        TimeInForce timeInForce = getTimeInForce(request);
+        if (timeInForce != TimeInForce.GTD && request.getExpireAt() != null) {
+            throw new ValidationException("Expiry time is only allowed for GTD orders");
+        }
+        return switch (timeInForce) {
+            case GTC, IOC -> null;
+            case DAY -> endOfDay(ZonedDateTime.now(zone));
+            case GTD -> {
+                if (request.getExpireAt() == null) {
+                    throw new ValidationException("Expiry time is required for GTD orders");
+                }
+                if (!request.getExpireAt().isAfter(OffsetDateTime.now())) {
+                    throw new ValidationException("Expiry time %s is in the past", request.getExpireAt());
+                }
+                yield request.getExpireAt();
+            }
+        };
+    }
+
+    /**
+     * Stores the expiry time in the current transaction and schedules it once the transaction commits.
+     *
+     * @param order the new order
+     * @param expiresAt when the order expires, or null if it does not
+     */
+    public void schedule(OrderEntity order, OffsetDateTime expiresAt) {
+        if (expiresAt == null) {
+            return;
+        }
+        orderExpiryRepository.save(order.getId(), expiresAt);
+        afterCommit(() -> schedule(order.getId(), expiresAt));
+    }
+
+    /**
+     * @return the number of expired orders
+     */
+    @Scheduled(fixedDelayString = "${trading.order-expiry.tick-ms:1000}")
+    public int expireDueOrders() {
+        return expireDueOrders(System.currentTimeMillis());
+    }
+
+    int expireDueOrders(long nowMillis) {
+        List<Long> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(nowMillis, due::add);
+        }
+
+        int total = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                int expired = transactionRetrier.execute(() -> orderService.cancelOrders(batch)).size();
+                expiredOrders.increment(expired);
+                total += expired;
+            } catch (RuntimeException e) {
+                log.error("Failed to expire a batch of {} orders, retrying on the next tick: {}", batch.size(), e.getMessage());
+                synchronized (wheel) {
+                    batch.forEach(orderId -> wheel.add(orderId, nowMillis));
+                }
+            }
+        }
+        if (total > 0) {
+            log.info("Expired {} of {} due orders", total, due.size());
+        }
+        return total;
+    }
+
+    private void schedule(Long orderId, OffsetDateTime expiresAt) {
+        synchronized (wheel) {
+            wheel.add(orderId, expiresAt.toInstant().toEpochMilli());
+        }
+    }
+
+    /**
+     * An order placed after the end of the trading day is good for the next one.
+     */
+    private OffsetDateTime endOfDay(ZonedDateTime now) {
+        ZonedDateTime end = now.with(dayEnd);
+        return (now.isBefore(end) ? end : end.plusDays(1)).toOffsetDateTime();
+    }
+
+    private int scheduledOrders() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.monolith.expiry;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of order IDs and their deadlines.
+ * <p>
+ * Level 0 has one slot per tick, every further level one slot per turn of the level below. An ID is filed
+ * in the lowest level whose span covers its deadline, so adding is constant time whatever the deadline.
+ * When a level turns to a slot, the slot's IDs are filed again, one level lower at least, and the IDs in the
+ * current level 0 slot are due. Deadlines beyond the top level wait in its farthest slot and are filed
+ * again when it comes round. Advancing costs one step per elapsed tick plus the IDs it moves.
+ * <p>
+ * Not thread-safe, callers synchronize.
+ */
+class TimingWheel {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final Slot[][] levels;
+    private final long[] ticksPerSlot;
+    private final Slot due = new Slot();
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis the resolution; deadlines are rounded up to whole ticks, so nothing is due early
+     * @param wheelSize the number of slots of each level
+     * @param levelCount the number of levels
+     * @param startMillis the current time
+     */
+    TimingWheel(long tickMillis, int wheelSize, int levelCount, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levels = new Slot[levelCount][wheelSize];
+        this.ticksPerSlot = new long[levelCount];
+        long ticks = 1;
+        for (int level = 0; level < levelCount; level++) {
+            ticksPerSlot[level] = ticks;
+            ticks *= wheelSize;
+            for (int slot = 0; slot < wheelSize; slot++) {
+                levels[level][slot] = new Slot();
+            }
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * @param id the ID
+     * @param deadlineMillis when the ID is due, in the past if it is due on the next advance
+     */
+    void add(long id, long deadlineMillis) {
+        size++;
+        file(id, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+    }
+
+    /**
+     * Moves the wheel up to the given time and hands over the IDs that are due, in no particular order.
+     *
+     * @param nowMillis the current time
+     * @param consumer receives the due IDs
+     */
+    void advance(long nowMillis, LongConsumer consumer) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        drain(due, consumer);
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = levels.length - 1; level > 0; level--) {
+                if (currentTick % ticksPerSlot[level] == 0) {
+                    Slot slot = levels[level][slotIndex(currentTick, level)];
+                    if (slot.size == 0) {
+                        continue;
+                    }
+                    long[] ids = Arrays.copyOf(slot.ids, slot.size);
+                    long[] deadlines = Arrays.copyOf(slot.deadlineTicks, slot.size);
+                    slot.clear();
+                    for (int i = 0; i < ids.length; i++) {
+                        file(ids[i], deadlines[i]);
+                    }
+                }
+            }
+            drain(levels[0][slotIndex(currentTick, 0)], consumer);
+            drain(due, consumer);
+        }
+    }
+
+    /**
+     * @return the number of IDs in the wheel
+     */
+    int size() {
+        return size;
+    }
+
+    private void file(long id, long deadlineTick) {
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            due.add(id, deadlineTick);
+            return;
+        }
+        int level = 0;
+        while (level < levels.length - 1 && delta >= ticksPerSlot[level] * wheelSize) {
+            level++;
+        }
+        long span = ticksPerSlot[level] * wheelSize;
+        long placement = delta < span ? deadlineTick : currentTick + span;
+        levels[level][slotIndex(placement, level)].add(id, deadlineTick);
+    }
+
+    private int slotIndex(long tick, int level) {
+        return (int) Math.floorMod(Math.floorDiv(tick, ticksPerSlot[level]), (long) wheelSize);
+    }
+
+    private void drain(Slot slot, LongConsumer consumer) {
+        int count = slot.size;
+        if (count == 0) {
+            return;
+        }
+        long[] ids = Arrays.copyOf(slot.ids, count);
+        slot.clear();
+        size -= count;
+        for (long id : ids) {
+            consumer.accept(id);
+        }
+    }
+
+    /**
+     * IDs and deadlines in parallel arrays, so a slot holds no object per entry.
+     */
+    private static final class Slot {
+        private static final long[] EMPTY = new long[0];
+
+        private long[] ids = EMPTY;
+        private long[] deadlineTicks = EMPTY;
+        private int size;
+
+        void add(long id, long deadlineTick) {
+            if (size == ids.length) {
+                int capacity = Math.max(4, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                deadlineTicks = Arrays.copyOf(deadlineTicks, capacity);
+            }
+            ids[size] = id;
+            deadlineTicks[size] = deadlineTick;
+            size++;
+        }
+
+        void clear() {
+            if (ids.length > 64) {
+                ids = EMPTY;
+                deadlineTicks = EMPTY;
+            }
+            size = 0;
+        }
+    }
+}
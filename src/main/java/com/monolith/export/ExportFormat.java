@@ -0,0 +1,34 @@
+package com.monolith.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    RowWriter open(JsonFactory jsonFactory, OutputStream outputStream, String[] columns) throws IOException {
+        return switch (this) {
+            case NDJSON -> new NdjsonRowWriter(jsonFactory, outputStream, columns);
+            case CSV -> new CsvRowWriter(outputStream, columns);
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.monolith.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.repository.InventoryEntity;
+import com.monolith.repository.InventoryEntityId;
+import com.monolith.repository.OrderHistoryQuery;
+import com.monolith.service.InventoryService;
+import com.monolith.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Full-table exports of orders and positions.
+ * Tables are walked in keyset chunks, each read in its own short read-only transaction,
+ * and rows go straight to the output, so memory stays flat whatever the table size.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    static final String[] ORDER_COLUMNS = {"id", "portfolioId", "isin", "side", "quantity", "price", "status"};
+    static final String[] POSITION_COLUMNS = {"portfolioId", "isin", "quantity"};
+
+    private final OrderService orderService;
+    private final InventoryService inventoryService;
+    private final JsonFactory jsonFactory;
+
+    @Value("${trading.export.chunk-size:1000}")
+    private int CHUNK_SIZE;
+
+    public ExportService(OrderService orderService, InventoryService inventoryService, ObjectMapper objectMapper) {
+        this.orderService = orderService;
+        this.inventoryService = inventoryService;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * @param format the output format
+     * @param outputStream the destination, closed when the export completes
+     * @return the number of exported orders
+     * @throws IOException if the output cannot be written
+     */
+    public long exportOrders(ExportFormat format, OutputStream outputStream) throws IOException {
+        long total = 0;
+        try (RowWriter writer = format.open(jsonFactory, outputStream, ORDER_COLUMNS)) {
+            Long[] lastId = new Long[1];
+            int count;
+            do {
+                OrderHistoryQuery chunk = new OrderHistoryQuery(null, null, null, null, null, lastId[0], CHUNK_SIZE);
+                count = orderService.forEachOrder(chunk, order -> {
+                    write(writer, order.getId(), order.getPortfolioId(), order.getIsin(), order.getSide().name(),
+                            order.getQuantity(), order.getPrice(), order.getStatus().name());
+                    lastId[0] = order.getId();
+                });
+                total += count;
+            } while (count == CHUNK_SIZE);
+        }
+        log.info("Exported {} orders as {}", total, format);
+        return total;
+    }
+
+    /**
+     * @param format the output format
+     * @param outputStream the destination, closed when the export completes
+     * @return the number of exported positions
+     * @throws IOException if the output cannot be written
+     */
+    public long exportPositions(ExportFormat format, OutputStream outputStream) throws IOException {
+        long total = 0;
+        try (RowWriter writer = format.open(jsonFactory, outputStream, POSITION_COLUMNS)) {
+            InventoryEntityId[] last = new InventoryEntityId[1];
+            int count;
+            do {
+                count = inventoryService.forEachPosition(last[0], CHUNK_SIZE, position -> {
+                    write(writer, position.getPortfolioId(), position.getIsin(), position.getQuantity());
+                    last[0] = idOf(position);
+                });
+                total += count;
+            } while (count == CHUNK_SIZE);
+        }
+        log.info("Exported {} positions as {}", total, format);
+        return total;
+    }
+
+    private static InventoryEntityId idOf(InventoryEntity position) {
+        return new InventoryEntityId(position.getPortfolioId(), position.getIsin());
+    }
+
+    private static void write(RowWriter writer, Object... values) {
+        try {
+            writer.write(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.monolith.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Newline-delimited JSON, one object per row keyed by column name.
+ */
+class NdjsonRowWriter implements RowWriter {
+
+    private final JsonGenerator generator;
+    private final String[] columns;
+    private boolean empty = true;
+
+    NdjsonRowWriter(JsonFactory jsonFactory, OutputStream outputStream, String[] columns) throws IOException {
+        this.generator = jsonFactory.createGenerator(outputStream);
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        this.columns = columns;
+    }
+
+    @Override
+    public void write(Object... values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < columns.length; i++) {
+            generator.writeObjectField(columns[i], values[i]);
+        }
+        generator.writeEndObject();
+        empty = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!empty) {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+}
@@ -0,0 +1,16 @@
+package com.monolith.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes export rows one at a time, in the column order it was opened with.
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * @param values the row values, one per column
+     * @throws IOException if the output cannot be written
+     */
+    void write(Object... values) throws IOException;
+}
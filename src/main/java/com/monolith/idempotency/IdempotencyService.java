@@ -0,0 +1,210 @@
+package com.monolith.idempotency;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.monolith.dto.OrderRequest;
+import com.monolith.dto.OrderResponse;
+import com.monolith.exception.IdempotencyKeyReusedException;
+import com.monolith.repository.IdempotencyKeyEntity;
+import com.monolith.repository.IdempotencyKeyRepository;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.PersistOrUpdateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Deduplicates order submissions retried under the same Idempotency-Key.
+ * <p>
+ * Recent keys are answered from a bounded cache that evicts by size and age; older keys fall back to
+ * the persisted table. A key is recorded by the transaction that creates its order, so it is never recorded
+ * for an order that rolled back, and the rest of the submission, e.g. the execution of an IOC order, keeps
+ * its own transactions and retries. A replay returns the current state of the order.
+ * Concurrent requests with the same key are serialized by a striped lock, so only the first one creates
+ * the order. Across instances, the key is inserted rather than merged, so the first insert wins and
+ * the others roll back and replay it.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final String INVALID_KEY_EXC = "Idempotency-Key must have 1 to %d characters";
+    private static final String KEY_REUSED_EXC = "Idempotency-Key %s was already used for a different request";
+    private static final String KEY_TAKEN_EXC = "Idempotency-Key %s was recorded concurrently";
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final PersistOrUpdateRepository persistOrUpdateRepository;
+    private final Duration ttl;
+    private final Cache<String, Replay> replays;
+    private final Striped<Lock> locks;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              PersistOrUpdateRepository persistOrUpdateRepository,
+                              @Value("${trading.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${trading.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${trading.idempotency.stripes:64}") int stripes) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.persistOrUpdateRepository = persistOrUpdateRepository;
+        this.ttl = ttl;
+        this.replays = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .concurrencyLevel(stripes)
+                .build();
+        this.locks = Striped.lock(stripes);
+    }
+
+    /**
+     * Creates the order unless the key was already used, in which case the order of the first request is
+     * returned without calling {@code create}.
+     *
+     * @param key the Idempotency-Key header
+     * @param request the order request
+     * @param create creates the order and maps it to the response; it must pass the new order to the given
+     *               callback inside the transaction that creates it
+     * @param replay maps the ID of the order of the first request to its current response
+     * @return the response of the created or the replayed order
+     * @throws IdempotencyKeyReusedException if the key was used for a different request
+     */
+    public OrderResponse createOnce(String key, OrderRequest request,
+                                    Function<Consumer<OrderEntity>, OrderResponse> create,
+                                    Function<Long, OrderResponse> replay) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(format(INVALID_KEY_EXC, MAX_KEY_LENGTH));
+        }
+
+        String requestHash = requestHash(request);
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Replay recorded = find(key);
+            if (recorded != null) {
+                log.info("Replaying order {} for Idempotency-Key {}", recorded.orderId, key);
+                return replay.apply(recorded.orderIdFor(key, requestHash));
+            }
+
+            OrderResponse response;
+            try {
+                response = create.apply(order -> record(key, requestHash, order));
+            } catch (DuplicateKeyException e) {
+                // Another instance recorded the key first, its order won and ours rolled back
+                recorded = find(key);
+                if (recorded == null) {
+                    throw e;
+                }
+                return replay.apply(recorded.orderIdFor(key, requestHash));
+            }
+            replays.put(key, new Replay(requestHash, response.getId()));
+            return response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes keys older than the TTL, after which a retry creates a new order.
+     */
+    @Scheduled(fixedDelayString = "${trading.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(ttl));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Needs the transaction that creates the order.
+     *
+     * @throws DuplicateKeyException if another instance recorded the key first, which is not a race worth
+     *         retrying: the key belongs to the order of the other instance
+     */
+    private void record(String key, String requestHash, OrderEntity order) {
+        try {
+            persistOrUpdateRepository.persistOrUpdate(
+                    new IdempotencyKeyEntity(key, requestHash, order.getId(), Instant.now()), false);
+        } catch (OptimisticLockingFailureException e) {
+            throw new DuplicateKeyException(format(KEY_TAKEN_EXC, key), e);
+        }
+    }
+
+    private Replay find(String key) {
+        Replay replay = replays.getIfPresent(key);
+        if (replay != null) {
+            return replay;
+        }
+
+        IdempotencyKeyEntity entity = idempotencyKeyRepository.findById(key)
+                .filter(stored -> stored.getCreatedAt().isAfter(Instant.now().minus(ttl)))
+                .orElse(null);
+        if (entity == null) {
+            return null;
+        }
+        replay = new Replay(entity.getRequestHash(), entity.getOrderId());
+        replays.put(key, replay);
+        return replay;
+    }
+
+    /**
+     * @param request the order request
+     * @return the hex SHA-256 of the request fields, equal for requests differing only in the scale of a decimal
+     */
+    static String requestHash(OrderRequest request) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putField(hasher, request.getPortfolioId());
+        putField(hasher, request.getIsin());
+        putField(hasher, request.getSide());
+        putField(hasher, request.getQuantity() == null ? null : request.getQuantity().stripTrailingZeros().toPlainString());
+        putField(hasher, request.getLimitPrice() == null ? null : request.getLimitPrice().stripTrailingZeros().toPlainString());
+        putField(hasher, request.getTimeInForce());
+        putField(hasher, request.getExpireAt() == null ? null : request.getExpireAt().toInstant());
+        putField(hasher, request.isAutoExecute());
+        return hasher.hash().toString();
+    }
+
+    // Length-prefixed, so no two different requests hash the same input
+    private static void putField(Hasher hasher, Object field) {
+        if (field == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        String value = field.toString();
+        hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+
+    private static final class Replay {
+        private final String requestHash;
+        private final Long orderId;
+
+        private Replay(String requestHash, Long orderId) {
+            this.requestHash = requestHash;
+            this.orderId = orderId;
+        }
+
+        private Long orderIdFor(String key, String hash) {
+            if (!hash.equals(requestHash)) {
+                throw new IdempotencyKeyReusedException(format(KEY_REUSED_EXC, key));
+            }
+            return orderId;
+        }
+    }
+}
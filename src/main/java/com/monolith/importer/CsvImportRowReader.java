@@ -0,0 +1,130 @@
+package com.monolith.importer;
+
+import com.monolith.OrderSide;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CSV with a header line naming the columns portfolioId, isin, side, quantity and optionally price.
+ */
+class CsvImportRowReader implements ImportRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedReader reader;
+    private final int portfolioIdColumn;
+    private final int isinColumn;
+    private final int sideColumn;
+    private final int quantityColumn;
+    private final int priceColumn;
+    private long line;
+
+    CsvImportRowReader(InputStream inputStream) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        String header = reader.readLine();
+        line = 1;
+        if (header == null) {
+            throw new IllegalArgumentException("CSV header is missing");
+        }
+        List<String> columns = split(header);
+        portfolioIdColumn = required(columns, "portfolioId");
+        isinColumn = required(columns, "isin");
+        sideColumn = required(columns, "side");
+        quantityColumn = required(columns, "quantity");
+        priceColumn = columns.indexOf("price");
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            line++;
+        } while (text.isBlank());
+
+        List<String> fields = split(text);
+        return new ImportRow(
+                line,
+                field(fields, portfolioIdColumn),
+                field(fields, isinColumn),
+                side(field(fields, sideColumn)),
+                decimal(field(fields, quantityColumn)),
+                priceColumn < 0 ? null : decimal(field(fields, priceColumn)));
+    }
+
+    @Override
+    public long line() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static int required(List<String> columns, String name) {
+        int index = columns.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("CSV column " + name + " is missing");
+        }
+        return index;
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static OrderSide side(String value) {
+        return value == null ? null : OrderSide.valueOf(value.toUpperCase(Locale.ROOT));
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    /**
+     * Splits an RFC 4180 line. Quoted fields may contain commas and doubled quotes, but not line breaks.
+     */
+    static List<String> split(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+}
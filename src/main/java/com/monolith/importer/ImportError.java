@@ -0,0 +1,19 @@
+package com.monolith.importer;
+
+public class ImportError {
+    private final long line;
+    private final String message;
+
+    public ImportError(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
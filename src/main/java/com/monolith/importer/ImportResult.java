@@ -0,0 +1,42 @@
+package com.monolith.importer;
+
+import java.util.List;
+
+public class ImportResult {
+    private final long rows;
+    private final long executed;
+    private final long rejected;
+    private final long durationMillis;
+    private final List<ImportError> errors;
+
+    public ImportResult(long rows, long executed, long rejected, long durationMillis, List<ImportError> errors) {
+        this.rows = rows;
+        this.executed = executed;
+        this.rejected = rejected;
+        this.durationMillis = durationMillis;
+        this.errors = errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getExecuted() {
+        return executed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return the first rejected rows with their reason, capped to keep the result small
+     */
+    public List<ImportError> getErrors() {
+        return errors;
+    }
+}
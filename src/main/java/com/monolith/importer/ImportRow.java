@@ -0,0 +1,90 @@
+package com.monolith.importer;
+
+import com.monolith.OrderSide;
+import com.monolith.dto.OrderRequest;
+
+import java.math.BigDecimal;
+
+/**
+ * One historical trade of an import file.
+ */
+public class ImportRow {
+    private long line;
+    private String portfolioId;
+    private String isin;
+    private OrderSide side;
+    private BigDecimal quantity;
+    private BigDecimal price;
+
+    public ImportRow() {
+    }
+
+    public ImportRow(long line, String portfolioId, String isin, OrderSide side, BigDecimal quantity, BigDecimal price) {
+        this.line = line;
+        this.portfolioId = portfolioId;
+        this.isin = isin;
+        this.side = side;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(String portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    public void setIsin(String isin) {
+        this.isin = isin;
+    }
+
+    public OrderSide getSide() {
+        return side;
+    }
+
+    public void setSide(OrderSide side) {
+        this.side = side;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(BigDecimal quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * @return the execution price, null to execute at the current market price
+     */
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    OrderRequest toOrderRequest() {
+        OrderRequest request = new OrderRequest();
+        request.setPortfolioId(portfolioId);
+        request.setIsin(isin);
+        request.setSide(side);
+        request.setQuantity(quantity);
+        return request;
+    }
+}
@@ -0,0 +1,22 @@
+package com.monolith.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Pulls rows from an import file one at a time.
+ */
+interface ImportRowReader extends Closeable {
+
+    /**
+     * @return the next row or null at the end of the input
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the row cannot be parsed
+     */
+    ImportRow next() throws IOException;
+
+    /**
+     * @return the line number of the last row returned or rejected
+     */
+    long line();
+}
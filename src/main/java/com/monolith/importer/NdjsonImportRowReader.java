@@ -0,0 +1,60 @@
+package com.monolith.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Newline-delimited JSON, one object per row with the {@link ImportRow} properties.
+ * Each line is parsed on its own, so a malformed line is rejected without losing the lines after it.
+ */
+class NdjsonImportRowReader implements ImportRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectReader objectReader;
+    private final BufferedReader reader;
+    private long line;
+
+    NdjsonImportRowReader(ObjectMapper objectMapper, InputStream inputStream) {
+        this.objectReader = objectMapper.readerFor(ImportRow.class);
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            line++;
+        } while (text.isBlank());
+
+        ImportRow row;
+        try {
+            row = objectReader.readValue(text);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getOriginalMessage(), e);
+        }
+        row.setLine(line);
+        return row;
+    }
+
+    @Override
+    public long line() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
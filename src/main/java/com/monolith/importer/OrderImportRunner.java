@@ -0,0 +1,81 @@
+package com.monolith.importer;
+
+import com.monolith.export.ExportFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line entry point of the import:
+ * {@code java -jar broker-app.jar --import-orders=trades.csv [--import-format=CSV|NDJSON]}.
+ * <p>
+ * The format defaults to NDJSON for .ndjson and .jsonl files and to CSV otherwise, .gz files are unzipped.
+ * Once the import completes, {@link com.monolith.Application#main} exits with the code of this generator,
+ * 1 if any row was rejected.
+ */
+@Component
+public class OrderImportRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderImportRunner.class);
+
+    private static final String FILE_OPTION = "import-orders";
+    private static final String FORMAT_OPTION = "import-format";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OrderImportService orderImportService;
+
+    private volatile ImportResult result;
+
+    public OrderImportRunner(OrderImportService orderImportService) {
+        this.orderImportService = orderImportService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> files = args.getOptionValues(FILE_OPTION);
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+
+        Path file = Path.of(files.get(0));
+        String name = file.getFileName().toString().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        List<String> formats = args.getOptionValues(FORMAT_OPTION);
+        ExportFormat format = formats != null && !formats.isEmpty()
+                ? ExportFormat.valueOf(formats.get(0).toUpperCase())
+                : name.endsWith(".ndjson") || name.endsWith(".jsonl") ? ExportFormat.NDJSON : ExportFormat.CSV;
+
+        log.info("Importing {} as {}", file, format);
+        InputStream inputStream = gzip
+                ? new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)
+                : new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        ImportResult imported = orderImportService.importOrders(format, inputStream);
+        imported.getErrors().forEach(error -> log.warn("Line {}: {}", error.getLine(), error.getMessage()));
+        result = imported;
+    }
+
+    /**
+     * @return whether an import ran and the application should exit instead of serving
+     */
+    public boolean hasImported() {
+        return result != null;
+    }
+
+    @Override
+    public int getExitCode() {
+        return result == null || result.getRejected() == 0 ? 0 : 1;
+    }
+}
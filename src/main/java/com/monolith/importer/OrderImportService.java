@@ -0,0 +1,229 @@
+package com.monolith.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.dto.OrderRequest;
+import com.monolith.export.ExportFormat;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Replays historical trades from a CSV or NDJSON stream.
+ * <p>
+ * The input is parsed incrementally on the calling thread and rows are routed by portfolio ID
+ * to a fixed set of partitions, so each portfolio is settled by exactly one worker in file order
+ * while different portfolios settle in parallel. Each worker validates its rows with the
+ * {@link OrderRequest} constraints and settles them in batches through {@link OrderImportSettler}.
+ */
+@Service
+public class OrderImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderImportService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final ImportRow END_OF_INPUT = new ImportRow();
+    private static final long ENQUEUE_TIMEOUT_MILLIS = 100;
+
+    private final OrderImportSettler settler;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${trading.import.partitions:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int PARTITIONS;
+
+    @Value("${trading.import.batch-size:1000}")
+    private int BATCH_SIZE;
+
+    @Value("${trading.import.progress-interval:100000}")
+    private long PROGRESS_INTERVAL;
+
+    public OrderImportService(OrderImportSettler settler, Validator validator, ObjectMapper objectMapper) {
+        this.settler = settler;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param format the input format
+     * @param inputStream the input, closed when the import completes
+     * @return the import summary
+     * @throws IOException if the input cannot be read
+     */
+    public ImportResult importOrders(ExportFormat format, InputStream inputStream) throws IOException {
+        long start = System.nanoTime();
+        Progress progress = new Progress();
+        ExecutorService workers = Executors.newFixedThreadPool(PARTITIONS);
+        List<BlockingQueue<ImportRow>> partitions = new ArrayList<>(PARTITIONS);
+        List<Future<?>> results = new ArrayList<>(PARTITIONS);
+
+        try (ImportRowReader reader = open(format, inputStream)) {
+            for (int i = 0; i < PARTITIONS; i++) {
+                BlockingQueue<ImportRow> partition = new ArrayBlockingQueue<>(BATCH_SIZE * 4);
+                partitions.add(partition);
+                results.add(workers.submit(() -> {
+                    drain(partition, progress);
+                    return null;
+                }));
+            }
+
+            long read = 0;
+            while (true) {
+                ImportRow row;
+                try {
+                    row = reader.next();
+                } catch (IllegalArgumentException e) {
+                    progress.reject(reader.line(), "Unreadable row: " + e.getMessage());
+                    continue;
+                }
+                if (row == null) {
+                    break;
+                }
+                enqueue(partitions.get(partitionOf(row)), row, results);
+                if (++read % PROGRESS_INTERVAL == 0) {
+                    logProgress(read, progress, start);
+                }
+            }
+            for (BlockingQueue<ImportRow> partition : partitions) {
+                enqueue(partition, END_OF_INPUT, results);
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Import worker failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long durationMillis = (System.nanoTime() - start) / 1_000_000;
+        ImportResult result = new ImportResult(progress.executed.get() + progress.rejected.get(),
+                progress.executed.get(), progress.rejected.get(), durationMillis, progress.errors);
+        log.info("Import finished: {} rows, {} executed, {} rejected in {} ms",
+                result.getRows(), result.getExecuted(), result.getRejected(), durationMillis);
+        return result;
+    }
+
+    private ImportRowReader open(ExportFormat format, InputStream inputStream) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvImportRowReader(inputStream);
+            case NDJSON -> new NdjsonImportRowReader(objectMapper, inputStream);
+        };
+    }
+
+    /**
+     * Waits for room in the partition, but gives up once a worker has failed: a dead worker never drains
+     * its partition, so a plain {@code put} could block the reader forever.
+     *
+     * @throws ExecutionException if a worker failed
+     */
+    private static void enqueue(BlockingQueue<ImportRow> partition, ImportRow row, List<Future<?>> results)
+            throws InterruptedException, ExecutionException {
+        while (!partition.offer(row, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            for (Future<?> result : results) {
+                if (result.isDone()) {
+                    // Throws the failure, a worker that completed normally has already taken its end of input
+                    result.get();
+                }
+            }
+        }
+    }
+
+    private int partitionOf(ImportRow row) {
+        String portfolioId = row.getPortfolioId();
+        return portfolioId == null ? 0 : Math.floorMod(portfolioId.hashCode(), PARTITIONS);
+    }
+
+    private void drain(BlockingQueue<ImportRow> partition, Progress progress) throws InterruptedException {
+        List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+        boolean finished = false;
+        while (!finished) {
+            batch.add(partition.take());
+            partition.drainTo(batch, BATCH_SIZE - 1);
+            if (batch.get(batch.size() - 1) == END_OF_INPUT) {
+                batch.remove(batch.size() - 1);
+                finished = true;
+            }
+            settle(batch, progress);
+            batch.clear();
+        }
+    }
+
+    private void settle(List<ImportRow> batch, Progress progress) {
+        List<ImportRow> valid = new ArrayList<>(batch.size());
+        for (ImportRow row : batch) {
+            String violations = validate(row);
+            if (violations == null) {
+                valid.add(row);
+            } else {
+                progress.reject(row.getLine(), "Validation error: " + violations);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<ImportError> rejected = settler.settle(valid);
+            rejected.forEach(error -> progress.reject(error.getLine(), error.getMessage()));
+            progress.executed.addAndGet(valid.size() - rejected.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to settle a batch of {} rows: {}", valid.size(), e.getMessage());
+            valid.forEach(row -> progress.reject(row.getLine(), "Settlement failed: " + e.getMessage()));
+        }
+    }
+
+    private String validate(ImportRow row) {
+        if (row.getPrice() != null && row.getPrice().signum() <= 0) {
+            return "Price must be greater than zero";
+        }
+        Set<ConstraintViolation<OrderRequest>> violations = validator.validate(row.toOrderRequest());
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private void logProgress(long read, Progress progress, long start) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Import progress: {} rows read, {} executed, {} rejected, {} rows/s",
+                read, progress.executed.get(), progress.rejected.get(), read * 1000 / elapsedMillis);
+    }
+
+    private static final class Progress {
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final List<ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+
+        private void reject(long line, String message) {
+            rejected.incrementAndGet();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportError(line, message));
+            }
+        }
+    }
+}
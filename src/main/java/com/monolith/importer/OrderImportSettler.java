@@ -0,0 +1,133 @@
+package com.monolith.importer;
+
+import com.monolith.MarketDataService;
+import com.monolith.index.PositionKey;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.service.BuyingPowerService;
+import com.monolith.service.CostBasisService;
+import com.monolith.service.InventoryService;
+import com.monolith.service.OrderService;
+import com.monolith.service.TransactionRetrier;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.service.BuyingPowerService.INSUFFICIENT_BUY_POWER_EXC;
+import static com.monolith.service.InventoryService.INSUFFICIENT_INVENTORY_EXC;
+import static java.lang.String.format;
+import static org.springframework.transaction.annotation.Isolation.SERIALIZABLE;
+
+/**
+ * Settles a batch of import rows in one serializable transaction, rerun when it loses a race.
+ * Balances of all portfolios in the batch are read once, rows are applied in memory in file order,
+ * and the results are written back with one grouped save per table.
+ */
+@Component
+public class OrderImportSettler {
+
+    private final OrderService orderService;
+    private final BuyingPowerService buyingPowerService;
+    private final InventoryService inventoryService;
+    private final CostBasisService costBasisService;
+    private final MarketDataService marketDataService;
+    private final TransactionRetrier transactionRetrier;
+
+    public OrderImportSettler(OrderService orderService,
+                              BuyingPowerService buyingPowerService,
+                              InventoryService inventoryService,
+                              CostBasisService costBasisService,
+                              MarketDataService marketDataService,
+                              TransactionRetrier transactionRetrier) {
+        this.orderService = orderService;
+        this.buyingPowerService = buyingPowerService;
+        this.inventoryService = inventoryService;
+        this.costBasisService = costBasisService;
+        this.marketDataService = marketDataService;
+        this.transactionRetrier = transactionRetrier;
+    }
+
+    /**
+     * @param rows the validated rows of the batch, in file order
+     * @return the rows rejected for business reasons, all others are executed
+     */
+    public List<ImportError> settle(List<ImportRow> rows) {
+        return transactionRetrier.execute(SERIALIZABLE, () -> apply(rows));
+    }
+
+    private List<ImportError> apply(List<ImportRow> rows) {
+        Set<String> portfolioIds = new HashSet<>();
+        rows.forEach(row -> portfolioIds.add(row.getPortfolioId()));
+
+        Map<String, BigDecimal> readBuyingPowers = buyingPowerService.getBuyingPowers(portfolioIds);
+        Map<PositionKey, BigDecimal> readPositions = inventoryService.getPositions(portfolioIds);
+        Map<String, BigDecimal> buyingPowers = new HashMap<>(readBuyingPowers);
+        Map<PositionKey, BigDecimal> positions = new HashMap<>(readPositions);
+        Map<PositionKey, PositionCostEntity> costs = new HashMap<>(costBasisService.getPositionCosts(portfolioIds));
+
+        Map<String, BigDecimal> updatedBuyingPowers = new HashMap<>();
+        Map<PositionKey, BigDecimal> updatedPositions = new HashMap<>();
+        Map<PositionKey, PositionCostEntity> updatedCosts = new HashMap<>();
+        List<OrderEntity> orders = new ArrayList<>(rows.size());
+        List<ImportError> rejected = new ArrayList<>();
+
+        for (ImportRow row : rows) {
+            BigDecimal price;
+            try {
+                price = row.getPrice() != null ? row.getPrice() : marketDataService.getPrice(row.getIsin());
+            } catch (IllegalArgumentException e) {
+                rejected.add(new ImportError(row.getLine(), e.getMessage()));
+                continue;
+            }
+
+            String portfolioId = row.getPortfolioId();
+            PositionKey key = new PositionKey(portfolioId, row.getIsin());
+            BigDecimal notional = price.multiply(row.getQuantity());
+            BigDecimal buyingPower = buyingPowers.get(portfolioId);
+            BigDecimal held = positions.getOrDefault(key, BigDecimal.ZERO);
+            PositionCostEntity cost = costs.getOrDefault(key, CostBasisService.empty(portfolioId, row.getIsin()));
+
+            if (row.getSide() == BUY) {
+                if (buyingPower.compareTo(notional) < 0) {
+                    rejected.add(new ImportError(row.getLine(),
+                            format(INSUFFICIENT_BUY_POWER_EXC, portfolioId, notional, buyingPower)));
+                    continue;
+                }
+                buyingPower = buyingPower.subtract(notional);
+                held = held.add(row.getQuantity());
+                cost = CostBasisService.applyBuy(cost, row.getQuantity(), price);
+            } else {
+                if (held.compareTo(row.getQuantity()) < 0) {
+                    rejected.add(new ImportError(row.getLine(),
+                            format(INSUFFICIENT_INVENTORY_EXC, portfolioId, row.getIsin(), row.getQuantity(), held)));
+                    continue;
+                }
+                buyingPower = buyingPower.add(notional);
+                held = held.subtract(row.getQuantity());
+                cost = CostBasisService.applySell(cost, row.getQuantity(), price);
+            }
+
+            buyingPowers.put(portfolioId, buyingPower);
+            updatedBuyingPowers.put(portfolioId, buyingPower);
+            positions.put(key, held);
+            updatedPositions.put(key, held);
+            costs.put(key, cost);
+            updatedCosts.put(key, cost);
+            orders.add(new OrderEntity(portfolioId, row.getIsin(), EXECUTED, row.getSide(), row.getQuantity(), price));
+        }
+
+        orderService.createOrders(orders);
+        buyingPowerService.saveBuyingPowers(updatedBuyingPowers, readBuyingPowers);
+        inventoryService.savePositions(updatedPositions, readPositions);
+        costBasisService.savePositionCosts(updatedCosts.values());
+        return rejected;
+    }
+}
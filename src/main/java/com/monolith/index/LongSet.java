@@ -0,0 +1,151 @@
+package com.monolith.index;
+
+import java.util.Arrays;
+
+/**
+ * Compact open-addressing set of positive longs.
+ * The values live in one primitive array, where 0 marks a free slot, and collisions are resolved by linear
+ * probing, so a set of order IDs costs eight bytes a slot instead of a boxed Long and a node per entry.
+ * <p>
+ * The set is not thread-safe, callers are expected to guard it.
+ */
+public class LongSet {
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final long FREE = 0;
+
+    private long[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public LongSet() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param value the value, greater than zero
+     * @return true if the value was not in the set yet
+     */
+    public boolean add(long value) {
+        if (value <= FREE) {
+            throw new IllegalArgumentException("Only positive values can be stored, got " + value);
+        }
+        int slot = slotFor(value);
+        while (values[slot] != FREE) {
+            if (values[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @param value the value
+     * @return true if the value was in the set
+     */
+    public boolean remove(long value) {
+        int slot = indexOf(value);
+        if (slot < 0) {
+            return false;
+        }
+
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the values in ascending order
+     */
+    public long[] toSortedArray() {
+        long[] sorted = new long[size];
+        int i = 0;
+        for (long value : values) {
+            if (value != FREE) {
+                sorted[i++] = value;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private int indexOf(long value) {
+        if (value <= FREE) {
+            return -1;
+        }
+        int slot = slotFor(value);
+        while (values[slot] != FREE) {
+            if (values[slot] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward-shift deletion: pulls following entries of the probe chain into the freed slot,
+     * so lookups never need tombstones.
+     */
+    private void shiftBack(int freed) {
+        int current = (freed + 1) & mask;
+        while (values[current] != FREE) {
+            int home = slotFor(values[current]);
+            boolean movable = freed <= current
+                    ? home <= freed || home > current
+                    : home <= freed && home > current;
+            if (movable) {
+                values[freed] = values[current];
+                freed = current;
+            }
+            current = (current + 1) & mask;
+        }
+        values[freed] = FREE;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (long value : oldValues) {
+            if (value != FREE) {
+                add(value);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Sequential IDs would fill runs of neighbouring slots, so the value is scrambled by the
+     * golden-ratio multiplier before it is masked.
+     */
+    private int slotFor(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,199 @@
+package com.monolith.index;
+
+import com.monolith.OrderSide;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryRepository;
+import com.monolith.service.OrderListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.monolith.OrderStatus.CREATED;
+
+/**
+ * In-memory index of the IDs of open orders by portfolio and by ISIN, so the open orders of a portfolio
+ * or of a security are found without querying the order table. It also sums the quantity of the open BUY
+ * orders of each position, which the pre-trade risk checks add to the held quantity.
+ * <p>
+ * Each portfolio and each ISIN holds its order IDs in a primitive {@link LongSet}, guarded by the set itself.
+ * An order only moves the BUY quantities when it enters or leaves the set of its portfolio, so a repeated
+ * callback for the same order changes nothing.
+ * The index is rebuilt at startup with one streaming query and then kept up to date by the {@link OrderListener}
+ * callbacks {@code OrderService} fires on create, cancel and execution, so it follows committed orders: an order
+ * still being created is not found yet, and an order found here may be closed by the time it is read. Callers
+ * act on the orders that are still CREATED.
+ */
+@Component
+@DependsOn("writeBehindService")
+public class OpenOrderIndex implements OrderListener {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenOrderIndex.class);
+    private static final long[] NONE = new long[0];
+
+    private final ConcurrentHashMap<String, LongSet> byPortfolio = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongSet> byIsin = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PositionKey, BigDecimal> buyQuantities = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public OpenOrderIndex(OrderHistoryRepository orderHistoryRepository,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry) {
+        this.orderHistoryRepository = orderHistoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("trading.orders.open", size, AtomicInteger::get)
+                .description("Open orders in the open-order index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indexes the open orders, after the write-behind recovery has written the statuses a previous run left.
+     */
+    @PostConstruct
+    void load() {
+        Integer loaded = transactionTemplate.execute(status ->
+                orderHistoryRepository.forEachOrder(CREATED, this::onOrderCreated));
+        log.info("Open-order index loaded {} orders of {} portfolios in {} securities",
+                loaded, byPortfolio.size(), byIsin.size());
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN, or null for all of the portfolio
+     * @return the IDs of the open orders in ascending order
+     */
+    public long[] find(String portfolioId, String isin) {
+        long[] orderIds = snapshot(byPortfolio.get(portfolioId));
+        if (isin == null || orderIds.length == 0) {
+            return orderIds;
+        }
+
+        LongSet ofIsin = byIsin.get(isin);
+        if (ofIsin == null) {
+            return NONE;
+        }
+        int matches = 0;
+        synchronized (ofIsin) {
+            for (long orderId : orderIds) {
+                if (ofIsin.contains(orderId)) {
+                    orderIds[matches++] = orderId;
+                }
+            }
+        }
+        return matches == orderIds.length ? orderIds : Arrays.copyOf(orderIds, matches);
+    }
+
+    /**
+     * @param isin the ISIN
+     * @return the IDs of the open orders in the security in ascending order
+     */
+    public long[] findByIsin(String isin) {
+        return snapshot(byIsin.get(isin));
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the number of open orders of the portfolio
+     */
+    public int count(String portfolioId) {
+        LongSet orderIds = byPortfolio.get(portfolioId);
+        if (orderIds == null) {
+            return 0;
+        }
+        synchronized (orderIds) {
+            return orderIds.size();
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN
+     * @return the total quantity of the open BUY orders of the position
+     */
+    public BigDecimal buyQuantity(String portfolioId, String isin) {
+        return buyQuantities.getOrDefault(new PositionKey(portfolioId, isin), BigDecimal.ZERO);
+    }
+
+    /**
+     * @return the number of open orders
+     */
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void onOrderCreated(OrderEntity order) {
+        if (add(byPortfolio, order.getPortfolioId(), order.getId())) {
+            size.incrementAndGet();
+            if (order.getSide() == OrderSide.BUY) {
+                buyQuantities.merge(new PositionKey(order.getPortfolioId(), order.getIsin()), order.getQuantity(),
+                        BigDecimal::add);
+            }
+        }
+        add(byIsin, order.getIsin(), order.getId());
+    }
+
+    @Override
+    public void onOrderClosed(OrderEntity order) {
+        if (remove(byPortfolio, order.getPortfolioId(), order.getId())) {
+            size.decrementAndGet();
+            if (order.getSide() == OrderSide.BUY) {
+                buyQuantities.computeIfPresent(new PositionKey(order.getPortfolioId(), order.getIsin()),
+                        (key, quantity) -> {
+                            BigDecimal remaining = quantity.subtract(order.getQuantity());
+                            return remaining.signum() > 0 ? remaining : null;
+                        });
+            }
+        }
+        remove(byIsin, order.getIsin(), order.getId());
+    }
+
+    private static boolean add(ConcurrentHashMap<String, LongSet> index, String key, long orderId) {
+        boolean[] added = new boolean[1];
+        index.compute(key, (k, existing) -> {
+            LongSet orderIds = existing != null ? existing : new LongSet();
+            synchronized (orderIds) {
+                added[0] = orderIds.add(orderId);
+            }
+            return orderIds;
+        });
+        return added[0];
+    }
+
+    /**
+     * Drops the set of the key once it is empty. A reader still holding it sees an empty set.
+     */
+    private static boolean remove(ConcurrentHashMap<String, LongSet> index, String key, long orderId) {
+        boolean[] removed = new boolean[1];
+        index.computeIfPresent(key, (k, orderIds) -> {
+            synchronized (orderIds) {
+                removed[0] = orderIds.remove(orderId);
+                return orderIds.isEmpty() ? null : orderIds;
+            }
+        });
+        return removed[0];
+    }
+
+    private static long[] snapshot(LongSet orderIds) {
+        if (orderIds == null) {
+            return NONE;
+        }
+        synchronized (orderIds) {
+            return orderIds.toSortedArray();
+        }
+    }
+}
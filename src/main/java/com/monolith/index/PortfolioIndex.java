@@ -0,0 +1,183 @@
+package com.monolith.index;
+
+import com.monolith.repository.BuyingPowerRepository;
+import com.monolith.repository.InventoryRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of portfolio buying power and positions.
+ * Populated once from the repositories at startup and then kept in sync by
+ * {@link com.monolith.service.BuyingPowerService} and {@link com.monolith.service.InventoryService} writes,
+ * so reading a whole portfolio does not touch the database.
+ */
+@Component
+public class PortfolioIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioIndex.class);
+
+    private final ConcurrentHashMap<String, PortfolioEntry> portfolios = new ConcurrentHashMap<>();
+
+    private final BuyingPowerRepository buyingPowerRepository;
+    private final InventoryRepository inventoryRepository;
+    private final List<PositionListener> positionListeners;
+
+    public PortfolioIndex(BuyingPowerRepository buyingPowerRepository,
+                          InventoryRepository inventoryRepository,
+                          List<PositionListener> positionListeners) {
+        this.buyingPowerRepository = buyingPowerRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.positionListeners = positionListeners;
+    }
+
+    @PostConstruct
+    void load() {
+        buyingPowerRepository.findAll()
+                .forEach(entity -> updateBuyingPower(entity.getPortfolioId(), entity.getAmount()));
+        inventoryRepository.findAll()
+                .forEach(entity -> updatePosition(entity.getPortfolioId(), entity.getIsin(), entity.getQuantity()));
+        log.info("Portfolio index loaded with {} portfolios", portfolios.size());
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param amount the current buying power
+     */
+    public void updateBuyingPower(String portfolioId, BigDecimal amount) {
+        PortfolioEntry entry = portfolios.computeIfAbsent(portfolioId, id -> new PortfolioEntry());
+        synchronized (entry) {
+            entry.buyingPower = amount;
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the current quantity, null or zero removes the position
+     */
+    public void updatePosition(String portfolioId, String isin, BigDecimal quantity) {
+        PortfolioEntry entry = portfolios.computeIfAbsent(portfolioId, id -> new PortfolioEntry());
+        synchronized (entry) {
+            boolean closed = quantity == null || quantity.signum() == 0;
+            BigDecimal previous = closed ? entry.positions.remove(isin) : entry.positions.put(isin, quantity);
+            notifyListeners(portfolioId, isin,
+                    previous == null ? BigDecimal.ZERO : previous,
+                    closed ? BigDecimal.ZERO : quantity);
+        }
+    }
+
+    /**
+     * Applies a committed change. Deltas commute, so commits of concurrent transactions may be applied in any order;
+     * setting the resulting amount instead would keep whichever commit callback happened to run last.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param delta the change of the buying power
+     * @param initialAmount the buying power of a portfolio that is not indexed yet
+     */
+    public void addToBuyingPower(String portfolioId, BigDecimal delta, BigDecimal initialAmount) {
+        PortfolioEntry entry = portfolios.computeIfAbsent(portfolioId, id -> new PortfolioEntry());
+        synchronized (entry) {
+            entry.buyingPower = (entry.buyingPower != null ? entry.buyingPower : initialAmount).add(delta);
+        }
+    }
+
+    /**
+     * Applies a committed change, in any order like {@link #addToBuyingPower}.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param delta the change of the quantity
+     */
+    public void addToPosition(String portfolioId, String isin, BigDecimal delta) {
+        PortfolioEntry entry = portfolios.computeIfAbsent(portfolioId, id -> new PortfolioEntry());
+        synchronized (entry) {
+            BigDecimal previous = entry.positions.get(isin);
+            updatePosition(portfolioId, isin, (previous != null ? previous : BigDecimal.ZERO).add(delta));
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the indexed buying power or null if the portfolio has no record
+     */
+    public BigDecimal getBuyingPower(String portfolioId) {
+        PortfolioEntry entry = portfolios.get(portfolioId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.buyingPower;
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return whether the portfolio has a committed buying power record
+     */
+    public boolean hasBuyingPower(String portfolioId) {
+        PortfolioEntry entry = portfolios.get(portfolioId);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            return entry.buyingPower != null;
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @return the indexed quantity or null if there is no position
+     */
+    public BigDecimal getPosition(String portfolioId, String isin) {
+        PortfolioEntry entry = portfolios.get(portfolioId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.positions.get(isin);
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the snapshot or null if the portfolio is unknown
+     */
+    public PortfolioSnapshot getSnapshot(String portfolioId) {
+        PortfolioEntry entry = portfolios.get(portfolioId);
+        if (entry == null) {
+            return null;
+        }
+
+        Map<String, BigDecimal> positions = new TreeMap<>();
+        BigDecimal buyingPower;
+        synchronized (entry) {
+            buyingPower = entry.buyingPower;
+            entry.positions.forEach(positions::put);
+        }
+        return new PortfolioSnapshot(portfolioId, buyingPower, Collections.unmodifiableMap(positions));
+    }
+
+    private void notifyListeners(String portfolioId, String isin, BigDecimal previousQuantity, BigDecimal quantity) {
+        if (previousQuantity.compareTo(quantity) == 0) {
+            return;
+        }
+        for (PositionListener listener : positionListeners) {
+            listener.onPositionChanged(portfolioId, isin, previousQuantity, quantity);
+        }
+    }
+
+    private static final class PortfolioEntry {
+        private BigDecimal buyingPower;
+        private final PositionMap positions = new PositionMap();
+    }
+}
@@ -0,0 +1,37 @@
+package com.monolith.index;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Point-in-time copy of a portfolio held by {@link PortfolioIndex}.
+ */
+public class PortfolioSnapshot {
+    private final String portfolioId;
+    private final BigDecimal buyingPower;
+    private final Map<String, BigDecimal> positions;
+
+    public PortfolioSnapshot(String portfolioId, BigDecimal buyingPower, Map<String, BigDecimal> positions) {
+        this.portfolioId = portfolioId;
+        this.buyingPower = buyingPower;
+        this.positions = positions;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    /**
+     * @return the buying power or null if it has never been initialized for the portfolio
+     */
+    public BigDecimal getBuyingPower() {
+        return buyingPower;
+    }
+
+    /**
+     * @return ISIN to quantity, ordered by ISIN
+     */
+    public Map<String, BigDecimal> getPositions() {
+        return positions;
+    }
+}
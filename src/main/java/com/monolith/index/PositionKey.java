@@ -0,0 +1,45 @@
+package com.monolith.index;
+
+import java.util.Objects;
+
+/**
+ * Hashable (portfolio, ISIN) key for in-memory structures.
+ */
+public final class PositionKey {
+    private final String portfolioId;
+    private final String isin;
+
+    public PositionKey(String portfolioId, String isin) {
+        this.portfolioId = portfolioId;
+        this.isin = isin;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PositionKey other)) {
+            return false;
+        }
+        return portfolioId.equals(other.portfolioId) && isin.equals(other.isin);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(portfolioId, isin);
+    }
+
+    @Override
+    public String toString() {
+        return portfolioId + "/" + isin;
+    }
+}
@@ -0,0 +1,19 @@
+package com.monolith.index;
+
+import java.math.BigDecimal;
+
+/**
+ * Receives every position change applied to {@link PortfolioIndex}.
+ * Callbacks for the same portfolio are delivered in order, while the index holds the portfolio lock,
+ * so implementations must be quick and must not call back into the index.
+ */
+public interface PositionListener {
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param previousQuantity the quantity before the change, zero if there was no position
+     * @param quantity the quantity after the change, zero if the position was closed
+     */
+    void onPositionChanged(String portfolioId, String isin, BigDecimal previousQuantity, BigDecimal quantity);
+}
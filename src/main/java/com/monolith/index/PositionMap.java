@@ -0,0 +1,154 @@
+package com.monolith.index;
+
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+
+/**
+ * Compact open-addressing map of ISIN to quantity.
+ * Keys and values live in two parallel arrays and collisions are resolved by linear probing,
+ * so a portfolio with a handful of positions costs two small arrays instead of a node per entry.
+ * <p>
+ * The map is not thread-safe, callers are expected to guard it.
+ */
+public class PositionMap {
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private String[] keys;
+    private BigDecimal[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public PositionMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param isin the ISIN of the security
+     * @return the quantity or null if there is no position
+     */
+    public BigDecimal get(String isin) {
+        int slot = indexOf(isin);
+        return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * @param isin the ISIN of the security
+     * @param quantity the new quantity
+     * @return the previous quantity or null if there was no position
+     */
+    public BigDecimal put(String isin, BigDecimal quantity) {
+        int slot = slotFor(isin);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(isin)) {
+                BigDecimal previous = values[slot];
+                values[slot] = quantity;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = isin;
+        values[slot] = quantity;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @param isin the ISIN of the security
+     * @return the removed quantity or null if there was no position
+     */
+    public BigDecimal remove(String isin) {
+        int slot = indexOf(isin);
+        if (slot < 0) {
+            return null;
+        }
+
+        BigDecimal previous = values[slot];
+        shiftBack(slot);
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visits every position in slot order.
+     *
+     * @param action the consumer of ISIN and quantity
+     */
+    public void forEach(BiConsumer<String, BigDecimal> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int indexOf(String isin) {
+        int slot = slotFor(isin);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(isin)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward-shift deletion: pulls following entries of the probe chain into the freed slot,
+     * so lookups never need tombstones.
+     */
+    private void shiftBack(int freed) {
+        int current = (freed + 1) & mask;
+        while (keys[current] != null) {
+            int home = slotFor(keys[current]);
+            boolean movable = freed <= current
+                    ? home <= freed || home > current
+                    : home <= freed && home > current;
+            if (movable) {
+                keys[freed] = keys[current];
+                values[freed] = values[current];
+                freed = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[freed] = null;
+        values[freed] = null;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        BigDecimal[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new BigDecimal[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotFor(String isin) {
+        int hash = isin.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,179 @@
+package com.monolith.ratelimit;
+
+import com.monolith.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Caps concurrent order executions at a limit that follows the observed latency.
+ * <p>
+ * The limit is adjusted with the gradient of a long-term average latency over the latest sample:
+ * while executions take as long as usual the limit grows by about its square root, once they queue
+ * up on row locks the latency rises and the limit shrinks in proportion. Lock and timeout failures
+ * from the database shrink it multiplicatively. Executions over the limit wait in a bounded queue
+ * and are rejected when it is full or they waited too long.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+    private static final String REJECTED_EXC = "Too many concurrent executions, retry later";
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long queueTimeoutNanos;
+    private final int longWindow;
+
+    private volatile double limit;
+    private double longRtt;
+    private volatile int inFlight;
+    private int queued;
+
+    private final Counter rejections;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${trading.execution.limiter.initial-limit:10}") int initialLimit,
+                                      @Value("${trading.execution.limiter.min-limit:1}") int minLimit,
+                                      @Value("${trading.execution.limiter.max-limit:100}") int maxLimit,
+                                      @Value("${trading.execution.limiter.max-queued:200}") int maxQueued,
+                                      @Value("${trading.execution.limiter.queue-timeout-ms:1000}") long queueTimeoutMillis,
+                                      @Value("${trading.execution.limiter.long-window:100}") int longWindow) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.longWindow = longWindow;
+
+        this.rejections = Counter.builder("trading.execution.limiter.rejections")
+                .description("Executions rejected by the adaptive limiter")
+                .register(meterRegistry);
+        Gauge.builder("trading.execution.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current concurrency limit of order executions")
+                .register(meterRegistry);
+        Gauge.builder("trading.execution.limiter.in_flight", this, limiter -> limiter.inFlight)
+                .description("Order executions in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the action once a slot is free and feeds its latency back into the limit.
+     *
+     * @param action the execution
+     * @return the result of the action
+     * @throws RateLimitExceededException if no slot became free in time
+     */
+    public <T> T execute(Supplier<T> action) {
+        acquire();
+        long start = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return action.get();
+        } catch (TransientDataAccessException e) {
+            dropped = true;
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private void acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueued) {
+                reject();
+            }
+
+            queued++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        reject();
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reject();
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            int sampleInFlight = inFlight;
+            inFlight--;
+            onSample(rttNanos, sampleInFlight, dropped);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called under the lock.
+     *
+     * @param rttNanos the latency of the execution
+     * @param sampleInFlight the executions in flight when it completed, itself included
+     * @param dropped whether it failed on a lock or timeout
+     */
+    void onSample(long rttNanos, int sampleInFlight, boolean dropped) {
+        double currentLimit = limit;
+        if (dropped) {
+            limit = Math.max(minLimit, currentLimit * BACKOFF);
+            return;
+        }
+
+        double shortRtt = Math.max(1, rttNanos);
+        longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) / longWindow;
+        // Pull the baseline down faster after a latency spike, or the limit would keep growing against it
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // With less than half the limit in use the sample says nothing about the limit itself
+        if (sampleInFlight < currentLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double target = currentLimit * gradient + Math.sqrt(currentLimit);
+        double smoothed = currentLimit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+    private void reject() {
+        rejections.increment();
+        throw new RateLimitExceededException(REJECTED_EXC, 1);
+    }
+}
@@ -0,0 +1,21 @@
+package com.monolith.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RateLimitConfiguration {
+
+    /**
+     * Limits the trading API only, actuator endpoints stay reachable under load.
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter, ObjectMapper objectMapper) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiter, objectMapper));
+        registration.addUrlPatterns("/orders/*", "/portfolios/*", "/exports/*", "/imports/*");
+        return registration;
+    }
+}
@@ -0,0 +1,66 @@
+package com.monolith.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.dto.ErrorResponse;
+import com.monolith.exception.RateLimitExceededException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+/**
+ * Sheds load before a request reaches a controller: first the global in-flight cap, then the bucket of
+ * the caller's API key. Callers without an X-API-Key header are limited per remote address.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(RateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            rateLimiter.enter();
+        } catch (RateLimitExceededException e) {
+            reject(response, e);
+            return;
+        }
+
+        try {
+            String apiKey = request.getHeader(API_KEY_HEADER);
+            rateLimiter.acquireApiKey(apiKey != null ? apiKey : "address:" + request.getRemoteAddr());
+        } catch (RateLimitExceededException e) {
+            rateLimiter.exit();
+            reject(response, e);
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            rateLimiter.exit();
+        }
+    }
+
+    private void reject(HttpServletResponse response, RateLimitExceededException e) throws IOException {
+        response.setStatus(TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(TOO_MANY_REQUESTS.value(), e.getMessage()));
+    }
+}
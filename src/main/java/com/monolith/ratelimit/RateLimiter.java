@@ -0,0 +1,152 @@
+package com.monolith.ratelimit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.monolith.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token-bucket rate limits per portfolio and per API key, and a global cap on requests in flight.
+ * All state is updated with compare-and-set, a rejected request never blocks.
+ * <p>
+ * Buckets are keyed by caller-supplied strings, so they live in bounded caches. A bucket expires once it has been
+ * idle long enough to refill completely, which loses no state; only a flood of new keys beyond the maximum
+ * evicts buckets early.
+ */
+@Service
+public class RateLimiter {
+
+    private static final String PORTFOLIO_LIMIT_EXC = "Rate limit exceeded for portfolio %s";
+    private static final String API_KEY_LIMIT_EXC = "Rate limit exceeded for API key";
+    private static final String ADMISSION_EXC = "Server is busy, too many requests in flight";
+
+    private final Cache<String, TokenBucket> portfolioBuckets;
+    private final Cache<String, TokenBucket> apiKeyBuckets;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final double portfolioRate;
+    private final int portfolioBurst;
+    private final double apiKeyRate;
+    private final int apiKeyBurst;
+    private final int maxInFlight;
+
+    private final Counter portfolioRejections;
+    private final Counter apiKeyRejections;
+    private final Counter admissionRejections;
+
+    public RateLimiter(MeterRegistry meterRegistry,
+                       @Value("${trading.rate-limit.portfolio.rate:50}") double portfolioRate,
+                       @Value("${trading.rate-limit.portfolio.burst:100}") int portfolioBurst,
+                       @Value("${trading.rate-limit.api-key.rate:200}") double apiKeyRate,
+                       @Value("${trading.rate-limit.api-key.burst:400}") int apiKeyBurst,
+                       @Value("${trading.rate-limit.max-in-flight:256}") int maxInFlight,
+                       @Value("${trading.rate-limit.max-buckets:100000}") long maxBuckets) {
+        this.portfolioRate = portfolioRate;
+        this.portfolioBurst = portfolioBurst;
+        this.apiKeyRate = apiKeyRate;
+        this.apiKeyBurst = apiKeyBurst;
+        this.maxInFlight = maxInFlight;
+        this.portfolioBuckets = buckets(maxBuckets, portfolioRate, portfolioBurst);
+        this.apiKeyBuckets = buckets(maxBuckets, apiKeyRate, apiKeyBurst);
+
+        this.portfolioRejections = rejections(meterRegistry, "portfolio");
+        this.apiKeyRejections = rejections(meterRegistry, "api_key");
+        this.admissionRejections = rejections(meterRegistry, "admission");
+        Gauge.builder("trading.rate_limit.in_flight", inFlight, AtomicInteger::get)
+                .description("Requests currently admitted")
+                .register(meterRegistry);
+        Gauge.builder("trading.rate_limit.buckets", this, limiter -> limiter.portfolioBuckets.size() + limiter.apiKeyBuckets.size())
+                .description("Tracked rate limit buckets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @throws RateLimitExceededException if the portfolio has no permit left
+     */
+    public void acquirePortfolio(String portfolioId) {
+        TokenBucket bucket = portfolioBuckets.asMap().computeIfAbsent(portfolioId,
+                id -> new TokenBucket(portfolioRate, portfolioBurst));
+        long wait = bucket.tryAcquire(System.nanoTime());
+        if (wait > 0) {
+            portfolioRejections.increment();
+            throw new RateLimitExceededException(toRetryAfterSeconds(wait), PORTFOLIO_LIMIT_EXC, portfolioId);
+        }
+    }
+
+    /**
+     * @param apiKey the API key of the client
+     * @throws RateLimitExceededException if the key has no permit left
+     */
+    public void acquireApiKey(String apiKey) {
+        TokenBucket bucket = apiKeyBuckets.asMap().computeIfAbsent(apiKey, key -> new TokenBucket(apiKeyRate, apiKeyBurst));
+        long wait = bucket.tryAcquire(System.nanoTime());
+        if (wait > 0) {
+            apiKeyRejections.increment();
+            throw new RateLimitExceededException(API_KEY_LIMIT_EXC, toRetryAfterSeconds(wait));
+        }
+    }
+
+    /**
+     * Admits a request unless the in-flight cap is reached. Every admitted request must call {@link #exit()}.
+     *
+     * @throws RateLimitExceededException if too many requests are in flight
+     */
+    public void enter() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                admissionRejections.increment();
+                throw new RateLimitExceededException(ADMISSION_EXC, 1);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Drops the expired buckets of clients that have been quiet long enough to be full again,
+     * also while no requests arrive to expire them along the way.
+     */
+    @Scheduled(fixedDelayString = "${trading.rate-limit.cleanup-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        portfolioBuckets.cleanUp();
+        apiKeyBuckets.cleanUp();
+    }
+
+    /**
+     * @return a cache that expires a bucket after the time it takes to refill from empty
+     */
+    private static Cache<String, TokenBucket> buckets(long maxBuckets, double ratePerSecond, int burst) {
+        long refillNanos = (long) Math.ceil(burst * TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofNanos(refillNanos))
+                .build();
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder("trading.rate_limit.rejections")
+                .description("Requests rejected with 429")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
@@ -0,0 +1,43 @@
+package com.monolith.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ * <p>
+ * The bucket is kept in its virtual scheduling form: a single theoretical arrival time that advances by
+ * one emission interval per granted permit. A request is admitted while that time stays within
+ * {@code burst} intervals of now, which is equivalent to a bucket of {@code burst} tokens refilled at
+ * {@code ratePerSecond}, but updates with one compare-and-set and needs no refill timer.
+ */
+class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long emissionIntervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.emissionIntervalNanos = Math.max(1, (long) (NANOS_PER_SECOND / ratePerSecond));
+        this.capacityNanos = emissionIntervalNanos * burst;
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}
+     * @return 0 if a permit was granted, otherwise the nanoseconds until the next one is available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + emissionIntervalNanos;
+            long wait = next - now - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+}
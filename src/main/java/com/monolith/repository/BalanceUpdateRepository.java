@@ -0,0 +1,365 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.Query;
+import org.hibernate.query.TypedParameterValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Single-statement writes of buying power, inventory and position cost rows: version-checked updates and in-database deltas.
+ * <p>
+ * The version columns are added by the schema migrations and are not mapped on the entities, so these statements are native.
+ * Conditional updates report a lost race or a failed guard as false instead of blocking on a lock;
+ * the caller decides to retry or reject. All methods need an open transaction.
+ */
+@Repository
+public class BalanceUpdateRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the buying power and its version or null if the portfolio has no record
+     */
+    public VersionedValue findBuyingPower(String portfolioId) {
+        return single(entityManager
+                .createNativeQuery("SELECT amount, version FROM buying_power_entity WHERE portfolio_id = :portfolioId")
+                .setParameter("portfolioId", portfolioId)
+                .getResultList());
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param amount the new buying power
+     * @param version the version the current amount was read at
+     * @return false if the row changed since it was read
+     */
+    public boolean updateBuyingPower(String portfolioId, BigDecimal amount, long version) {
+        return entityManager
+                .createNativeQuery("UPDATE buying_power_entity SET amount = :amount, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId AND version = :version")
+                .setParameter("amount", amount)
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("version", version)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Writes the buying power regardless of its version, still advancing it so concurrent optimistic writers retry.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param amount the new buying power
+     */
+    public void upsertBuyingPower(String portfolioId, BigDecimal amount) {
+        int updated = entityManager
+                .createNativeQuery("UPDATE buying_power_entity SET amount = :amount, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId")
+                .setParameter("amount", amount)
+                .setParameter("portfolioId", portfolioId)
+                .executeUpdate();
+        if (updated == 0) {
+            insertBuyingPower(portfolioId, amount);
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param amount the initial buying power
+     * @throws OptimisticLockingFailureException if another transaction inserted the row first
+     */
+    public void insertBuyingPower(String portfolioId, BigDecimal amount) {
+        executeOrConflict(entityManager
+                .createNativeQuery("INSERT INTO buying_power_entity (portfolio_id, amount, version) "
+                        + "VALUES (:portfolioId, :amount, 0)")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("amount", amount), "buying power of " + portfolioId);
+    }
+
+    /**
+     * Deducts in the database, guarded so the buying power never goes negative.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param amount the amount to deduct
+     * @return false if the portfolio has no record or not enough buying power
+     */
+    public boolean deductBuyingPower(String portfolioId, BigDecimal amount) {
+        return entityManager
+                .createNativeQuery("UPDATE buying_power_entity SET amount = amount - :amount, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId AND amount >= :amount")
+                .setParameter("amount", amount)
+                .setParameter("portfolioId", portfolioId)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Adds in the database, creating the record with the initial buying power plus the amount if it is missing.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param amount the amount to add
+     * @param initialAmount the buying power of a new portfolio
+     * @throws OptimisticLockingFailureException if another transaction created the record concurrently
+     */
+    public void addBuyingPower(String portfolioId, BigDecimal amount, BigDecimal initialAmount) {
+        executeOrConflict(entityManager
+                .createNativeQuery("MERGE INTO buying_power_entity t USING (VALUES (1)) s (one) "
+                        + "ON t.portfolio_id = :portfolioId "
+                        + "WHEN MATCHED THEN UPDATE SET amount = t.amount + :amount, version = t.version + 1 "
+                        + "WHEN NOT MATCHED THEN INSERT (portfolio_id, amount, version) "
+                        + "VALUES (:portfolioId, :initialAmount + :amount, 0)")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("amount", amount)
+                .setParameter("initialAmount", initialAmount), "buying power of " + portfolioId);
+    }
+
+    /**
+     * Adds in the database, creating the position if it is missing.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the quantity to add
+     * @throws OptimisticLockingFailureException if another transaction created the position concurrently
+     */
+    public void addPosition(String portfolioId, String isin, BigDecimal quantity) {
+        executeOrConflict(entityManager
+                .createNativeQuery("MERGE INTO inventory_entity t USING (VALUES (1)) s (one) "
+                        + "ON t.portfolio_id = :portfolioId AND t.isin = :isin "
+                        + "WHEN MATCHED THEN UPDATE SET quantity = t.quantity + :quantity, version = t.version + 1 "
+                        + "WHEN NOT MATCHED THEN INSERT (portfolio_id, isin, quantity, version) "
+                        + "VALUES (:portfolioId, :isin, :quantity, 0)")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .setParameter("quantity", quantity), "position " + isin + " of " + portfolioId);
+    }
+
+    /**
+     * Removes in the database, guarded so the quantity never goes negative.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the quantity to remove
+     * @return false if there is no position or not enough quantity
+     */
+    public boolean removePosition(String portfolioId, String isin, BigDecimal quantity) {
+        return entityManager
+                .createNativeQuery("UPDATE inventory_entity SET quantity = quantity - :quantity, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin AND quantity >= :quantity")
+                .setParameter("quantity", quantity)
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @return whether the position was sold out and got deleted
+     */
+    public boolean deleteEmptyPosition(String portfolioId, String isin) {
+        return entityManager
+                .createNativeQuery("DELETE FROM inventory_entity "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin AND quantity = 0")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @return the quantity and its version or null if there is no position
+     */
+    public VersionedValue findPosition(String portfolioId, String isin) {
+        return single(entityManager
+                .createNativeQuery("SELECT quantity, version FROM inventory_entity "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .getResultList());
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the new quantity
+     * @param version the version the current quantity was read at
+     * @return false if the row changed since it was read
+     */
+    public boolean updatePosition(String portfolioId, String isin, BigDecimal quantity, long version) {
+        return entityManager
+                .createNativeQuery("UPDATE inventory_entity SET quantity = :quantity, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin AND version = :version")
+                .setParameter("quantity", quantity)
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .setParameter("version", version)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param version the version the position was read at
+     * @return false if the row changed since it was read
+     */
+    public boolean deletePosition(String portfolioId, String isin, long version) {
+        return entityManager
+                .createNativeQuery("DELETE FROM inventory_entity "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin AND version = :version")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .setParameter("version", version)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Writes the quantity regardless of its version, zero deletes the position.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the new quantity
+     */
+    public void upsertPosition(String portfolioId, String isin, BigDecimal quantity) {
+        if (quantity.signum() == 0) {
+            entityManager
+                    .createNativeQuery("DELETE FROM inventory_entity WHERE portfolio_id = :portfolioId AND isin = :isin")
+                    .setParameter("portfolioId", portfolioId)
+                    .setParameter("isin", isin)
+                    .executeUpdate();
+            return;
+        }
+
+        int updated = entityManager
+                .createNativeQuery("UPDATE inventory_entity SET quantity = :quantity, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin")
+                .setParameter("quantity", quantity)
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .executeUpdate();
+        if (updated == 0) {
+            insertPosition(portfolioId, isin, quantity);
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the quantity of the new position
+     * @throws OptimisticLockingFailureException if another transaction inserted the row first
+     */
+    public void insertPosition(String portfolioId, String isin, BigDecimal quantity) {
+        executeOrConflict(entityManager
+                .createNativeQuery("INSERT INTO inventory_entity (portfolio_id, isin, quantity, version) "
+                        + "VALUES (:portfolioId, :isin, :quantity, 0)")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .setParameter("quantity", quantity), "position " + isin + " of " + portfolioId);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @return the position cost and its version or null if the position never traded
+     */
+    public VersionedPositionCost findPositionCost(String portfolioId, String isin) {
+        List<?> rows = entityManager
+                .createNativeQuery("SELECT quantity, average_cost, realized_pnl, version FROM position_cost_entity "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = (Object[]) rows.get(0);
+        return new VersionedPositionCost(new PositionCostEntity(portfolioId, isin,
+                (BigDecimal) row[0], (BigDecimal) row[1], (BigDecimal) row[2]), ((Number) row[3]).longValue());
+    }
+
+    /**
+     * @param positionCost the new position cost
+     * @param version the version the current position cost was read at
+     * @return false if the row changed since it was read
+     */
+    public boolean updatePositionCost(PositionCostEntity positionCost, long version) {
+        return positionCostUpdate("AND version = :version", positionCost)
+                .setParameter("version", version)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Writes the position cost regardless of its version, still advancing it so concurrent optimistic writers retry.
+     *
+     * @param positionCost the new position cost
+     */
+    public void upsertPositionCost(PositionCostEntity positionCost) {
+        if (positionCostUpdate("", positionCost).executeUpdate() == 0) {
+            insertPositionCost(positionCost);
+        }
+    }
+
+    /**
+     * @param positionCost the position cost of a position that never traded
+     * @throws OptimisticLockingFailureException if another transaction inserted the row first
+     */
+    public void insertPositionCost(PositionCostEntity positionCost) {
+        executeOrConflict(entityManager
+                .createNativeQuery("INSERT INTO position_cost_entity "
+                        + "(portfolio_id, isin, quantity, average_cost, realized_pnl, version) "
+                        + "VALUES (:portfolioId, :isin, :quantity, :averageCost, :realizedPnl, 0)")
+                .setParameter("portfolioId", positionCost.getPortfolioId())
+                .setParameter("isin", positionCost.getIsin())
+                .setParameter("quantity", positionCost.getQuantity())
+                .setParameter("averageCost", averageCost(positionCost))
+                .setParameter("realizedPnl", positionCost.getRealizedPnl()),
+                "position cost " + positionCost.getIsin() + " of " + positionCost.getPortfolioId());
+    }
+
+    private Query positionCostUpdate(String condition, PositionCostEntity positionCost) {
+        return entityManager
+                .createNativeQuery("UPDATE position_cost_entity SET quantity = :quantity, average_cost = :averageCost, "
+                        + "realized_pnl = :realizedPnl, version = version + 1 "
+                        + "WHERE portfolio_id = :portfolioId AND isin = :isin " + condition)
+                .setParameter("quantity", positionCost.getQuantity())
+                .setParameter("averageCost", averageCost(positionCost))
+                .setParameter("realizedPnl", positionCost.getRealizedPnl())
+                .setParameter("portfolioId", positionCost.getPortfolioId())
+                .setParameter("isin", positionCost.getIsin());
+    }
+
+    /**
+     * Typed, so an unknown average cost binds as a numeric NULL.
+     */
+    private static TypedParameterValue<BigDecimal> averageCost(PositionCostEntity positionCost) {
+        return new TypedParameterValue<>(StandardBasicTypes.BIG_DECIMAL, positionCost.getAverageCost());
+    }
+
+    /**
+     * Reports a row inserted concurrently as a retryable failure and rethrows any other failure as it is.
+     */
+    private static void executeOrConflict(Query statement, String row) {
+        try {
+            statement.executeUpdate();
+        } catch (PersistenceException e) {
+            if (UniqueViolations.isUniqueViolation(e)) {
+                throw new OptimisticLockingFailureException("Concurrent insert of " + row, e);
+            }
+            throw e;
+        }
+    }
+
+    private static VersionedValue single(List<?> rows) {
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = (Object[]) rows.get(0);
+        return new VersionedValue((BigDecimal) row[0], ((Number) row[1]).longValue());
+    }
+}
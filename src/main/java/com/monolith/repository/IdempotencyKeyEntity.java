@@ -0,0 +1,51 @@
+package com.monolith.repository;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+
+/**
+ * An order created under an Idempotency-Key.
+ * Only the order ID is kept, a replay returns the current state of the order.
+ */
+@Entity
+public class IdempotencyKeyEntity {
+    @Id
+    @Column(length = 64)
+    private String idempotencyKey;
+    @Column(length = 64)
+    private String requestHash;
+    private Long orderId;
+    private Instant createdAt;
+
+    public IdempotencyKeyEntity() {
+    }
+
+    public IdempotencyKeyEntity(String idempotencyKey, String requestHash, Long orderId, Instant createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.orderId = orderId;
+        this.createdAt = createdAt;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * @return the SHA-256 of the request the key was first used with
+     */
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
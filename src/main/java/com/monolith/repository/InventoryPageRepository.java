@@ -0,0 +1,57 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keyset-paginated reads of the inventory table in primary key order.
+ */
+@Repository
+public class InventoryPageRepository {
+
+    private static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Streams one page of positions ordered by (isin, portfolioId). Needs an open transaction.
+     *
+     * @param after the last position of the previous page or null for the first page
+     * @param limit the page size
+     * @param consumer receives each position
+     * @return the number of streamed positions
+     */
+    public int forEachPosition(InventoryEntityId after, int limit, Consumer<InventoryEntity> consumer) {
+        String where = after == null ? "" : " WHERE (isin, portfolio_id) > (:isin, :portfolioId)";
+        Query query = entityManager
+                .createNativeQuery("SELECT * FROM inventory_entity" + where + " ORDER BY isin, portfolio_id",
+                        InventoryEntity.class)
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (after != null) {
+            query.setParameter("isin", after.getIsin());
+            query.setParameter("portfolioId", after.getPortfolioId());
+        }
+
+        int count = 0;
+        try (Stream<?> rows = query.getResultStream()) {
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                InventoryEntity position = (InventoryEntity) iterator.next();
+                entityManager.detach(position);
+                consumer.accept(position);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,14 @@
+package com.monolith.repository;
+
+import org.springframework.data.repository.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Multi-portfolio reads of the inventory table.
+ */
+public interface InventoryQueryRepository extends Repository<InventoryEntity, InventoryEntityId> {
+
+    List<InventoryEntity> findByPortfolioIdIn(Collection<String> portfolioIds);
+}
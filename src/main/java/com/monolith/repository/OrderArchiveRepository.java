@@ -0,0 +1,78 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static com.monolith.OrderStatus.CANCELLED;
+import static com.monolith.OrderStatus.EXECUTED;
+
+/**
+ * Moves terminal orders from the hot {@code order_entity} table to the cold {@code order_archive} table
+ * and reads them back. Terminal orders never change again, so a moved row needs no further coordination.
+ */
+@Repository
+public class OrderArchiveRepository {
+
+    private static final String COLUMNS = "id, isin, portfolio_id, price, quantity, side, status, created_at";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param orderId the ID of the order
+     * @return the archived order, detached
+     */
+    public Optional<OrderEntity> findById(Long orderId) {
+        List<?> orders = entityManager
+                .createNativeQuery("SELECT " + COLUMNS + " FROM order_archive WHERE id = :id", OrderEntity.class)
+                .setParameter("id", orderId)
+                .getResultList();
+        if (orders.isEmpty()) {
+            return Optional.empty();
+        }
+        OrderEntity order = (OrderEntity) orders.get(0);
+        entityManager.detach(order);
+        return Optional.of(order);
+    }
+
+    /**
+     * Moves the oldest-ID batch of EXECUTED and CANCELLED orders created before the cutoff. Needs an open transaction.
+     *
+     * @param cutoff only orders created before it are moved
+     * @param batchSize the maximum number of orders to move
+     * @return the number of moved orders
+     */
+    public int archiveBatch(OffsetDateTime cutoff, int batchSize) {
+        List<?> ids = entityManager
+                .createNativeQuery("SELECT id FROM order_entity WHERE status IN (:executed, :cancelled) "
+                        + "AND created_at < :cutoff ORDER BY id")
+                .setParameter("executed", EXECUTED.ordinal())
+                .setParameter("cancelled", CANCELLED.ordinal())
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(batchSize)
+                .getResultList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> orderIds = ids.stream().map(id -> ((Number) id).longValue()).toList();
+        entityManager
+                .createNativeQuery("INSERT INTO order_archive (" + COLUMNS + ") "
+                        + "SELECT " + COLUMNS + " FROM order_entity WHERE id IN (:ids)")
+                .setParameter("ids", orderIds)
+                .executeUpdate();
+        entityManager
+                .createNativeQuery("DELETE FROM order_expiry WHERE order_id IN (:ids)")
+                .setParameter("ids", orderIds)
+                .executeUpdate();
+        return entityManager
+                .createNativeQuery("DELETE FROM order_entity WHERE id IN (:ids)")
+                .setParameter("ids", orderIds)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,59 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static com.monolith.OrderStatus.CREATED;
+
+/**
+ * Expiry times of orders, in {@code order_expiry} next to the order table. Needs an open transaction.
+ */
+@Repository
+public class OrderExpiryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param orderId the ID of the new order
+     * @param expiresAt when the order expires
+     */
+    public void save(Long orderId, OffsetDateTime expiresAt) {
+        entityManager
+                .createNativeQuery("INSERT INTO order_expiry (order_id, expires_at) VALUES (:id, :expiresAt)")
+                .setParameter("id", orderId)
+                .setParameter("expiresAt", expiresAt)
+                .executeUpdate();
+    }
+
+    /**
+     * Reads one page of the expiry times of orders still in CREATED status, in ascending order ID.
+     *
+     * @param afterId only orders with a greater ID are read
+     * @param limit the page size
+     * @param consumer receives the order ID and its expiry time
+     * @return the number of read rows
+     */
+    @SuppressWarnings("unchecked")
+    public int forEachOpen(long afterId, int limit, BiConsumer<Long, OffsetDateTime> consumer) {
+        List<Object[]> rows = entityManager
+                .createNativeQuery("SELECT e.order_id, e.expires_at FROM order_expiry e "
+                        + "JOIN order_entity o ON o.id = e.order_id "
+                        + "WHERE o.status = :created AND e.order_id > :afterId ORDER BY e.order_id")
+                .unwrap(NativeQuery.class)
+                .addScalar("order_id", Long.class)
+                .addScalar("expires_at", OffsetDateTime.class)
+                .setParameter("created", CREATED.ordinal())
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+        rows.forEach(row -> consumer.accept((Long) row[0], (OffsetDateTime) row[1]));
+        return rows.size();
+    }
+}
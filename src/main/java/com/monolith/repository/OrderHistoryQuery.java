@@ -0,0 +1,68 @@
+package com.monolith.repository;
+
+import com.monolith.OrderStatus;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Filters of an order history page. Every filter is optional.
+ * Pages are addressed by the last seen order ID rather than by offset,
+ * so deep pages cost the same as the first one.
+ */
+public class OrderHistoryQuery {
+    private final String portfolioId;
+    private final OrderStatus status;
+    private final String isin;
+    private final OffsetDateTime from;
+    private final OffsetDateTime to;
+    private final Long afterId;
+    private final int limit;
+
+    public OrderHistoryQuery(String portfolioId, OrderStatus status, String isin,
+                             OffsetDateTime from, OffsetDateTime to, Long afterId, int limit) {
+        this.portfolioId = portfolioId;
+        this.status = status;
+        this.isin = isin;
+        this.from = from;
+        this.to = to;
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    /**
+     * @return the inclusive lower bound of the creation time
+     */
+    public OffsetDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the exclusive upper bound of the creation time
+     */
+    public OffsetDateTime getTo() {
+        return to;
+    }
+
+    /**
+     * @return the ID of the last order of the previous page
+     */
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
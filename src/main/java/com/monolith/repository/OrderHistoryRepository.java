@@ -0,0 +1,111 @@
+package com.monolith.repository;
+
+import com.monolith.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keyset-paginated reads of the order table and the order archive.
+ * Each table contributes at most one page in ID order, so both branches stay index range scans before the merge.
+ * Rows are streamed to the consumer and detached one by one, so a page never sits in the persistence context.
+ */
+@Repository
+public class OrderHistoryRepository {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String COLUMNS = "id, isin, portfolio_id, price, quantity, side, status";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Streams the orders matching the query in ascending ID order. Needs an open transaction.
+     *
+     * @param query the filters and page position
+     * @param consumer receives each order
+     * @return the number of streamed orders
+     */
+    public int forEachOrder(OrderHistoryQuery query, Consumer<OrderEntity> consumer) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+
+        if (query.getPortfolioId() != null) {
+            where.add("portfolio_id = :portfolioId");
+            parameters.put("portfolioId", query.getPortfolioId());
+        }
+        if (query.getStatus() != null) {
+            where.add("status = :status");
+            parameters.put("status", query.getStatus().ordinal());
+        }
+        if (query.getIsin() != null) {
+            where.add("isin = :isin");
+            parameters.put("isin", query.getIsin());
+        }
+        if (query.getFrom() != null) {
+            where.add("created_at >= :from");
+            parameters.put("from", query.getFrom());
+        }
+        if (query.getTo() != null) {
+            where.add("created_at < :to");
+            parameters.put("to", query.getTo());
+        }
+        if (query.getAfterId() != null) {
+            where.add("id > :afterId");
+            parameters.put("afterId", query.getAfterId());
+        }
+
+        parameters.put("limit", query.getLimit());
+        String page = " FROM %s" + where + " ORDER BY id LIMIT :limit)";
+        Query nativeQuery = entityManager
+                .createNativeQuery("SELECT * FROM ((SELECT " + COLUMNS + page.formatted("order_entity")
+                        + " UNION ALL (SELECT " + COLUMNS + page.formatted("order_archive")
+                        + ") orders ORDER BY id", OrderEntity.class)
+                .setMaxResults(query.getLimit())
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        parameters.forEach(nativeQuery::setParameter);
+
+        return stream(nativeQuery, consumer);
+    }
+
+    /**
+     * Streams every order of the order table with the given status in one query, for indexes that are
+     * rebuilt at startup. Archived orders are closed, so the archive is not read. Needs an open transaction.
+     *
+     * @param status the status of the orders
+     * @param consumer receives each order
+     * @return the number of streamed orders
+     */
+    public int forEachOrder(OrderStatus status, Consumer<OrderEntity> consumer) {
+        Query nativeQuery = entityManager
+                .createNativeQuery("SELECT " + COLUMNS + " FROM order_entity WHERE status = :status", OrderEntity.class)
+                .setParameter("status", status.ordinal())
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        return stream(nativeQuery, consumer);
+    }
+
+    private int stream(Query nativeQuery, Consumer<OrderEntity> consumer) {
+        int count = 0;
+        try (Stream<?> rows = nativeQuery.getResultStream()) {
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                OrderEntity order = (OrderEntity) iterator.next();
+                entityManager.detach(order);
+                consumer.accept(order);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,182 @@
+package com.monolith.repository;
+
+import com.monolith.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare-and-set of the order status, which doubles as the version of an order row:
+ * of two transactions moving the same order out of CREATED only the first one succeeds.
+ */
+@Repository
+public class OrderStatusRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Whether the driver counts the rows of each statement in a batch, null until the first batch has run
+    private volatile Boolean batchCounted;
+
+    /**
+     * Moves the order to the target status if it is still in the expected one. Needs an open transaction.
+     * On success the order is detached and updated in place, so Hibernate does not write it a second time.
+     *
+     * @param order the order read in the current transaction
+     * @param from the expected current status
+     * @param to the target status
+     * @return false if the order left the expected status in the meantime
+     */
+    public boolean transition(OrderEntity order, OrderStatus from, OrderStatus to) {
+        int updated = entityManager
+                .createNativeQuery("UPDATE order_entity SET status = :to WHERE id = :id AND status = :from")
+                .setParameter("to", to.ordinal())
+                .setParameter("id", order.getId())
+                .setParameter("from", from.ordinal())
+                .executeUpdate();
+        if (updated == 0) {
+            return false;
+        }
+        entityManager.detach(order);
+        order.setStatus(to);
+        return true;
+    }
+
+    /**
+     * Moves the orders that are still in the expected status to the target one, as a single JDBC batch.
+     * Needs an open transaction. The moved orders are detached and updated in place like in {@link #transition}.
+     * A driver that runs the batch without counting the rows of each statement cannot tell which orders moved;
+     * the batch is then rolled back to a savepoint and, from then on, every order goes through {@link #transition}.
+     *
+     * @param orders the orders read in the current transaction
+     * @param from the expected current status
+     * @param to the target status
+     * @return the moved orders, without the ones that left the expected status in the meantime
+     */
+    public List<OrderEntity> transitionAll(List<OrderEntity> orders, OrderStatus from, OrderStatus to) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        int[] updated = batchCounted != Boolean.FALSE ? executeBatch(orders, from, to) : null;
+
+        List<OrderEntity> moved = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            OrderEntity order = orders.get(i);
+            if (updated == null) {
+                if (transition(order, from, to)) {
+                    moved.add(order);
+                }
+            } else if (updated[i] > 0) {
+                entityManager.detach(order);
+                order.setStatus(to);
+                moved.add(order);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Runs the batch behind a savepoint until the driver has shown whether it counts the rows of each statement.
+     *
+     * @return the update count of each order, or null if the driver did not report them and the batch was undone
+     */
+    private int[] executeBatch(List<OrderEntity> orders, OrderStatus from, OrderStatus to) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            Savepoint savepoint = batchCounted == null ? connection.setSavepoint() : null;
+            int[] updated;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE order_entity SET status = ? WHERE id = ? AND status = ?")) {
+                for (OrderEntity order : orders) {
+                    statement.setInt(1, to.ordinal());
+                    statement.setLong(2, order.getId());
+                    statement.setInt(3, from.ordinal());
+                    statement.addBatch();
+                }
+                updated = statement.executeBatch();
+            }
+            if (savepoint == null) {
+                return updated;
+            }
+            if (Arrays.stream(updated).anyMatch(count -> count == Statement.SUCCESS_NO_INFO)) {
+                connection.rollback(savepoint);
+                batchCounted = false;
+                return null;
+            }
+            connection.releaseSavepoint(savepoint);
+            batchCounted = true;
+            return updated;
+        });
+    }
+
+    /**
+     * @param orderId the ID of the order
+     * @return the committed status, bypassing the persistence context, or null if the order does not exist
+     */
+    public OrderStatus findStatus(Long orderId) {
+        List<?> statuses = entityManager
+                .createNativeQuery("SELECT status FROM order_entity WHERE id = :id")
+                .setParameter("id", orderId)
+                .getResultList();
+        return statuses.isEmpty() ? null : OrderStatus.values()[((Number) statuses.get(0)).intValue()];
+    }
+
+    /**
+     * @param orderIds the IDs of the orders
+     * @return the committed statuses by order ID, bypassing the persistence context, without the missing orders
+     */
+    public Map<Long, OrderStatus> findStatuses(Collection<Long> orderIds) {
+        Map<Long, OrderStatus> statuses = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return statuses;
+        }
+        List<?> rows = entityManager
+                .createNativeQuery("SELECT id, status FROM order_entity WHERE id IN (:ids)")
+                .setParameter("ids", orderIds)
+                .getResultList();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            statuses.put(((Number) columns[0]).longValue(), OrderStatus.values()[((Number) columns[1]).intValue()]);
+        }
+        return statuses;
+    }
+
+    /**
+     * Detaches the order and sets a status that is written elsewhere, so Hibernate never writes it.
+     * An order created in the current transaction is inserted first, since a detached order is never inserted.
+     *
+     * @param order the order
+     * @param status the status to show
+     * @return the detached order
+     */
+    public OrderEntity detachWithStatus(OrderEntity order, OrderStatus status) {
+        detachAllWithStatus(List.of(order), status);
+        return order;
+    }
+
+    /**
+     * Like {@link #detachWithStatus} for several orders, with at most one flush.
+     *
+     * @param orders the orders
+     * @param status the status to show
+     */
+    public void detachAllWithStatus(List<OrderEntity> orders, OrderStatus status) {
+        if (orders.stream().anyMatch(entityManager::contains)) {
+            entityManager.flush();
+        }
+        for (OrderEntity order : orders) {
+            entityManager.detach(order);
+            order.setStatus(status);
+        }
+    }
+}
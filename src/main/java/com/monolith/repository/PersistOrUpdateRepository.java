@@ -0,0 +1,78 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Writes entities with assigned IDs without the existence check of {@code CrudRepository.save}.
+ * <p>
+ * For an entity whose ID is set, Spring Data cannot tell a new row from an existing one and merges,
+ * which loads the row first unless it is already in the persistence context. Callers that know
+ * whether the row exists, from a read in the same transaction or from an in-memory copy of the committed rows,
+ * persist new rows directly and merge existing ones onto the instance they already read.
+ * <p>
+ * Inserts are flushed right away, so a row inserted concurrently surfaces as an
+ * {@link OptimisticLockingFailureException} the caller can retry. Any other failure of the insert is rethrown
+ * as it is. All methods need an open transaction.
+ */
+@Repository
+public class PersistOrUpdateRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param entity the entity to write
+     * @param exists whether the row is known to exist; a row that exists but is not in the persistence context
+     *               is still loaded once by the merge
+     * @return the managed entity
+     * @throws OptimisticLockingFailureException if a row assumed new was inserted concurrently
+     */
+    public <T> T persistOrUpdate(T entity, boolean exists) {
+        if (exists) {
+            return entityManager.merge(entity);
+        }
+        entityManager.persist(entity);
+        flush(entity.getClass());
+        return entity;
+    }
+
+    /**
+     * Writes several entities and flushes the inserts together, so they still go out as one JDBC batch.
+     *
+     * @param entities the entities to write
+     * @param exists tells whether the row of an entity is known to exist
+     * @throws OptimisticLockingFailureException if a row assumed new was inserted concurrently
+     */
+    public <T> void persistOrUpdateAll(Collection<T> entities, Predicate<T> exists) {
+        Class<?> persisted = null;
+        for (T entity : entities) {
+            if (exists.test(entity)) {
+                entityManager.merge(entity);
+            } else {
+                entityManager.persist(entity);
+                persisted = entity.getClass();
+            }
+        }
+        if (persisted != null) {
+            flush(persisted);
+        }
+    }
+
+    private void flush(Class<?> entityClass) {
+        try {
+            entityManager.flush();
+        } catch (PersistenceException e) {
+            if (UniqueViolations.isUniqueViolation(e)) {
+                throw new OptimisticLockingFailureException("Concurrent insert of " + entityClass.getSimpleName(), e);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.monolith.repository;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+
+import java.math.BigDecimal;
+
+/**
+ * Average cost and realized P&L of a position, maintained on every execution.
+ * Kept apart from {@link InventoryEntity} so the inventory table stays untouched.
+ * Positions held before costs were tracked have an unknown (null) average cost.
+ */
+@Entity
+@IdClass(InventoryEntityId.class)
+public class PositionCostEntity {
+    @Id
+    private String portfolioId;
+    @Id
+    private String isin;
+    private BigDecimal quantity;
+    @Column(precision = 38, scale = 6)
+    private BigDecimal averageCost;
+    private BigDecimal realizedPnl;
+
+    public PositionCostEntity() {
+    }
+
+    public PositionCostEntity(String portfolioId, String isin, BigDecimal quantity,
+                              BigDecimal averageCost, BigDecimal realizedPnl) {
+        this.portfolioId = portfolioId;
+        this.isin = isin;
+        this.quantity = quantity;
+        this.averageCost = averageCost;
+        this.realizedPnl = realizedPnl;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getAverageCost() {
+        return averageCost;
+    }
+
+    public BigDecimal getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    /**
+     * @return whether the average cost is known
+     */
+    public boolean isBasisKnown() {
+        return averageCost != null;
+    }
+
+    /**
+     * @return the cost of the held quantity, null while the average cost is unknown
+     */
+    public BigDecimal getCostBasis() {
+        return isBasisKnown() ? quantity.multiply(averageCost) : null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.monolith.repository;
+
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PositionCostRepository extends CrudRepository<PositionCostEntity, InventoryEntityId> {
+
+    List<PositionCostEntity> findByPortfolioIdIn(Collection<String> portfolioIds);
+}
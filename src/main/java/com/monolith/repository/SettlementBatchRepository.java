@@ -0,0 +1,104 @@
+package com.monolith.repository;
+
+import com.monolith.OrderStatus;
+import com.monolith.index.PositionKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes coalesced buying power, position, order status and position cost rows as JDBC batches, one statement per table
+ * and kind of change. Callers pass rows in key order, so concurrent batches lock rows in the same order.
+ * The statements write absolute values, so writing the same rows twice is harmless. All methods need an open transaction.
+ */
+@Repository
+public class SettlementBatchRepository {
+
+    private static final String UPSERT_BUYING_POWER = "MERGE INTO buying_power_entity t USING (VALUES (1)) s (one) "
+            + "ON t.portfolio_id = ? "
+            + "WHEN MATCHED THEN UPDATE SET amount = ?, version = t.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (portfolio_id, amount, version) VALUES (?, ?, 0)";
+
+    private static final String UPSERT_POSITION = "MERGE INTO inventory_entity t USING (VALUES (1)) s (one) "
+            + "ON t.portfolio_id = ? AND t.isin = ? "
+            + "WHEN MATCHED THEN UPDATE SET quantity = ?, version = t.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (portfolio_id, isin, quantity, version) VALUES (?, ?, ?, 0)";
+
+    private static final String DELETE_POSITION = "DELETE FROM inventory_entity WHERE portfolio_id = ? AND isin = ?";
+
+    private static final String UPDATE_ORDER_STATUS = "UPDATE order_entity SET status = ? WHERE id = ?";
+
+    private static final String UPSERT_POSITION_COST = "MERGE INTO position_cost_entity t USING (VALUES (1)) s (one) "
+            + "ON t.portfolio_id = ? AND t.isin = ? "
+            + "WHEN MATCHED THEN UPDATE SET quantity = ?, average_cost = ?, realized_pnl = ?, version = t.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (portfolio_id, isin, quantity, average_cost, realized_pnl, version) "
+            + "VALUES (?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SettlementBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param amounts portfolio ID to buying power
+     */
+    public void upsertBuyingPowers(Map<String, BigDecimal> amounts) {
+        List<Object[]> rows = new ArrayList<>(amounts.size());
+        amounts.forEach((portfolioId, amount) -> rows.add(new Object[]{portfolioId, amount, portfolioId, amount}));
+        batchUpdate(UPSERT_BUYING_POWER, rows);
+    }
+
+    /**
+     * @param quantities position to quantity, zero deletes the position
+     */
+    public void writePositions(Map<PositionKey, BigDecimal> quantities) {
+        List<Object[]> upserts = new ArrayList<>(quantities.size());
+        List<Object[]> deletes = new ArrayList<>();
+        quantities.forEach((key, quantity) -> {
+            if (quantity.signum() == 0) {
+                deletes.add(new Object[]{key.getPortfolioId(), key.getIsin()});
+            } else {
+                upserts.add(new Object[]{key.getPortfolioId(), key.getIsin(), quantity,
+                        key.getPortfolioId(), key.getIsin(), quantity});
+            }
+        });
+        batchUpdate(DELETE_POSITION, deletes);
+        batchUpdate(UPSERT_POSITION, upserts);
+    }
+
+    /**
+     * @param statuses order ID to status
+     */
+    public void updateOrderStatuses(Map<Long, OrderStatus> statuses) {
+        List<Object[]> rows = new ArrayList<>(statuses.size());
+        statuses.forEach((orderId, status) -> rows.add(new Object[]{status.ordinal(), orderId}));
+        batchUpdate(UPDATE_ORDER_STATUS, rows);
+    }
+
+    /**
+     * @param costs position to position cost
+     */
+    public void upsertPositionCosts(Map<PositionKey, PositionCostEntity> costs) {
+        List<Object[]> rows = new ArrayList<>(costs.size());
+        costs.forEach((key, cost) -> {
+            // Typed, since an unknown average cost is bound as null
+            SqlParameterValue averageCost = new SqlParameterValue(Types.NUMERIC, cost.getAverageCost());
+            rows.add(new Object[]{key.getPortfolioId(), key.getIsin(), cost.getQuantity(), averageCost, cost.getRealizedPnl(),
+                    key.getPortfolioId(), key.getIsin(), cost.getQuantity(), averageCost, cost.getRealizedPnl()});
+        });
+        batchUpdate(UPSERT_POSITION_COST, rows);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+}
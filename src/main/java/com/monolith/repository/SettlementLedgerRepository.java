@@ -0,0 +1,170 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The settlement ledger of the deferred write mode: entries appended by settlements, and the batches that net them
+ * into the buying power and inventory rows.
+ * <p>
+ * Entries are only ever inserted, so concurrent settlements of one portfolio never wait on each other's row locks.
+ * A batch claims every committed entry that is not settled yet, sums them per balance in the database and applies
+ * the sums as in-database deltas; the entries keep the ID of the batch that settled them. All methods need an open
+ * transaction.
+ */
+@Repository
+public class SettlementLedgerRepository {
+
+    private static final String ADD_BUYING_POWER = "MERGE INTO buying_power_entity t USING (VALUES (1)) s (one) "
+            + "ON t.portfolio_id = ? "
+            + "WHEN MATCHED THEN UPDATE SET amount = t.amount + ?, version = t.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (portfolio_id, amount, version) VALUES (?, ?, 0)";
+
+    private static final String ADD_POSITION = "MERGE INTO inventory_entity t USING (VALUES (1)) s (one) "
+            + "ON t.portfolio_id = ? AND t.isin = ? "
+            + "WHEN MATCHED THEN UPDATE SET quantity = t.quantity + ?, version = t.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (portfolio_id, isin, quantity, version) VALUES (?, ?, ?, 0)";
+
+    private static final String DELETE_EMPTY_POSITION =
+            "DELETE FROM inventory_entity WHERE portfolio_id = ? AND isin = ? AND quantity = 0";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SettlementLedgerRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the position, null for the buying power
+     * @param delta the change of the balance
+     */
+    public void append(String portfolioId, String isin, BigDecimal delta) {
+        if (isin == null) {
+            entityManager
+                    .createNativeQuery("INSERT INTO settlement_entry (portfolio_id, delta) VALUES (:portfolioId, :delta)")
+                    .setParameter("portfolioId", portfolioId)
+                    .setParameter("delta", delta)
+                    .executeUpdate();
+            return;
+        }
+        entityManager
+                .createNativeQuery("INSERT INTO settlement_entry (portfolio_id, isin, delta) "
+                        + "VALUES (:portfolioId, :isin, :delta)")
+                .setParameter("portfolioId", portfolioId)
+                .setParameter("isin", isin)
+                .setParameter("delta", delta)
+                .executeUpdate();
+    }
+
+    /**
+     * @param reason why the batch runs
+     * @param startedAt when the batch started
+     * @return the ID of the new batch
+     */
+    public long createBatch(String reason, OffsetDateTime startedAt) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO settlement_batch (reason, started_at, entries) VALUES (?, ?, 0)", new String[]{"id"});
+            statement.setString(1, reason);
+            statement.setObject(2, startedAt);
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    /**
+     * @return whether a committed entry is waiting for a batch
+     */
+    public boolean hasUnsettledEntries() {
+        return !jdbcTemplate.queryForList("SELECT id FROM settlement_entry WHERE batch_id IS NULL FETCH FIRST 1 ROWS ONLY",
+                Long.class).isEmpty();
+    }
+
+    /**
+     * @param batchId the ID of the batch
+     * @return the number of entries the batch claimed
+     */
+    public int claimEntries(long batchId) {
+        return jdbcTemplate.update("UPDATE settlement_entry SET batch_id = ? WHERE batch_id IS NULL", batchId);
+    }
+
+    /**
+     * Records the net change per balance of the entries claimed by the batch.
+     *
+     * @param batchId the ID of the batch
+     * @return the net changes in portfolio and ISIN order
+     */
+    public List<SettlementNet> netEntries(long batchId) {
+        jdbcTemplate.update("INSERT INTO settlement_net (batch_id, portfolio_id, isin, delta, entries) "
+                + "SELECT batch_id, portfolio_id, isin, SUM(delta), COUNT(*) FROM settlement_entry "
+                + "WHERE batch_id = ? GROUP BY batch_id, portfolio_id, isin", batchId);
+        return jdbcTemplate.query("SELECT portfolio_id, isin, delta, entries FROM settlement_net "
+                        + "WHERE batch_id = ? ORDER BY portfolio_id, isin",
+                (row, i) -> new SettlementNet(row.getString(1), row.getString(2), row.getBigDecimal(3), row.getInt(4)),
+                batchId);
+    }
+
+    /**
+     * Adds the net changes to the balances, starting a missing buying power from the initial amount,
+     * and deletes the positions they sold out.
+     *
+     * @param nets the net changes in portfolio and ISIN order
+     * @param initialBuyingPower the buying power of a portfolio without a record
+     */
+    public void applyNets(List<SettlementNet> nets, BigDecimal initialBuyingPower) {
+        List<Object[]> buyingPowers = new ArrayList<>();
+        List<Object[]> positions = new ArrayList<>();
+        List<Object[]> positionKeys = new ArrayList<>();
+        for (SettlementNet net : nets) {
+            if (net.getIsin() == null) {
+                buyingPowers.add(new Object[]{net.getPortfolioId(), net.getDelta(),
+                        net.getPortfolioId(), initialBuyingPower.add(net.getDelta())});
+            } else {
+                positions.add(new Object[]{net.getPortfolioId(), net.getIsin(), net.getDelta(),
+                        net.getPortfolioId(), net.getIsin(), net.getDelta()});
+                positionKeys.add(new Object[]{net.getPortfolioId(), net.getIsin()});
+            }
+        }
+        batchUpdate(ADD_BUYING_POWER, buyingPowers);
+        batchUpdate(ADD_POSITION, positions);
+        batchUpdate(DELETE_EMPTY_POSITION, positionKeys);
+    }
+
+    /**
+     * Records the balances the batch left next to its net changes and marks it settled.
+     *
+     * @param batchId the ID of the batch
+     * @param entries the number of entries the batch settled
+     * @param settledAt when the batch completed
+     */
+    public void finishBatch(long batchId, int entries, OffsetDateTime settledAt) {
+        jdbcTemplate.update("UPDATE settlement_net SET balance = (SELECT b.amount FROM buying_power_entity b "
+                + "WHERE b.portfolio_id = settlement_net.portfolio_id) WHERE batch_id = ? AND isin IS NULL", batchId);
+        jdbcTemplate.update("UPDATE settlement_net SET balance = COALESCE((SELECT i.quantity FROM inventory_entity i "
+                + "WHERE i.portfolio_id = settlement_net.portfolio_id AND i.isin = settlement_net.isin), 0) "
+                + "WHERE batch_id = ? AND isin IS NOT NULL", batchId);
+        jdbcTemplate.update("UPDATE settlement_batch SET entries = ?, settled_at = ? WHERE id = ?",
+                entries, settledAt, batchId);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+}
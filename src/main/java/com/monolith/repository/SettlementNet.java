@@ -0,0 +1,39 @@
+package com.monolith.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * The net change of one buying power, or of one position when the ISIN is set, over the entries of a settlement batch.
+ */
+public class SettlementNet {
+    private final String portfolioId;
+    private final String isin;
+    private final BigDecimal delta;
+    private final int entries;
+
+    public SettlementNet(String portfolioId, String isin, BigDecimal delta, int entries) {
+        this.portfolioId = portfolioId;
+        this.isin = isin;
+        this.delta = delta;
+        this.entries = entries;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    /**
+     * @return the ISIN of the position, null for the buying power
+     */
+    public String getIsin() {
+        return isin;
+    }
+
+    public BigDecimal getDelta() {
+        return delta;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+}
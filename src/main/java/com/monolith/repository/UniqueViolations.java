@@ -0,0 +1,28 @@
+package com.monolith.repository;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+/**
+ * Tells a row inserted concurrently from any other failed write, which must not be retried as a lost race.
+ */
+final class UniqueViolations {
+
+    // SQLState of a unique or primary key violation, shared by PostgreSQL and H2
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private UniqueViolations() {
+    }
+
+    /**
+     * @param exception the failure of a write
+     * @return whether it was caused by a unique or primary key violation
+     */
+    static boolean isUniqueViolation(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return UNIQUE_VIOLATION.equals(violation.getSQLState());
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,22 @@
+package com.monolith.repository;
+
+/**
+ * A position cost together with the row version it was read at.
+ */
+public class VersionedPositionCost {
+    private final PositionCostEntity positionCost;
+    private final long version;
+
+    public VersionedPositionCost(PositionCostEntity positionCost, long version) {
+        this.positionCost = positionCost;
+        this.version = version;
+    }
+
+    public PositionCostEntity getPositionCost() {
+        return positionCost;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,24 @@
+package com.monolith.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * A balance together with the row version it was read at.
+ */
+public class VersionedValue {
+    private final BigDecimal value;
+    private final long version;
+
+    public VersionedValue(BigDecimal value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,140 @@
+package com.monolith.risk;
+
+import com.monolith.OrderSide;
+import com.monolith.dto.OrderRequest;
+import com.monolith.dto.RiskLimits;
+import com.monolith.exception.RiskLimitExceededException;
+import com.monolith.index.OpenOrderIndex;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.utils.SampledLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pre-trade checks of new orders: the order notional, the position a BUY order can build up, the number
+ * of open orders of the portfolio and, for orders with a limit price, a band around the market price.
+ * <p>
+ * The checks read memory only. Positions come from {@link PortfolioIndex}, the open orders of each portfolio
+ * and the quantity of its open BUY orders from {@link OpenOrderIndex}. Both follow committed orders, so
+ * concurrent orders of one portfolio can overshoot a limit by the orders still being created. The limits can be
+ * replaced at runtime and each rejection is counted per rule.
+ */
+@Service
+public class RiskEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RiskEngine.class);
+    private static final SampledLog rejectionLog = new SampledLog(log, Duration.ofSeconds(1));
+
+    private final Map<RiskRule, Counter> rejections = new EnumMap<>(RiskRule.class);
+    private final AtomicReference<RiskLimits> limits;
+
+    private final PortfolioIndex portfolioIndex;
+    private final OpenOrderIndex openOrderIndex;
+
+    public RiskEngine(PortfolioIndex portfolioIndex,
+                      OpenOrderIndex openOrderIndex,
+                      MeterRegistry meterRegistry,
+                      @Value("${trading.risk.max-order-notional:1000000}") BigDecimal maxOrderNotional,
+                      @Value("${trading.risk.max-position:100000}") BigDecimal maxPosition,
+                      @Value("${trading.risk.max-open-orders:1000}") Integer maxOpenOrders,
+                      @Value("${trading.risk.price-band:0.10}") BigDecimal priceBand) {
+        this.portfolioIndex = portfolioIndex;
+        this.openOrderIndex = openOrderIndex;
+        this.limits = new AtomicReference<>(new RiskLimits(maxOrderNotional, maxPosition, maxOpenOrders, priceBand));
+
+        for (RiskRule rule : RiskRule.values()) {
+            rejections.put(rule, Counter.builder("trading.risk.rejections")
+                    .description("Orders rejected by the pre-trade risk checks")
+                    .tag("rule", rule.getTag())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @param request the new order
+     * @param marketPrice the current price of the security
+     * @throws RiskLimitExceededException if the order breaks one of the limits
+     */
+    public void check(OrderRequest request, BigDecimal marketPrice) {
+        RiskLimits current = limits.get();
+
+        BigDecimal maxNotional = current.getMaxOrderNotional();
+        if (maxNotional != null) {
+            BigDecimal notional = marketPrice.multiply(request.getQuantity());
+            if (notional.compareTo(maxNotional) > 0) {
+                throw reject(RiskRule.ORDER_NOTIONAL, "Order notional %s exceeds the limit of %s", notional, maxNotional);
+            }
+        }
+
+        BigDecimal band = current.getPriceBand();
+        if (band != null && request.getLimitPrice() != null) {
+            BigDecimal deviation = request.getLimitPrice().subtract(marketPrice).abs();
+            if (deviation.compareTo(marketPrice.multiply(band)) > 0) {
+                throw reject(RiskRule.PRICE_BAND, "Limit price %s is outside the %s band around the market price %s",
+                        request.getLimitPrice(), band, marketPrice);
+            }
+        }
+
+        Integer maxOpenOrders = current.getMaxOpenOrders();
+        BigDecimal maxPosition = request.getSide() == OrderSide.BUY ? current.getMaxPosition() : null;
+        if (maxOpenOrders != null) {
+            int openCount = openOrderIndex.count(request.getPortfolioId());
+            if (openCount >= maxOpenOrders) {
+                throw reject(RiskRule.OPEN_ORDERS, "Portfolio %s has %d open orders, the limit is %d",
+                        request.getPortfolioId(), openCount, maxOpenOrders);
+            }
+        }
+        if (maxPosition != null) {
+            BigDecimal position = portfolioIndex.getPosition(request.getPortfolioId(), request.getIsin());
+            BigDecimal openBuys = openOrderIndex.buyQuantity(request.getPortfolioId(), request.getIsin());
+            BigDecimal projected = (position != null ? position : BigDecimal.ZERO).add(openBuys).add(request.getQuantity());
+            if (projected.compareTo(maxPosition) > 0) {
+                throw reject(RiskRule.POSITION, "Position of %s in %s would reach %s, the limit is %s",
+                        request.getPortfolioId(), request.getIsin(), projected, maxPosition);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the current limits
+     */
+    public RiskLimits getLimits() {
+        return copy(limits.get());
+    }
+
+    /**
+     * Replaces all limits at once; orders checked from now on see the new ones.
+     *
+     * @param newLimits the new limits, null ones disable their check
+     * @return a copy of the applied limits
+     */
+    public RiskLimits setLimits(RiskLimits newLimits) {
+        RiskLimits applied = copy(newLimits);
+        limits.set(applied);
+        log.info("Risk limits updated: max order notional {}, max position {}, max open orders {}, price band {}",
+                applied.getMaxOrderNotional(), applied.getMaxPosition(), applied.getMaxOpenOrders(), applied.getPriceBand());
+        return copy(applied);
+    }
+
+    private RiskLimitExceededException reject(RiskRule rule, String format, Object... args) {
+        rejections.get(rule).increment();
+        RiskLimitExceededException rejection = new RiskLimitExceededException(format, args);
+        rejectionLog.warn(rejection::getMessage);
+        return rejection;
+    }
+
+    private static RiskLimits copy(RiskLimits limits) {
+        return new RiskLimits(limits.getMaxOrderNotional(), limits.getMaxPosition(),
+                limits.getMaxOpenOrders(), limits.getPriceBand());
+    }
+}
@@ -0,0 +1,24 @@
+package com.monolith.risk;
+
+/**
+ * The pre-trade checks of {@link RiskEngine}, each counted separately when it rejects an order.
+ */
+public enum RiskRule {
+    ORDER_NOTIONAL("order_notional"),
+    POSITION("position"),
+    OPEN_ORDERS("open_orders"),
+    PRICE_BAND("price_band");
+
+    private final String tag;
+
+    RiskRule(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @return the value of the {@code rule} tag of the rejection counter
+     */
+    public String getTag() {
+        return tag;
+    }
+}
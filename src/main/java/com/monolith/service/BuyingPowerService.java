@@ -1,19 +1,35 @@
 package com.monolith.service;
 
 import com.monolith.exception.InsufficientBuyingPowerException;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.repository.BalanceUpdateRepository;
 import com.monolith.repository.BuyingPowerEntity;
 import com.monolith.repository.BuyingPowerRepository;
+import com.monolith.repository.PersistOrUpdateRepository;
+import com.monolith.repository.VersionedValue;
+import com.monolith.settlement.DeferredSettlementService;
+import com.monolith.utils.SampledLog;
+import com.monolith.writebehind.WriteBehindService;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
 
+import static com.monolith.utils.Transactions.afterCommit;
 import static java.lang.String.format;
 import static org.springframework.transaction.annotation.Isolation.SERIALIZABLE;
 import static org.springframework.transaction.annotation.Propagation.REQUIRED;
@@ -22,29 +38,54 @@ import static org.springframework.transaction.annotation.Propagation.REQUIRED;
 public class BuyingPowerService {
 
     private static final Logger log = LoggerFactory.getLogger(BuyingPowerService.class);
+    private static final SampledLog rejectionLog = new SampledLog(log, Duration.ofSeconds(1));
 
     private final BuyingPowerRepository buyingPowerRepository;
-    
+    private final BalanceUpdateRepository balanceUpdateRepository;
+    private final PersistOrUpdateRepository persistOrUpdateRepository;
+    private final PortfolioIndex portfolioIndex;
+    private final WriteBehindService writeBehindService;
+    private final DeferredSettlementService deferredSettlementService;
+
     @Value("${trading.initial-buying-power:5000.00}")
     private BigDecimal INITIAL_BUYING_POWER;
 
-    private static final String INSUFFICIENT_BUY_POWER_EXC = "Insufficient buying power for portfolio %s: required %s, available %s";
+    @Value("${trading.write-mode:MERGE}")
+    private WriteMode WRITE_MODE = WriteMode.MERGE;
+
+    public static final String INSUFFICIENT_BUY_POWER_EXC = "Insufficient buying power for portfolio %s: required %s, available %s";
+    private static final String CONCURRENT_UPDATE_EXC = "Buying power of portfolio %s changed concurrently";
     private static final int MONEY_SCALE = 2;
     private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
 
-    public BuyingPowerService(BuyingPowerRepository buyingPowerRepository) {
+    public BuyingPowerService(BuyingPowerRepository buyingPowerRepository,
+                              BalanceUpdateRepository balanceUpdateRepository,
+                              PersistOrUpdateRepository persistOrUpdateRepository,
+                              PortfolioIndex portfolioIndex,
+                              WriteBehindService writeBehindService,
+                              DeferredSettlementService deferredSettlementService) {
         this.buyingPowerRepository = buyingPowerRepository;
+        this.balanceUpdateRepository = balanceUpdateRepository;
+        this.persistOrUpdateRepository = persistOrUpdateRepository;
+        this.portfolioIndex = portfolioIndex;
+        this.writeBehindService = writeBehindService;
+        this.deferredSettlementService = deferredSettlementService;
     }
 
     /**
+     * A pure read: a portfolio without a record reports the initial buying power, which is written
+     * by its first settlement.
+     *
      * @param portfolioId the ID of the portfolio
      * @return the current buying power entity
      */
     @Transactional(readOnly = true)
     public BuyingPowerEntity getBuyingPower(@NotBlank String portfolioId) {
+        if (WRITE_MODE.isInMemory()) {
+            return new BuyingPowerEntity(portfolioId, indexedAmount(portfolioId));
+        }
         return buyingPowerRepository.findById(portfolioId)
-                .orElseGet(() -> buyingPowerRepository.save(
-                        new BuyingPowerEntity(portfolioId, standardize(INITIAL_BUYING_POWER))));
+                .orElseGet(() -> new BuyingPowerEntity(portfolioId, standardize(INITIAL_BUYING_POWER)));
     }
 
     /**
@@ -58,17 +99,31 @@ public class BuyingPowerService {
         log.info("Trying to deduct buying power from {} portfolio", portfolioId);
         validateInputAmount(amount, "Deduction amount cannot be negative");
 
-        BuyingPowerEntity entity = getBuyingPower(portfolioId);
-        BigDecimal currentAmount = entity.getAmount();
-        
-        if (currentAmount.compareTo(amount) < 0) {
-            String exMessage = format(INSUFFICIENT_BUY_POWER_EXC, portfolioId, amount, currentAmount);
-            log.warn(exMessage);
-            throw new InsufficientBuyingPowerException(exMessage);
+        if (WRITE_MODE == WriteMode.OPTIMISTIC) {
+            updateOptimistically(portfolioId, currentAmount -> {
+                verifySufficient(portfolioId, currentAmount, amount);
+                return currentAmount.subtract(amount);
+            });
+            return;
         }
-        
+        if (WRITE_MODE == WriteMode.ATOMIC) {
+            deductAtomically(portfolioId, standardize(amount));
+            return;
+        }
+        if (WRITE_MODE.isInMemory()) {
+            updateBehind(portfolioId, currentAmount -> {
+                verifySufficient(portfolioId, currentAmount, amount);
+                return currentAmount.subtract(amount);
+            });
+            return;
+        }
+
+        Optional<BuyingPowerEntity> stored = buyingPowerRepository.findById(portfolioId);
+        BigDecimal currentAmount = storedAmount(stored);
+        verifySufficient(portfolioId, currentAmount, amount);
+
         BigDecimal updatedAmount = standardize(currentAmount.subtract(amount));
-        buyingPowerRepository.save(new BuyingPowerEntity(portfolioId, updatedAmount));
+        save(portfolioId, updatedAmount, updatedAmount.subtract(currentAmount), stored.isPresent());
     }
 
     /**
@@ -81,10 +136,26 @@ public class BuyingPowerService {
         log.info("Trying to add buying power to {} portfolio", portfolioId);
         validateInputAmount(amount, "Addition amount cannot be negative");
 
-        BuyingPowerEntity entity = getBuyingPower(portfolioId);
-        BigDecimal currentAmount = entity.getAmount();
+        if (WRITE_MODE == WriteMode.OPTIMISTIC) {
+            updateOptimistically(portfolioId, currentAmount -> currentAmount.add(amount));
+            return;
+        }
+        if (WRITE_MODE == WriteMode.ATOMIC) {
+            BigDecimal delta = standardize(amount);
+            BigDecimal initialAmount = standardize(INITIAL_BUYING_POWER);
+            balanceUpdateRepository.addBuyingPower(portfolioId, delta, initialAmount);
+            afterCommit(() -> portfolioIndex.addToBuyingPower(portfolioId, delta, initialAmount));
+            return;
+        }
+        if (WRITE_MODE.isInMemory()) {
+            updateBehind(portfolioId, currentAmount -> currentAmount.add(amount));
+            return;
+        }
+
+        Optional<BuyingPowerEntity> stored = buyingPowerRepository.findById(portfolioId);
+        BigDecimal currentAmount = storedAmount(stored);
         BigDecimal updatedAmount = standardize(currentAmount.add(amount));
-        buyingPowerRepository.save(new BuyingPowerEntity(portfolioId, updatedAmount));
+        save(portfolioId, updatedAmount, updatedAmount.subtract(currentAmount), stored.isPresent());
     }
 
     /**
@@ -95,11 +166,149 @@ public class BuyingPowerService {
     @Transactional(readOnly = true)
     public void verifySufficientBuyingPower(@NotBlank String portfolioId, @NotNull BigDecimal requiredAmount) {
         BigDecimal currentBuyingPower = getBuyingPower(portfolioId).getAmount();
-        if (currentBuyingPower.compareTo(requiredAmount) < 0) {
-            String exMessage = format(INSUFFICIENT_BUY_POWER_EXC, portfolioId, requiredAmount, currentBuyingPower);
-            log.warn(exMessage);
-            throw new InsufficientBuyingPowerException(exMessage);
+        verifySufficient(portfolioId, currentBuyingPower, requiredAmount);
+    }
+
+    /**
+     * Reads the buying power of several portfolios at once, without initializing missing ones.
+     *
+     * @param portfolioIds the IDs of the portfolios
+     * @return portfolio ID to buying power, the initial buying power for portfolios without a record
+     */
+    @Transactional(readOnly = true)
+    public Map<String, BigDecimal> getBuyingPowers(Collection<String> portfolioIds) {
+        Map<String, BigDecimal> amounts = new HashMap<>();
+        if (WRITE_MODE.isInMemory()) {
+            writeBehindService.lockPortfolios(portfolioIds);
+            portfolioIds.forEach(portfolioId -> amounts.put(portfolioId, indexedAmount(portfolioId)));
+            return amounts;
+        }
+        buyingPowerRepository.findAllById(portfolioIds)
+                .forEach(entity -> amounts.put(entity.getPortfolioId(), entity.getAmount()));
+        portfolioIds.forEach(portfolioId -> amounts.putIfAbsent(portfolioId, standardize(INITIAL_BUYING_POWER)));
+        return amounts;
+    }
+
+    /**
+     * Writes the buying power of several portfolios in one grouped save.
+     *
+     * @param amounts portfolio ID to new buying power
+     * @param readAmounts portfolio ID to the buying power read by {@link #getBuyingPowers} in the same transaction
+     */
+    @Transactional(isolation = SERIALIZABLE, propagation = REQUIRED)
+    public void saveBuyingPowers(Map<String, BigDecimal> amounts, Map<String, BigDecimal> readAmounts) {
+        List<BuyingPowerEntity> entities = amounts.entrySet().stream()
+                .map(entry -> new BuyingPowerEntity(entry.getKey(), standardize(entry.getValue())))
+                .toList();
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            entities.forEach(entity -> writeBehindService.stageBuyingPower(entity.getPortfolioId(), entity.getAmount()));
+        } else if (WRITE_MODE == WriteMode.DEFERRED) {
+            entities.forEach(entity -> deferredSettlementService.recordBuyingPower(entity.getPortfolioId(),
+                    entity.getAmount().subtract(readAmounts.get(entity.getPortfolioId()))));
+        } else if (WRITE_MODE.isNative()) {
+            entities.forEach(entity -> balanceUpdateRepository.upsertBuyingPower(entity.getPortfolioId(), entity.getAmount()));
+        } else if (WRITE_MODE == WriteMode.PERSIST) {
+            persistOrUpdateRepository.persistOrUpdateAll(entities,
+                    entity -> portfolioIndex.hasBuyingPower(entity.getPortfolioId()));
+        } else {
+            buyingPowerRepository.saveAll(entities);
+        }
+        BigDecimal initialAmount = standardize(INITIAL_BUYING_POWER);
+        afterCommit(() -> entities.forEach(entity -> portfolioIndex.addToBuyingPower(entity.getPortfolioId(),
+                entity.getAmount().subtract(readAmounts.get(entity.getPortfolioId())), initialAmount)));
+    }
+
+    /**
+     * Applies the update to the versioned row, inserting it with the initial buying power if it is missing.
+     *
+     * @throws OptimisticLockingFailureException if the row changed since it was read
+     */
+    private void updateOptimistically(String portfolioId, UnaryOperator<BigDecimal> update) {
+        VersionedValue current = balanceUpdateRepository.findBuyingPower(portfolioId);
+        BigDecimal currentAmount = current != null ? current.getValue() : standardize(INITIAL_BUYING_POWER);
+        BigDecimal updatedAmount = standardize(update.apply(currentAmount));
+
+        if (current == null) {
+            balanceUpdateRepository.insertBuyingPower(portfolioId, updatedAmount);
+        } else if (!balanceUpdateRepository.updateBuyingPower(portfolioId, updatedAmount, current.getVersion())) {
+            throw new OptimisticLockingFailureException(format(CONCURRENT_UPDATE_EXC, portfolioId));
+        }
+        BigDecimal delta = updatedAmount.subtract(currentAmount);
+        BigDecimal initialAmount = standardize(INITIAL_BUYING_POWER);
+        afterCommit(() -> portfolioIndex.addToBuyingPower(portfolioId, delta, initialAmount));
+    }
+
+    /**
+     * Applies the update to the indexed buying power under the portfolio lock and stages the result,
+     * or records the change in the settlement ledger in the deferred mode.
+     */
+    private void updateBehind(String portfolioId, UnaryOperator<BigDecimal> update) {
+        writeBehindService.lockPortfolio(portfolioId);
+        BigDecimal currentAmount = indexedAmount(portfolioId);
+        BigDecimal updatedAmount = standardize(update.apply(currentAmount));
+        if (WRITE_MODE == WriteMode.DEFERRED) {
+            deferredSettlementService.recordBuyingPower(portfolioId, updatedAmount.subtract(currentAmount));
+        } else {
+            writeBehindService.stageBuyingPower(portfolioId, updatedAmount);
+        }
+        afterCommit(() -> portfolioIndex.updateBuyingPower(portfolioId, updatedAmount));
+    }
+
+    private BigDecimal storedAmount(Optional<BuyingPowerEntity> stored) {
+        return stored.map(BuyingPowerEntity::getAmount).orElseGet(() -> standardize(INITIAL_BUYING_POWER));
+    }
+
+    private BigDecimal indexedAmount(String portfolioId) {
+        BigDecimal amount = portfolioIndex.getBuyingPower(portfolioId);
+        return amount != null ? amount : standardize(INITIAL_BUYING_POWER);
+    }
+
+    /**
+     * Deducts with one guarded statement. Only a rejected deduction reads the row, to tell a missing
+     * portfolio from an insufficient one.
+     *
+     * @throws OptimisticLockingFailureException if the row changed between the two statements
+     */
+    private void deductAtomically(String portfolioId, BigDecimal amount) {
+        BigDecimal initialAmount = standardize(INITIAL_BUYING_POWER);
+        if (!balanceUpdateRepository.deductBuyingPower(portfolioId, amount)) {
+            VersionedValue current = balanceUpdateRepository.findBuyingPower(portfolioId);
+            BigDecimal currentAmount = current != null ? current.getValue() : initialAmount;
+            verifySufficient(portfolioId, currentAmount, amount);
+            if (current != null) {
+                throw new OptimisticLockingFailureException(format(CONCURRENT_UPDATE_EXC, portfolioId));
+            }
+            balanceUpdateRepository.insertBuyingPower(portfolioId, initialAmount.subtract(amount));
+        }
+        afterCommit(() -> portfolioIndex.addToBuyingPower(portfolioId, amount.negate(), initialAmount));
+    }
+
+    private static void verifySufficient(String portfolioId, BigDecimal currentAmount, BigDecimal requiredAmount) {
+        if (currentAmount.compareTo(requiredAmount) < 0) {
+            InsufficientBuyingPowerException rejection = new InsufficientBuyingPowerException(
+                    INSUFFICIENT_BUY_POWER_EXC, portfolioId, requiredAmount, currentAmount);
+            rejectionLog.warn(rejection::getMessage);
+            throw rejection;
+        }
+    }
+
+    /**
+     * The first settlement of a portfolio inserts its row directly, so a concurrent first settlement
+     * fails with a retryable {@link OptimisticLockingFailureException} rather than a key violation.
+     * The index gets the change rather than the amount, so commits of concurrent transactions apply in any order.
+     *
+     * @param delta the change from the amount read in the current transaction
+     * @param exists whether the row was read in the current transaction
+     */
+    private void save(String portfolioId, BigDecimal amount, BigDecimal delta, boolean exists) {
+        BuyingPowerEntity entity = new BuyingPowerEntity(portfolioId, amount);
+        if (WRITE_MODE == WriteMode.PERSIST || !exists) {
+            persistOrUpdateRepository.persistOrUpdate(entity, exists);
+        } else {
+            buyingPowerRepository.save(entity);
         }
+        BigDecimal initialAmount = standardize(INITIAL_BUYING_POWER);
+        afterCommit(() -> portfolioIndex.addToBuyingPower(portfolioId, delta, initialAmount));
     }
 
     private static void validateInputAmount(BigDecimal amount, String message) {
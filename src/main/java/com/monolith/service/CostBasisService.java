@@ -0,0 +1,304 @@
+package com.monolith.service;
+
+import com.monolith.index.PositionKey;
+import com.monolith.repository.BalanceUpdateRepository;
+import com.monolith.repository.InventoryEntityId;
+import com.monolith.repository.PersistOrUpdateRepository;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.repository.PositionCostRepository;
+import com.monolith.repository.VersionedPositionCost;
+import com.monolith.valuation.ValuationEngine;
+import com.monolith.writebehind.WriteBehindService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import static com.monolith.utils.Transactions.afterCommit;
+import static java.lang.String.format;
+import static org.springframework.transaction.annotation.Isolation.REPEATABLE_READ;
+
+/**
+ * Maintains average cost and realized P&L per position as orders execute.
+ * The side table is the source of truth; committed rows are mirrored in memory,
+ * so reporting reads one entry per position instead of replaying the order history.
+ * In {@link WriteMode#WRITE_BEHIND} the mirror is read under the portfolio lock and the new rows are staged
+ * with the balances of the same settlement, so they are journaled and flushed together.
+ */
+@Service
+public class CostBasisService {
+
+    private static final Logger log = LoggerFactory.getLogger(CostBasisService.class);
+
+    private static final int COST_SCALE = 6;
+    private static final int MONEY_SCALE = 2;
+    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
+    private static final String CONCURRENT_UPDATE_EXC = "Position cost %s of portfolio %s changed concurrently";
+
+    private final ConcurrentHashMap<String, Map<String, PositionCostEntity>> costs = new ConcurrentHashMap<>();
+
+    private final PositionCostRepository positionCostRepository;
+    private final PersistOrUpdateRepository persistOrUpdateRepository;
+    private final BalanceUpdateRepository balanceUpdateRepository;
+    private final WriteBehindService writeBehindService;
+    private final ValuationEngine valuationEngine;
+
+    @Value("${trading.write-mode:MERGE}")
+    private WriteMode WRITE_MODE = WriteMode.MERGE;
+
+    public CostBasisService(PositionCostRepository positionCostRepository,
+                            PersistOrUpdateRepository persistOrUpdateRepository,
+                            BalanceUpdateRepository balanceUpdateRepository,
+                            WriteBehindService writeBehindService,
+                            ValuationEngine valuationEngine) {
+        this.positionCostRepository = positionCostRepository;
+        this.persistOrUpdateRepository = persistOrUpdateRepository;
+        this.balanceUpdateRepository = balanceUpdateRepository;
+        this.writeBehindService = writeBehindService;
+        this.valuationEngine = valuationEngine;
+    }
+
+    @PostConstruct
+    void load() {
+        positionCostRepository.findAll().forEach(this::publish);
+        log.info("Cost basis loaded for {} portfolios", costs.size());
+    }
+
+    /**
+     * Blends the bought quantity into the average cost.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the executed quantity
+     * @param price the execution price
+     * @return the updated position cost
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    public PositionCostEntity recordBuy(String portfolioId, String isin, BigDecimal quantity, BigDecimal price) {
+        if (WRITE_MODE.isNative()) {
+            return updateVersioned(portfolioId, isin, current -> applyBuy(current, quantity, price));
+        }
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            return stage(applyBuy(lockedPositionCost(portfolioId, isin), quantity, price));
+        }
+        Optional<PositionCostEntity> current = find(portfolioId, isin);
+        return save(applyBuy(current.orElseGet(() -> empty(portfolioId, isin)), quantity, price), current.isPresent());
+    }
+
+    /**
+     * Realizes the difference between the sell price and the average cost.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param quantity the executed quantity
+     * @param price the execution price
+     * @return the updated position cost
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    public PositionCostEntity recordSell(String portfolioId, String isin, BigDecimal quantity, BigDecimal price) {
+        if (WRITE_MODE.isNative()) {
+            return updateVersioned(portfolioId, isin, current -> applySell(current, quantity, price));
+        }
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            return stage(applySell(lockedPositionCost(portfolioId, isin), quantity, price));
+        }
+        Optional<PositionCostEntity> current = find(portfolioId, isin);
+        return save(applySell(current.orElseGet(() -> empty(portfolioId, isin)), quantity, price), current.isPresent());
+    }
+
+    /**
+     * Reads the position costs of several portfolios with one query.
+     *
+     * @param portfolioIds the IDs of the portfolios
+     * @return position to cost
+     */
+    @Transactional(readOnly = true)
+    public Map<PositionKey, PositionCostEntity> getPositionCosts(Collection<String> portfolioIds) {
+        Map<PositionKey, PositionCostEntity> positionCosts = new HashMap<>();
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            // The table lags behind the staged rows, the mirror does not
+            writeBehindService.lockPortfolios(portfolioIds);
+            portfolioIds.forEach(portfolioId -> getPositionCosts(portfolioId).forEach(entity ->
+                    positionCosts.put(new PositionKey(portfolioId, entity.getIsin()), entity)));
+            return positionCosts;
+        }
+        positionCostRepository.findByPortfolioIdIn(portfolioIds).forEach(entity ->
+                positionCosts.put(new PositionKey(entity.getPortfolioId(), entity.getIsin()), entity));
+        return positionCosts;
+    }
+
+    /**
+     * Writes several position costs in one grouped save.
+     *
+     * @param entities the updated position costs
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    public void savePositionCosts(Collection<PositionCostEntity> entities) {
+        if (WRITE_MODE.isNative()) {
+            entities.forEach(balanceUpdateRepository::upsertPositionCost);
+        } else if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            entities.forEach(writeBehindService::stagePositionCost);
+        } else if (WRITE_MODE == WriteMode.PERSIST) {
+            // The committed mirror doubles as the set of existing rows
+            persistOrUpdateRepository.persistOrUpdateAll(entities,
+                    entity -> getPositionCost(entity.getPortfolioId(), entity.getIsin()) != null);
+        } else {
+            positionCostRepository.saveAll(entities);
+        }
+        afterCommit(() -> entities.forEach(this::publish));
+    }
+
+    /**
+     * A position held before its cost was tracked keeps an unknown average cost until it is flat again.
+     *
+     * @param current the position cost before the execution
+     * @param quantity the bought quantity
+     * @param price the execution price
+     * @return the position cost with the bought quantity blended into the average cost
+     */
+    public static PositionCostEntity applyBuy(PositionCostEntity current, BigDecimal quantity, BigDecimal price) {
+        BigDecimal updatedQuantity = current.getQuantity().add(quantity);
+        if (!current.isBasisKnown() && current.getQuantity().signum() > 0) {
+            return new PositionCostEntity(current.getPortfolioId(), current.getIsin(), updatedQuantity,
+                    null, current.getRealizedPnl());
+        }
+        // Past the check above an unknown basis belongs to a flat position, which holds no cost
+        BigDecimal heldCost = current.isBasisKnown() ? current.getCostBasis() : BigDecimal.ZERO;
+        BigDecimal updatedAverageCost = heldCost
+                .add(quantity.multiply(price))
+                .divide(updatedQuantity, MathContext.DECIMAL64)
+                .setScale(COST_SCALE, ROUNDING_MODE);
+
+        return new PositionCostEntity(current.getPortfolioId(), current.getIsin(), updatedQuantity,
+                updatedAverageCost, current.getRealizedPnl());
+    }
+
+    /**
+     * Realizes P&L only on the part of the sale the position cost accounts for. Selling a position with an unknown
+     * average cost realizes nothing rather than booking the whole proceeds as profit.
+     *
+     * @param current the position cost before the execution
+     * @param quantity the sold quantity
+     * @param price the execution price
+     * @return the position cost with the sale realized against the average cost
+     */
+    public static PositionCostEntity applySell(PositionCostEntity current, BigDecimal quantity, BigDecimal price) {
+        BigDecimal tracked = current.getQuantity().min(quantity);
+        if (tracked.compareTo(quantity) < 0) {
+            log.warn("Sold {} of {} in portfolio {} but the position cost accounts for {}, realizing P&L on {} only",
+                    quantity, current.getIsin(), current.getPortfolioId(), current.getQuantity(), tracked);
+        }
+        BigDecimal updatedQuantity = current.getQuantity().subtract(tracked);
+        BigDecimal updatedRealizedPnl = current.getRealizedPnl();
+        BigDecimal updatedAverageCost = current.getAverageCost();
+        if (current.isBasisKnown()) {
+            BigDecimal realized = price.subtract(current.getAverageCost()).multiply(tracked);
+            updatedRealizedPnl = updatedRealizedPnl.add(realized).setScale(MONEY_SCALE, ROUNDING_MODE);
+        } else if (updatedQuantity.signum() == 0) {
+            // Flat again, the next buy starts a known cost basis
+            updatedAverageCost = BigDecimal.ZERO.setScale(COST_SCALE, ROUNDING_MODE);
+        }
+
+        return new PositionCostEntity(current.getPortfolioId(), current.getIsin(), updatedQuantity,
+                updatedAverageCost, updatedRealizedPnl);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @return a position cost for a position that never traded
+     */
+    public static PositionCostEntity empty(String portfolioId, String isin) {
+        return new PositionCostEntity(portfolioId, isin, BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO.setScale(MONEY_SCALE, ROUNDING_MODE));
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @return the committed position cost or null if the position never traded
+     */
+    public PositionCostEntity getPositionCost(String portfolioId, String isin) {
+        Map<String, PositionCostEntity> portfolioCosts = costs.get(portfolioId);
+        return portfolioCosts == null ? null : portfolioCosts.get(isin);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the committed position costs of the portfolio, ordered by ISIN
+     */
+    public List<PositionCostEntity> getPositionCosts(String portfolioId) {
+        Map<String, PositionCostEntity> portfolioCosts = costs.get(portfolioId);
+        if (portfolioCosts == null) {
+            return List.of();
+        }
+        return portfolioCosts.values().stream()
+                .sorted((left, right) -> left.getIsin().compareTo(right.getIsin()))
+                .toList();
+    }
+
+    private Optional<PositionCostEntity> find(String portfolioId, String isin) {
+        return positionCostRepository.findById(new InventoryEntityId(portfolioId, isin));
+    }
+
+    /**
+     * Applies the update to the versioned row like the balances, inserting it if the position never traded.
+     *
+     * @throws OptimisticLockingFailureException if the row changed since it was read
+     */
+    private PositionCostEntity updateVersioned(String portfolioId, String isin, UnaryOperator<PositionCostEntity> update) {
+        VersionedPositionCost current = balanceUpdateRepository.findPositionCost(portfolioId, isin);
+        PositionCostEntity updated = update.apply(current != null ? current.getPositionCost() : empty(portfolioId, isin));
+
+        if (current == null) {
+            balanceUpdateRepository.insertPositionCost(updated);
+        } else if (!balanceUpdateRepository.updatePositionCost(updated, current.getVersion())) {
+            throw new OptimisticLockingFailureException(format(CONCURRENT_UPDATE_EXC, isin, portfolioId));
+        }
+        afterCommit(() -> publish(updated));
+        return updated;
+    }
+
+    private PositionCostEntity lockedPositionCost(String portfolioId, String isin) {
+        writeBehindService.lockPortfolio(portfolioId);
+        PositionCostEntity current = getPositionCost(portfolioId, isin);
+        return current != null ? current : empty(portfolioId, isin);
+    }
+
+    private PositionCostEntity stage(PositionCostEntity entity) {
+        writeBehindService.stagePositionCost(entity);
+        afterCommit(() -> publish(entity));
+        return entity;
+    }
+
+    /**
+     * @param exists whether the row was read in the current transaction
+     */
+    private PositionCostEntity save(PositionCostEntity entity, boolean exists) {
+        PositionCostEntity saved = WRITE_MODE == WriteMode.PERSIST
+                ? persistOrUpdateRepository.persistOrUpdate(entity, exists)
+                : positionCostRepository.save(entity);
+        afterCommit(() -> publish(entity));
+        return saved;
+    }
+
+    private void publish(PositionCostEntity entity) {
+        costs.computeIfAbsent(entity.getPortfolioId(), id -> new ConcurrentHashMap<>())
+                .put(entity.getIsin(), entity);
+        valuationEngine.onCostBasisChanged(entity.getPortfolioId(), entity.getIsin(), entity.getCostBasis());
+    }
+}
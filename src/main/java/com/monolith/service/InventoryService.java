@@ -2,17 +2,38 @@ package com.monolith.service;
 
 import com.monolith.exception.InsufficientInventoryException;
 import com.monolith.exception.ValidationException;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.index.PortfolioSnapshot;
+import com.monolith.index.PositionKey;
+import com.monolith.repository.BalanceUpdateRepository;
 import com.monolith.repository.InventoryEntity;
 import com.monolith.repository.InventoryEntityId;
+import com.monolith.repository.InventoryPageRepository;
+import com.monolith.repository.InventoryQueryRepository;
 import com.monolith.repository.InventoryRepository;
+import com.monolith.repository.PersistOrUpdateRepository;
+import com.monolith.repository.VersionedValue;
+import com.monolith.settlement.DeferredSettlementService;
+import com.monolith.utils.SampledLog;
+import com.monolith.writebehind.WriteBehindService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static com.monolith.utils.Transactions.afterCommit;
 import static java.lang.String.format;
 import static org.springframework.transaction.annotation.Isolation.REPEATABLE_READ;
 
@@ -20,18 +41,46 @@ import static org.springframework.transaction.annotation.Isolation.REPEATABLE_RE
 public class InventoryService {
 
     private static final Logger log = LoggerFactory.getLogger(InventoryEntity.class);
+    private static final SampledLog rejectionLog = new SampledLog(log, Duration.ofSeconds(1));
 
     private final InventoryRepository inventoryRepository;
+    private final InventoryPageRepository inventoryPageRepository;
+    private final InventoryQueryRepository inventoryQueryRepository;
+    private final BalanceUpdateRepository balanceUpdateRepository;
+    private final PersistOrUpdateRepository persistOrUpdateRepository;
+    private final PortfolioIndex portfolioIndex;
+    private final WriteBehindService writeBehindService;
+    private final DeferredSettlementService deferredSettlementService;
 
-    public InventoryService(InventoryRepository inventoryRepository) {
+    @Value("${trading.write-mode:MERGE}")
+    private WriteMode WRITE_MODE = WriteMode.MERGE;
+
+    public static final String INSUFFICIENT_INVENTORY_EXC = "Insufficient inventory for portfolio %s, ISIN %s: required %s, available %s";
+    private static final String CONCURRENT_UPDATE_EXC = "Position %s of portfolio %s changed concurrently";
+
+    public InventoryService(InventoryRepository inventoryRepository,
+                            InventoryPageRepository inventoryPageRepository,
+                            InventoryQueryRepository inventoryQueryRepository,
+                            BalanceUpdateRepository balanceUpdateRepository,
+                            PersistOrUpdateRepository persistOrUpdateRepository,
+                            PortfolioIndex portfolioIndex,
+                            WriteBehindService writeBehindService,
+                            DeferredSettlementService deferredSettlementService) {
         this.inventoryRepository = inventoryRepository;
+        this.inventoryPageRepository = inventoryPageRepository;
+        this.inventoryQueryRepository = inventoryQueryRepository;
+        this.balanceUpdateRepository = balanceUpdateRepository;
+        this.persistOrUpdateRepository = persistOrUpdateRepository;
+        this.portfolioIndex = portfolioIndex;
+        this.writeBehindService = writeBehindService;
+        this.deferredSettlementService = deferredSettlementService;
     }
 
     /**
      * @param portfolioId the ID of the portfolio
      * @param isin the ISIN of the security
      * @param quantity the quantity to add
-     * @return the updated inventory entity
+     * @return the updated inventory entity, null in the atomic write mode which never reads the row
      * @throws ValidationException if validation fails
      */
     @Transactional(isolation = REPEATABLE_READ)
@@ -40,18 +89,31 @@ public class InventoryService {
 
         validateParametersWithQuantity(portfolioId, isin, quantity);
 
+        if (WRITE_MODE == WriteMode.OPTIMISTIC) {
+            return addOptimistically(portfolioId, isin, quantity);
+        }
+        if (WRITE_MODE == WriteMode.ATOMIC) {
+            balanceUpdateRepository.addPosition(portfolioId, isin, quantity);
+            afterCommit(() -> portfolioIndex.addToPosition(portfolioId, isin, quantity));
+            return null;
+        }
+        if (WRITE_MODE.isInMemory()) {
+            writeBehindService.lockPortfolio(portfolioId);
+        }
+
         InventoryEntity inventory = getInventory(portfolioId, isin);
         BigDecimal currentQuantity = inventory != null ? inventory.getQuantity() : BigDecimal.ZERO;
         BigDecimal updatedQuantity = currentQuantity.add(quantity);
 
-        return inventoryRepository.save(new InventoryEntity(portfolioId, isin, updatedQuantity));
+        return save(portfolioId, isin, updatedQuantity, quantity, inventory != null);
     }
 
     /**
      * @param portfolioId the ID of the portfolio
      * @param isin the ISIN of the security
      * @param quantity the quantity to remove
-     * @return the updated inventory entity or null if inventory was deleted (quantity became zero)
+     * @return the updated inventory entity or null if inventory was deleted (quantity became zero),
+     *         always null in the atomic write mode which never reads the row
      * @throws InsufficientInventoryException if there is insufficient inventory
      * @throws ValidationException if validation fails
      */
@@ -60,15 +122,33 @@ public class InventoryService {
             throws InsufficientInventoryException {
         log.info("Trying to remove inventory from {} portfolio", portfolioId);
 
+        if (WRITE_MODE == WriteMode.OPTIMISTIC) {
+            return removeOptimistically(portfolioId, isin, quantity);
+        }
+        if (WRITE_MODE == WriteMode.ATOMIC) {
+            removeAtomically(portfolioId, isin, quantity);
+            return null;
+        }
+        if (WRITE_MODE.isInMemory()) {
+            writeBehindService.lockPortfolio(portfolioId);
+        }
+
         InventoryEntity inventory = getAndVerifyInventory(portfolioId, isin, quantity);
         BigDecimal updatedQuantity = inventory.getQuantity().subtract(quantity);
 
         if (updatedQuantity.compareTo(BigDecimal.ZERO) == 0) {
             // If the updated quantity is zero, delete the inventory entry
-            inventoryRepository.deleteById(new InventoryEntityId(portfolioId, isin));
+            if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+                writeBehindService.stagePosition(portfolioId, isin, BigDecimal.ZERO);
+            } else if (WRITE_MODE == WriteMode.DEFERRED) {
+                deferredSettlementService.recordPosition(portfolioId, isin, quantity.negate());
+            } else {
+                inventoryRepository.deleteById(new InventoryEntityId(portfolioId, isin));
+            }
+            afterCommit(() -> portfolioIndex.addToPosition(portfolioId, isin, quantity.negate()));
             return null;
         } else {
-            return inventoryRepository.save(new InventoryEntity(portfolioId, isin, updatedQuantity));
+            return save(portfolioId, isin, updatedQuantity, quantity.negate(), true);
         }
     }
 
@@ -79,6 +159,7 @@ public class InventoryService {
      * @throws InsufficientInventoryException if there is insufficient inventory
      * @throws ValidationException if validation fails
      */
+    @Transactional(readOnly = true)
     public InventoryEntity getAndVerifyInventory(String portfolioId, String isin, BigDecimal quantity)
             throws InsufficientInventoryException {
         validateParametersWithQuantity(portfolioId, isin, quantity);
@@ -86,12 +167,7 @@ public class InventoryService {
         InventoryEntity inventory = getInventory(portfolioId, isin);
         BigDecimal currentQuantity = inventory != null ? inventory.getQuantity() : BigDecimal.ZERO;
 
-        if (currentQuantity.compareTo(quantity) < 0) {
-            String exMessage  = format("Insufficient inventory for portfolio %s, ISIN %s: required %s, available %s",
-                    portfolioId, isin, quantity, currentQuantity);
-            log.warn(exMessage);
-            throw new InsufficientInventoryException(exMessage);
-        }
+        verifySufficient(portfolioId, isin, currentQuantity, quantity);
 
         return inventory;
     }
@@ -104,6 +180,10 @@ public class InventoryService {
      */
     public InventoryEntity getInventory(String portfolioId, String isin) {
         validateBaseParameters(portfolioId, isin);
+        if (WRITE_MODE.isInMemory()) {
+            BigDecimal quantity = portfolioIndex.getPosition(portfolioId, isin);
+            return quantity != null ? new InventoryEntity(portfolioId, isin, quantity) : null;
+        }
 
         InventoryEntityId inventoryId = new InventoryEntityId(portfolioId, isin);
         Optional<InventoryEntity> inventoryOpt = inventoryRepository.findById(inventoryId);
@@ -111,6 +191,176 @@ public class InventoryService {
         return inventoryOpt.orElse(null);
     }
 
+    /**
+     * Streams one page of all positions ordered by ISIN and portfolio ID.
+     *
+     * @param after the last position of the previous page or null for the first page
+     * @param limit the page size
+     * @param consumer receives each position
+     * @return the number of streamed positions
+     */
+    @Transactional(readOnly = true)
+    public int forEachPosition(InventoryEntityId after, int limit, Consumer<InventoryEntity> consumer) {
+        return inventoryPageRepository.forEachPosition(after, limit, consumer);
+    }
+
+    /**
+     * Reads all positions of several portfolios with one query.
+     *
+     * @param portfolioIds the IDs of the portfolios
+     * @return position to quantity
+     */
+    @Transactional(readOnly = true)
+    public Map<PositionKey, BigDecimal> getPositions(Collection<String> portfolioIds) {
+        Map<PositionKey, BigDecimal> positions = new HashMap<>();
+        if (WRITE_MODE.isInMemory()) {
+            writeBehindService.lockPortfolios(portfolioIds);
+            portfolioIds.forEach(portfolioId -> {
+                PortfolioSnapshot snapshot = portfolioIndex.getSnapshot(portfolioId);
+                if (snapshot != null) {
+                    snapshot.getPositions().forEach((isin, quantity) ->
+                            positions.put(new PositionKey(portfolioId, isin), quantity));
+                }
+            });
+            return positions;
+        }
+        inventoryQueryRepository.findByPortfolioIdIn(portfolioIds).forEach(entity ->
+                positions.put(new PositionKey(entity.getPortfolioId(), entity.getIsin()), entity.getQuantity()));
+        return positions;
+    }
+
+    /**
+     * Writes several positions in one grouped save. Zero quantities delete the position.
+     *
+     * @param quantities position to new quantity
+     * @param readQuantities the positions read by {@link #getPositions} in the same transaction
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    public void savePositions(Map<PositionKey, BigDecimal> quantities, Map<PositionKey, BigDecimal> readQuantities) {
+        Map<PositionKey, BigDecimal> changes = new HashMap<>();
+        quantities.forEach((key, quantity) ->
+                changes.put(key, quantity.subtract(readQuantities.getOrDefault(key, BigDecimal.ZERO))));
+
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            quantities.forEach((key, quantity) ->
+                    writeBehindService.stagePosition(key.getPortfolioId(), key.getIsin(), quantity));
+        } else if (WRITE_MODE == WriteMode.DEFERRED) {
+            changes.forEach((key, change) ->
+                    deferredSettlementService.recordPosition(key.getPortfolioId(), key.getIsin(), change));
+        } else if (WRITE_MODE.isNative()) {
+            quantities.forEach((key, quantity) ->
+                    balanceUpdateRepository.upsertPosition(key.getPortfolioId(), key.getIsin(), quantity));
+        } else {
+            List<InventoryEntity> updated = new ArrayList<>();
+            quantities.forEach((key, quantity) -> {
+                if (quantity.signum() == 0) {
+                    inventoryRepository.deleteById(new InventoryEntityId(key.getPortfolioId(), key.getIsin()));
+                } else {
+                    updated.add(new InventoryEntity(key.getPortfolioId(), key.getIsin(), quantity));
+                }
+            });
+            if (WRITE_MODE == WriteMode.PERSIST) {
+                persistOrUpdateRepository.persistOrUpdateAll(updated,
+                        entity -> portfolioIndex.getPosition(entity.getPortfolioId(), entity.getIsin()) != null);
+            } else {
+                inventoryRepository.saveAll(updated);
+            }
+        }
+        afterCommit(() -> changes.forEach((key, change) ->
+                portfolioIndex.addToPosition(key.getPortfolioId(), key.getIsin(), change)));
+    }
+
+    /**
+     * @throws OptimisticLockingFailureException if the position changed since it was read
+     */
+    private InventoryEntity addOptimistically(String portfolioId, String isin, BigDecimal quantity) {
+        VersionedValue current = balanceUpdateRepository.findPosition(portfolioId, isin);
+        BigDecimal updatedQuantity;
+        if (current == null) {
+            updatedQuantity = quantity;
+            balanceUpdateRepository.insertPosition(portfolioId, isin, updatedQuantity);
+        } else {
+            updatedQuantity = current.getValue().add(quantity);
+            if (!balanceUpdateRepository.updatePosition(portfolioId, isin, updatedQuantity, current.getVersion())) {
+                throw new OptimisticLockingFailureException(format(CONCURRENT_UPDATE_EXC, isin, portfolioId));
+            }
+        }
+        afterCommit(() -> portfolioIndex.addToPosition(portfolioId, isin, quantity));
+        return new InventoryEntity(portfolioId, isin, updatedQuantity);
+    }
+
+    /**
+     * @throws OptimisticLockingFailureException if the position changed since it was read
+     */
+    private InventoryEntity removeOptimistically(String portfolioId, String isin, BigDecimal quantity) {
+        validateParametersWithQuantity(portfolioId, isin, quantity);
+
+        VersionedValue current = balanceUpdateRepository.findPosition(portfolioId, isin);
+        verifySufficient(portfolioId, isin, current != null ? current.getValue() : BigDecimal.ZERO, quantity);
+
+        BigDecimal updatedQuantity = current.getValue().subtract(quantity);
+        boolean written = updatedQuantity.signum() == 0
+                ? balanceUpdateRepository.deletePosition(portfolioId, isin, current.getVersion())
+                : balanceUpdateRepository.updatePosition(portfolioId, isin, updatedQuantity, current.getVersion());
+        if (!written) {
+            throw new OptimisticLockingFailureException(format(CONCURRENT_UPDATE_EXC, isin, portfolioId));
+        }
+
+        afterCommit(() -> portfolioIndex.addToPosition(portfolioId, isin, quantity.negate()));
+        return updatedQuantity.signum() == 0 ? null : new InventoryEntity(portfolioId, isin, updatedQuantity);
+    }
+
+    /**
+     * Removes with one guarded statement and drops the row if it was sold out. Only a rejected removal
+     * reads the row, to report the available quantity.
+     *
+     * @throws OptimisticLockingFailureException if the position changed between the two statements
+     */
+    private void removeAtomically(String portfolioId, String isin, BigDecimal quantity) {
+        validateParametersWithQuantity(portfolioId, isin, quantity);
+
+        if (!balanceUpdateRepository.removePosition(portfolioId, isin, quantity)) {
+            VersionedValue current = balanceUpdateRepository.findPosition(portfolioId, isin);
+            verifySufficient(portfolioId, isin, current != null ? current.getValue() : BigDecimal.ZERO, quantity);
+            throw new OptimisticLockingFailureException(format(CONCURRENT_UPDATE_EXC, isin, portfolioId));
+        }
+        balanceUpdateRepository.deleteEmptyPosition(portfolioId, isin);
+        afterCommit(() -> portfolioIndex.addToPosition(portfolioId, isin, quantity.negate()));
+    }
+
+    private static void verifySufficient(String portfolioId, String isin, BigDecimal currentQuantity, BigDecimal quantity) {
+        if (currentQuantity.compareTo(quantity) < 0) {
+            InsufficientInventoryException rejection = new InsufficientInventoryException(
+                    INSUFFICIENT_INVENTORY_EXC, portfolioId, isin, quantity, currentQuantity);
+            rejectionLog.warn(rejection::getMessage);
+            throw rejection;
+        }
+    }
+
+    /**
+     * The index gets the change rather than the quantity, so commits of concurrent transactions apply in any order.
+     *
+     * @param change the change that led to the quantity, recorded in the deferred mode
+     * @param exists whether the row was read in the current transaction
+     */
+    private InventoryEntity save(String portfolioId, String isin, BigDecimal quantity, BigDecimal change, boolean exists) {
+        InventoryEntity entity = new InventoryEntity(portfolioId, isin, quantity);
+        InventoryEntity saved;
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            writeBehindService.stagePosition(portfolioId, isin, quantity);
+            saved = entity;
+        } else if (WRITE_MODE == WriteMode.DEFERRED) {
+            deferredSettlementService.recordPosition(portfolioId, isin, change);
+            saved = entity;
+        } else if (WRITE_MODE == WriteMode.PERSIST) {
+            saved = persistOrUpdateRepository.persistOrUpdate(entity, exists);
+        } else {
+            saved = inventoryRepository.save(entity);
+        }
+        afterCommit(() -> portfolioIndex.addToPosition(portfolioId, isin, change));
+        return saved;
+    }
+
     private void validateParametersWithQuantity(String portfolioId, String isin, BigDecimal quantity) {
         validateBaseParameters(portfolioId, isin);
         if (quantity == null) {
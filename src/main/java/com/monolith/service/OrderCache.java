@@ -0,0 +1,66 @@
+package com.monolith.service;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.monolith.repository.OrderEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of orders by ID behind {@link OrderService#getOrder}, including IDs that were not found.
+ * <p>
+ * A miss loads the order once for all concurrent readers. {@link OrderService} replaces the entry after every
+ * order it creates or moves to another status commits, and a replacement made while a miss is loading wins
+ * over the loaded value, so a poll never goes back to an older status. Cached orders are shared between
+ * readers and must not be modified. Hits, misses and evictions are published as the {@code cache.*} meters
+ * tagged {@code cache=orders}.
+ */
+@Component
+public class OrderCache {
+
+    private final Cache<Long, Optional<OrderEntity>> orders;
+
+    public OrderCache(MeterRegistry meterRegistry,
+                      @Value("${trading.order-cache.size:100000}") long size,
+                      @Value("${trading.order-cache.ttl:PT10M}") Duration ttl) {
+        this.orders = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, orders, "orders");
+    }
+
+    /**
+     * @param orderId the ID of the order
+     * @param loader reads the order on a miss
+     * @return the cached or loaded order, empty if it does not exist
+     */
+    public Optional<OrderEntity> get(Long orderId, Supplier<Optional<OrderEntity>> loader) {
+        try {
+            return orders.get(orderId, loader::get);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Failed to load order " + orderId, e.getCause());
+        }
+    }
+
+    /**
+     * @param order the committed state of the order, which replaces a cached one or a cached absence;
+     *              an order without an ID is ignored
+     */
+    public void put(OrderEntity order) {
+        if (order.getId() != null) {
+            orders.put(order.getId(), Optional.of(order));
+        }
+    }
+}
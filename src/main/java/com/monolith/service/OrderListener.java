@@ -0,0 +1,20 @@
+package com.monolith.service;
+
+import com.monolith.repository.OrderEntity;
+
+/**
+ * Receives the orders {@link OrderService} creates and closes, once the transaction that changed them commits.
+ * Callbacks run on the committing thread, so implementations must be quick.
+ */
+public interface OrderListener {
+
+    /**
+     * @param order the new order in CREATED status
+     */
+    void onOrderCreated(OrderEntity order);
+
+    /**
+     * @param order the order that left CREATED status, now EXECUTED or CANCELLED
+     */
+    void onOrderClosed(OrderEntity order);
+}
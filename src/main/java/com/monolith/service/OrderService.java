@@ -1,27 +1,74 @@
 package com.monolith.service;
 
+import com.monolith.OrderStatus;
 import com.monolith.dto.OrderRequest;
+import com.monolith.exception.InvalidOrderStatusException;
 import com.monolith.exception.OrderNotFoundException;
+import com.monolith.repository.OrderArchiveRepository;
 import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryQuery;
+import com.monolith.repository.OrderHistoryRepository;
 import com.monolith.repository.OrderRepository;
+import com.monolith.repository.OrderStatusRepository;
+import com.monolith.utils.SampledLog;
+import com.monolith.writebehind.WriteBehindService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static com.monolith.OrderStatus.*;
+import static com.monolith.utils.Transactions.afterCommit;
 
 @Service
 public class OrderService {
 
     public static final Logger log = LoggerFactory.getLogger(OrderService.class);
+    private static final SampledLog rejectionLog = new SampledLog(log, Duration.ofSeconds(1));
 
     private final OrderRepository orderRepository;
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final OrderStatusRepository orderStatusRepository;
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final WriteBehindService writeBehindService;
+    private final OrderCache orderCache;
+    private final List<OrderListener> orderListeners;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public OrderService(OrderRepository orderRepository) {
+    @Value("${trading.write-mode:MERGE}")
+    private WriteMode WRITE_MODE = WriteMode.MERGE;
+
+    public OrderService(OrderRepository orderRepository,
+                        OrderHistoryRepository orderHistoryRepository,
+                        OrderStatusRepository orderStatusRepository,
+                        OrderArchiveRepository orderArchiveRepository,
+                        WriteBehindService writeBehindService,
+                        OrderCache orderCache,
+                        List<OrderListener> orderListeners,
+                        PlatformTransactionManager transactionManager) {
         this.orderRepository = orderRepository;
+        this.orderHistoryRepository = orderHistoryRepository;
+        this.orderStatusRepository = orderStatusRepository;
+        this.orderArchiveRepository = orderArchiveRepository;
+        this.writeBehindService = writeBehindService;
+        this.orderCache = orderCache;
+        this.orderListeners = orderListeners;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -41,21 +88,48 @@ public class OrderService {
                 request.getQuantity(),
                 price);
 
-        return orderRepository.save(order);
+        return createdAfterCommit(orderRepository.save(order));
     }
 
     /**
-     * Retrieves an order by its ID.
+     * Stores several orders in one grouped save. The orders are not announced to the {@link OrderListener}s,
+     * since imported orders are already executed.
+     *
+     * @param orders the new orders
+     * @return the stored orders with their IDs
+     */
+    @Transactional
+    public Iterable<OrderEntity> createOrders(List<OrderEntity> orders) {
+        Iterable<OrderEntity> saved = orderRepository.saveAll(orders);
+        afterCommit(() -> saved.forEach(orderCache::put));
+        return saved;
+    }
+
+    /**
+     * Retrieves an order by its ID, from the order cache unless it was not read recently.
+     * The returned entity is shared with other readers and must not be modified.
      *
      * @param orderId the ID of the order to retrieve
      * @return the order entity
      * @throws OrderNotFoundException if the order doesn't exist
      */
     public OrderEntity getOrder(Long orderId) {
-        return orderRepository.findById(orderId)
+        return orderCache.get(orderId, () -> loadOrder(orderId))
                 .orElseThrow(() -> new OrderNotFoundException("Order not found"));
     }
 
+    /**
+     * Streams one page of the order history.
+     *
+     * @param query the filters and page position
+     * @param consumer receives each order in ascending ID order
+     * @return the number of streamed orders
+     */
+    @Transactional(readOnly = true)
+    public int forEachOrder(OrderHistoryQuery query, Consumer<OrderEntity> consumer) {
+        return orderHistoryRepository.forEachOrder(query, consumer);
+    }
+
     /**
      * Retrieves an order by its ID and verifies it's in CREATED status.
      *
@@ -66,12 +140,10 @@ public class OrderService {
      */
     @Transactional
     public OrderEntity getOrderForExecution(Long orderId) {
-        OrderEntity order = getOrder(orderId);
+        OrderEntity order = getOrderForTransition(orderId);
 
         if (order.getStatus() != CREATED) {
-            String exMessage = "Order " + orderId + " cannot be executed because it's in " + order.getStatus() + " status";
-            log.warn(exMessage);
-            throw new IllegalArgumentException(exMessage);
+            throw reject(orderId, "executed", order.getStatus());
         }
 
         return order;
@@ -85,16 +157,21 @@ public class OrderService {
      */
     @Transactional
     public OrderEntity cancelOrder(Long orderId) {
-        OrderEntity order = getOrder(orderId);
+        OrderEntity order = getOrderForTransition(orderId);
 
         if (order.getStatus() != CREATED) {
-            String exMessage = "Order " + orderId + " cannot be cancelled because it's in " + order.getStatus() + " status";
-            log.warn(exMessage);
-            throw new IllegalArgumentException(exMessage);
+            throw reject(orderId, "cancelled", order.getStatus());
+        }
+
+        if (WRITE_MODE.guardsOrderStatus()) {
+            return closedAfterCommit(transition(order, CANCELLED));
+        }
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            return closedAfterCommit(stage(order, CANCELLED));
         }
 
         order.setStatus(CANCELLED);
-        return orderRepository.save(order);
+        return closedAfterCommit(orderRepository.save(order));
     }
 
     /**
@@ -106,7 +183,183 @@ public class OrderService {
     @Transactional
     public OrderEntity finalizeOrderExecution(OrderEntity order) {
         log.info("Trying to finalize {} order", order.getId());
+        if (WRITE_MODE.guardsOrderStatus()) {
+            return closedAfterCommit(transition(order, EXECUTED));
+        }
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            return closedAfterCommit(stage(order, EXECUTED));
+        }
+
         order.setStatus(EXECUTED);
-        return orderRepository.save(order);
+        return closedAfterCommit(orderRepository.save(order));
+    }
+
+    /**
+     * Cancels the given orders that are still in CREATED status and skips the others, in one transaction.
+     * Used for expired orders and bulk cancels, whose orders may have been executed or cancelled since they
+     * were picked. The status changes are written as one batch in every write mode.
+     *
+     * @param orderIds the IDs of the orders to cancel
+     * @return the cancelled orders
+     */
+    @Transactional
+    public List<OrderEntity> cancelOrders(Collection<Long> orderIds) {
+        long flushCount = writeBehindService.getFlushCount();
+        List<OrderEntity> orders = new ArrayList<>();
+        orderRepository.findAllById(orderIds).forEach(orders::add);
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            writeBehindService.lockPortfolios(orders.stream().map(OrderEntity::getPortfolioId).distinct().toList());
+        }
+
+        Map<Long, OrderStatus> unflushed = WRITE_MODE == WriteMode.WRITE_BEHIND
+                ? unflushedStatuses(orders, flushCount)
+                : Map.of();
+        List<OrderEntity> cancelled = new ArrayList<>();
+        for (OrderEntity order : orders) {
+            if (unflushed.getOrDefault(order.getId(), order.getStatus()) == CREATED) {
+                cancelled.add(order);
+            }
+        }
+
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            cancelled.forEach(order -> writeBehindService.stageOrderStatus(order.getId(), CANCELLED));
+            orderStatusRepository.detachAllWithStatus(cancelled, CANCELLED);
+        } else if (WRITE_MODE.guardsOrderStatus()) {
+            cancelled = orderStatusRepository.transitionAll(cancelled, CREATED, CANCELLED);
+        } else {
+            cancelled.forEach(order -> order.setStatus(CANCELLED));
+            orderRepository.saveAll(cancelled);
+        }
+        cancelled.forEach(this::closedAfterCommit);
+        return cancelled;
+    }
+
+    private static InvalidOrderStatusException reject(Long orderId, String action, OrderStatus status) {
+        InvalidOrderStatusException rejection = new InvalidOrderStatusException(orderId, action, status);
+        rejectionLog.warn(rejection::getMessage);
+        return rejection;
+    }
+
+    /**
+     * Caches the new order and announces it once the current transaction commits, so a rolled-back order
+     * is never served.
+     */
+    private OrderEntity createdAfterCommit(OrderEntity order) {
+        afterCommit(() -> {
+            orderCache.put(order);
+            orderListeners.forEach(listener -> listener.onOrderCreated(order));
+        });
+        return order;
+    }
+
+    /**
+     * Replaces the cached order and announces its final status once the current transaction commits.
+     */
+    private OrderEntity closedAfterCommit(OrderEntity order) {
+        afterCommit(() -> {
+            orderCache.put(order);
+            orderListeners.forEach(listener -> listener.onOrderClosed(order));
+        });
+        return order;
+    }
+
+    /**
+     * Reads the order on a cache miss in a read-only transaction, which a read replica can serve.
+     * In the write-behind mode the order is read from the primary with the status pending there, since
+     * a replica may not have caught up with a status once its flush has cleared the pending one.
+     */
+    private Optional<OrderEntity> loadOrder(Long orderId) {
+        if (WRITE_MODE == WriteMode.WRITE_BEHIND) {
+            // A status pending before the read is either still pending after it or already in the database
+            OrderStatus pendingBefore = writeBehindService.getPendingStatus(orderId);
+            Optional<OrderEntity> order = lookupOrder(orderId);
+            OrderStatus pending = writeBehindService.getPendingStatus(orderId);
+            OrderStatus status = pending != null ? pending : pendingBefore;
+            return status != null ? order.map(found -> orderStatusRepository.detachWithStatus(found, status)) : order;
+        }
+        return readOnlyTransaction.execute(status -> lookupOrder(orderId));
+    }
+
+    /**
+     * Looks in the archive only for orders missing from the order table, which are terminal by then.
+     */
+    private Optional<OrderEntity> lookupOrder(Long orderId) {
+        return orderRepository.findById(orderId)
+                .or(() -> orderArchiveRepository.findById(orderId));
+    }
+
+    private OrderEntity findOrder(Long orderId) {
+        return lookupOrder(orderId)
+                .orElseThrow(() -> new OrderNotFoundException("Order not found"));
+    }
+
+    /**
+     * Reads the order for a status change from the database rather than the order cache. In the write-behind
+     * mode the portfolio is locked first and the status is read again if a flush may have written a change
+     * the first read missed.
+     */
+    private OrderEntity getOrderForTransition(Long orderId) {
+        if (WRITE_MODE != WriteMode.WRITE_BEHIND) {
+            return findOrder(orderId);
+        }
+
+        long flushCount = writeBehindService.getFlushCount();
+        OrderEntity order = findOrder(orderId);
+        writeBehindService.lockPortfolio(order.getPortfolioId());
+
+        OrderStatus status = unflushedStatus(orderId, flushCount);
+        return status != null ? orderStatusRepository.detachWithStatus(order, status) : order;
+    }
+
+    /**
+     * @param flushCount the flush count read before the order, whose portfolio is locked by now
+     * @return the status pending in the write-behind mode or written by a flush since the read, otherwise null
+     */
+    private OrderStatus unflushedStatus(Long orderId, long flushCount) {
+        OrderStatus status = writeBehindService.getPendingStatus(orderId);
+        if (status == null && writeBehindService.getFlushCount() != flushCount) {
+            status = orderStatusRepository.findStatus(orderId);
+        }
+        return status;
+    }
+
+    /**
+     * Like {@link #unflushedStatus} for several orders, with at most one query.
+     */
+    private Map<Long, OrderStatus> unflushedStatuses(List<OrderEntity> orders, long flushCount) {
+        Map<Long, OrderStatus> statuses = new HashMap<>();
+        List<Long> unresolved = new ArrayList<>();
+        for (OrderEntity order : orders) {
+            OrderStatus status = writeBehindService.getPendingStatus(order.getId());
+            if (status != null) {
+                statuses.put(order.getId(), status);
+            } else {
+                unresolved.add(order.getId());
+            }
+        }
+        if (!unresolved.isEmpty() && writeBehindService.getFlushCount() != flushCount) {
+            statuses.putAll(orderStatusRepository.findStatuses(unresolved));
+        }
+        return statuses;
+    }
+
+    /**
+     * Stages the status of an order whose portfolio the current transaction has locked.
+     */
+    private OrderEntity stage(OrderEntity order, OrderStatus to) {
+        writeBehindService.stageOrderStatus(order.getId(), to);
+        return orderStatusRepository.detachWithStatus(order, to);
+    }
+
+    /**
+     * Moves a CREATED order to the target status unless another transaction moved it first.
+     *
+     * @throws OptimisticLockingFailureException if the order is no longer CREATED
+     */
+    private OrderEntity transition(OrderEntity order, OrderStatus to) {
+        if (!orderStatusRepository.transition(order, CREATED, to)) {
+            throw new OptimisticLockingFailureException("Order " + order.getId() + " changed concurrently");
+        }
+        return order;
     }
 }
@@ -0,0 +1,81 @@
+package com.monolith.service;
+
+import com.monolith.index.PortfolioIndex;
+import com.monolith.index.PortfolioSnapshot;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.valuation.PortfolioExposure;
+import com.monolith.valuation.PortfolioValuation;
+import com.monolith.valuation.ValuationEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class PortfolioService {
+
+    private final PortfolioIndex portfolioIndex;
+    private final ValuationEngine valuationEngine;
+    private final CostBasisService costBasisService;
+
+    @Value("${trading.initial-buying-power:5000.00}")
+    private BigDecimal INITIAL_BUYING_POWER;
+
+    public PortfolioService(PortfolioIndex portfolioIndex,
+                            ValuationEngine valuationEngine,
+                            CostBasisService costBasisService) {
+        this.portfolioIndex = portfolioIndex;
+        this.valuationEngine = valuationEngine;
+        this.costBasisService = costBasisService;
+    }
+
+    /**
+     * Reads the whole portfolio from the in-memory index.
+     * A portfolio that has never traded reports the initial buying power and no positions,
+     * matching what {@link BuyingPowerService} would initialize it with.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @return the portfolio snapshot
+     */
+    public PortfolioSnapshot getPortfolio(String portfolioId) {
+        PortfolioSnapshot snapshot = portfolioIndex.getSnapshot(portfolioId);
+        if (snapshot == null) {
+            return new PortfolioSnapshot(portfolioId, initialBuyingPower(), Map.of());
+        }
+        if (snapshot.getBuyingPower() == null) {
+            return new PortfolioSnapshot(portfolioId, initialBuyingPower(), snapshot.getPositions());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the mark-to-market valuation of the portfolio
+     */
+    public PortfolioValuation getValuation(String portfolioId) {
+        return valuationEngine.getValuation(portfolioId);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the average cost and realized P&L of every position the portfolio has traded
+     */
+    public List<PositionCostEntity> getPositionCosts(String portfolioId) {
+        return costBasisService.getPositionCosts(portfolioId);
+    }
+
+    /**
+     * @param limit the maximum number of portfolios to return
+     * @return the portfolios with the largest exposure, largest first
+     */
+    public List<PortfolioExposure> getTopByExposure(int limit) {
+        return valuationEngine.getTopByExposure(limit);
+    }
+
+    private BigDecimal initialBuyingPower() {
+        return INITIAL_BUYING_POWER.setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -1,14 +1,26 @@
 package com.monolith.service;
 
 import com.monolith.MarketDataService;
+import com.monolith.TimeInForce;
 import com.monolith.dto.OrderRequest;
+import com.monolith.exception.InsufficientBuyingPowerException;
+import com.monolith.exception.InsufficientInventoryException;
+import com.monolith.exception.ValidationException;
+import com.monolith.expiry.OrderExpiryService;
+import com.monolith.index.OpenOrderIndex;
 import com.monolith.repository.*;
+import com.monolith.risk.RiskEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static com.monolith.OrderSide.*;
 
@@ -21,28 +33,85 @@ public class TradingService {
     private final BuyingPowerService buyingPowerService;
     private final InventoryService inventoryService;
     private final MarketDataService marketDataService;
+    private final CostBasisService costBasisService;
+    private final TransactionRetrier transactionRetrier;
+    private final RiskEngine riskEngine;
+    private final OrderExpiryService orderExpiryService;
+    private final OpenOrderIndex openOrderIndex;
+
+    @Value("${trading.bulk-cancel.batch-size:1000}")
+    private int BULK_CANCEL_BATCH_SIZE;
 
     public TradingService(OrderService orderService,
                           BuyingPowerService buyingPowerService,
                           InventoryService inventoryService,
-                          MarketDataService marketDataService) {
+                          MarketDataService marketDataService,
+                          CostBasisService costBasisService,
+                          TransactionRetrier transactionRetrier,
+                          RiskEngine riskEngine,
+                          OrderExpiryService orderExpiryService,
+                          OpenOrderIndex openOrderIndex) {
         this.orderService = orderService;
         this.buyingPowerService = buyingPowerService;
         this.inventoryService = inventoryService;
         this.marketDataService = marketDataService;
+        this.costBasisService = costBasisService;
+        this.transactionRetrier = transactionRetrier;
+        this.riskEngine = riskEngine;
+        this.orderExpiryService = orderExpiryService;
+        this.openOrderIndex = openOrderIndex;
     }
 
     /**
+     * The risk checks run first, from memory, so an order they reject costs no database round trip.
+     * The pre-checks are pure reads in read-only transactions of their own, which a read replica can serve,
+     * and only the insert of the order runs in a read-write transaction. Execution verifies the balances
+     * again on the primary, so a lagging replica can only let through an order that execution rejects.
+     * DAY and GTD orders are scheduled to expire, IOC orders are executed right away.
+     * <p>
+     * An order with {@code autoExecute} skips the pre-checks and is created and settled in one transaction,
+     * so an order the portfolio cannot cover is rejected without leaving a row behind. It never expires.
+     *
      * @param request new order request
      * @return the created order entity
      */
-    @Transactional
     public OrderEntity createOrder(OrderRequest request) {
+        return createOrder(request, order -> { });
+    }
+
+    /**
+     * Like {@link #createOrder(OrderRequest)}, and passes the new order to {@code onCreated} in the transaction
+     * that creates it, so what it writes commits or rolls back with the order.
+     *
+     * @param request new order request
+     * @param onCreated receives the created order inside its transaction
+     * @return the created order entity
+     */
+    public OrderEntity createOrder(OrderRequest request, Consumer<OrderEntity> onCreated) {
         log.info("Trying to create {} order for {} portfolio", request.getSide(), request.getPortfolioId());
-        return switch (request.getSide()) {
-            case BUY -> createBuyOrder(request);
-            case SELL -> createSellOrder(request);
-        };
+        TimeInForce timeInForce = orderExpiryService.getTimeInForce(request);
+        OffsetDateTime expiresAt = orderExpiryService.getExpiry(request);
+        BigDecimal currentPrice = marketDataService.getPrice(request.getIsin());
+        riskEngine.check(request, currentPrice);
+        if (request.isAutoExecute()) {
+            return transactionRetrier.execute(() -> {
+                OrderEntity created = orderService.createOrder(request, currentPrice);
+                onCreated.accept(created);
+                return settle(orderService.getOrderForExecution(created.getId()));
+            });
+        }
+
+        switch (request.getSide()) {
+            case BUY -> verifyBuyOrder(request, currentPrice);
+            case SELL -> verifySellOrder(request);
+        }
+        OrderEntity order = transactionRetrier.execute(() -> {
+            OrderEntity created = orderService.createOrder(request, currentPrice);
+            onCreated.accept(created);
+            orderExpiryService.schedule(created, expiresAt);
+            return created;
+        });
+        return timeInForce == TimeInForce.IOC ? executeOrCancel(order) : order;
     }
 
     /**
@@ -55,13 +124,31 @@ public class TradingService {
     }
 
     /**
+     * @param query the filters and page position
+     * @param consumer receives each order in ascending ID order
+     * @return the number of streamed orders
+     */
+    public int forEachOrder(OrderHistoryQuery query, Consumer<OrderEntity> consumer) {
+        log.info("Trying to list orders of {} portfolio", query.getPortfolioId());
+        return orderService.forEachOrder(query, consumer);
+    }
+
+    /**
+     * Runs in its own transaction, which is rerun if it loses a race on the order or the balances.
+     *
      * @param orderId the ID of the order to execute
      * @return the executed order entity
      */
-    @Transactional
     public OrderEntity executeOrder(Long orderId) {
-        OrderEntity order = orderService.getOrderForExecution(orderId);
-        log.info("Trying to execute {} order with id {}", order.getSide(), orderId);
+        return transactionRetrier.execute(() -> settle(orderService.getOrderForExecution(orderId)));
+    }
+
+    /**
+     * @param order the order to execute, read for execution in the current transaction
+     * @return the executed order entity
+     */
+    private OrderEntity settle(OrderEntity order) {
+        log.info("Trying to execute {} order with id {}", order.getSide(), order.getId());
         if (order.getSide() == BUY) {
             executeBuyOrder(order);
         } else if (order.getSide() == SELL) {
@@ -82,6 +169,9 @@ public class TradingService {
 
         // Add securities to inventory
         inventoryService.addToInventory(order.getPortfolioId(), order.getIsin(), order.getQuantity());
+
+        // Blend into the average cost
+        costBasisService.recordBuy(order.getPortfolioId(), order.getIsin(), order.getQuantity(), order.getPrice());
     }
 
     /**
@@ -95,39 +185,84 @@ public class TradingService {
 
         // Add proceeds to buying power
         buyingPowerService.addBuyingPower(order.getPortfolioId(), totalProceeds);
+
+        // Realize P&L against the average cost
+        costBasisService.recordSell(order.getPortfolioId(), order.getIsin(), order.getQuantity(), order.getPrice());
     }
 
     /**
      * @param orderId the ID of the order to cancel
      * @return the updated order entity
      */
-    @Transactional
     public OrderEntity cancelOrder(Long orderId) {
         log.info("Trying to cancel {} order", orderId);
-        return orderService.cancelOrder(orderId);
+        return transactionRetrier.execute(() -> orderService.cancelOrder(orderId));
     }
 
     /**
-     * @return the created order entity
+     * Cancels all open orders of a portfolio, of a security, or of a security in a portfolio.
+     * The orders are found in {@link OpenOrderIndex} and cancelled in ascending ID order, in batches that each
+     * take one retried transaction; orders executed or cancelled in the meantime are skipped.
+     *
+     * @param portfolioId the ID of the portfolio, or null for all portfolios
+     * @param isin the ISIN, or null for all securities
+     * @return the IDs of the cancelled orders
+     * @throws ValidationException if neither filter is given
      */
-    @Transactional
-    protected OrderEntity createBuyOrder(OrderRequest request) {
+    public List<Long> cancelOrders(String portfolioId, String isin) {
+        if (portfolioId == null && isin == null) {
+            throw new ValidationException("Bulk cancel needs a portfolio ID or an ISIN");
+        }
+        log.info("Trying to cancel open orders of {} portfolio in {}", portfolioId, isin);
+        long[] openOrderIds = portfolioId != null
+                ? openOrderIndex.find(portfolioId, isin)
+                : openOrderIndex.findByIsin(isin);
 
-        BigDecimal currentPrice = marketDataService.getPrice(request.getIsin());
+        List<Long> cancelled = new ArrayList<>(openOrderIds.length);
+        for (int from = 0; from < openOrderIds.length; from += BULK_CANCEL_BATCH_SIZE) {
+            List<Long> batch = Arrays.stream(openOrderIds, from, Math.min(from + BULK_CANCEL_BATCH_SIZE, openOrderIds.length))
+                    .boxed()
+                    .toList();
+            transactionRetrier.execute(() -> orderService.cancelOrders(batch))
+                    .forEach(order -> cancelled.add(order.getId()));
+        }
+        return cancelled;
+    }
+
+    /**
+     * Executes an IOC order, or cancels it if the portfolio can no longer cover it. Any other failed execution
+     * also cancels the order, in a transaction of its own, so it never rests on the book, and is rethrown.
+     */
+    private OrderEntity executeOrCancel(OrderEntity order) {
+        try {
+            return executeOrder(order.getId());
+        } catch (InsufficientBuyingPowerException | InsufficientInventoryException e) {
+            log.info("Cancelling IOC order {} whose execution was rejected", order.getId());
+            return cancelOrder(order.getId());
+        } catch (RuntimeException e) {
+            log.warn("Cancelling IOC order {} whose execution failed: {}", order.getId(), e.getMessage());
+            try {
+                cancelOrder(order.getId());
+            } catch (RuntimeException cancelFailure) {
+                e.addSuppressed(cancelFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param request the BUY order request
+     * @param currentPrice the current price of the security
+     */
+    private void verifyBuyOrder(OrderRequest request, BigDecimal currentPrice) {
         BigDecimal requiredBuyingPower = currentPrice.multiply(request.getQuantity());
         buyingPowerService.verifySufficientBuyingPower(request.getPortfolioId(), requiredBuyingPower);
-
-        return orderService.createOrder(request, currentPrice);
     }
 
     /**
-     * @return the created order entity
+     * @param request the SELL order request
      */
-    @Transactional
-    protected OrderEntity createSellOrder(OrderRequest request) {
-        BigDecimal currentPrice = marketDataService.getPrice(request.getIsin());
+    private void verifySellOrder(OrderRequest request) {
         inventoryService.getAndVerifyInventory(request.getPortfolioId(), request.getIsin(), request.getQuantity());
-
-        return orderService.createOrder(request, currentPrice);
     }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.monolith.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs an action in a transaction and reruns it in a fresh one when it loses a race:
+ * a failed version check, a lock timeout or a deadlock. Attempts are bounded and spaced
+ * with full jitter, so contending transactions spread out instead of colliding again.
+ */
+@Service
+public class TransactionRetrier {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionRetrier.class);
+
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public TransactionRetrier(PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${trading.retry.max-attempts:5}") int maxAttempts,
+                              @Value("${trading.retry.base-delay-ms:5}") long baseDelayMillis,
+                              @Value("${trading.retry.max-delay-ms:100}") long maxDelayMillis) {
+        this.transactionManager = transactionManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.retries = Counter.builder("trading.transaction.retries")
+                .description("Transactions rerun after a concurrency failure")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("trading.transaction.retries.exhausted")
+                .description("Transactions that failed on every attempt")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Joins a surrounding transaction without retrying, since only the outermost transaction can be rerun.
+     *
+     * @param action the transactional work
+     * @return the result of the first successful attempt
+     * @throws ConcurrencyFailureException if every attempt lost its race
+     */
+    public <T> T execute(Supplier<T> action) {
+        return execute(transactionTemplate, action);
+    }
+
+    /**
+     * Like {@link #execute(Supplier)}, running every attempt at the given isolation level.
+     *
+     * @param isolation the isolation level of each attempt
+     * @param action the transactional work
+     * @return the result of the first successful attempt
+     * @throws ConcurrencyFailureException if every attempt lost its race
+     */
+    public <T> T execute(Isolation isolation, Supplier<T> action) {
+        TransactionTemplate isolated = new TransactionTemplate(transactionManager);
+        isolated.setIsolationLevel(isolation.value());
+        return execute(isolated, action);
+    }
+
+    private <T> T execute(TransactionTemplate template, Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return template.execute(status -> action.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("Giving up after {} attempts: {}", attempt, e.getMessage());
+                    throw e;
+                }
+                retries.increment();
+                log.debug("Retrying after attempt {} lost a race: {}", attempt, e.getMessage());
+                backOff(attempt);
+            }
+        }
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.monolith.service;
+
+/**
+ * How balance and order updates are written, selected with {@code trading.write-mode}.
+ */
+public enum WriteMode {
+    /**
+     * Read-modify-save through JPA, relying on the isolation level of the transaction.
+     */
+    MERGE,
+    /**
+     * Read with the row version and write with a conditional {@code UPDATE ... WHERE version = ?}.
+     * A lost race fails fast and the transaction is retried by {@link TransactionRetrier}.
+     */
+    OPTIMISTIC,
+    /**
+     * Apply deltas in the database with one guarded {@code UPDATE ... SET amount = amount - ?} or
+     * {@code MERGE} per leg, without reading the row first.
+     */
+    ATOMIC,
+    /**
+     * Read-modify-save like {@link #MERGE}, but rows known to be new are persisted and known rows are merged onto
+     * the instance read in the same transaction, so no write pays the extra {@code SELECT} of merging an entity
+     * with an assigned ID.
+     */
+    PERSIST,
+    /**
+     * Settle against the in-memory index under a portfolio lock and acknowledge once the changed rows are in
+     * the durable journal of {@link com.monolith.writebehind.WriteBehindService}; the rows reach the database
+     * in coalesced JDBC batches shortly after.
+     */
+    WRITE_BEHIND,
+    /**
+     * Settle against the in-memory index under a portfolio lock like {@link #WRITE_BEHIND}, but append each change
+     * as a delta to the settlement ledger of {@link com.monolith.settlement.DeferredSettlementService} instead of
+     * writing the balance rows; settlement batches net the ledger into the balances at intervals and at end of day.
+     * Orders change status with the guarded update of the native modes, so an execution that loses the race for
+     * its order rolls back with its ledger entries.
+     */
+    DEFERRED;
+
+    /**
+     * @return whether balances and order states are written with native statements that maintain the row version
+     */
+    public boolean isNative() {
+        return this == OPTIMISTIC || this == ATOMIC;
+    }
+
+    /**
+     * @return whether order states change with a guarded {@code UPDATE ... WHERE status = ?} that fails a lost race
+     */
+    public boolean guardsOrderStatus() {
+        return isNative() || this == DEFERRED;
+    }
+
+    /**
+     * @return whether settlements are checked against {@link com.monolith.index.PortfolioIndex} under a portfolio
+     *         lock, with the balance rows written later
+     */
+    public boolean isInMemory() {
+        return this == WRITE_BEHIND || this == DEFERRED;
+    }
+}
@@ -0,0 +1,201 @@
+package com.monolith.settlement;
+
+import com.monolith.index.PortfolioIndex;
+import com.monolith.repository.SettlementLedgerRepository;
+import com.monolith.repository.SettlementNet;
+import com.monolith.service.WriteMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.monolith.utils.Transactions.afterCommit;
+
+/**
+ * Deferred settlement for {@link WriteMode#DEFERRED}.
+ * <p>
+ * A transaction locks the portfolios it settles and checks them against {@link PortfolioIndex}, which stays the
+ * authoritative balance, as in the write-behind mode. Instead of writing the buying power and inventory rows it
+ * records each change here as a delta, appended to the settlement ledger in the same transaction, so an execution
+ * commits its order and its ledger entries together and concurrent executions of a portfolio only ever insert.
+ * <p>
+ * A settlement batch claims every unsettled entry, nets them per buying power and position, adds the nets to the
+ * balance rows and records the batch, the net of each balance and the balance it left, all in one transaction.
+ * Batches run on {@code trading.settlement.cron} while entries are pending, at {@code trading.settlement.end-of-day-cron}
+ * in {@code trading.settlement.zone} and at shutdown; either schedule can be turned off with {@code -}. Entries left by
+ * a crash or another write mode are settled at startup, whatever the current write mode, and added to the index.
+ */
+@Service
+// Destroyed before the entity manager factory, so the shutdown batch can still open a transaction
+@DependsOn("entityManagerFactory")
+public class DeferredSettlementService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredSettlementService.class);
+    private static final int MONEY_SCALE = 2;
+
+    private final SettlementLedgerRepository settlementLedgerRepository;
+    private final PortfolioIndex portfolioIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final BigDecimal initialBuyingPower;
+
+    // Entries committed by this instance and not settled yet
+    private final AtomicLong pendingEntries = new AtomicLong();
+
+    private final Timer batchTimer;
+    private final Counter settledEntries;
+    private final Counter batchFailures;
+
+    public DeferredSettlementService(SettlementLedgerRepository settlementLedgerRepository,
+                                     PortfolioIndex portfolioIndex,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${trading.initial-buying-power:5000.00}") BigDecimal initialBuyingPower) {
+        this.settlementLedgerRepository = settlementLedgerRepository;
+        this.portfolioIndex = portfolioIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.initialBuyingPower = initialBuyingPower.setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+
+        this.batchTimer = Timer.builder("trading.settlement.batch")
+                .description("Time to net the pending ledger entries into the balances")
+                .register(meterRegistry);
+        this.settledEntries = Counter.builder("trading.settlement.entries")
+                .description("Ledger entries netted into the balances")
+                .register(meterRegistry);
+        this.batchFailures = Counter.builder("trading.settlement.batch.failures")
+                .description("Settlement batches that failed and were left for the next run")
+                .register(meterRegistry);
+        Gauge.builder("trading.settlement.pending", pendingEntries, AtomicLong::get)
+                .description("Ledger entries acknowledged but not yet netted into the balances")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Settles what a previous run left in the ledger and brings the index, loaded from the balance rows, up to date.
+     */
+    @PostConstruct
+    void recover() {
+        List<SettlementNet> nets = settle(SettlementReason.STARTUP);
+        for (SettlementNet net : nets) {
+            if (net.getIsin() == null) {
+                portfolioIndex.addToBuyingPower(net.getPortfolioId(), net.getDelta(), initialBuyingPower);
+            } else {
+                portfolioIndex.addToPosition(net.getPortfolioId(), net.getIsin(), net.getDelta());
+            }
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio, locked by the current transaction
+     * @param delta the change of the buying power
+     */
+    public void recordBuyingPower(String portfolioId, BigDecimal delta) {
+        record(portfolioId, null, delta);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio, locked by the current transaction
+     * @param isin the ISIN of the security
+     * @param delta the change of the quantity
+     */
+    public void recordPosition(String portfolioId, String isin, BigDecimal delta) {
+        record(portfolioId, isin, delta);
+    }
+
+    /**
+     * @return the number of entries this instance committed that are not settled yet
+     */
+    public long getPendingEntries() {
+        return pendingEntries.get();
+    }
+
+    @Scheduled(cron = "${trading.settlement.cron:0 * * * * *}")
+    void settlePending() {
+        if (pendingEntries.get() > 0) {
+            settleLogged(SettlementReason.INTERVAL);
+        }
+    }
+
+    /**
+     * Runs even when this instance has nothing pending, so entries another instance left are settled by the day end.
+     */
+    @Scheduled(cron = "${trading.settlement.end-of-day-cron:0 0 22 * * *}", zone = "${trading.settlement.zone:UTC}")
+    void settleEndOfDay() {
+        settleLogged(SettlementReason.END_OF_DAY);
+    }
+
+    @PreDestroy
+    void close() {
+        if (pendingEntries.get() > 0) {
+            settleLogged(SettlementReason.SHUTDOWN);
+        }
+    }
+
+    /**
+     * Nets every committed entry that is not settled yet into the balances in one transaction.
+     * Nothing is recorded when no entry is pending.
+     *
+     * @param reason why the batch runs
+     * @return the applied net changes in portfolio and ISIN order
+     */
+    public synchronized List<SettlementNet> settle(SettlementReason reason) {
+        long start = System.nanoTime();
+        List<SettlementNet> nets = transactionTemplate.execute(status -> {
+            if (!settlementLedgerRepository.hasUnsettledEntries()) {
+                return List.of();
+            }
+            long batchId = settlementLedgerRepository.createBatch(reason.name(), OffsetDateTime.now());
+            int entries = settlementLedgerRepository.claimEntries(batchId);
+            if (entries == 0) {
+                // Another instance claimed them first
+                status.setRollbackOnly();
+                return List.of();
+            }
+            List<SettlementNet> netted = settlementLedgerRepository.netEntries(batchId);
+            settlementLedgerRepository.applyNets(netted, initialBuyingPower);
+            settlementLedgerRepository.finishBatch(batchId, entries, OffsetDateTime.now());
+            log.info("Settlement batch {} ({}) netted {} entries into {} balances", batchId, reason, entries, netted.size());
+            return netted;
+        });
+        if (!nets.isEmpty()) {
+            int entries = nets.stream().mapToInt(SettlementNet::getEntries).sum();
+            pendingEntries.updateAndGet(pending -> Math.max(0, pending - entries));
+            settledEntries.increment(entries);
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return nets;
+    }
+
+    private void settleLogged(SettlementReason reason) {
+        try {
+            settle(reason);
+        } catch (RuntimeException e) {
+            batchFailures.increment();
+            log.error("Settlement batch ({}) failed, its entries stay pending for the next batch", reason, e);
+        }
+    }
+
+    private void record(String portfolioId, String isin, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+        settlementLedgerRepository.append(portfolioId, isin, delta);
+        afterCommit(pendingEntries::incrementAndGet);
+    }
+}
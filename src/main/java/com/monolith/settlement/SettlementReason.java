@@ -0,0 +1,23 @@
+package com.monolith.settlement;
+
+/**
+ * Why a settlement batch ran, recorded with the batch.
+ */
+public enum SettlementReason {
+    /**
+     * Entries a previous run left unsettled.
+     */
+    STARTUP,
+    /**
+     * The periodic settlement of {@code trading.settlement.cron}.
+     */
+    INTERVAL,
+    /**
+     * The end-of-day settlement of {@code trading.settlement.end-of-day-cron}.
+     */
+    END_OF_DAY,
+    /**
+     * The last settlement before the application stops.
+     */
+    SHUTDOWN
+}
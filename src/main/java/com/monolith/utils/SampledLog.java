@@ -0,0 +1,46 @@
+package com.monolith.utils;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Logs at most one message per interval and counts the ones it drops, for events that are frequent
+ * by nature, such as rejected orders. The message is only built for the entries that are written.
+ */
+public final class SampledLog {
+
+    private final Logger log;
+    private final long intervalNanos;
+    private final AtomicLong nextNanos = new AtomicLong(System.nanoTime());
+    private final LongAdder dropped = new LongAdder();
+
+    public SampledLog(Logger log, Duration interval) {
+        this.log = log;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * @param message builds the message if this call is sampled
+     */
+    public void warn(Supplier<String> message) {
+        if (!log.isWarnEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long next = nextNanos.get();
+        if (now - next < 0 || !nextNanos.compareAndSet(next, now + intervalNanos)) {
+            dropped.increment();
+            return;
+        }
+        long skipped = dropped.sumThenReset();
+        if (skipped > 0) {
+            log.warn("{} ({} similar messages dropped)", message.get(), skipped);
+        } else {
+            log.warn(message.get());
+        }
+    }
+}
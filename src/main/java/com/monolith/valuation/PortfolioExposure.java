@@ -0,0 +1,30 @@
+package com.monolith.valuation;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+
+/**
+ * Immutable ranking key of a portfolio by gross exposure.
+ */
+public class PortfolioExposure {
+
+    static final Comparator<PortfolioExposure> LARGEST_FIRST = Comparator
+            .comparing(PortfolioExposure::getExposure).reversed()
+            .thenComparing(PortfolioExposure::getPortfolioId);
+
+    private final String portfolioId;
+    private final BigDecimal exposure;
+
+    public PortfolioExposure(String portfolioId, BigDecimal exposure) {
+        this.portfolioId = portfolioId;
+        this.exposure = exposure;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public BigDecimal getExposure() {
+        return exposure;
+    }
+}
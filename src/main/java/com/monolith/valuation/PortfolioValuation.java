@@ -0,0 +1,49 @@
+package com.monolith.valuation;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+
+public class PortfolioValuation {
+    private final String portfolioId;
+    private final BigDecimal marketValue;
+    private final BigDecimal costBasis;
+    private final List<PositionValuation> positions;
+
+    public PortfolioValuation(String portfolioId, BigDecimal marketValue, BigDecimal costBasis,
+                              List<PositionValuation> positions) {
+        this.portfolioId = portfolioId;
+        this.marketValue = marketValue;
+        this.costBasis = costBasis;
+        this.positions = positions;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public BigDecimal getMarketValue() {
+        return marketValue;
+    }
+
+    /**
+     * @return the cost of the positions whose cost basis is known
+     */
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    /**
+     * @return the unrealized P&L of the positions whose cost basis is known
+     */
+    public BigDecimal getUnrealizedPnl() {
+        return positions.stream()
+                .map(PositionValuation::getUnrealizedPnl)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public List<PositionValuation> getPositions() {
+        return positions;
+    }
+}
@@ -0,0 +1,50 @@
+package com.monolith.valuation;
+
+import java.math.BigDecimal;
+
+public class PositionValuation {
+    private final String isin;
+    private final BigDecimal quantity;
+    private final BigDecimal price;
+    private final BigDecimal marketValue;
+    private final BigDecimal costBasis;
+
+    public PositionValuation(String isin, BigDecimal quantity, BigDecimal price,
+                             BigDecimal marketValue, BigDecimal costBasis) {
+        this.isin = isin;
+        this.quantity = quantity;
+        this.price = price;
+        this.marketValue = marketValue;
+        this.costBasis = costBasis;
+    }
+
+    public String getIsin() {
+        return isin;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public BigDecimal getMarketValue() {
+        return marketValue;
+    }
+
+    /**
+     * @return the cost of the held quantity, null for a position held before costs were tracked
+     */
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    /**
+     * @return the unrealized P&L, null while the cost basis is unknown
+     */
+    public BigDecimal getUnrealizedPnl() {
+        return costBasis == null ? null : marketValue.subtract(costBasis);
+    }
+}
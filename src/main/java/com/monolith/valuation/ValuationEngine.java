@@ -0,0 +1,227 @@
+package com.monolith.valuation;
+
+import com.monolith.MarketDataService;
+import com.monolith.index.PositionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Incremental mark-to-market valuation of all portfolios.
+ * <p>
+ * Every portfolio keeps running totals of market value and cost basis. A position change applies
+ * the quantity delta at the current mark, a cost basis change from {@link com.monolith.service.CostBasisService}
+ * applies its difference, and a price change walks only the portfolios holding the ISIN
+ * through the isin -> portfolios reverse index, so no path rescans positions.
+ * Portfolios are additionally kept ordered by exposure, which makes top-N queries O(N).
+ */
+@Service
+public class ValuationEngine implements PositionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ValuationEngine.class);
+
+    private final MarketDataService marketDataService;
+
+    private final ConcurrentHashMap<String, BigDecimal> marks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> holders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PortfolioBook> books = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<PortfolioExposure> exposureRanking =
+            new ConcurrentSkipListSet<>(PortfolioExposure.LARGEST_FIRST);
+
+    public ValuationEngine(MarketDataService marketDataService) {
+        this.marketDataService = marketDataService;
+    }
+
+    @Override
+    public void onPositionChanged(String portfolioId, String isin, BigDecimal previousQuantity, BigDecimal quantity) {
+        PortfolioBook book = books.computeIfAbsent(portfolioId, PortfolioBook::new);
+        synchronized (book) {
+            // Register as holder before reading the mark, so a concurrent price change either
+            // is already visible here or will find this portfolio when it walks the holders
+            Set<String> isinHolders = holders.computeIfAbsent(isin, key -> ConcurrentHashMap.newKeySet());
+            isinHolders.add(portfolioId);
+
+            BigDecimal mark = markOf(isin);
+            PositionBook position = book.positions.computeIfAbsent(isin, key -> new PositionBook(mark));
+            book.revalue(position, mark);
+
+            BigDecimal delta = quantity.subtract(position.quantity);
+            position.quantity = quantity;
+            book.marketValue = book.marketValue.add(delta.multiply(mark));
+
+            if (quantity.signum() == 0) {
+                book.costBasis = book.costBasis.subtract(knownCost(position.costBasis));
+                book.positions.remove(isin);
+                isinHolders.remove(portfolioId);
+            }
+            rerank(book);
+        }
+    }
+
+    /**
+     * Replaces the cost basis of a position.
+     *
+     * @param portfolioId the ID of the portfolio
+     * @param isin the ISIN of the security
+     * @param costBasis the total cost of the held quantity, null if unknown
+     */
+    public void onCostBasisChanged(String portfolioId, String isin, BigDecimal costBasis) {
+        PortfolioBook book = books.computeIfAbsent(portfolioId, PortfolioBook::new);
+        synchronized (book) {
+            PositionBook position = book.positions.get(isin);
+            if (position == null) {
+                if (costBasis != null && costBasis.signum() == 0) {
+                    return;
+                }
+                // The cost may be published before the position itself, e.g. while loading at startup
+                position = new PositionBook(markOf(isin));
+                book.positions.put(isin, position);
+            }
+            // A position with an unknown cost basis stays out of the portfolio cost total
+            book.costBasis = book.costBasis.add(knownCost(costBasis)).subtract(knownCost(position.costBasis));
+            position.costBasis = costBasis;
+        }
+    }
+
+    /**
+     * Applies a new price to every portfolio holding the ISIN.
+     *
+     * @param isin the ISIN of the security
+     * @param price the new price
+     */
+    public void onPriceChanged(String isin, BigDecimal price) {
+        marks.put(isin, price);
+        Set<String> isinHolders = holders.get(isin);
+        if (isinHolders == null) {
+            return;
+        }
+
+        for (String portfolioId : isinHolders) {
+            PortfolioBook book = books.get(portfolioId);
+            synchronized (book) {
+                PositionBook position = book.positions.get(isin);
+                if (position != null) {
+                    book.revalue(position, marks.get(isin));
+                    rerank(book);
+                }
+            }
+        }
+    }
+
+    /**
+     * Polls {@link MarketDataService} for every held ISIN and propagates the prices that moved.
+     */
+    @Scheduled(fixedDelayString = "${trading.valuation.price-refresh-ms:1000}")
+    public void refreshPrices() {
+        for (String isin : holders.keySet()) {
+            BigDecimal price = fetchPrice(isin);
+            BigDecimal mark = marks.get(isin);
+            if (mark == null || mark.compareTo(price) != 0) {
+                onPriceChanged(isin, price);
+            }
+        }
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio
+     * @return the current valuation, empty for a portfolio without positions
+     */
+    public PortfolioValuation getValuation(String portfolioId) {
+        PortfolioBook book = books.get(portfolioId);
+        if (book == null) {
+            return new PortfolioValuation(portfolioId, BigDecimal.ZERO, BigDecimal.ZERO, List.of());
+        }
+
+        synchronized (book) {
+            List<PositionValuation> positions = new ArrayList<>(book.positions.size());
+            new TreeMap<>(book.positions).forEach((isin, position) -> positions.add(new PositionValuation(
+                    isin,
+                    position.quantity,
+                    position.mark,
+                    position.quantity.multiply(position.mark),
+                    position.costBasis)));
+            return new PortfolioValuation(portfolioId, book.marketValue, book.costBasis, positions);
+        }
+    }
+
+    /**
+     * @param limit the maximum number of portfolios to return
+     * @return the portfolios with the largest exposure, largest first
+     */
+    public List<PortfolioExposure> getTopByExposure(int limit) {
+        List<PortfolioExposure> top = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<PortfolioExposure> iterator = exposureRanking.iterator();
+        while (iterator.hasNext() && top.size() < limit) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+
+    private BigDecimal markOf(String isin) {
+        return marks.computeIfAbsent(isin, this::fetchPrice);
+    }
+
+    private BigDecimal fetchPrice(String isin) {
+        try {
+            return marketDataService.getPrice(isin);
+        } catch (IllegalArgumentException e) {
+            log.warn("No price for {}, valuing it at zero", isin);
+            return BigDecimal.ZERO;
+        }
+    }
+
+    private static BigDecimal knownCost(BigDecimal costBasis) {
+        return costBasis == null ? BigDecimal.ZERO : costBasis;
+    }
+
+    private void rerank(PortfolioBook book) {
+        if (book.rank != null) {
+            exposureRanking.remove(book.rank);
+        }
+        book.rank = book.marketValue.signum() == 0 ? null : new PortfolioExposure(book.portfolioId, book.marketValue);
+        if (book.rank != null) {
+            exposureRanking.add(book.rank);
+        }
+    }
+
+    private static final class PortfolioBook {
+        private final String portfolioId;
+        private final Map<String, PositionBook> positions = new HashMap<>();
+        private BigDecimal marketValue = BigDecimal.ZERO;
+        private BigDecimal costBasis = BigDecimal.ZERO;
+        private PortfolioExposure rank;
+
+        private PortfolioBook(String portfolioId) {
+            this.portfolioId = portfolioId;
+        }
+
+        private void revalue(PositionBook position, BigDecimal mark) {
+            if (position.mark.compareTo(mark) != 0) {
+                marketValue = marketValue.add(position.quantity.multiply(mark.subtract(position.mark)));
+                position.mark = mark;
+            }
+        }
+    }
+
+    private static final class PositionBook {
+        private BigDecimal quantity = BigDecimal.ZERO;
+        private BigDecimal costBasis = BigDecimal.ZERO;
+        private BigDecimal mark;
+
+        private PositionBook(BigDecimal mark) {
+            this.mark = mark;
+        }
+    }
+}
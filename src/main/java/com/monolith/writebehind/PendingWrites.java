@@ -0,0 +1,105 @@
+package com.monolith.writebehind;
+
+import com.monolith.OrderStatus;
+import com.monolith.index.PositionKey;
+import com.monolith.repository.PositionCostEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rows changed by one transaction or coalesced from many, keyed by row, so a later value replaces an earlier one.
+ * A settlement stages its position costs with its balances, so the two are journaled and flushed together.
+ * Values are absolute, never deltas, which makes applying the same rows twice harmless.
+ * Keys are sorted, so batches built from them lock rows in the same order.
+ */
+final class PendingWrites {
+
+    static final Comparator<PositionKey> POSITION_ORDER =
+            Comparator.comparing(PositionKey::getPortfolioId).thenComparing(PositionKey::getIsin);
+
+    final Map<String, BigDecimal> buyingPowers = new TreeMap<>();
+    final Map<PositionKey, BigDecimal> positions = new TreeMap<>(POSITION_ORDER);
+    final Map<Long, OrderStatus> orderStatuses = new TreeMap<>();
+    final Map<PositionKey, PositionCostEntity> positionCosts = new TreeMap<>(POSITION_ORDER);
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int size() {
+        return buyingPowers.size() + positions.size() + orderStatuses.size() + positionCosts.size();
+    }
+
+    void putAll(PendingWrites other) {
+        buyingPowers.putAll(other.buyingPowers);
+        positions.putAll(other.positions);
+        orderStatuses.putAll(other.orderStatuses);
+        positionCosts.putAll(other.positionCosts);
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * size() + 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(buyingPowers.size());
+            for (Map.Entry<String, BigDecimal> entry : buyingPowers.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().toPlainString());
+            }
+            out.writeInt(positions.size());
+            for (Map.Entry<PositionKey, BigDecimal> entry : positions.entrySet()) {
+                out.writeUTF(entry.getKey().getPortfolioId());
+                out.writeUTF(entry.getKey().getIsin());
+                out.writeUTF(entry.getValue().toPlainString());
+            }
+            out.writeInt(orderStatuses.size());
+            for (Map.Entry<Long, OrderStatus> entry : orderStatuses.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeUTF(entry.getValue().name());
+            }
+            out.writeInt(positionCosts.size());
+            for (PositionCostEntity cost : positionCosts.values()) {
+                out.writeUTF(cost.getPortfolioId());
+                out.writeUTF(cost.getIsin());
+                out.writeUTF(cost.getQuantity().toPlainString());
+                // An empty string stands for an unknown average cost
+                out.writeUTF(cost.isBasisKnown() ? cost.getAverageCost().toPlainString() : "");
+                out.writeUTF(cost.getRealizedPnl().toPlainString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads one record written by {@link #encode()} into these rows, replacing earlier values.
+     */
+    void decode(DataInput in) throws IOException {
+        for (int i = in.readInt(); i > 0; i--) {
+            buyingPowers.put(in.readUTF(), new BigDecimal(in.readUTF()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            positions.put(new PositionKey(in.readUTF(), in.readUTF()), new BigDecimal(in.readUTF()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            orderStatuses.put(in.readLong(), OrderStatus.valueOf(in.readUTF()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String portfolioId = in.readUTF();
+            String isin = in.readUTF();
+            BigDecimal quantity = new BigDecimal(in.readUTF());
+            String averageCost = in.readUTF();
+            PositionCostEntity cost = new PositionCostEntity(portfolioId, isin, quantity,
+                    averageCost.isEmpty() ? null : new BigDecimal(averageCost), new BigDecimal(in.readUTF()));
+            positionCosts.put(new PositionKey(portfolioId, isin), cost);
+        }
+    }
+}
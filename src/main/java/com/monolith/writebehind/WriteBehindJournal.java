@@ -0,0 +1,272 @@
+package com.monolith.writebehind;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of {@link PendingWrites} records, split into numbered segment files.
+ * <p>
+ * A transaction appends its rows as a prepare record before it commits, and a commit or abort marker after it
+ * completes; only rows whose transaction is marked committed are replayed. Every record is framed as length,
+ * CRC32 and payload, so a record torn by a crash is detected and ends the replay of its segment. Appends go to
+ * the open segment; {@link #rotate()} closes it, and the closed segments are deleted once their rows are in the
+ * database. A file next to the segments names the database the journal belongs to, so it is never replayed
+ * into another one.
+ */
+class WriteBehindJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String DATABASE_FILE = "database";
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private static final byte PREPARE = 1;
+    private static final byte COMMIT = 2;
+    private static final byte ABORT = 3;
+    // Record type and transaction ID
+    private static final int HEADER_BYTES = 1 + Long.BYTES;
+
+    private final Path directory;
+    private final boolean fsync;
+
+    private String database;
+    private boolean databaseWritten;
+    private FileChannel channel;
+    private Path openSegment;
+    private long nextSequence;
+
+    WriteBehindJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * @param database identifies the database the segments opened from now on are written for
+     */
+    synchronized void bind(String database) {
+        this.database = database;
+    }
+
+    /**
+     * @return the database the existing segments were written for, or null if the journal does not name one
+     */
+    synchronized String journaledDatabase() throws IOException {
+        Path file = directory.resolve(DATABASE_FILE);
+        return Files.exists(file) ? Files.readString(file) : null;
+    }
+
+    /**
+     * @return the segments left by a previous run, oldest first
+     */
+    synchronized List<Path> existingSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(WriteBehindJournal::sequenceOf))
+                    .toList();
+            if (!segments.isEmpty()) {
+                nextSequence = Math.max(nextSequence, sequenceOf(segments.get(segments.size() - 1)) + 1);
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Journals the rows of a transaction that is about to commit; they are replayed only after {@link #commit(long)}.
+     *
+     * @param transactionId identifies the transaction in its commit or abort marker
+     * @param writes the rows of the transaction
+     */
+    synchronized void prepare(long transactionId, PendingWrites writes) throws IOException {
+        byte[] rows = writes.encode();
+        append(ByteBuffer.allocate(HEADER_BYTES + rows.length)
+                .put(PREPARE)
+                .putLong(transactionId)
+                .put(rows)
+                .array(), fsync);
+    }
+
+    /**
+     * Marks the prepared rows of a transaction as committed, forced to disk if configured.
+     */
+    synchronized void commit(long transactionId) throws IOException {
+        append(marker(COMMIT, transactionId), fsync);
+    }
+
+    /**
+     * Marks the prepared rows of a transaction as rolled back. Never forced, a missing marker means the same.
+     */
+    synchronized void abort(long transactionId) throws IOException {
+        append(marker(ABORT, transactionId), false);
+    }
+
+    private void append(byte[] payload, boolean force) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + payload.length)
+                .putInt(payload.length)
+                .putLong(crc.getValue())
+                .put(payload)
+                .flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    private static byte[] marker(byte type, long transactionId) {
+        return ByteBuffer.allocate(HEADER_BYTES).put(type).putLong(transactionId).array();
+    }
+
+    /**
+     * Closes the open segment, the next append starts a new one.
+     *
+     * @return all closed segments, oldest first
+     */
+    synchronized List<Path> rotate() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            openSegment = null;
+        }
+        return existingSegments();
+    }
+
+    synchronized void delete(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            if (!segment.equals(openSegment)) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            openSegment = null;
+        }
+    }
+
+    /**
+     * Replays the committed transactions of the segments in the order they committed. Prepared rows without a
+     * commit marker belong to a transaction that rolled back, or whose outcome was never acknowledged, and are
+     * dropped.
+     *
+     * @param segments the segment files, oldest first
+     * @param rows receives the rows of every committed transaction
+     * @return the number of replayed transactions
+     */
+    static int replay(List<Path> segments, PendingWrites rows) throws IOException {
+        Map<Long, byte[]> prepared = new HashMap<>();
+        int committed = 0;
+        for (Path segment : segments) {
+            committed += replay(segment, prepared, rows);
+        }
+        if (!prepared.isEmpty()) {
+            log.warn("Dropping {} journaled transactions that were never marked committed", prepared.size());
+        }
+        return committed;
+    }
+
+    private static int replay(Path segment, Map<Long, byte[]> prepared, PendingWrites rows) throws IOException {
+        int records = 0;
+        int committed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return committed;
+                }
+
+                byte[] payload;
+                long expectedCrc;
+                try {
+                    int length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+                    expectedCrc = in.readLong();
+                    if (length < 0 || length > MAX_RECORD_BYTES) {
+                        log.warn("Ignoring corrupt record {} and the rest of {}", records, segment);
+                        return committed;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    log.warn("Ignoring torn record at the end of {}", segment);
+                    return committed;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != expectedCrc) {
+                    log.warn("Ignoring corrupt record {} and the rest of {}", records, segment);
+                    return committed;
+                }
+                records++;
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                byte type = record.get();
+                long transactionId = record.getLong();
+                switch (type) {
+                    case PREPARE -> prepared.put(transactionId, payload);
+                    case COMMIT -> {
+                        byte[] writes = prepared.remove(transactionId);
+                        if (writes != null) {
+                            rows.decode(new DataInputStream(new ByteArrayInputStream(
+                                    writes, HEADER_BYTES, writes.length - HEADER_BYTES)));
+                            committed++;
+                        }
+                    }
+                    case ABORT -> prepared.remove(transactionId);
+                    default -> {
+                        log.warn("Ignoring record {} of unknown type {} and the rest of {}", records, type, segment);
+                        return committed;
+                    }
+                }
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        if (database != null && !databaseWritten) {
+            Files.writeString(directory.resolve(DATABASE_FILE), database);
+            databaseWritten = true;
+        }
+        existingSegments();
+        openSegment = directory.resolve(SEGMENT_PREFIX + nextSequence++ + SEGMENT_SUFFIX);
+        channel = FileChannel.open(openSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,414 @@
+package com.monolith.writebehind;
+
+import com.google.common.util.concurrent.Striped;
+import com.monolith.OrderStatus;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.index.PositionKey;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.repository.SettlementBatchRepository;
+import com.monolith.service.WriteMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.lang.String.format;
+
+/**
+ * Write-behind store for settlement rows in {@link WriteMode#WRITE_BEHIND}.
+ * <p>
+ * A transaction locks the portfolios it settles, reads them from {@link PortfolioIndex} and stages the new
+ * buying power, positions, order statuses and position costs here. Right before it commits, the staged rows are journaled as
+ * prepared and forced to disk, so a failing journal rolls the transaction back. Once the transaction completes,
+ * a commit or abort marker follows, and only committed rows are merged into the dirty rows, which coalesce per
+ * key. The index is updated after commit as in the other modes, and the portfolio locks are released last, so
+ * the next transaction on the portfolio reads the new state.
+ * <p>
+ * The dirty rows are flushed every {@code flush-interval-ms} or as soon as {@code max-dirty-rows} accumulate,
+ * as ordered JDBC batches in one transaction. A flush first rotates the journal, and the closed segments
+ * are deleted after the batch commits. Segments left by a crash are replayed into the database at startup, in any
+ * write mode, but only into the database they were written for; any other database refuses to start.
+ */
+@Service
+public class WriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindService.class);
+
+    private final PortfolioIndex portfolioIndex;
+    private final SettlementBatchRepository settlementBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+    private final Path journalDir;
+    private final int maxDirtyRows;
+    private final WriteBehindJournal journal;
+
+    private final ConcurrentHashMap<String, BigDecimal> dirtyBuyingPowers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PositionKey, BigDecimal> dirtyPositions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, OrderStatus> dirtyOrderStatuses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PositionKey, PositionCostEntity> dirtyPositionCosts = new ConcurrentHashMap<>();
+
+    private final Striped<Lock> portfolioLocks;
+    // A transaction holds the read lock from its prepare record to its marker, so a rotation never separates
+    // the two, nor a committed record from its dirty rows
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private final AtomicLong transactionIds = new AtomicLong();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "write-behind-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+
+    public WriteBehindService(PortfolioIndex portfolioIndex,
+                              SettlementBatchRepository settlementBatchRepository,
+                              PlatformTransactionManager transactionManager,
+                              DataSource dataSource,
+                              MeterRegistry meterRegistry,
+                              @Value("${trading.write-behind.journal-dir:data/write-behind}") Path journalDir,
+                              @Value("${trading.write-behind.fsync:true}") boolean fsync,
+                              @Value("${trading.write-behind.max-dirty-rows:1000}") int maxDirtyRows,
+                              @Value("${trading.write-behind.lock-stripes:256}") int lockStripes) {
+        this.portfolioIndex = portfolioIndex;
+        this.settlementBatchRepository = settlementBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataSource = dataSource;
+        this.journalDir = journalDir;
+        this.maxDirtyRows = maxDirtyRows;
+        this.journal = new WriteBehindJournal(journalDir, fsync);
+        this.portfolioLocks = Striped.lock(lockStripes);
+
+        this.flushTimer = Timer.builder("trading.write_behind.flush")
+                .description("Time to write the dirty rows as JDBC batches")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("trading.write_behind.flush.failures")
+                .description("Flushes that failed and were left for the next attempt")
+                .register(meterRegistry);
+        Gauge.builder("trading.write_behind.dirty_rows", this, WriteBehindService::dirtyRows)
+                .description("Rows acknowledged but not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Writes what a previous run journaled but did not flush, whatever the current write mode.
+     *
+     * @throws IllegalStateException if the journal belongs to another database, e.g. an in-memory one that is gone
+     */
+    @PostConstruct
+    void recover() throws IOException {
+        String database = databaseOf(dataSource);
+        journal.bind(database);
+        List<Path> segments = journal.existingSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        String journaled = journal.journaledDatabase();
+        if (!database.equals(journaled)) {
+            throw new IllegalStateException(format("Write-behind journal %s holds %d segments of database %s, "
+                    + "not of %s: start against that database to write them, or delete them",
+                    journalDir, segments.size(), journaled, database));
+        }
+
+        PendingWrites recovered = new PendingWrites();
+        int transactions = WriteBehindJournal.replay(segments, recovered);
+        if (!recovered.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> write(recovered));
+        }
+        recovered.buyingPowers.forEach(portfolioIndex::updateBuyingPower);
+        recovered.positions.forEach((key, quantity) ->
+                portfolioIndex.updatePosition(key.getPortfolioId(), key.getIsin(), quantity));
+        journal.delete(segments);
+        log.info("Recovered {} rows of {} committed transactions from {} segments",
+                recovered.size(), transactions, segments.size());
+    }
+
+    /**
+     * Serializes the settlement of the portfolio until the current transaction completes.
+     *
+     * @param portfolioId the ID of the portfolio
+     */
+    public void lockPortfolio(String portfolioId) {
+        currentUnit().lock(List.of(portfolioLocks.get(portfolioId)));
+    }
+
+    /**
+     * Locks several portfolios in stripe order, so concurrent callers cannot deadlock.
+     * Must come before any other lock taken by the same transaction.
+     *
+     * @param portfolioIds the IDs of the portfolios
+     */
+    public void lockPortfolios(Collection<String> portfolioIds) {
+        List<Lock> locks = new ArrayList<>();
+        portfolioLocks.bulkGet(portfolioIds).forEach(locks::add);
+        currentUnit().lock(locks);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio, locked by the current transaction
+     * @param amount the new buying power
+     */
+    public void stageBuyingPower(String portfolioId, BigDecimal amount) {
+        currentUnit().writes.buyingPowers.put(portfolioId, amount);
+    }
+
+    /**
+     * @param portfolioId the ID of the portfolio, locked by the current transaction
+     * @param isin the ISIN of the security
+     * @param quantity the new quantity, zero deletes the position
+     */
+    public void stagePosition(String portfolioId, String isin, BigDecimal quantity) {
+        currentUnit().writes.positions.put(new PositionKey(portfolioId, isin), quantity);
+    }
+
+    /**
+     * @param orderId the ID of the order, whose portfolio is locked by the current transaction
+     * @param status the new status
+     */
+    public void stageOrderStatus(Long orderId, OrderStatus status) {
+        currentUnit().writes.orderStatuses.put(orderId, status);
+    }
+
+    /**
+     * @param positionCost the new position cost, whose portfolio is locked by the current transaction
+     */
+    public void stagePositionCost(PositionCostEntity positionCost) {
+        currentUnit().writes.positionCosts.put(
+                new PositionKey(positionCost.getPortfolioId(), positionCost.getIsin()), positionCost);
+    }
+
+    /**
+     * @param orderId the ID of the order
+     * @return the acknowledged status that is not in the database yet, or null
+     */
+    public OrderStatus getPendingStatus(Long orderId) {
+        return dirtyOrderStatuses.get(orderId);
+    }
+
+    /**
+     * A pending status disappears once it is flushed. A reader that found none can trust a database read made
+     * after it only if this count did not change in between.
+     *
+     * @return the number of completed flushes
+     */
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * Writes the dirty rows. Rows changed again while the batch runs stay dirty for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${trading.write-behind.flush-interval-ms:50}")
+    public synchronized void flush() {
+        PendingWrites batch = new PendingWrites();
+        List<Path> segments;
+        journalLock.writeLock().lock();
+        try {
+            batch.buyingPowers.putAll(dirtyBuyingPowers);
+            batch.positions.putAll(dirtyPositions);
+            batch.orderStatuses.putAll(dirtyOrderStatuses);
+            batch.positionCosts.putAll(dirtyPositionCosts);
+            if (batch.isEmpty()) {
+                return;
+            }
+            segments = journal.rotate();
+        } catch (IOException e) {
+            flushFailures.increment();
+            log.error("Failed to rotate the write-behind journal", e);
+            return;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> write(batch)));
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            log.error("Failed to flush {} write-behind rows, keeping them for the next attempt", batch.size(), e);
+            return;
+        }
+
+        flushes.incrementAndGet();
+        batch.buyingPowers.forEach(dirtyBuyingPowers::remove);
+        batch.positions.forEach(dirtyPositions::remove);
+        batch.orderStatuses.forEach(dirtyOrderStatuses::remove);
+        batch.positionCosts.forEach(dirtyPositionCosts::remove);
+        try {
+            journal.delete(segments);
+        } catch (IOException e) {
+            log.warn("Failed to delete flushed journal segments, they will be replayed harmlessly", e);
+        }
+    }
+
+    /**
+     * Flushes the dirty rows and, if that left none, deletes the journal, so a clean shutdown leaves nothing to replay.
+     */
+    @PreDestroy
+    void close() throws IOException {
+        flushExecutor.shutdown();
+        flush();
+        journal.close();
+        if (dirtyRows() == 0) {
+            journal.delete(journal.existingSegments());
+        }
+    }
+
+    private void write(PendingWrites rows) {
+        settlementBatchRepository.upsertBuyingPowers(rows.buyingPowers);
+        settlementBatchRepository.writePositions(rows.positions);
+        settlementBatchRepository.updateOrderStatuses(rows.orderStatuses);
+        settlementBatchRepository.upsertPositionCosts(rows.positionCosts);
+    }
+
+    /**
+     * @return the JDBC URL of the database without its connection settings, which may change between runs
+     */
+    private static String databaseOf(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            String url = connection.getMetaData().getURL();
+            int settings = url.indexOf(url.startsWith("jdbc:h2:") ? ';' : '?');
+            return settings < 0 ? url : url.substring(0, settings);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to identify the database of the write-behind journal", e);
+        }
+    }
+
+    /**
+     * Journals the rows of a committing transaction as prepared and keeps the journal from rotating until
+     * {@link #complete} marks them.
+     *
+     * @return whether the rows were journaled
+     */
+    private boolean prepare(long transactionId, PendingWrites writes) {
+        if (writes.isEmpty()) {
+            return false;
+        }
+
+        journalLock.readLock().lock();
+        try {
+            journal.prepare(transactionId, writes);
+            return true;
+        } catch (IOException e) {
+            journalLock.readLock().unlock();
+            throw new UncheckedIOException("Failed to journal settlement", e);
+        }
+    }
+
+    /**
+     * Marks the prepared rows with the outcome of their transaction and makes them dirty if it committed.
+     */
+    private void complete(long transactionId, PendingWrites writes, boolean committed) {
+        try {
+            if (committed) {
+                journal.commit(transactionId);
+            } else {
+                journal.abort(transactionId);
+            }
+        } catch (IOException e) {
+            // The database outcome stands; the rows are still flushed unless the process dies first
+            log.error("Failed to mark journaled transaction {} as {}", transactionId, committed ? "committed" : "aborted", e);
+        } finally {
+            if (committed) {
+                dirtyBuyingPowers.putAll(writes.buyingPowers);
+                dirtyPositions.putAll(writes.positions);
+                dirtyOrderStatuses.putAll(writes.orderStatuses);
+                dirtyPositionCosts.putAll(writes.positionCosts);
+            }
+            journalLock.readLock().unlock();
+        }
+
+        if (committed && dirtyRows() >= maxDirtyRows && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    private int dirtyRows() {
+        return dirtyBuyingPowers.size() + dirtyPositions.size() + dirtyOrderStatuses.size() + dirtyPositionCosts.size();
+    }
+
+    private Unit currentUnit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Write-behind settlement needs an active transaction");
+        }
+        Unit unit = (Unit) TransactionSynchronizationManager.getResource(this);
+        if (unit == null) {
+            unit = new Unit();
+            TransactionSynchronizationManager.bindResource(this, unit);
+            TransactionSynchronizationManager.registerSynchronization(unit);
+        }
+        return unit;
+    }
+
+    /**
+     * The rows and portfolio locks of one transaction.
+     */
+    private final class Unit implements TransactionSynchronization {
+        private final PendingWrites writes = new PendingWrites();
+        private final List<Lock> held = new ArrayList<>();
+        private final long transactionId = transactionIds.incrementAndGet();
+        private boolean prepared;
+
+        private void lock(List<Lock> locks) {
+            for (Lock lock : locks) {
+                if (!held.contains(lock)) {
+                    lock.lock();
+                    held.add(lock);
+                }
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            prepared = prepare(transactionId, writes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(WriteBehindService.this);
+            try {
+                if (prepared) {
+                    complete(transactionId, writes, status == STATUS_COMMITTED);
+                }
+            } finally {
+                for (int i = held.size() - 1; i >= 0; i--) {
+                    held.get(i).unlock();
+                }
+            }
+        }
+    }
+}
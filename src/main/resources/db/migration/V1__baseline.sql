@@ -0,0 +1,60 @@
+-- Schema as created by Hibernate and the former schema.sql. A database created before Flyway is baselined at this version.
+
+CREATE SEQUENCE order_entity_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE buying_power_entity (
+    portfolio_id VARCHAR(255) NOT NULL,
+    amount NUMERIC(38, 2),
+    -- Row version of the optimistic write mode, not mapped on the entity
+    version BIGINT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (portfolio_id)
+);
+
+CREATE TABLE inventory_entity (
+    isin VARCHAR(255) NOT NULL,
+    portfolio_id VARCHAR(255) NOT NULL,
+    quantity NUMERIC(38, 2),
+    version BIGINT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (isin, portfolio_id)
+);
+
+CREATE TABLE position_cost_entity (
+    isin VARCHAR(255) NOT NULL,
+    portfolio_id VARCHAR(255) NOT NULL,
+    average_cost NUMERIC(38, 6),
+    quantity NUMERIC(38, 2),
+    realized_pnl NUMERIC(38, 2),
+    PRIMARY KEY (isin, portfolio_id)
+);
+
+CREATE TABLE order_entity (
+    id BIGINT NOT NULL,
+    isin VARCHAR(255),
+    portfolio_id VARCHAR(255),
+    price NUMERIC(38, 2),
+    quantity NUMERIC(38, 2),
+    side SMALLINT,
+    status SMALLINT,
+    -- Filled by the database so the entity mapping stays unchanged
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE idempotency_key_entity (
+    idempotency_key VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE,
+    order_id BIGINT NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+-- Keyset pagination of the order history
+CREATE INDEX idx_order_portfolio_status_id ON order_entity (portfolio_id, status, id);
+CREATE INDEX idx_order_isin_id ON order_entity (isin, id);
+
+-- Positions and cost basis of a portfolio; the composite primary keys start with the ISIN
+CREATE INDEX idx_inventory_portfolio ON inventory_entity (portfolio_id);
+CREATE INDEX idx_position_cost_portfolio ON position_cost_entity (portfolio_id);
+
+-- Purge of expired idempotency keys
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key_entity (created_at);
@@ -0,0 +1,22 @@
+-- Cold table of terminal orders moved out of order_entity by the archival job, see OrderArchiver.
+-- order_entity keeps the open and recent orders, so it stays small whatever the trading history.
+
+CREATE TABLE order_archive (
+    id BIGINT NOT NULL,
+    isin VARCHAR(255),
+    portfolio_id VARCHAR(255),
+    price NUMERIC(38, 2),
+    quantity NUMERIC(38, 2),
+    side SMALLINT,
+    status SMALLINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    archived_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Keyset pagination of the order history, as on order_entity
+CREATE INDEX idx_order_archive_portfolio_status_id ON order_archive (portfolio_id, status, id);
+CREATE INDEX idx_order_archive_isin_id ON order_archive (isin, id);
+
+-- Archival scan of terminal orders by age
+CREATE INDEX idx_order_status_created_at ON order_entity (status, created_at);
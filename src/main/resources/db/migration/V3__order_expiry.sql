@@ -0,0 +1,8 @@
+-- Expiry time of the orders that are not good till cancelled, see OrderExpiryService.
+-- A table of its own keeps the entity mapping unchanged; rows leave with their orders when those are archived.
+
+CREATE TABLE order_expiry (
+    order_id BIGINT NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (order_id)
+);
@@ -0,0 +1,39 @@
+-- Ledger of the deferred write mode, see DeferredSettlementService.
+-- Settlements append their cash and position changes as entries instead of updating the balance rows; a batch claims
+-- the unsettled entries, adds their net per balance to buying_power_entity and inventory_entity and records what it did.
+
+CREATE TABLE settlement_batch (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    reason VARCHAR(16) NOT NULL,
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    settled_at TIMESTAMP WITH TIME ZONE,
+    entries INTEGER NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- One change of a buying power, or of a position when isin is set. batch_id stays null until a batch settles it.
+CREATE TABLE settlement_entry (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    portfolio_id VARCHAR(255) NOT NULL,
+    isin VARCHAR(255),
+    delta NUMERIC(38, 2) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    batch_id BIGINT,
+    PRIMARY KEY (id)
+);
+
+-- The net change a batch applied to one balance, and the balance it left
+CREATE TABLE settlement_net (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    batch_id BIGINT NOT NULL,
+    portfolio_id VARCHAR(255) NOT NULL,
+    isin VARCHAR(255),
+    delta NUMERIC(38, 2) NOT NULL,
+    entries INTEGER NOT NULL,
+    balance NUMERIC(38, 2),
+    PRIMARY KEY (id)
+);
+
+-- Claiming the unsettled entries and reading them back by batch
+CREATE INDEX idx_settlement_entry_batch ON settlement_entry (batch_id);
+CREATE INDEX idx_settlement_net_batch ON settlement_net (batch_id);
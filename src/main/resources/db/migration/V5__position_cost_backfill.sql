@@ -0,0 +1,9 @@
+-- Positions opened before their cost was tracked, see CostBasisService.
+-- Their average cost is unknown (NULL), so selling them realizes no P&L instead of booking the whole proceeds.
+
+INSERT INTO position_cost_entity (isin, portfolio_id, average_cost, quantity, realized_pnl)
+SELECT i.isin, i.portfolio_id, NULL, i.quantity, 0
+FROM inventory_entity i
+WHERE NOT EXISTS (
+    SELECT 1 FROM position_cost_entity c WHERE c.isin = i.isin AND c.portfolio_id = i.portfolio_id
+);
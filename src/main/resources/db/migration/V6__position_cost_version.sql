@@ -0,0 +1,4 @@
+-- Row version of the position costs, maintained by the native writes of the OPTIMISTIC and ATOMIC modes
+-- like the balance rows, see BalanceUpdateRepository.
+
+ALTER TABLE position_cost_entity ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
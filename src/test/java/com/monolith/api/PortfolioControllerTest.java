@@ -0,0 +1,73 @@
+package com.monolith.api;
+
+import com.monolith.index.PortfolioSnapshot;
+import com.monolith.service.PortfolioService;
+import com.monolith.valuation.PortfolioValuation;
+import com.monolith.valuation.PositionValuation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static com.monolith.utils.TestUtils.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(PortfolioController.class)
+@AutoConfigureMockMvc
+public class PortfolioControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private PortfolioService portfolioService;
+
+    @Test
+    @DisplayName("Should return buying power and positions of a portfolio")
+    public void whenGetPortfolio_thenReturnSnapshot() throws Exception {
+        // Prepare test data
+        PortfolioSnapshot snapshot = new PortfolioSnapshot(PORTFOLIO_ID, new BigDecimal("4000.00"),
+                Map.of(ISIN_NVIDIA, DEFAULT_QUANTITY));
+
+        // Configure mock
+        when(portfolioService.getPortfolio(PORTFOLIO_ID)).thenReturn(snapshot);
+
+        // Execute and verify
+        mvc.perform(get("/portfolios/" + PORTFOLIO_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.portfolioId").value(PORTFOLIO_ID))
+                .andExpect(jsonPath("$.buyingPower").value(4000.00))
+                .andExpect(jsonPath("$.positions[0].isin").value(ISIN_NVIDIA))
+                .andExpect(jsonPath("$.positions[0].quantity").value(10.00));
+    }
+
+    @Test
+    @DisplayName("Should return valuation with unrealized P&L")
+    public void whenGetValuation_thenReturnValuation() throws Exception {
+        // Prepare test data
+        PositionValuation position = new PositionValuation(ISIN_NVIDIA, DEFAULT_QUANTITY, new BigDecimal("110.00"),
+                new BigDecimal("1100.00"), new BigDecimal("1000.00"));
+        PortfolioValuation valuation = new PortfolioValuation(PORTFOLIO_ID, new BigDecimal("1100.00"),
+                new BigDecimal("1000.00"), List.of(position));
+
+        // Configure mock
+        when(portfolioService.getValuation(PORTFOLIO_ID)).thenReturn(valuation);
+
+        // Execute and verify
+        mvc.perform(get("/portfolios/" + PORTFOLIO_ID + "/valuation"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.marketValue").value(1100.00))
+                .andExpect(jsonPath("$.unrealizedPnl").value(100.00))
+                .andExpect(jsonPath("$.positions[0].unrealizedPnl").value(100.00));
+    }
+}
@@ -2,27 +2,45 @@ package com.monolith.api;
 
 import com.monolith.MarketDataService;
 import com.monolith.OrderStatus;
+import com.monolith.dto.ExecutionStatus;
 import com.monolith.dto.OrderRequest;
+import com.monolith.dto.OrderResponse;
 import com.monolith.exception.InsufficientBuyingPowerException;
 import com.monolith.exception.InsufficientInventoryException;
+import com.monolith.exception.IdempotencyKeyReusedException;
 import com.monolith.exception.OrderNotFoundException;
+import com.monolith.exception.RateLimitExceededException;
+import com.monolith.exception.ValidationException;
+import com.monolith.execution.ExecutionQueue;
+import com.monolith.execution.ExecutionState;
+import com.monolith.idempotency.IdempotencyService;
+import com.monolith.ratelimit.AdaptiveConcurrencyLimiter;
+import com.monolith.ratelimit.RateLimiter;
 import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryQuery;
 import com.monolith.service.BuyingPowerService;
 import com.monolith.service.InventoryService;
 import com.monolith.service.TradingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static com.monolith.OrderSide.BUY;
 import static com.monolith.OrderSide.SELL;
@@ -30,7 +48,20 @@ import static com.monolith.OrderStatus.CREATED;
 import static com.monolith.utils.TestUtils.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,6 +75,18 @@ public class TradingControllerTest {
     @MockBean
     private TradingService tradingService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
+    @MockBean
+    private AdaptiveConcurrencyLimiter executionLimiter;
+
+    @MockBean
+    private ExecutionQueue executionQueue;
+
     @MockBean
     private BuyingPowerService buyingPowerService;
 
@@ -55,6 +98,11 @@ public class TradingControllerTest {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @BeforeEach
+    void passThroughExecutionLimiter() {
+        when(executionLimiter.execute(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+    }
+
     @Nested
     @DisplayName("Create Order Tests")
     class CreateOrderTests {
@@ -102,6 +150,61 @@ public class TradingControllerTest {
                     .andExpect(jsonPath("$.price").exists());
         }
 
+        @Test
+        @DisplayName("Should route a request with an Idempotency-Key through the dedup store")
+        public void whenCreateOrderWithIdempotencyKey_thenReturnStoredResponse() throws Exception {
+            // Prepare test data
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            OrderResponse stored = new OrderResponse(ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY, CREATED);
+
+            // Configure mock
+            when(idempotencyService.createOnce(eq("retry-1"), any(), any(), any())).thenReturn(stored);
+
+            // Execute and verify
+            mvc.perform(post("/orders")
+                            .header("Idempotency-Key", "retry-1")
+                            .content(objectMapper.writeValueAsString(request))
+                            .contentType("application/json"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id").value(ORDER_ID));
+            verifyNoInteractions(tradingService);
+        }
+
+        @Test
+        @DisplayName("Should return 429 with Retry-After when the portfolio is rate limited")
+        public void whenPortfolioRateLimited_thenReturnTooManyRequests() throws Exception {
+            // Prepare test data
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+
+            // Configure mock
+            doThrow(new RateLimitExceededException("Rate limit exceeded for portfolio " + PORTFOLIO_ID, 2))
+                    .when(rateLimiter).acquirePortfolio(PORTFOLIO_ID);
+
+            // Execute and verify
+            createOrder(mvc, objectMapper.writeValueAsString(request))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "2"));
+            verifyNoInteractions(tradingService);
+        }
+
+        @Test
+        @DisplayName("Should return 422 when an Idempotency-Key is reused for a different request")
+        public void whenIdempotencyKeyReused_thenReturnUnprocessableEntity() throws Exception {
+            // Prepare test data
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+
+            // Configure mock
+            when(idempotencyService.createOnce(eq("retry-1"), any(), any(), any()))
+                    .thenThrow(new IdempotencyKeyReusedException("Idempotency-Key retry-1 was already used"));
+
+            // Execute and verify
+            mvc.perform(post("/orders")
+                            .header("Idempotency-Key", "retry-1")
+                            .content(objectMapper.writeValueAsString(request))
+                            .contentType("application/json"))
+                    .andExpect(status().isUnprocessableEntity());
+        }
+
         @Test
         @DisplayName("Should return error when insufficient buying power")
         public void whenInsufficientBuyingPower_thenReturnError() throws Exception {
@@ -134,6 +237,43 @@ public class TradingControllerTest {
                     .andExpect(jsonPath("$.message").value("Insufficient inventory"));
         }
 
+        @Test
+        @DisplayName("Should return an auto-executed order as EXECUTED through the execution limiter")
+        public void whenCreateOrderWithAutoExecute_thenReturnExecutedOrder() throws Exception {
+            // Prepare test data
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            request.setAutoExecute(true);
+            OrderEntity mockOrder = createMockOrderEntity(ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, OrderStatus.EXECUTED,
+                    BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+
+            // Configure mock
+            when(tradingService.createOrder(any(OrderRequest.class))).thenReturn(mockOrder);
+
+            // Execute and verify
+            createOrder(mvc, objectMapper.writeValueAsString(request))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("EXECUTED"));
+            verify(executionLimiter).execute(any());
+        }
+
+        @Test
+        @DisplayName("Should create an order without auto-execution outside the execution limiter")
+        public void whenCreateOrderWithoutAutoExecute_thenBypassExecutionLimiter() throws Exception {
+            // Prepare test data
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            OrderEntity mockOrder = createMockOrderEntity(ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED,
+                    BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+
+            // Configure mock
+            when(tradingService.createOrder(any(OrderRequest.class))).thenReturn(mockOrder);
+
+            // Execute and verify
+            createOrder(mvc, objectMapper.writeValueAsString(request))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("CREATED"));
+            verify(executionLimiter, never()).execute(any());
+        }
+
         @ParameterizedTest
         @ValueSource(strings = {"US67066G1040", "US0378331005", "US5949181045"})
         @DisplayName("Should handle different ISINs for BUY orders")
@@ -282,6 +422,38 @@ public class TradingControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("Bulk Cancel Tests")
+    class BulkCancelTests {
+
+        @Test
+        @DisplayName("Should cancel the open orders of a portfolio and return their count and IDs")
+        public void whenCancelPortfolioOrders_thenReturnCancelledIds() throws Exception {
+            // Configure mock
+            when(tradingService.cancelOrders(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(List.of(1L, 2L));
+
+            // Execute and verify
+            mvc.perform(delete("/orders").param("portfolioId", PORTFOLIO_ID).param("isin", ISIN_NVIDIA))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.cancelled").value(2))
+                    .andExpect(jsonPath("$.orderIds[0]").value(1))
+                    .andExpect(jsonPath("$.orderIds[1]").value(2));
+        }
+
+        @Test
+        @DisplayName("Should return error when no filter is given")
+        public void whenCancelWithoutFilter_thenReturnError() throws Exception {
+            // Configure mock
+            when(tradingService.cancelOrders(null, null))
+                    .thenThrow(new ValidationException("Bulk cancel needs a portfolio ID or an ISIN"));
+
+            // Execute and verify
+            mvc.perform(delete("/orders"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Bulk cancel needs a portfolio ID or an ISIN"));
+        }
+    }
+
     @Nested
     @DisplayName("Execute Order Tests")
     class ExecuteOrderTests {
@@ -411,5 +583,94 @@ public class TradingControllerTest {
                     .andExpect(jsonPath("$.isin").value(isin))
                     .andExpect(jsonPath("$.status").value("EXECUTED"));
         }
+
+        @Test
+        @DisplayName("Should queue an asynchronous execution and answer 202 with the status URL")
+        public void whenExecuteOrderAsync_thenReturnAccepted() throws Exception {
+            // Configure mock
+            when(executionQueue.submit(ORDER_ID)).thenReturn(new ExecutionStatus(ORDER_ID, PORTFOLIO_ID,
+                    ExecutionState.QUEUED, null, null, OffsetDateTime.now()));
+
+            // Execute and verify
+            mvc.perform(put("/orders/" + ORDER_ID + "/execute").param("async", "true"))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().string("Location", "/orders/" + ORDER_ID + "/execution"))
+                    .andExpect(jsonPath("$.orderId").value(ORDER_ID))
+                    .andExpect(jsonPath("$.state").value("QUEUED"));
+            verify(tradingService, never()).executeOrder(anyLong());
+            verifyNoInteractions(executionLimiter);
+        }
+
+        @Test
+        @DisplayName("Should return 404 for the status of an execution that was never queued")
+        public void whenGetUnknownExecution_thenReturnNotFound() throws Exception {
+            // Configure mock
+            when(executionQueue.getStatus(ORDER_ID))
+                    .thenThrow(new OrderNotFoundException("No execution of order %d was queued", ORDER_ID));
+
+            // Execute and verify
+            mvc.perform(get("/orders/" + ORDER_ID + "/execution"))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.message").value("No execution of order " + ORDER_ID + " was queued"));
+        }
+    }
+
+    @Nested
+    @DisplayName("List Orders Tests")
+    class ListOrdersTests {
+
+        @Test
+        @DisplayName("Should stream a full page with a cursor to the next one")
+        public void whenListFullPage_thenReturnNextCursor() throws Exception {
+            // Prepare mock orders
+            OrderEntity first = createMockOrderEntity(1L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity second = createMockOrderEntity(2L, PORTFOLIO_ID, ISIN_APPLE, CREATED, SELL, DEFAULT_QUANTITY, PRICE_APPLE);
+
+            // Configure mock
+            when(tradingService.forEachOrder(any(), any())).thenAnswer(invocation -> {
+                Consumer<OrderEntity> consumer = invocation.getArgument(1);
+                consumer.accept(first);
+                consumer.accept(second);
+                return 2;
+            });
+
+            // Execute and verify
+            MvcResult result = mvc.perform(get("/orders").param("portfolioId", PORTFOLIO_ID).param("limit", "2"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.orders.length()").value(2))
+                    .andExpect(jsonPath("$.orders[1].price").value(200.00))
+                    .andExpect(jsonPath("$.nextCursor").value(2));
+        }
+
+        @Test
+        @DisplayName("Should pass filters and return no cursor on the last page")
+        public void whenListLastPage_thenReturnNoCursor() throws Exception {
+            // Configure mock
+            ArgumentCaptor<OrderHistoryQuery> queryCaptor = ArgumentCaptor.forClass(OrderHistoryQuery.class);
+            when(tradingService.forEachOrder(queryCaptor.capture(), any())).thenReturn(0);
+
+            // Execute and verify
+            MvcResult result = mvc.perform(get("/orders")
+                            .param("portfolioId", PORTFOLIO_ID)
+                            .param("status", "EXECUTED")
+                            .param("isin", ISIN_NVIDIA)
+                            .param("from", "2024-01-01T00:00:00Z")
+                            .param("after", "42"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.orders").isEmpty())
+                    .andExpect(jsonPath("$.nextCursor").isEmpty());
+
+            OrderHistoryQuery query = queryCaptor.getValue();
+            assertThat(query.getStatus()).isEqualTo(OrderStatus.EXECUTED);
+            assertThat(query.getIsin()).isEqualTo(ISIN_NVIDIA);
+            assertThat(query.getAfterId()).isEqualTo(42L);
+            assertThat(query.getLimit()).isEqualTo(100);
+        }
     }
-}
\ No newline at end of file
+}
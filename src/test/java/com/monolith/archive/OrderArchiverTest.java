@@ -0,0 +1,112 @@
+package com.monolith.archive;
+
+import com.monolith.OrderStatus;
+import com.monolith.repository.OrderArchiveRepository;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryQuery;
+import com.monolith.repository.OrderHistoryRepository;
+import com.monolith.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CANCELLED;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.DEFAULT_QUANTITY;
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static com.monolith.utils.TestUtils.PRICE_NVIDIA;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the archival statements and the history over both tables against the migrated schema
+ * of the active storage profile.
+ */
+@DataJpaTest(properties = {
+        "trading.archive.min-age=-PT1M",
+        "trading.archive.batch-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OrderArchiver.class, OrderArchiveRepository.class, OrderHistoryRepository.class, SimpleMeterRegistry.class})
+class OrderArchiverTest {
+
+    private static final String PORTFOLIO_ID = "archive-portfolio";
+
+    @Autowired
+    private OrderArchiver orderArchiver;
+
+    @Autowired
+    private OrderArchiveRepository orderArchiveRepository;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Should move only terminal orders to the archive, in batches")
+    void shouldArchiveTerminalOrders() {
+        // Arrange
+        OrderEntity open = save(CREATED);
+        OrderEntity executed = save(EXECUTED);
+        OrderEntity cancelled = save(CANCELLED);
+        OrderEntity executedLater = save(EXECUTED);
+
+        // Act
+        int archived = orderArchiver.archive();
+        entityManager.clear();
+
+        // Assert
+        // Other tests may leave terminal orders in a shared database
+        assertThat(archived).isGreaterThanOrEqualTo(3);
+        assertThat(orderRepository.findById(open.getId())).isPresent();
+        assertThat(orderRepository.findAllById(List.of(executed.getId(), cancelled.getId(), executedLater.getId()))).isEmpty();
+        assertThat(orderArchiveRepository.findById(cancelled.getId()))
+                .hasValueSatisfying(order -> assertThat(order.getStatus()).isEqualTo(CANCELLED));
+    }
+
+    @Test
+    @DisplayName("Should page the history across the order table and the archive in ID order")
+    void shouldPageHistoryAcrossArchive() {
+        // Arrange
+        OrderEntity executed = save(EXECUTED);
+        OrderEntity open = save(CREATED);
+        OrderEntity cancelled = save(CANCELLED);
+        orderArchiver.archive();
+
+        // Act
+        List<Long> firstPage = history(null, 2);
+        List<Long> secondPage = history(firstPage.get(1), 2);
+
+        // Assert
+        assertThat(firstPage).containsExactly(executed.getId(), open.getId());
+        assertThat(secondPage).containsExactly(cancelled.getId());
+    }
+
+    private OrderEntity save(OrderStatus status) {
+        OrderEntity order = orderRepository.save(
+                new OrderEntity(PORTFOLIO_ID, ISIN_NVIDIA, status, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA));
+        entityManager.flush();
+        return order;
+    }
+
+    private List<Long> history(Long afterId, int limit) {
+        List<Long> ids = new ArrayList<>();
+        orderHistoryRepository.forEachOrder(new OrderHistoryQuery(PORTFOLIO_ID, null, null, null, null, afterId, limit),
+                order -> ids.add(order.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,174 @@
+package com.monolith.benchmark;
+
+import com.monolith.OrderSide;
+import com.monolith.dto.OrderRequest;
+import com.monolith.repository.OrderEntity;
+import com.monolith.service.BuyingPowerService;
+import com.monolith.service.CostBasisService;
+import com.monolith.service.InventoryService;
+import com.monolith.service.OrderService;
+import com.monolith.service.TradingService;
+import com.monolith.service.WriteMode;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static com.monolith.utils.TestUtils.createOrderRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the JDBC statements one order issues in every write mode, from creation to execution.
+ * The table is logged, the assertions only pin the statements the persist mode must save.
+ * The write-behind row only counts statements on the request path; its batched flushes bypass Hibernate.
+ * The deferred row counts the ledger appends but not the settlement batches that net them later.
+ * The elapsed time of the whole sequence is logged too, run with a storage profile to compare backends,
+ * e.g. {@code mvn test -P postgres -Dtest=StatementCountBenchmarkTest}.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "trading.write-behind.journal-dir=target/write-behind",
+        "trading.rate-limit.portfolio.rate=100000",
+        "trading.rate-limit.portfolio.burst=100000"
+})
+class StatementCountBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementCountBenchmarkTest.class);
+
+    @Autowired
+    private TradingService tradingService;
+
+    @Autowired
+    private BuyingPowerService buyingPowerService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CostBasisService costBasisService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    @DisplayName("Should issue fewer statements per order in the persist mode than in the merge mode")
+    void shouldCountStatementsPerOrder() throws SQLException {
+        // Warm up, which also allocates the order ID block so no step pays for the sequence
+        runScenario(WriteMode.MERGE, "warm-up");
+
+        Map<WriteMode, Map<String, Long>> counts = new EnumMap<>(WriteMode.class);
+        Map<WriteMode, Long> elapsedMicros = new EnumMap<>(WriteMode.class);
+        for (WriteMode writeMode : WriteMode.values()) {
+            long start = System.nanoTime();
+            counts.put(writeMode, runScenario(writeMode, "benchmark-" + writeMode));
+            elapsedMicros.put(writeMode, (System.nanoTime() - start) / 1_000);
+        }
+        setWriteMode(WriteMode.MERGE);
+
+        StringBuilder table = new StringBuilder(String.format("%n%-28s", "statements per order"));
+        counts.keySet().forEach(writeMode -> table.append(String.format("%14s", writeMode)));
+        counts.get(WriteMode.MERGE).keySet().forEach(step -> {
+            table.append(String.format("%n%-28s", step));
+            counts.values().forEach(modeCounts -> table.append(String.format("%14d", modeCounts.get(step))));
+        });
+        table.append(String.format("%n%-28s", "elapsed µs, all steps"));
+        elapsedMicros.values().forEach(micros -> table.append(String.format("%14d", micros)));
+        log.info("Statement count benchmark on {}:{}", databaseName(), table);
+
+        Map<String, Long> merge = counts.get(WriteMode.MERGE);
+        Map<String, Long> persist = counts.get(WriteMode.PERSIST);
+        // Creating an order only reads the portfolio, which its first execution writes
+        assertThat(merge.get("create buy, new portfolio")).isEqualTo(merge.get("create buy"));
+        assertThat(persist.get("create buy, new portfolio")).isEqualTo(merge.get("create buy, new portfolio"));
+        assertThat(persist.get("execute buy, new position")).isEqualTo(merge.get("execute buy, new position") - 2);
+        assertThat(persist.get("execute buy, held position")).isEqualTo(merge.get("execute buy, held position"));
+        // Auto-execution skips the pre-checks and the read of the order it just created
+        assertThat(merge.get("create and execute buy"))
+                .isLessThan(merge.get("create buy") + merge.get("execute buy, held position"));
+    }
+
+    /**
+     * Runs the same order sequence on a fresh portfolio and records the statements of every step.
+     */
+    private Map<String, Long> runScenario(WriteMode writeMode, String portfolioId) {
+        setWriteMode(writeMode);
+        Map<String, Long> counts = new LinkedHashMap<>();
+
+        OrderEntity firstBuy = count(counts, "create buy, new portfolio",
+                () -> tradingService.createOrder(createOrderRequest(portfolioId, ISIN_NVIDIA, OrderSide.BUY, BigDecimal.TEN)));
+        count(counts, "execute buy, new position", () -> tradingService.executeOrder(firstBuy.getId()));
+
+        OrderEntity secondBuy = count(counts, "create buy",
+                () -> tradingService.createOrder(createOrderRequest(portfolioId, ISIN_NVIDIA, OrderSide.BUY, BigDecimal.TEN)));
+        count(counts, "execute buy, held position", () -> tradingService.executeOrder(secondBuy.getId()));
+
+        OrderEntity partialSell = count(counts, "create sell",
+                () -> tradingService.createOrder(createOrderRequest(portfolioId, ISIN_NVIDIA, OrderSide.SELL, BigDecimal.TEN)));
+        count(counts, "execute sell, partial", () -> tradingService.executeOrder(partialSell.getId()));
+
+        OrderEntity finalSell = tradingService.createOrder(createOrderRequest(portfolioId, ISIN_NVIDIA, OrderSide.SELL, BigDecimal.TEN));
+        count(counts, "execute sell, sold out", () -> tradingService.executeOrder(finalSell.getId()));
+
+        OrderEntity cancelled = tradingService.createOrder(createOrderRequest(portfolioId, ISIN_NVIDIA, OrderSide.BUY, BigDecimal.ONE));
+        count(counts, "cancel", () -> tradingService.cancelOrder(cancelled.getId()));
+
+        OrderRequest autoExecuted = createOrderRequest(portfolioId, ISIN_NVIDIA, OrderSide.BUY, BigDecimal.TEN);
+        autoExecuted.setAutoExecute(true);
+        count(counts, "create and execute buy", () -> tradingService.createOrder(autoExecuted));
+        return counts;
+    }
+
+    private <T> T count(Map<String, Long> counts, String step, Supplier<T> action) {
+        statistics.clear();
+        T result = action.get();
+        counts.put(step, statistics.getPrepareStatementCount());
+        return result;
+    }
+
+    private String databaseName() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            return metaData.getDatabaseProductName() + " " + metaData.getDatabaseProductVersion();
+        }
+    }
+
+    private void setWriteMode(WriteMode writeMode) {
+        for (Object service : new Object[]{buyingPowerService, inventoryService, orderService, costBasisService}) {
+            Object target = AopTestUtils.getUltimateTargetObject(service);
+            ReflectionTestUtils.setField(target, "WRITE_MODE", writeMode);
+        }
+    }
+}
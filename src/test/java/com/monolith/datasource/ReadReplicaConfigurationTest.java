@@ -0,0 +1,77 @@
+package com.monolith.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReplicaConfigurationTest {
+
+    private DataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new ReadReplicaConfiguration().dataSource(h2("primary"), h2("replica"));
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    @DisplayName("Should run read-only transactions on the read data source")
+    void shouldRouteReadOnlyTransactionsToReplica() {
+        // Arrange
+        transactionTemplate.setReadOnly(true);
+
+        // Act
+        String url = transactionTemplate.execute(status -> connectedUrl());
+
+        // Assert
+        assertThat(url).contains("replica");
+    }
+
+    @Test
+    @DisplayName("Should run read-write transactions on the primary")
+    void shouldRouteReadWriteTransactionsToPrimary() {
+        // Act
+        String url = transactionTemplate.execute(status -> connectedUrl());
+
+        // Assert
+        assertThat(url).contains("primary");
+    }
+
+    @Test
+    @DisplayName("Should run work outside a transaction on the primary")
+    void shouldRouteNonTransactionalWorkToPrimary() {
+        // Act
+        String url = connectedUrl();
+
+        // Assert
+        assertThat(url).contains("primary");
+    }
+
+    private String connectedUrl() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return connection.getMetaData().getURL();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-routing;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,218 @@
+package com.monolith.execution;
+
+import com.monolith.dto.ExecutionStatus;
+import com.monolith.exception.InsufficientBuyingPowerException;
+import com.monolith.exception.InvalidOrderStatusException;
+import com.monolith.exception.OrderNotFoundException;
+import com.monolith.exception.RateLimitExceededException;
+import com.monolith.repository.OrderEntity;
+import com.monolith.service.TradingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExecutionQueueTest {
+
+    private static final long TIMEOUT_MS = 2000;
+
+    @Mock
+    private TradingService tradingService;
+
+    @Mock
+    private WebhookNotifier webhookNotifier;
+
+    private ExecutionQueue executionQueue;
+
+    private ExecutionQueue createQueue(int workers, int queueCapacity) {
+        executionQueue = new ExecutionQueue(tradingService, webhookNotifier, new SimpleMeterRegistry(),
+                workers, queueCapacity, Duration.ofMinutes(1), 1000, TIMEOUT_MS);
+        return executionQueue;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executionQueue != null) {
+            executionQueue.close();
+        }
+    }
+
+    private OrderEntity givenOpenOrder(Long id, String portfolioId) {
+        OrderEntity order = createMockOrderEntity(id, portfolioId, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+        when(tradingService.getOrder(id)).thenReturn(order);
+        return order;
+    }
+
+    private static OrderEntity executed(OrderEntity order) {
+        return createMockOrderEntity(order.getId(), order.getPortfolioId(), order.getIsin(), EXECUTED,
+                order.getSide(), order.getQuantity(), order.getPrice());
+    }
+
+    private ExecutionStatus awaitOutcome() {
+        ArgumentCaptor<ExecutionStatus> outcome = ArgumentCaptor.forClass(ExecutionStatus.class);
+        verify(webhookNotifier, timeout(TIMEOUT_MS)).notify(outcome.capture());
+        return outcome.getValue();
+    }
+
+    @Nested
+    @DisplayName("Outcome Tests")
+    class OutcomeTests {
+
+        @Test
+        @DisplayName("Should execute a queued order and report it as EXECUTED")
+        void shouldExecuteQueuedOrder() {
+            // Arrange
+            createQueue(2, 10);
+            OrderEntity order = givenOpenOrder(ORDER_ID, PORTFOLIO_ID);
+            when(tradingService.executeOrder(ORDER_ID)).thenReturn(executed(order));
+
+            // Act
+            ExecutionStatus queued = executionQueue.submit(ORDER_ID);
+            ExecutionStatus outcome = awaitOutcome();
+
+            // Assert
+            assertThat(queued.getState()).isEqualTo(ExecutionState.QUEUED);
+            assertThat(outcome.getState()).isEqualTo(ExecutionState.EXECUTED);
+            assertThat(outcome.getOrderStatus()).isEqualTo(EXECUTED);
+            assertThat(executionQueue.getStatus(ORDER_ID).getState()).isEqualTo(ExecutionState.EXECUTED);
+        }
+
+        @Test
+        @DisplayName("Should report a rejected execution with its reason and allow queueing it again")
+        void shouldReportRejection() {
+            // Arrange
+            createQueue(1, 10);
+            OrderEntity order = givenOpenOrder(ORDER_ID, PORTFOLIO_ID);
+            when(tradingService.executeOrder(ORDER_ID))
+                    .thenThrow(new InsufficientBuyingPowerException("Insufficient buying power"))
+                    .thenReturn(executed(order));
+
+            // Act
+            executionQueue.submit(ORDER_ID);
+            ExecutionStatus outcome = awaitOutcome();
+            ExecutionStatus requeued = executionQueue.submit(ORDER_ID);
+
+            // Assert
+            assertThat(outcome.getState()).isEqualTo(ExecutionState.REJECTED);
+            assertThat(outcome.getError()).isEqualTo("Insufficient buying power");
+            assertThat(requeued.getState()).isEqualTo(ExecutionState.QUEUED);
+            verify(tradingService, timeout(TIMEOUT_MS).times(2)).executeOrder(ORDER_ID);
+        }
+    }
+
+    @Nested
+    @DisplayName("Submission Tests")
+    class SubmissionTests {
+
+        @Test
+        @DisplayName("Should reject an order that is no longer CREATED without queueing it")
+        void shouldRejectClosedOrder() {
+            // Arrange
+            createQueue(1, 10);
+            when(tradingService.getOrder(ORDER_ID)).thenReturn(createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA));
+
+            // Act & Assert
+            assertThatThrownBy(() -> executionQueue.submit(ORDER_ID))
+                    .isInstanceOf(InvalidOrderStatusException.class);
+            assertThatThrownBy(() -> executionQueue.getStatus(ORDER_ID))
+                    .isInstanceOf(OrderNotFoundException.class);
+            verify(tradingService, never()).executeOrder(any());
+        }
+
+        @Test
+        @DisplayName("Should return the pending execution instead of queueing an order twice")
+        void shouldNotQueueOrderTwice() {
+            // Arrange
+            createQueue(1, 10);
+            OrderEntity order = givenOpenOrder(ORDER_ID, PORTFOLIO_ID);
+            CountDownLatch release = new CountDownLatch(1);
+            when(tradingService.executeOrder(ORDER_ID)).thenAnswer(invocation -> {
+                release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return executed(order);
+            });
+
+            // Act
+            ExecutionStatus first = executionQueue.submit(ORDER_ID);
+            ExecutionStatus second = executionQueue.submit(ORDER_ID);
+            release.countDown();
+            awaitOutcome();
+
+            // Assert
+            assertThat(first.getState()).isEqualTo(ExecutionState.QUEUED);
+            assertThat(second.getState().isDone()).isFalse();
+            verify(tradingService, times(1)).executeOrder(ORDER_ID);
+        }
+
+        @Test
+        @DisplayName("Should reject an execution when the queue of the portfolio is full")
+        void shouldRejectWhenQueueIsFull() {
+            // Arrange
+            createQueue(1, 1);
+            CountDownLatch release = new CountDownLatch(1);
+            for (long id = 1; id <= 3; id++) {
+                givenOpenOrder(id, PORTFOLIO_ID);
+            }
+            when(tradingService.executeOrder(any())).thenAnswer(invocation -> {
+                release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return executed(tradingService.getOrder(invocation.getArgument(0)));
+            });
+            executionQueue.submit(1L);
+            verify(tradingService, timeout(TIMEOUT_MS)).executeOrder(1L);
+            executionQueue.submit(2L);
+
+            // Act & Assert
+            assertThatThrownBy(() -> executionQueue.submit(3L))
+                    .isInstanceOf(RateLimitExceededException.class)
+                    .hasMessageContaining("is full");
+            assertThatThrownBy(() -> executionQueue.getStatus(3L))
+                    .isInstanceOf(OrderNotFoundException.class);
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should run the executions of one portfolio in the order they were queued")
+    void shouldKeepPortfolioOrder() {
+        // Arrange
+        createQueue(4, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        OrderEntity first = givenOpenOrder(1L, PORTFOLIO_ID);
+        OrderEntity second = givenOpenOrder(2L, PORTFOLIO_ID);
+        when(tradingService.executeOrder(1L)).thenAnswer(invocation -> {
+            release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return executed(first);
+        });
+        when(tradingService.executeOrder(2L)).thenReturn(executed(second));
+
+        // Act
+        executionQueue.submit(1L);
+        executionQueue.submit(2L);
+
+        // Assert
+        verify(tradingService, after(200).never()).executeOrder(2L);
+        release.countDown();
+        InOrder inOrder = inOrder(tradingService);
+        inOrder.verify(tradingService, timeout(TIMEOUT_MS)).executeOrder(1L);
+        inOrder.verify(tradingService, timeout(TIMEOUT_MS)).executeOrder(2L);
+    }
+}
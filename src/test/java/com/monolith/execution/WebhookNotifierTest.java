@@ -0,0 +1,117 @@
+package com.monolith.execution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.dto.ExecutionStatus;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.ORDER_ID;
+import static com.monolith.utils.TestUtils.PORTFOLIO_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookNotifierTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<ExecutionStatus> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private HttpServer server;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hook", exchange -> {
+            int status;
+            if (failuresLeft.getAndDecrement() > 0) {
+                status = 503;
+            } else {
+                received.add(objectMapper.readValue(exchange.getRequestBody(), ExecutionStatus.class));
+                status = 204;
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private WebhookNotifier notifier(int maxAttempts) {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/hook";
+        return new WebhookNotifier(objectMapper, new SimpleMeterRegistry(), url, 1000, maxAttempts, 10);
+    }
+
+    private static ExecutionStatus executed() {
+        return new ExecutionStatus(ORDER_ID, PORTFOLIO_ID, ExecutionState.EXECUTED, EXECUTED, null, OffsetDateTime.now());
+    }
+
+    @Test
+    @DisplayName("Should post the outcome as JSON to the webhook")
+    void shouldPostOutcome() throws Exception {
+        // Act
+        boolean accepted = notifier(1).notify(executed()).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(accepted).isTrue();
+        assertThat(received).singleElement().satisfies(status -> {
+            assertThat(status.getOrderId()).isEqualTo(ORDER_ID);
+            assertThat(status.getState()).isEqualTo(ExecutionState.EXECUTED);
+            assertThat(status.getOrderStatus()).isEqualTo(EXECUTED);
+        });
+    }
+
+    @Test
+    @DisplayName("Should retry a delivery the webhook failed")
+    void shouldRetryFailedDelivery() throws Exception {
+        // Arrange
+        failuresLeft.set(2);
+
+        // Act
+        boolean accepted = notifier(3).notify(executed()).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(accepted).isTrue();
+        assertThat(received).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should give up after the maximum number of attempts")
+    void shouldGiveUpAfterMaxAttempts() throws Exception {
+        // Arrange
+        failuresLeft.set(5);
+
+        // Act
+        boolean accepted = notifier(2).notify(executed()).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(accepted).isFalse();
+        assertThat(received).isEmpty();
+        assertThat(failuresLeft.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should send nothing without a webhook URL")
+    void shouldSkipWithoutUrl() throws Exception {
+        // Arrange
+        WebhookNotifier notifier = new WebhookNotifier(objectMapper, new SimpleMeterRegistry(), "", 1000, 3, 10);
+
+        // Act & Assert
+        assertThat(notifier.notify(executed()).get()).isFalse();
+    }
+}
@@ -0,0 +1,256 @@
+package com.monolith.expiry;
+
+import com.monolith.TimeInForce;
+import com.monolith.dto.OrderRequest;
+import com.monolith.exception.ValidationException;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderExpiryRepository;
+import com.monolith.service.OrderService;
+import com.monolith.service.TransactionRetrier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CANCELLED;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderExpiryServiceTest {
+
+    private static final long TICK = 1000;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderExpiryRepository orderExpiryRepository;
+
+    @Mock
+    private TransactionRetrier transactionRetrier;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderExpiryService orderExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        orderExpiryService = new OrderExpiryService(orderService, orderExpiryRepository, transactionRetrier,
+                transactionManager, new SimpleMeterRegistry(), TimeInForce.GTC, "22:00", ZoneOffset.UTC, TICK, 2);
+    }
+
+    private static List<Long> advance(TimingWheel wheel, long nowMillis) {
+        List<Long> due = new ArrayList<>();
+        wheel.advance(nowMillis, due::add);
+        return due;
+    }
+
+    @Nested
+    @DisplayName("Timing Wheel Tests")
+    class TimingWheelTests {
+
+        @Test
+        @DisplayName("Should hand over an ID on the tick of its deadline, never before")
+        void shouldExpireOnDeadline() {
+            TimingWheel wheel = new TimingWheel(TICK, 8, 3, 0);
+            wheel.add(1, 2500);
+
+            assertThat(advance(wheel, 2999)).isEmpty();
+            assertThat(advance(wheel, 3000)).containsExactly(1L);
+            assertThat(wheel.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should cascade far deadlines through the upper levels")
+        void shouldCascadeFarDeadlines() {
+            TimingWheel wheel = new TimingWheel(TICK, 8, 3, 0);
+            wheel.add(1, 9_000);
+            wheel.add(2, 70_000);
+            wheel.add(3, 64_000);
+
+            assertThat(advance(wheel, 8_000)).isEmpty();
+            assertThat(advance(wheel, 9_000)).containsExactly(1L);
+            assertThat(advance(wheel, 63_000)).isEmpty();
+            assertThat(advance(wheel, 64_000)).containsExactly(3L);
+            assertThat(advance(wheel, 69_000)).isEmpty();
+            assertThat(advance(wheel, 70_000)).containsExactly(2L);
+        }
+
+        @Test
+        @DisplayName("Should keep deadlines beyond the top level until they are due")
+        void shouldHoldDeadlinesBeyondTopLevel() {
+            TimingWheel wheel = new TimingWheel(TICK, 4, 2, 0);
+            wheel.add(1, 50_000);
+
+            assertThat(advance(wheel, 49_000)).isEmpty();
+            assertThat(wheel.size()).isEqualTo(1);
+            assertThat(advance(wheel, 50_000)).containsExactly(1L);
+        }
+
+        @Test
+        @DisplayName("Should hand over past deadlines on the next advance")
+        void shouldExpirePastDeadlines() {
+            TimingWheel wheel = new TimingWheel(TICK, 8, 3, 10_000);
+            wheel.add(1, 5_000);
+
+            assertThat(advance(wheel, 10_000)).containsExactly(1L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Time In Force Tests")
+    class TimeInForceTests {
+
+        @Test
+        @DisplayName("Should not expire an order without a time in force")
+        void shouldDefaultToGoodTillCancelled() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+
+            // Act & Assert
+            assertThat(orderExpiryService.getTimeInForce(request)).isEqualTo(TimeInForce.GTC);
+            assertThat(orderExpiryService.getExpiry(request)).isNull();
+        }
+
+        @Test
+        @DisplayName("Should expire a DAY order at the next end of the trading day")
+        void shouldExpireDayOrderAtDayEnd() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            request.setTimeInForce(TimeInForce.DAY);
+
+            // Act
+            OffsetDateTime expiresAt = orderExpiryService.getExpiry(request);
+
+            // Assert
+            assertThat(expiresAt.getHour()).isEqualTo(22);
+            assertThat(expiresAt).isAfter(OffsetDateTime.now()).isBefore(OffsetDateTime.now().plusDays(1));
+        }
+
+        @Test
+        @DisplayName("Should reject a GTD order without an expiry time or with one in the past")
+        void shouldValidateGoodTillDate() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            request.setTimeInForce(TimeInForce.GTD);
+
+            // Act & Assert
+            assertThatThrownBy(() -> orderExpiryService.getExpiry(request))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessage("Expiry time is required for GTD orders");
+
+            request.setExpireAt(OffsetDateTime.now().minusMinutes(1));
+            assertThatThrownBy(() -> orderExpiryService.getExpiry(request))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessageContaining("in the past");
+        }
+
+        @Test
+        @DisplayName("Should reject an expiry time on an order that is not GTD")
+        void shouldRejectExpiryTimeWithoutGoodTillDate() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            request.setTimeInForce(TimeInForce.DAY);
+            request.setExpireAt(OffsetDateTime.now().plusDays(1));
+
+            // Act & Assert
+            assertThatThrownBy(() -> orderExpiryService.getExpiry(request))
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Expiry Tests")
+    class ExpiryTests {
+
+        @BeforeEach
+        void setUp() {
+            when(transactionRetrier.execute(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        }
+
+        @Test
+        @DisplayName("Should cancel the due orders in batches")
+        @SuppressWarnings("unchecked")
+        void shouldExpireDueOrdersInBatches() {
+            // Arrange
+            long now = System.currentTimeMillis();
+            OffsetDateTime expiresAt = OffsetDateTime.now().plusSeconds(5);
+            for (long id = 1; id <= 3; id++) {
+                orderExpiryService.schedule(createMockOrderEntity(
+                        id, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA), expiresAt);
+            }
+            List<Long> expired = new ArrayList<>();
+            when(orderService.cancelOrders(any())).thenAnswer(invocation -> {
+                Collection<Long> ids = invocation.getArgument(0);
+                expired.addAll(ids);
+                return ids.stream().map(id -> createMockOrderEntity(
+                        id, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA)).toList();
+            });
+
+            // Act
+            int beforeDeadline = orderExpiryService.expireDueOrders(now);
+            int afterDeadline = orderExpiryService.expireDueOrders(now + 7_000);
+
+            // Assert
+            assertThat(beforeDeadline).isZero();
+            assertThat(afterDeadline).isEqualTo(3);
+            assertThat(expired).containsExactlyInAnyOrder(1L, 2L, 3L);
+            verify(orderService, times(2)).cancelOrders(any(Collection.class));
+            verify(orderExpiryRepository, times(3)).save(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should retry a failed batch on the next tick")
+        void shouldRetryFailedBatch() {
+            // Arrange
+            long now = System.currentTimeMillis();
+            orderExpiryService.schedule(createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA),
+                    OffsetDateTime.now().plusSeconds(1));
+            OrderEntity cancelled = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderService.cancelOrders(List.of(ORDER_ID)))
+                    .thenThrow(new DataAccessResourceFailureException("Database unavailable"))
+                    .thenReturn(List.of(cancelled));
+
+            // Act
+            int failed = orderExpiryService.expireDueOrders(now + 3_000);
+            int retried = orderExpiryService.expireDueOrders(now + 4_000);
+
+            // Assert
+            assertThat(failed).isZero();
+            assertThat(retried).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should not store an expiry for an order that does not expire")
+    void shouldSkipOrdersWithoutExpiry() {
+        // Act
+        orderExpiryService.schedule(createMockOrderEntity(
+                ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA), null);
+
+        // Assert
+        verifyNoInteractions(orderExpiryRepository);
+    }
+}
@@ -0,0 +1,111 @@
+package com.monolith.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.repository.InventoryEntity;
+import com.monolith.repository.InventoryEntityId;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryQuery;
+import com.monolith.service.InventoryService;
+import com.monolith.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    private ExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ExportService(orderService, inventoryService, new ObjectMapper());
+        ReflectionTestUtils.setField(exportService, "CHUNK_SIZE", 2);
+    }
+
+    @Nested
+    @DisplayName("Order Export Tests")
+    class OrderExportTests {
+
+        @Test
+        @DisplayName("Should walk chunks by last seen ID until a short chunk")
+        void shouldWalkChunks() throws Exception {
+            // Arrange
+            ArgumentCaptor<OrderHistoryQuery> queries = ArgumentCaptor.forClass(OrderHistoryQuery.class);
+            when(orderService.forEachOrder(queries.capture(), any()))
+                    .thenAnswer(invocation -> emitOrders(invocation.getArgument(1), 1L, 2L))
+                    .thenAnswer(invocation -> emitOrders(invocation.getArgument(1), 3L));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            // Act
+            long total = exportService.exportOrders(ExportFormat.NDJSON, output);
+
+            // Assert
+            assertThat(total).isEqualTo(3);
+            assertThat(queries.getAllValues()).extracting(OrderHistoryQuery::getAfterId).containsExactly(null, 2L);
+            String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+            assertThat(lines).hasSize(3);
+            assertThat(lines[0]).isEqualTo("{\"id\":1,\"portfolioId\":\"portfolio-id-1\",\"isin\":\"US67066G1040\","
+                    + "\"side\":\"BUY\",\"quantity\":10.00,\"price\":100.00,\"status\":\"CREATED\"}");
+        }
+
+        private int emitOrders(Consumer<OrderEntity> consumer, Long... ids) {
+            for (Long id : ids) {
+                consumer.accept(createMockOrderEntity(id, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY,
+                        DEFAULT_QUANTITY, PRICE_NVIDIA));
+            }
+            return ids.length;
+        }
+    }
+
+    @Nested
+    @DisplayName("Position Export Tests")
+    class PositionExportTests {
+
+        @Test
+        @DisplayName("Should write CSV with a header and quote fields that need it")
+        void shouldWriteCsv() throws Exception {
+            // Arrange
+            when(inventoryService.forEachPosition(isNull(), anyInt(), any())).thenAnswer(invocation -> {
+                Consumer<InventoryEntity> consumer = invocation.getArgument(2);
+                consumer.accept(new InventoryEntity("fund \"A\", EU", ISIN_NVIDIA, BigDecimal.TEN));
+                return 1;
+            });
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            // Act
+            long total = exportService.exportPositions(ExportFormat.CSV, output);
+
+            // Assert
+            assertThat(total).isEqualTo(1);
+            assertThat(output.toString(StandardCharsets.UTF_8))
+                    .isEqualTo("portfolioId,isin,quantity\r\n\"fund \"\"A\"\", EU\",US67066G1040,10\r\n");
+            verify(inventoryService, never()).forEachPosition(any(InventoryEntityId.class), anyInt(), any());
+        }
+    }
+}
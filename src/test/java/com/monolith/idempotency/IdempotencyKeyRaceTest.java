@@ -0,0 +1,122 @@
+package com.monolith.idempotency;
+
+import com.monolith.dto.OrderRequest;
+import com.monolith.dto.OrderResponse;
+import com.monolith.repository.IdempotencyKeyRepository;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.PersistOrUpdateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.utils.TestUtils.DEFAULT_QUANTITY;
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static com.monolith.utils.TestUtils.PORTFOLIO_ID;
+import static com.monolith.utils.TestUtils.PRICE_NVIDIA;
+import static com.monolith.utils.TestUtils.createMockOrderEntity;
+import static com.monolith.utils.TestUtils.createOrderRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Races two instances, which share the key table but not their locks and caches, against the migrated schema
+ * of the active storage profile.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PersistOrUpdateRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyKeyRaceTest {
+
+    private static final String KEY = "race-key";
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private PersistOrUpdateRepository persistOrUpdateRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        idempotencyKeyRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should keep the key of the first instance and replay its order on the other")
+    void shouldReplayWinnerOfConcurrentKey() throws Exception {
+        // Arrange
+        IdempotencyService first = newInstance();
+        IdempotencyService second = newInstance();
+        OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+        // Both have looked the key up and found nothing before either records it
+        CyclicBarrier bothCreating = new CyclicBarrier(2);
+
+        // Act
+        CompletableFuture<OrderResponse> winner = CompletableFuture.supplyAsync(() ->
+                first.createOnce(KEY, request, recordKey -> createInTransaction(recordKey, 1L, () -> {
+                    await(bothCreating);
+                }), IdempotencyKeyRaceTest::read));
+        CompletableFuture<OrderResponse> loser = CompletableFuture.supplyAsync(() ->
+                second.createOnce(KEY, request, recordKey -> createInTransaction(recordKey, 2L, () -> {
+                    await(bothCreating);
+                    winner.join();
+                }), IdempotencyKeyRaceTest::read));
+
+        // Assert
+        assertThat(winner.get(10, TimeUnit.SECONDS).getId()).isEqualTo(1L);
+        assertThat(loser.get(10, TimeUnit.SECONDS).getId()).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT order_id FROM idempotency_key_entity WHERE idempotency_key = ?",
+                Long.class, KEY)).isEqualTo(1L);
+    }
+
+    private IdempotencyService newInstance() {
+        return new IdempotencyService(idempotencyKeyRepository, persistOrUpdateRepository,
+                Duration.ofHours(24), 100, 4);
+    }
+
+    /**
+     * Stands in for the transaction that creates the order, which records the key.
+     */
+    private OrderResponse createInTransaction(Consumer<OrderEntity> recordKey, Long orderId, Runnable beforeRecording) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            beforeRecording.run();
+            recordKey.accept(createMockOrderEntity(orderId, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY,
+                    DEFAULT_QUANTITY, PRICE_NVIDIA));
+            return read(orderId);
+        });
+    }
+
+    private static OrderResponse read(Long orderId) {
+        return new OrderResponse(orderId, PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY, CREATED);
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
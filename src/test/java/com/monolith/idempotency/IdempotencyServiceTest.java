@@ -0,0 +1,208 @@
+package com.monolith.idempotency;
+
+import com.monolith.dto.OrderRequest;
+import com.monolith.dto.OrderResponse;
+import com.monolith.exception.IdempotencyKeyReusedException;
+import com.monolith.repository.IdempotencyKeyEntity;
+import com.monolith.repository.IdempotencyKeyRepository;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.PersistOrUpdateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    private static final String KEY = "4f9c2d7e-retry";
+    // Reads an order that executed after its first response
+    private static final Function<Long, OrderResponse> READ_EXECUTED =
+            orderId -> new OrderResponse(orderId, PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY, EXECUTED);
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PersistOrUpdateRepository persistOrUpdateRepository;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, persistOrUpdateRepository,
+                Duration.ofHours(24), 100, 4);
+    }
+
+    @Nested
+    @DisplayName("Create Once Tests")
+    class CreateOnceTests {
+
+        @Test
+        @DisplayName("Should record the key for the created order and replay its current state from the cache")
+        void shouldReplayFromCache() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            AtomicInteger created = new AtomicInteger();
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+
+            // Act
+            OrderResponse first = idempotencyService.createOnce(KEY, request, recordKey -> {
+                created.incrementAndGet();
+                return create(ORDER_ID).apply(recordKey);
+            }, READ_EXECUTED);
+            OrderResponse replayed = idempotencyService.createOnce(KEY, request, recordKey -> {
+                created.incrementAndGet();
+                return null;
+            }, READ_EXECUTED);
+
+            // Assert
+            assertThat(created).hasValue(1);
+            assertThat(first.getStatus()).isEqualTo(CREATED);
+            assertThat(replayed.getId()).isEqualTo(ORDER_ID);
+            assertThat(replayed.getStatus()).isEqualTo(EXECUTED);
+            ArgumentCaptor<IdempotencyKeyEntity> saved = ArgumentCaptor.forClass(IdempotencyKeyEntity.class);
+            verify(persistOrUpdateRepository).persistOrUpdate(saved.capture(), eq(false));
+            assertThat(saved.getValue().getOrderId()).isEqualTo(ORDER_ID);
+            verify(idempotencyKeyRepository, times(1)).findById(KEY);
+        }
+
+        @Test
+        @DisplayName("Should replay the order of the persisted key")
+        void shouldReplayFromTable() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            IdempotencyKeyEntity entity = new IdempotencyKeyEntity(KEY, IdempotencyService.requestHash(request),
+                    ORDER_ID, Instant.now().minusSeconds(60));
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.of(entity));
+
+            // Act
+            OrderResponse response = idempotencyService.createOnce(KEY, request, recordKey -> {
+                throw new AssertionError("must not create");
+            }, READ_EXECUTED);
+
+            // Assert
+            assertThat(response.getId()).isEqualTo(ORDER_ID);
+            assertThat(response.getStatus()).isEqualTo(EXECUTED);
+            verifyNoInteractions(persistOrUpdateRepository);
+        }
+
+        @Test
+        @DisplayName("Should ignore a persisted key older than the TTL")
+        void shouldIgnoreExpiredKey() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            IdempotencyKeyEntity entity = new IdempotencyKeyEntity(KEY, IdempotencyService.requestHash(request),
+                    ORDER_ID, Instant.now().minus(Duration.ofHours(25)));
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.of(entity));
+
+            // Act
+            OrderResponse response = idempotencyService.createOnce(KEY, request, create(2L), READ_EXECUTED);
+
+            // Assert
+            assertThat(response.getId()).isEqualTo(2L);
+        }
+
+        @Test
+        @DisplayName("Should reject a key reused with a different request")
+        void shouldRejectReusedKey() {
+            // Arrange
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+            idempotencyService.createOnce(KEY, createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY),
+                    create(ORDER_ID), READ_EXECUTED);
+
+            // Act & Assert
+            OrderRequest different = createOrderRequest(PORTFOLIO_ID, ISIN_APPLE, BUY, DEFAULT_QUANTITY);
+            assertThatThrownBy(() -> idempotencyService.createOnce(KEY, different, create(2L), READ_EXECUTED))
+                    .isInstanceOf(IdempotencyKeyReusedException.class)
+                    .hasMessageContaining(KEY);
+        }
+
+        @Test
+        @DisplayName("Should reject a key reused for the same order with auto-execution")
+        void shouldRejectReusedKeyForAutoExecution() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+            idempotencyService.createOnce(KEY, request, create(ORDER_ID), READ_EXECUTED);
+
+            // Act & Assert
+            OrderRequest autoExecuted = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            autoExecuted.setAutoExecute(true);
+            assertThatThrownBy(() -> idempotencyService.createOnce(KEY, autoExecuted, create(2L), READ_EXECUTED))
+                    .isInstanceOf(IdempotencyKeyReusedException.class);
+        }
+
+        @Test
+        @DisplayName("Should reject a key reused with a request whose 32-bit hash code collides")
+        void shouldRejectReusedKeyWithCollidingHashCode() {
+            // Arrange: "Ab" and "BC" have the same String hash code
+            OrderRequest request = createOrderRequest("portfolio-Ab", ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            OrderRequest colliding = createOrderRequest("portfolio-BC", ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            assertThat(IdempotencyService.requestHash(colliding)).isNotEqualTo(IdempotencyService.requestHash(request));
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+            idempotencyService.createOnce(KEY, request, create(ORDER_ID), READ_EXECUTED);
+
+            // Act & Assert
+            assertThatThrownBy(() -> idempotencyService.createOnce(KEY, colliding, create(2L), READ_EXECUTED))
+                    .isInstanceOf(IdempotencyKeyReusedException.class);
+        }
+
+        @Test
+        @DisplayName("Should not record the key when the order is rejected")
+        void shouldNotRecordRejectedOrder() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+            when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+
+            // Act & Assert
+            assertThatThrownBy(() -> idempotencyService.createOnce(KEY, request, recordKey -> {
+                throw new IllegalArgumentException("Unknown ISIN");
+            }, READ_EXECUTED)).isInstanceOf(IllegalArgumentException.class);
+            verify(persistOrUpdateRepository, never()).persistOrUpdate(any(), anyBoolean());
+        }
+
+        @Test
+        @DisplayName("Should reject a key longer than 64 characters")
+        void shouldRejectLongKey() {
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY);
+
+            assertThatThrownBy(() -> idempotencyService.createOnce("k".repeat(65), request, create(ORDER_ID),
+                    READ_EXECUTED))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    /**
+     * Creates a CREATED order with the ID and records the key for it.
+     */
+    private static Function<Consumer<OrderEntity>, OrderResponse> create(Long orderId) {
+        return recordKey -> {
+            recordKey.accept(createMockOrderEntity(orderId, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY,
+                    DEFAULT_QUANTITY, PRICE_NVIDIA));
+            return new OrderResponse(orderId, PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY, CREATED);
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.monolith.idempotency;
+
+import com.monolith.TimeInForce;
+import com.monolith.api.TradingController;
+import com.monolith.dto.OrderRequest;
+import com.monolith.dto.OrderResponse;
+import com.monolith.repository.IdempotencyKeyRepository;
+import com.monolith.service.BuyingPowerService;
+import com.monolith.service.TradingService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.math.BigDecimal;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CANCELLED;
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static com.monolith.utils.TestUtils.createOrderRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+
+/**
+ * Submits orders with an Idempotency-Key through the whole stack, so the transactions of the order flow are real.
+ */
+@SpringBootTest(properties = "trading.write-behind.journal-dir=target/write-behind")
+class IdempotentOrderFlowTest {
+
+    private static final String PORTFOLIO_ID = "idempotent-ioc-portfolio";
+    private static final String KEY = "ioc-retry-1";
+
+    @Autowired
+    private TradingController tradingController;
+
+    @Autowired
+    private TradingService tradingService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @SpyBean
+    private BuyingPowerService buyingPowerService;
+
+    @Test
+    @DisplayName("Should cancel an IOC order with an Idempotency-Key whose execution is rejected and replay it")
+    void shouldCancelRejectedIocOrderWithKey() throws Exception {
+        // Arrange: the buying power is spent between the pre-check and the execution
+        doNothing().when(buyingPowerService).verifySufficientBuyingPower(eq(PORTFOLIO_ID), any());
+        OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, new BigDecimal("1000"));
+        request.setTimeInForce(TimeInForce.IOC);
+
+        // Act
+        OrderResponse response = tradingController.createOrder(KEY, request).getBody();
+        OrderResponse replayed = tradingController.createOrder(KEY, request).getBody();
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(CANCELLED);
+        assertThat(tradingService.getOrder(response.getId()).getStatus()).isEqualTo(CANCELLED);
+        assertThat(idempotencyKeyRepository.findById(KEY))
+                .hasValueSatisfying(key -> assertThat(key.getOrderId()).isEqualTo(response.getId()));
+        assertThat(replayed.getId()).isEqualTo(response.getId());
+        assertThat(replayed.getStatus()).isEqualTo(CANCELLED);
+    }
+}
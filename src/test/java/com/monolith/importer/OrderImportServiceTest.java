@@ -0,0 +1,214 @@
+package com.monolith.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.export.ExportFormat;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderSide.SELL;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderImportServiceTest {
+
+    @Mock
+    private OrderImportSettler settler;
+
+    private OrderImportService orderImportService;
+
+    private final List<List<ImportRow>> settledBatches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        orderImportService = new OrderImportService(settler,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+        ReflectionTestUtils.setField(orderImportService, "PARTITIONS", 2);
+        ReflectionTestUtils.setField(orderImportService, "BATCH_SIZE", 2);
+        ReflectionTestUtils.setField(orderImportService, "PROGRESS_INTERVAL", 1000L);
+    }
+
+    @Nested
+    @DisplayName("CSV Import Tests")
+    class CsvImportTests {
+
+        @Test
+        @DisplayName("Should settle rows of a portfolio in file order")
+        void shouldSettleRowsInFileOrder() throws Exception {
+            // Arrange
+            recordBatches();
+            String csv = "portfolioId,isin,side,quantity,price\n"
+                    + PORTFOLIO_ID + "," + ISIN_NVIDIA + ",BUY,10,100.00\n"
+                    + PORTFOLIO_ID + "," + ISIN_NVIDIA + ",BUY,5,\n"
+                    + PORTFOLIO_ID + "," + ISIN_NVIDIA + ",SELL,15,120.00\n";
+
+            // Act
+            ImportResult result = orderImportService.importOrders(ExportFormat.CSV, stream(csv));
+
+            // Assert
+            assertThat(result.getRows()).isEqualTo(3);
+            assertThat(result.getExecuted()).isEqualTo(3);
+            assertThat(result.getRejected()).isZero();
+            List<ImportRow> rows = settledBatches.stream().flatMap(List::stream).toList();
+            assertThat(rows).extracting(ImportRow::getLine).containsExactly(2L, 3L, 4L);
+            assertThat(rows).extracting(ImportRow::getSide).containsExactly(BUY, BUY, SELL);
+            assertThat(rows.get(1).getPrice()).isNull();
+            assertThat(settledBatches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        }
+
+        @Test
+        @DisplayName("Should reject invalid rows without settling them")
+        void shouldRejectInvalidRows() throws Exception {
+            // Arrange
+            recordBatches();
+            String csv = "portfolioId,isin,side,quantity\n"
+                    + PORTFOLIO_ID + "," + ISIN_NVIDIA + ",BUY,-1\n"
+                    + PORTFOLIO_ID + "," + ISIN_NVIDIA + ",HOLD,1\n"
+                    + PORTFOLIO_ID + ",,SELL,1\n"
+                    + PORTFOLIO_ID + "," + ISIN_APPLE + ",BUY,1\n";
+
+            // Act
+            ImportResult result = orderImportService.importOrders(ExportFormat.CSV, stream(csv));
+
+            // Assert
+            assertThat(result.getRows()).isEqualTo(4);
+            assertThat(result.getExecuted()).isEqualTo(1);
+            assertThat(result.getRejected()).isEqualTo(3);
+            assertThat(result.getErrors()).extracting(ImportError::getLine).containsExactlyInAnyOrder(2L, 3L, 4L);
+            assertThat(settledBatches).flatExtracting(batch -> batch).extracting(ImportRow::getIsin)
+                    .containsExactly(ISIN_APPLE);
+        }
+    }
+
+    @Nested
+    @DisplayName("NDJSON Import Tests")
+    class NdjsonImportTests {
+
+        @Test
+        @DisplayName("Should count rejections reported by the settler")
+        void shouldCountSettlerRejections() throws Exception {
+            // Arrange
+            when(settler.settle(anyList())).thenAnswer(invocation -> {
+                List<ImportRow> rows = invocation.getArgument(0);
+                return rows.stream()
+                        .filter(row -> row.getSide() == SELL)
+                        .map(row -> new ImportError(row.getLine(), "Insufficient inventory"))
+                        .toList();
+            });
+            String ndjson = "{\"portfolioId\":\"" + PORTFOLIO_ID + "\",\"isin\":\"" + ISIN_NVIDIA
+                    + "\",\"side\":\"BUY\",\"quantity\":10}\n"
+                    + "{\"portfolioId\":\"" + PORTFOLIO_ID + "\",\"isin\":\"" + ISIN_APPLE
+                    + "\",\"side\":\"SELL\",\"quantity\":10}\n";
+
+            // Act
+            ImportResult result = orderImportService.importOrders(ExportFormat.NDJSON, stream(ndjson));
+
+            // Assert
+            assertThat(result.getExecuted()).isEqualTo(1);
+            assertThat(result.getRejected()).isEqualTo(1);
+            assertThat(result.getErrors()).singleElement()
+                    .satisfies(error -> assertThat(error.getLine()).isEqualTo(2L));
+        }
+
+        @Test
+        @DisplayName("Should reject every row of a batch that fails to settle")
+        void shouldRejectFailedBatch() throws Exception {
+            // Arrange
+            when(settler.settle(anyList())).thenThrow(new IllegalStateException("Database unavailable"));
+            String ndjson = "{\"portfolioId\":\"" + PORTFOLIO_ID + "\",\"isin\":\"" + ISIN_NVIDIA
+                    + "\",\"side\":\"BUY\",\"quantity\":10}\n";
+
+            // Act
+            ImportResult result = orderImportService.importOrders(ExportFormat.NDJSON, stream(ndjson));
+
+            // Assert
+            assertThat(result.getExecuted()).isZero();
+            assertThat(result.getRejected()).isEqualTo(1);
+            assertThat(result.getErrors().get(0).getMessage()).contains("Database unavailable");
+        }
+    }
+
+    @Nested
+    @DisplayName("Failure Tests")
+    class FailureTests {
+
+        @Test
+        @DisplayName("Should reject a malformed NDJSON line and import the lines after it")
+        void shouldRejectMalformedLine() throws Exception {
+            // Arrange
+            recordBatches();
+            String ndjson = "{\"portfolioId\":\"" + PORTFOLIO_ID + "\",\"isin\":\"" + ISIN_NVIDIA
+                    + "\",\"side\":\"BUY\",\"quantity\":10}\n"
+                    + "{\"portfolioId\":\"" + PORTFOLIO_ID + "\",\"isin\":\n"
+                    + "{\"portfolioId\":\"" + PORTFOLIO_ID + "\",\"isin\":\"" + ISIN_APPLE
+                    + "\",\"side\":\"BUY\",\"quantity\":5}\n";
+
+            // Act
+            ImportResult result = orderImportService.importOrders(ExportFormat.NDJSON, stream(ndjson));
+
+            // Assert
+            assertThat(result.getExecuted()).isEqualTo(2);
+            assertThat(result.getRejected()).isEqualTo(1);
+            assertThat(result.getErrors()).singleElement()
+                    .satisfies(error -> assertThat(error.getLine()).isEqualTo(2L));
+            assertThat(settledBatches).flatExtracting(batch -> batch).extracting(ImportRow::getLine)
+                    .containsExactly(1L, 3L);
+        }
+
+        @Test
+        @DisplayName("Should fail the import instead of blocking when a worker fails")
+        void shouldFailWhenWorkerFails() {
+            // Arrange
+            Validator validator = mock(Validator.class);
+            when(validator.validate(any())).thenThrow(new IllegalStateException("Validator unavailable"));
+            OrderImportService failingImport = new OrderImportService(settler, validator, new ObjectMapper());
+            ReflectionTestUtils.setField(failingImport, "PARTITIONS", 1);
+            ReflectionTestUtils.setField(failingImport, "BATCH_SIZE", 1);
+            ReflectionTestUtils.setField(failingImport, "PROGRESS_INTERVAL", 1000L);
+            // Far more rows than the partition holds
+            StringBuilder csv = new StringBuilder("portfolioId,isin,side,quantity\n");
+            for (int i = 0; i < 100; i++) {
+                csv.append(PORTFOLIO_ID).append(',').append(ISIN_NVIDIA).append(",BUY,1\n");
+            }
+
+            // Act & Assert
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                    assertThatThrownBy(() -> failingImport.importOrders(ExportFormat.CSV, stream(csv.toString())))
+                            .isInstanceOf(IllegalStateException.class)
+                            .hasRootCauseMessage("Validator unavailable"));
+            verifyNoInteractions(settler);
+        }
+    }
+
+    private void recordBatches() {
+        when(settler.settle(anyList())).thenAnswer(invocation -> {
+            settledBatches.add(List.copyOf(invocation.<List<ImportRow>>getArgument(0)));
+            return List.of();
+        });
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,148 @@
+package com.monolith.index;
+
+import com.monolith.OrderStatus;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.function.Consumer;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderSide.SELL;
+import static com.monolith.OrderStatus.CANCELLED;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OpenOrderIndexTest {
+
+    private static final String OTHER_PORTFOLIO_ID = "portfolio-2";
+
+    @Mock
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OpenOrderIndex openOrderIndex;
+
+    @BeforeEach
+    void createIndex() {
+        openOrderIndex = new OpenOrderIndex(orderHistoryRepository, transactionManager, new SimpleMeterRegistry());
+    }
+
+    private static OrderEntity order(Long id, String portfolioId, String isin, OrderStatus status) {
+        return createMockOrderEntity(id, portfolioId, isin, status, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+    }
+
+    @Test
+    @DisplayName("Should find the open orders of a portfolio, optionally of one security")
+    void shouldFindByPortfolioAndIsin() {
+        // Arrange
+        openOrderIndex.onOrderCreated(order(1L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+        openOrderIndex.onOrderCreated(order(2L, PORTFOLIO_ID, ISIN_APPLE, CREATED));
+        openOrderIndex.onOrderCreated(order(3L, OTHER_PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+
+        // Act & Assert
+        assertThat(openOrderIndex.find(PORTFOLIO_ID, null)).containsExactly(1L, 2L);
+        assertThat(openOrderIndex.find(PORTFOLIO_ID, ISIN_NVIDIA)).containsExactly(1L);
+        assertThat(openOrderIndex.find(OTHER_PORTFOLIO_ID, ISIN_APPLE)).isEmpty();
+        assertThat(openOrderIndex.findByIsin(ISIN_NVIDIA)).containsExactly(1L, 3L);
+        assertThat(openOrderIndex.find("unknown", null)).isEmpty();
+        assertThat(openOrderIndex.count(PORTFOLIO_ID)).isEqualTo(2);
+        assertThat(openOrderIndex.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should drop executed and cancelled orders")
+    void shouldDropClosedOrders() {
+        // Arrange
+        openOrderIndex.onOrderCreated(order(1L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+        openOrderIndex.onOrderCreated(order(2L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+
+        // Act
+        openOrderIndex.onOrderClosed(order(1L, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED));
+        openOrderIndex.onOrderClosed(order(2L, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED));
+        openOrderIndex.onOrderClosed(order(2L, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED));
+
+        // Assert
+        assertThat(openOrderIndex.find(PORTFOLIO_ID, null)).isEmpty();
+        assertThat(openOrderIndex.findByIsin(ISIN_NVIDIA)).isEmpty();
+        assertThat(openOrderIndex.count(PORTFOLIO_ID)).isZero();
+        assertThat(openOrderIndex.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep every order ID through growth and removals in sorted order")
+    void shouldKeepIdsThroughGrowthAndRemovals() {
+        // Arrange
+        for (long id = 1; id <= 1000; id++) {
+            openOrderIndex.onOrderCreated(order(id, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+        }
+
+        // Act
+        for (long id = 2; id <= 1000; id += 2) {
+            openOrderIndex.onOrderClosed(order(id, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED));
+        }
+
+        // Assert
+        long[] open = openOrderIndex.find(PORTFOLIO_ID, ISIN_NVIDIA);
+        assertThat(open).hasSize(500).startsWith(1L, 3L, 5L).endsWith(997L, 999L).isSorted();
+        assertThat(openOrderIndex.size()).isEqualTo(500);
+    }
+
+    @Test
+    @DisplayName("Should sum the open BUY quantity of a position once per order")
+    void shouldSumOpenBuyQuantity() {
+        // Arrange
+        openOrderIndex.onOrderCreated(order(1L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+        openOrderIndex.onOrderCreated(order(2L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+        openOrderIndex.onOrderCreated(createMockOrderEntity(3L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, SELL,
+                DEFAULT_QUANTITY, PRICE_NVIDIA));
+
+        // Act
+        openOrderIndex.onOrderClosed(order(1L, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED));
+        openOrderIndex.onOrderClosed(order(1L, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED));
+
+        // Assert
+        assertThat(openOrderIndex.buyQuantity(PORTFOLIO_ID, ISIN_NVIDIA)).isEqualByComparingTo(DEFAULT_QUANTITY);
+        assertThat(openOrderIndex.buyQuantity(PORTFOLIO_ID, ISIN_APPLE)).isEqualByComparingTo("0");
+        assertThat(openOrderIndex.count(PORTFOLIO_ID)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should index the open orders stored before startup")
+    @SuppressWarnings("unchecked")
+    void shouldLoadOpenOrders() {
+        // Arrange
+        when(orderHistoryRepository.forEachOrder(eq(CREATED), any(Consumer.class)))
+                .thenAnswer(invocation -> {
+                    Consumer<OrderEntity> consumer = invocation.getArgument(1);
+                    consumer.accept(order(7L, PORTFOLIO_ID, ISIN_NVIDIA, CREATED));
+                    consumer.accept(order(9L, OTHER_PORTFOLIO_ID, ISIN_APPLE, CREATED));
+                    return 2;
+                });
+
+        // Act
+        openOrderIndex.load();
+
+        // Assert
+        assertThat(openOrderIndex.find(PORTFOLIO_ID, null)).containsExactly(7L);
+        assertThat(openOrderIndex.findByIsin(ISIN_APPLE)).containsExactly(9L);
+        verify(orderHistoryRepository, times(1)).forEachOrder(eq(CREATED), any(Consumer.class));
+    }
+}
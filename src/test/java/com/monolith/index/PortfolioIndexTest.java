@@ -0,0 +1,163 @@
+package com.monolith.index;
+
+import com.monolith.repository.BuyingPowerEntity;
+import com.monolith.repository.BuyingPowerRepository;
+import com.monolith.repository.InventoryEntity;
+import com.monolith.repository.InventoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PortfolioIndexTest {
+
+    @Mock
+    private BuyingPowerRepository buyingPowerRepository;
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private PositionListener positionListener;
+
+    private PortfolioIndex portfolioIndex;
+
+    @BeforeEach
+    void createIndex() {
+        portfolioIndex = new PortfolioIndex(buyingPowerRepository, inventoryRepository, List.of(positionListener));
+    }
+
+    @Nested
+    @DisplayName("Load Tests")
+    class LoadTests {
+
+        @Test
+        @DisplayName("Should load buying power and positions from repositories")
+        void shouldLoadFromRepositories() {
+            // Arrange
+            when(buyingPowerRepository.findAll())
+                    .thenReturn(List.of(new BuyingPowerEntity(PORTFOLIO_ID, new BigDecimal("4000.00"))));
+            when(inventoryRepository.findAll())
+                    .thenReturn(List.of(new InventoryEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN)));
+
+            // Act
+            portfolioIndex.load();
+            PortfolioSnapshot snapshot = portfolioIndex.getSnapshot(PORTFOLIO_ID);
+
+            // Assert
+            assertThat(snapshot.getBuyingPower()).isEqualTo(new BigDecimal("4000.00"));
+            assertThat(snapshot.getPositions()).containsEntry(ISIN_NVIDIA, BigDecimal.TEN);
+        }
+    }
+
+    @Nested
+    @DisplayName("Update Tests")
+    class UpdateTests {
+
+        @BeforeEach
+        void setUp() {
+            portfolioIndex.updateBuyingPower(PORTFOLIO_ID, new BigDecimal("5000.00"));
+        }
+
+        @Test
+        @DisplayName("Should return null snapshot for unknown portfolio")
+        void shouldReturnNullForUnknownPortfolio() {
+            assertThat(portfolioIndex.getSnapshot("unknown")).isNull();
+        }
+
+        @Test
+        @DisplayName("Should replace quantity of an existing position")
+        void shouldReplaceQuantity() {
+            // Act
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ONE);
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN);
+
+            // Assert
+            assertThat(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).isEqualTo(BigDecimal.TEN);
+            assertThat(portfolioIndex.getSnapshot(PORTFOLIO_ID).getPositions()).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("Should remove position when quantity becomes zero")
+        void shouldRemoveZeroPosition() {
+            // Act
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN);
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_APPLE, BigDecimal.ONE);
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO);
+
+            // Assert
+            PortfolioSnapshot snapshot = portfolioIndex.getSnapshot(PORTFOLIO_ID);
+            assertThat(snapshot.getPositions()).containsOnlyKeys(ISIN_APPLE);
+        }
+
+        @Test
+        @DisplayName("Should notify listeners with previous and new quantity")
+        void shouldNotifyListeners() {
+            // Act
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ONE);
+            portfolioIndex.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, null);
+
+            // Assert
+            verify(positionListener).onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.ONE);
+            verify(positionListener).onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ONE, BigDecimal.ZERO);
+        }
+
+        @Test
+        @DisplayName("Should apply committed deltas regardless of their order")
+        void shouldApplyDeltas() {
+            // Act
+            portfolioIndex.addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN);
+            portfolioIndex.addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("-10"));
+            portfolioIndex.addToBuyingPower(PORTFOLIO_ID, new BigDecimal("-1000.00"), new BigDecimal("5000.00"));
+            portfolioIndex.addToBuyingPower("new", new BigDecimal("-1000.00"), new BigDecimal("5000.00"));
+
+            // Assert
+            assertThat(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).isNull();
+            assertThat(portfolioIndex.getSnapshot(PORTFOLIO_ID).getBuyingPower()).isEqualTo(new BigDecimal("4000.00"));
+            assertThat(portfolioIndex.getSnapshot("new").getBuyingPower()).isEqualTo(new BigDecimal("4000.00"));
+        }
+
+        @Test
+        @DisplayName("Should know a buying power record only once it was indexed")
+        void shouldTrackBuyingPowerRecords() {
+            // Act
+            portfolioIndex.updatePosition("positions-only", ISIN_NVIDIA, BigDecimal.ONE);
+
+            // Assert
+            assertThat(portfolioIndex.hasBuyingPower(PORTFOLIO_ID)).isTrue();
+            assertThat(portfolioIndex.hasBuyingPower("positions-only")).isFalse();
+            assertThat(portfolioIndex.hasBuyingPower("unknown")).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should keep all positions across resizes and removals")
+        void shouldKeepPositionsAcrossResizes() {
+            // Act
+            for (int i = 0; i < 100; i++) {
+                portfolioIndex.updatePosition(PORTFOLIO_ID, "ISIN" + i, BigDecimal.valueOf(i + 1));
+            }
+            for (int i = 0; i < 100; i += 2) {
+                portfolioIndex.updatePosition(PORTFOLIO_ID, "ISIN" + i, null);
+            }
+
+            // Assert
+            PortfolioSnapshot snapshot = portfolioIndex.getSnapshot(PORTFOLIO_ID);
+            assertThat(snapshot.getPositions()).hasSize(50);
+            for (int i = 1; i < 100; i += 2) {
+                assertThat(snapshot.getPositions()).containsEntry("ISIN" + i, BigDecimal.valueOf(i + 1));
+            }
+        }
+    }
+}
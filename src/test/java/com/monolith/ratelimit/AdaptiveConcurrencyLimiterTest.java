@@ -0,0 +1,156 @@
+package com.monolith.ratelimit;
+
+import com.monolith.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 10, 1, 50, 0, 10, 100);
+    }
+
+    @Nested
+    @DisplayName("Limit Adjustment Tests")
+    class LimitAdjustmentTests {
+
+        @Test
+        @DisplayName("Should grow the limit while latency is steady and the limit is used")
+        void shouldGrowOnSteadyLatency() {
+            for (int i = 0; i < 20; i++) {
+                limiter.onSample(5 * MILLI, limiter.getLimit(), false);
+            }
+
+            assertThat(limiter.getLimit()).isGreaterThan(10).isLessThanOrEqualTo(50);
+            assertThat(meterRegistry.get("trading.execution.limiter.limit").gauge().value())
+                    .isEqualTo(limiter.getLimit());
+        }
+
+        @Test
+        @DisplayName("Should shrink the limit once latency climbs above the baseline")
+        void shouldShrinkOnRisingLatency() {
+            for (int i = 0; i < 50; i++) {
+                limiter.onSample(5 * MILLI, limiter.getLimit(), false);
+            }
+            int grown = limiter.getLimit();
+
+            for (int i = 0; i < 10; i++) {
+                limiter.onSample(50 * MILLI, limiter.getLimit(), false);
+            }
+
+            assertThat(limiter.getLimit()).isLessThan(grown);
+        }
+
+        @Test
+        @DisplayName("Should not grow the limit while less than half of it is used")
+        void shouldIgnoreAppLimitedSamples() {
+            for (int i = 0; i < 20; i++) {
+                limiter.onSample(5 * MILLI, 1, false);
+            }
+
+            assertThat(limiter.getLimit()).isEqualTo(10);
+        }
+
+        @Test
+        @DisplayName("Should back off on a lock failure")
+        void shouldBackOffOnLockFailure() {
+            assertThatThrownBy(() -> limiter.execute(() -> {
+                throw new PessimisticLockingFailureException("Timeout trying to lock table");
+            })).isInstanceOf(PessimisticLockingFailureException.class);
+
+            assertThat(limiter.getLimit()).isEqualTo(9);
+        }
+    }
+
+    @Nested
+    @DisplayName("Admission Tests")
+    class AdmissionTests {
+
+        @Test
+        @DisplayName("Should reject executions over the limit once the queue is full")
+        void shouldRejectOverLimit() throws Exception {
+            limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 1, 1, 1, 0, 10, 100);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                executor.submit(() -> limiter.execute(() -> {
+                    started.countDown();
+                    await(release);
+                    return null;
+                }));
+                started.await();
+
+                assertThatThrownBy(() -> limiter.execute(() -> "second"))
+                        .isInstanceOf(RateLimitExceededException.class);
+                assertThat(meterRegistry.get("trading.execution.limiter.rejections").counter().count()).isEqualTo(1);
+            } finally {
+                release.countDown();
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+
+            assertThat(limiter.execute(() -> "third")).isEqualTo("third");
+        }
+
+        @Test
+        @DisplayName("Should let a queued execution run once a slot frees up")
+        void shouldRunQueuedExecution() throws Exception {
+            limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 1, 1, 1, 1, 5_000, 100);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                executor.submit(() -> limiter.execute(() -> {
+                    started.countDown();
+                    await(release);
+                    return null;
+                }));
+                started.await();
+                executor.submit(() -> {
+                    sleep();
+                    release.countDown();
+                });
+
+                assertThat(limiter.execute(() -> "queued")).isEqualTo("queued");
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.monolith.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monolith.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.monolith.utils.TestUtils.PORTFOLIO_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RateLimiter(meterRegistry, 0.5, 2, 0.5, 1, 1, 8);
+    }
+
+    @Nested
+    @DisplayName("Token Bucket Tests")
+    class TokenBucketTests {
+
+        @Test
+        @DisplayName("Should grant the burst at once and then one permit per interval")
+        void shouldRefillAtRate() {
+            TokenBucket bucket = new TokenBucket(1, 3);
+            long now = -5 * SECOND;
+
+            assertThat(bucket.tryAcquire(now)).isZero();
+            assertThat(bucket.tryAcquire(now)).isZero();
+            assertThat(bucket.tryAcquire(now)).isZero();
+            assertThat(bucket.tryAcquire(now)).isEqualTo(SECOND);
+            assertThat(bucket.tryAcquire(now + SECOND)).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Portfolio Limit Tests")
+    class PortfolioLimitTests {
+
+        @Test
+        @DisplayName("Should reject a portfolio over its burst with Retry-After and count it")
+        void shouldRejectOverBurst() {
+            rateLimiter.acquirePortfolio(PORTFOLIO_ID);
+            rateLimiter.acquirePortfolio(PORTFOLIO_ID);
+
+            assertThatThrownBy(() -> rateLimiter.acquirePortfolio(PORTFOLIO_ID))
+                    .isInstanceOf(RateLimitExceededException.class)
+                    .satisfies(e -> assertThat(((RateLimitExceededException) e).getRetryAfterSeconds()).isEqualTo(2));
+            assertThatCode(() -> rateLimiter.acquirePortfolio("portfolio-id-2")).doesNotThrowAnyException();
+            assertThat(meterRegistry.get("trading.rate_limit.rejections").tag("scope", "portfolio").counter().count())
+                    .isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("Bucket Eviction Tests")
+    class BucketEvictionTests {
+
+        @Test
+        @DisplayName("Should keep the number of tracked buckets bounded under a flood of new keys")
+        void shouldBoundTrackedBuckets() {
+            for (int i = 0; i < 1000; i++) {
+                rateLimiter.acquirePortfolio("portfolio-" + i);
+                rateLimiter.acquireApiKey("client-" + i);
+            }
+
+            assertThat(meterRegistry.get("trading.rate_limit.buckets").gauge().value()).isLessThanOrEqualTo(16);
+        }
+    }
+
+    @Nested
+    @DisplayName("Filter Tests")
+    class FilterTests {
+
+        private RateLimitFilter filter;
+
+        @BeforeEach
+        void setUp() {
+            filter = new RateLimitFilter(rateLimiter, new ObjectMapper());
+        }
+
+        @Test
+        @DisplayName("Should shed an API key over its limit with 429")
+        void shouldRejectApiKeyOverLimit() throws Exception {
+            MockHttpServletResponse first = filter(request("client-1"));
+            MockHttpServletResponse second = filter(request("client-1"));
+
+            assertThat(first.getStatus()).isEqualTo(200);
+            assertThat(second.getStatus()).isEqualTo(429);
+            assertThat(second.getHeader("Retry-After")).isEqualTo("2");
+            assertThat(second.getContentAsString()).contains("Rate limit exceeded for API key");
+            assertThat(filter(request("client-2")).getStatus()).isEqualTo(200);
+        }
+
+        @Test
+        @DisplayName("Should shed requests over the in-flight cap and release the slot afterwards")
+        void shouldRejectOverInFlightCap() throws Exception {
+            MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+            MockHttpServletResponse outer = new MockHttpServletResponse();
+            filter.doFilter(request("client-1"), outer, new MockFilterChain() {
+                @Override
+                public void doFilter(ServletRequest request, ServletResponse response) {
+                    try {
+                        nested[0] = filter(request("client-2"));
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+
+            assertThat(outer.getStatus()).isEqualTo(200);
+            assertThat(nested[0].getStatus()).isEqualTo(429);
+            assertThat(filter(request("client-3")).getStatus()).isEqualTo(200);
+            assertThat(meterRegistry.get("trading.rate_limit.in_flight").gauge().value()).isZero();
+        }
+
+        private MockHttpServletResponse filter(MockHttpServletRequest request) throws Exception {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            return response;
+        }
+
+        private MockHttpServletRequest request(String apiKey) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/orders");
+            request.addHeader(RateLimitFilter.API_KEY_HEADER, apiKey);
+            return request;
+        }
+    }
+}
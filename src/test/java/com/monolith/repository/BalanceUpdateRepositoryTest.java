@@ -0,0 +1,81 @@
+package com.monolith.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Runs the position cost statements against the migrated schema of the active storage profile.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(BalanceUpdateRepository.class)
+class BalanceUpdateRepositoryTest {
+
+    private static final String PORTFOLIO_ID = "versioned-portfolio";
+    private static final String ISIN = "US0000000001";
+
+    @Autowired
+    private BalanceUpdateRepository balanceUpdateRepository;
+
+    @Test
+    @DisplayName("Should update the position cost only at the version it was read at")
+    void shouldUpdatePositionCostAtReadVersion() {
+        // Arrange
+        balanceUpdateRepository.insertPositionCost(new PositionCostEntity(PORTFOLIO_ID, ISIN, BigDecimal.TEN,
+                null, BigDecimal.ZERO));
+        VersionedPositionCost read = balanceUpdateRepository.findPositionCost(PORTFOLIO_ID, ISIN);
+        PositionCostEntity updated = new PositionCostEntity(PORTFOLIO_ID, ISIN, new BigDecimal("20"),
+                new BigDecimal("100.00"), BigDecimal.ZERO);
+
+        // Act
+        boolean first = balanceUpdateRepository.updatePositionCost(updated, read.getVersion());
+        boolean stale = balanceUpdateRepository.updatePositionCost(updated, read.getVersion());
+
+        // Assert
+        assertThat(read.getPositionCost().isBasisKnown()).isFalse();
+        assertThat(first).isTrue();
+        assertThat(stale).isFalse();
+        VersionedPositionCost current = balanceUpdateRepository.findPositionCost(PORTFOLIO_ID, ISIN);
+        assertThat(current.getVersion()).isEqualTo(read.getVersion() + 1);
+        assertThat(current.getPositionCost().getAverageCost()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    @DisplayName("Should report a concurrently inserted position cost as a conflict")
+    void shouldReportDuplicateInsertAsConflict() {
+        // Arrange
+        PositionCostEntity positionCost = new PositionCostEntity(PORTFOLIO_ID, ISIN, BigDecimal.TEN,
+                new BigDecimal("100.00"), BigDecimal.ZERO);
+        balanceUpdateRepository.insertPositionCost(positionCost);
+
+        // Act
+        Throwable thrown = catchThrowable(() -> balanceUpdateRepository.insertPositionCost(positionCost));
+
+        // Assert
+        assertThat(thrown).isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Should not report a failed insert other than a unique violation as a retryable conflict")
+    void shouldRethrowOtherInsertFailures() {
+        // Arrange
+        PositionCostEntity positionCost = new PositionCostEntity(PORTFOLIO_ID, "X".repeat(256), BigDecimal.TEN,
+                new BigDecimal("100.00"), BigDecimal.ZERO);
+
+        // Act
+        Throwable thrown = catchThrowable(() -> balanceUpdateRepository.insertPositionCost(positionCost));
+
+        // Assert
+        assertThat(thrown).isNotNull().isNotInstanceOf(OptimisticLockingFailureException.class);
+    }
+}
@@ -0,0 +1,112 @@
+package com.monolith.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.List;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderStatus.CANCELLED;
+import static com.monolith.OrderStatus.CREATED;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStatusRepositoryTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private Savepoint savepoint;
+
+    private OrderStatusRepository orderStatusRepository;
+
+    @BeforeEach
+    void setUp() {
+        orderStatusRepository = new OrderStatusRepository();
+        ReflectionTestUtils.setField(orderStatusRepository, "entityManager", entityManager);
+    }
+
+    private static OrderEntity order(Long id) {
+        return createMockOrderEntity(id, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+    }
+
+    @Test
+    @DisplayName("Should undo a batch without update counts and move each order on its own")
+    @SuppressWarnings("unchecked")
+    void shouldFallBackToSingleTransitions() throws Exception {
+        // Arrange
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.doReturningWork(any(ReturningWork.class)))
+                .thenAnswer(invocation -> ((ReturningWork<?>) invocation.getArgument(0)).execute(connection));
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeBatch()).thenReturn(new int[]{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+        Query update = mock(Query.class, RETURNS_SELF);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(update);
+        // The second order was cancelled concurrently, once in each call
+        when(update.executeUpdate()).thenReturn(1, 0, 1, 0);
+
+        // Act
+        List<OrderEntity> first = orderStatusRepository.transitionAll(List.of(order(1L), order(2L)), CREATED, CANCELLED);
+        List<OrderEntity> second = orderStatusRepository.transitionAll(List.of(order(3L), order(4L)), CREATED, CANCELLED);
+
+        // Assert
+        assertThat(first).extracting(OrderEntity::getId).containsExactly(1L);
+        assertThat(second).extracting(OrderEntity::getId).containsExactly(3L);
+        assertThat(first.get(0).getStatus()).isEqualTo(CANCELLED);
+        verify(connection).rollback(savepoint);
+        verify(statement, times(1)).executeBatch();
+        verify(update, times(4)).executeUpdate();
+    }
+
+    @Test
+    @DisplayName("Should trust the update counts of a driver that reports them")
+    @SuppressWarnings("unchecked")
+    void shouldUseBatchUpdateCounts() throws Exception {
+        // Arrange
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.doReturningWork(any(ReturningWork.class)))
+                .thenAnswer(invocation -> ((ReturningWork<?>) invocation.getArgument(0)).execute(connection));
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeBatch()).thenReturn(new int[]{1, 0}, new int[]{0, 1});
+
+        // Act
+        List<OrderEntity> first = orderStatusRepository.transitionAll(List.of(order(1L), order(2L)), CREATED, CANCELLED);
+        List<OrderEntity> second = orderStatusRepository.transitionAll(List.of(order(3L), order(4L)), CREATED, CANCELLED);
+
+        // Assert
+        assertThat(first).extracting(OrderEntity::getId).containsExactly(1L);
+        assertThat(second).extracting(OrderEntity::getId).containsExactly(4L);
+        verify(connection, times(1)).setSavepoint();
+        verify(connection).releaseSavepoint(savepoint);
+        verify(entityManager, never()).createNativeQuery(anyString());
+    }
+}
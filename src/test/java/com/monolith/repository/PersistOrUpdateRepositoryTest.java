@@ -0,0 +1,55 @@
+package com.monolith.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the inserts against the migrated schema of the active storage profile.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PersistOrUpdateRepository.class)
+class PersistOrUpdateRepositoryTest {
+
+    private static final String PORTFOLIO_ID = "persist-portfolio";
+
+    @Autowired
+    private PersistOrUpdateRepository persistOrUpdateRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Should report a row inserted concurrently as an optimistic locking failure")
+    void shouldReportDuplicateKeyAsOptimisticLockingFailure() {
+        // Arrange
+        persistOrUpdateRepository.persistOrUpdate(new BuyingPowerEntity(PORTFOLIO_ID, BigDecimal.TEN), false);
+        entityManager.clear();
+
+        // Act & Assert
+        assertThatThrownBy(() -> persistOrUpdateRepository.persistOrUpdate(
+                new BuyingPowerEntity(PORTFOLIO_ID, BigDecimal.ONE), false))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Should rethrow any other failed insert unchanged")
+    void shouldRethrowOtherFailures() {
+        // Arrange
+        BuyingPowerEntity tooLong = new BuyingPowerEntity("p".repeat(256), BigDecimal.TEN);
+
+        // Act & Assert
+        assertThatThrownBy(() -> persistOrUpdateRepository.persistOrUpdate(tooLong, false))
+                .isNotInstanceOf(OptimisticLockingFailureException.class);
+    }
+}
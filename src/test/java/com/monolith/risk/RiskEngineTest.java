@@ -0,0 +1,230 @@
+package com.monolith.risk;
+
+import com.monolith.OrderSide;
+import com.monolith.OrderStatus;
+import com.monolith.dto.OrderRequest;
+import com.monolith.dto.RiskLimits;
+import com.monolith.exception.RiskLimitExceededException;
+import com.monolith.index.OpenOrderIndex;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+
+import static com.monolith.OrderSide.BUY;
+import static com.monolith.OrderSide.SELL;
+import static com.monolith.OrderStatus.*;
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RiskEngineTest {
+
+    @Mock
+    private PortfolioIndex portfolioIndex;
+
+    @Mock
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OpenOrderIndex openOrderIndex;
+    private RiskEngine riskEngine;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        openOrderIndex = new OpenOrderIndex(orderHistoryRepository, transactionManager, meterRegistry);
+        riskEngine = new RiskEngine(portfolioIndex, openOrderIndex, meterRegistry,
+                new BigDecimal("5000"), new BigDecimal("50"), 2, new BigDecimal("0.10"));
+    }
+
+    private double rejections(RiskRule rule) {
+        return meterRegistry.get("trading.risk.rejections").tag("rule", rule.getTag()).counter().count();
+    }
+
+    private static OrderEntity order(Long id, OrderStatus status, OrderSide side, String quantity) {
+        return createMockOrderEntity(id, PORTFOLIO_ID, ISIN_NVIDIA, status, side, new BigDecimal(quantity), PRICE_NVIDIA);
+    }
+
+    @Nested
+    @DisplayName("Order Notional Tests")
+    class OrderNotionalTests {
+
+        @Test
+        @DisplayName("Should accept an order up to the notional limit")
+        void shouldAcceptOrderAtLimit() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, new BigDecimal("50"));
+
+            // Act & Assert
+            assertThatCode(() -> riskEngine.check(request, PRICE_NVIDIA)).doesNotThrowAnyException();
+        }
+
+        @Test
+        @DisplayName("Should reject an order over the notional limit and count the rejection")
+        void shouldRejectOrderOverLimit() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, new BigDecimal("51"));
+
+            // Act & Assert
+            assertThatThrownBy(() -> riskEngine.check(request, PRICE_NVIDIA))
+                    .isInstanceOf(RiskLimitExceededException.class)
+                    .hasMessageContaining("notional");
+            assertThat(rejections(RiskRule.ORDER_NOTIONAL)).isEqualTo(1.0);
+            assertThat(rejections(RiskRule.POSITION)).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Position Tests")
+    class PositionTests {
+
+        @Test
+        @DisplayName("Should count open BUY orders towards the position")
+        void shouldRejectBuyOverPositionWithOpenOrders() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(new BigDecimal("20"));
+            openOrderIndex.onOrderCreated(order(1L, CREATED, BUY, "20"));
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, new BigDecimal("11"));
+
+            // Act & Assert
+            assertThatThrownBy(() -> riskEngine.check(request, PRICE_NVIDIA))
+                    .isInstanceOf(RiskLimitExceededException.class)
+                    .hasMessageContaining("would reach 51");
+            assertThat(rejections(RiskRule.POSITION)).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("Should release the quantity of a closed BUY order")
+        void shouldReleaseClosedBuyOrder() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(null);
+            openOrderIndex.onOrderCreated(order(1L, CREATED, BUY, "45"));
+            openOrderIndex.onOrderClosed(order(1L, CANCELLED, BUY, "45"));
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, new BigDecimal("45"));
+
+            // Act & Assert
+            assertThatCode(() -> riskEngine.check(request, PRICE_NVIDIA)).doesNotThrowAnyException();
+        }
+
+        @Test
+        @DisplayName("Should not limit the position a SELL order leaves")
+        void shouldIgnorePositionForSell() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, new BigDecimal("45"));
+
+            // Act & Assert
+            assertThatCode(() -> riskEngine.check(request, PRICE_NVIDIA)).doesNotThrowAnyException();
+            verifyNoInteractions(portfolioIndex);
+        }
+    }
+
+    @Nested
+    @DisplayName("Open Orders Tests")
+    class OpenOrdersTests {
+
+        @Test
+        @DisplayName("Should reject an order once the portfolio has the maximum of open orders")
+        void shouldRejectOverOpenOrders() {
+            // Arrange
+            openOrderIndex.onOrderCreated(order(1L, CREATED, SELL, "1"));
+            openOrderIndex.onOrderCreated(order(2L, CREATED, SELL, "1"));
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, BigDecimal.ONE);
+
+            // Act & Assert
+            assertThatThrownBy(() -> riskEngine.check(request, PRICE_NVIDIA))
+                    .isInstanceOf(RiskLimitExceededException.class)
+                    .hasMessageContaining("2 open orders");
+            assertThat(rejections(RiskRule.OPEN_ORDERS)).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("Should accept an order again after an open order is executed")
+        void shouldAcceptAfterExecution() {
+            // Arrange
+            openOrderIndex.onOrderCreated(order(1L, CREATED, SELL, "1"));
+            openOrderIndex.onOrderCreated(order(2L, CREATED, SELL, "1"));
+            openOrderIndex.onOrderClosed(order(1L, EXECUTED, SELL, "1"));
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, BigDecimal.ONE);
+
+            // Act & Assert
+            assertThatCode(() -> riskEngine.check(request, PRICE_NVIDIA)).doesNotThrowAnyException();
+        }
+    }
+
+    @Nested
+    @DisplayName("Price Band Tests")
+    class PriceBandTests {
+
+        @Test
+        @DisplayName("Should reject a limit price outside the band around the market price")
+        void shouldRejectFatFingerPrice() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, BigDecimal.ONE);
+            request.setLimitPrice(new BigDecimal("1000.00"));
+
+            // Act & Assert
+            assertThatThrownBy(() -> riskEngine.check(request, PRICE_NVIDIA))
+                    .isInstanceOf(RiskLimitExceededException.class)
+                    .hasMessageContaining("band");
+            assertThat(rejections(RiskRule.PRICE_BAND)).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("Should accept a limit price inside the band")
+        void shouldAcceptPriceInBand() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, BigDecimal.ONE);
+            request.setLimitPrice(new BigDecimal("110.00"));
+
+            // Act & Assert
+            assertThatCode(() -> riskEngine.check(request, PRICE_NVIDIA)).doesNotThrowAnyException();
+        }
+    }
+
+    @Nested
+    @DisplayName("Limit Update Tests")
+    class LimitUpdateTests {
+
+        @Test
+        @DisplayName("Should apply new limits to the next check")
+        void shouldApplyNewLimits() {
+            // Arrange
+            OrderRequest request = createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, SELL, new BigDecimal("100"));
+
+            // Act
+            RiskLimits applied = riskEngine.setLimits(new RiskLimits(new BigDecimal("20000"), null, null, null));
+
+            // Assert
+            assertThat(applied.getMaxOrderNotional()).isEqualByComparingTo("20000");
+            assertThat(riskEngine.getLimits().getMaxOpenOrders()).isNull();
+            assertThatCode(() -> riskEngine.check(request, PRICE_NVIDIA)).doesNotThrowAnyException();
+        }
+
+        @Test
+        @DisplayName("Should not let a caller change the limits through a returned copy")
+        void shouldReturnCopies() {
+            // Act
+            riskEngine.getLimits().setMaxOrderNotional(BigDecimal.ONE);
+
+            // Assert
+            assertThat(riskEngine.getLimits().getMaxOrderNotional()).isEqualByComparingTo("5000");
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package com.monolith.service;
 
 import com.monolith.exception.InsufficientBuyingPowerException;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.repository.BalanceUpdateRepository;
 import com.monolith.repository.BuyingPowerEntity;
 import com.monolith.repository.BuyingPowerRepository;
+import com.monolith.repository.PersistOrUpdateRepository;
+import com.monolith.repository.VersionedValue;
+import com.monolith.settlement.DeferredSettlementService;
+import com.monolith.writebehind.WriteBehindService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -11,6 +18,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
@@ -34,6 +42,21 @@ public class BuyingPowerServiceTest {
     @Mock
     private BuyingPowerRepository buyingPowerRepository;
 
+    @Mock
+    private BalanceUpdateRepository balanceUpdateRepository;
+
+    @Mock
+    private PersistOrUpdateRepository persistOrUpdateRepository;
+
+    @Mock
+    private PortfolioIndex portfolioIndex;
+
+    @Mock
+    private WriteBehindService writeBehindService;
+
+    @Mock
+    private DeferredSettlementService deferredSettlementService;
+
     @InjectMocks
     private BuyingPowerService buyingPowerService;
 
@@ -58,14 +81,12 @@ public class BuyingPowerServiceTest {
         }
 
         @Test
-        @DisplayName("Should initialize buying power when portfolio doesn't exist")
-        void shouldInitializeBuyingPowerWhenPortfolioDoesntExist() {
+        @DisplayName("Should report the initial buying power without writing it when portfolio doesn't exist")
+        void shouldReportInitialBuyingPowerWhenPortfolioDoesntExist() {
             // Arrange
             ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
             
             when(buyingPowerRepository.findById(PORTFOLIO_ID)).thenReturn(Optional.empty());
-            when(buyingPowerRepository.save(any(BuyingPowerEntity.class)))
-                    .thenReturn(new BuyingPowerEntity(PORTFOLIO_ID, INITIAL_BUYING_POWER));
 
             // Act
             BuyingPowerEntity result = buyingPowerService.getBuyingPower(PORTFOLIO_ID);
@@ -74,6 +95,7 @@ public class BuyingPowerServiceTest {
             assertThat(result).isNotNull();
             assertThat(result.getPortfolioId()).isEqualTo(PORTFOLIO_ID);
             assertThat(result.getAmount()).isEqualTo(INITIAL_BUYING_POWER);
+            verify(buyingPowerRepository, never()).save(any());
         }
     }
 
@@ -85,6 +107,7 @@ public class BuyingPowerServiceTest {
         @DisplayName("Should successfully deduct buying power when sufficient funds exist")
         void shouldSuccessfullyDeductBuyingPower() {
             // Arrange
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
             BigDecimal initialAmount = new BigDecimal("2000.00");
             BigDecimal deductAmount = new BigDecimal("500.00");
             BigDecimal expectedAmount = new BigDecimal("1500.00");
@@ -104,6 +127,7 @@ public class BuyingPowerServiceTest {
             BuyingPowerEntity capturedEntity = entityCaptor.getValue();
             assertThat(capturedEntity.getPortfolioId()).isEqualTo(PORTFOLIO_ID);
             assertThat(capturedEntity.getAmount()).isEqualTo(expectedAmount);
+            verify(portfolioIndex).addToBuyingPower(PORTFOLIO_ID, deductAmount.negate(), INITIAL_BUYING_POWER);
         }
 
         @Test
@@ -128,6 +152,25 @@ public class BuyingPowerServiceTest {
             assertThat(exception.getMessage()).contains(initialAmount.toString());
         }
 
+        @Test
+        @DisplayName("Should reject insufficient funds without capturing a stack trace")
+        void shouldRejectWithoutStackTrace() {
+            // Arrange
+            BuyingPowerEntity entity = new BuyingPowerEntity(PORTFOLIO_ID, new BigDecimal("300.00"));
+            when(buyingPowerRepository.findById(PORTFOLIO_ID)).thenReturn(Optional.of(entity));
+
+            // Act
+            InsufficientBuyingPowerException exception = assertThrows(
+                    InsufficientBuyingPowerException.class,
+                    () -> buyingPowerService.deductBuyingPower(PORTFOLIO_ID, new BigDecimal("500.00"))
+            );
+
+            // Assert
+            assertThat(exception.getStackTrace()).isEmpty();
+            assertThat(exception.getMessage()).isEqualTo(
+                    "Insufficient buying power for portfolio " + PORTFOLIO_ID + ": required 500.00, available 300.00");
+        }
+
         @Test
         @DisplayName("Should throw IllegalArgumentException when trying to deduct negative amount")
         void shouldThrowExceptionWhenAmountNegative() {
@@ -175,6 +218,7 @@ public class BuyingPowerServiceTest {
         @DisplayName("Should successfully add buying power to existing portfolio")
         void shouldSuccessfullyAddBuyingPower() {
             // Arrange
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
             BigDecimal initialAmount = new BigDecimal("2000.00");
             BigDecimal addAmount = new BigDecimal("500.00");
             BigDecimal expectedAmount = new BigDecimal("2500.00");
@@ -194,6 +238,7 @@ public class BuyingPowerServiceTest {
             BuyingPowerEntity capturedEntity = entityCaptor.getValue();
             assertThat(capturedEntity.getPortfolioId()).isEqualTo(PORTFOLIO_ID);
             assertThat(capturedEntity.getAmount()).isEqualTo(expectedAmount);
+            verify(portfolioIndex).addToBuyingPower(PORTFOLIO_ID, addAmount, INITIAL_BUYING_POWER);
         }
 
         @Test
@@ -312,4 +357,294 @@ public class BuyingPowerServiceTest {
             assertThat(result.scale()).isEqualTo(2);
         }
     }
+
+    @Nested
+    @DisplayName("Optimistic Write Tests")
+    class OptimisticWriteTests {
+
+        @Test
+        @DisplayName("Should write the deduction conditionally on the version it read")
+        void shouldDeductWithVersionCheck() {
+            // Arrange
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID))
+                    .thenReturn(new VersionedValue(INITIAL_BUYING_POWER, 7));
+            when(balanceUpdateRepository.updateBuyingPower(PORTFOLIO_ID, new BigDecimal("4000.00"), 7))
+                    .thenReturn(true);
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            verify(balanceUpdateRepository).updateBuyingPower(PORTFOLIO_ID, new BigDecimal("4000.00"), 7);
+            verify(portfolioIndex).addToBuyingPower(PORTFOLIO_ID, VALID_AMOUNT.negate(), INITIAL_BUYING_POWER);
+            verifyNoInteractions(buyingPowerRepository);
+        }
+
+        @Test
+        @DisplayName("Should fail fast when the row changed since it was read")
+        void shouldFailOnVersionConflict() {
+            // Arrange
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID))
+                    .thenReturn(new VersionedValue(INITIAL_BUYING_POWER, 7));
+            when(balanceUpdateRepository.updateBuyingPower(PORTFOLIO_ID, new BigDecimal("6000.00"), 7))
+                    .thenReturn(false);
+
+            // Act & Assert
+            assertThrows(OptimisticLockingFailureException.class,
+                    () -> buyingPowerService.addBuyingPower(PORTFOLIO_ID, VALID_AMOUNT));
+            verifyNoInteractions(portfolioIndex);
+        }
+
+        @Test
+        @DisplayName("Should insert the initial buying power minus the deduction for a new portfolio")
+        void shouldInsertNewPortfolio() {
+            // Arrange
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID)).thenReturn(null);
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            verify(balanceUpdateRepository).insertBuyingPower(PORTFOLIO_ID, new BigDecimal("4000.00"));
+        }
+
+        @Test
+        @DisplayName("Should not write when the buying power is insufficient")
+        void shouldNotWriteWhenInsufficient() {
+            // Arrange
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID))
+                    .thenReturn(new VersionedValue(INITIAL_BUYING_POWER, 7));
+
+            // Act & Assert
+            assertThrows(InsufficientBuyingPowerException.class,
+                    () -> buyingPowerService.deductBuyingPower(PORTFOLIO_ID, EXCESSIVE_AMOUNT));
+            verify(balanceUpdateRepository, never()).updateBuyingPower(any(), any(), anyLong());
+        }
+    }
+
+    @Nested
+    @DisplayName("Atomic Write Tests")
+    class AtomicWriteTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.ATOMIC);
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
+        }
+
+        @Test
+        @DisplayName("Should deduct with one guarded statement and no read")
+        void shouldDeductWithoutRead() {
+            // Arrange
+            when(balanceUpdateRepository.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT)).thenReturn(true);
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            verify(balanceUpdateRepository, never()).findBuyingPower(any());
+            verify(portfolioIndex).addToBuyingPower(PORTFOLIO_ID, VALID_AMOUNT.negate(), INITIAL_BUYING_POWER);
+            verifyNoInteractions(buyingPowerRepository);
+        }
+
+        @Test
+        @DisplayName("Should report insufficient buying power when the guarded statement matched no row")
+        void shouldReportInsufficient() {
+            // Arrange
+            when(balanceUpdateRepository.deductBuyingPower(PORTFOLIO_ID, EXCESSIVE_AMOUNT)).thenReturn(false);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID))
+                    .thenReturn(new VersionedValue(INITIAL_BUYING_POWER, 7));
+
+            // Act & Assert
+            assertThrows(InsufficientBuyingPowerException.class,
+                    () -> buyingPowerService.deductBuyingPower(PORTFOLIO_ID, EXCESSIVE_AMOUNT));
+            verifyNoInteractions(portfolioIndex);
+        }
+
+        @Test
+        @DisplayName("Should retry when the row became sufficient between the two statements")
+        void shouldRetryWhenRowChanged() {
+            // Arrange
+            when(balanceUpdateRepository.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT)).thenReturn(false);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID))
+                    .thenReturn(new VersionedValue(INITIAL_BUYING_POWER, 8));
+
+            // Act & Assert
+            assertThrows(OptimisticLockingFailureException.class,
+                    () -> buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT));
+        }
+
+        @Test
+        @DisplayName("Should insert the initial buying power minus the deduction for a new portfolio")
+        void shouldInsertNewPortfolio() {
+            // Arrange
+            when(balanceUpdateRepository.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT)).thenReturn(false);
+            when(balanceUpdateRepository.findBuyingPower(PORTFOLIO_ID)).thenReturn(null);
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            verify(balanceUpdateRepository).insertBuyingPower(PORTFOLIO_ID, new BigDecimal("4000.00"));
+        }
+
+        @Test
+        @DisplayName("Should add as an in-database increment")
+        void shouldAddAsIncrement() {
+            // Act
+            buyingPowerService.addBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            verify(balanceUpdateRepository).addBuyingPower(PORTFOLIO_ID, VALID_AMOUNT, INITIAL_BUYING_POWER);
+            verify(portfolioIndex).addToBuyingPower(PORTFOLIO_ID, VALID_AMOUNT, INITIAL_BUYING_POWER);
+        }
+    }
+
+    @Nested
+    @DisplayName("Persist Write Tests")
+    class PersistWriteTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.PERSIST);
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
+        }
+
+        @Test
+        @DisplayName("Should persist a portfolio that has no record with its first settlement")
+        void shouldPersistNewPortfolio() {
+            // Arrange
+            when(buyingPowerRepository.findById(PORTFOLIO_ID)).thenReturn(Optional.empty());
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            ArgumentCaptor<BuyingPowerEntity> saved = ArgumentCaptor.forClass(BuyingPowerEntity.class);
+            verify(persistOrUpdateRepository).persistOrUpdate(saved.capture(), eq(false));
+            assertThat(saved.getValue().getAmount()).isEqualTo(new BigDecimal("4000.00"));
+            verify(buyingPowerRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should update the buying power read in the same transaction")
+        void shouldUpdateExistingPortfolio() {
+            // Arrange
+            when(buyingPowerRepository.findById(PORTFOLIO_ID))
+                    .thenReturn(Optional.of(new BuyingPowerEntity(PORTFOLIO_ID, INITIAL_BUYING_POWER)));
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            ArgumentCaptor<BuyingPowerEntity> saved = ArgumentCaptor.forClass(BuyingPowerEntity.class);
+            verify(persistOrUpdateRepository).persistOrUpdate(saved.capture(), eq(true));
+            assertThat(saved.getValue().getAmount()).isEqualTo(new BigDecimal("4000.00"));
+            verify(buyingPowerRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Write-Behind Tests")
+    class WriteBehindTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.WRITE_BEHIND);
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
+        }
+
+        @Test
+        @DisplayName("Should settle against the index under the portfolio lock and stage the result")
+        void shouldStageDeduction() {
+            // Arrange
+            when(portfolioIndex.getBuyingPower(PORTFOLIO_ID)).thenReturn(INITIAL_BUYING_POWER);
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            var inOrder = inOrder(writeBehindService, portfolioIndex);
+            inOrder.verify(writeBehindService).lockPortfolio(PORTFOLIO_ID);
+            inOrder.verify(portfolioIndex).getBuyingPower(PORTFOLIO_ID);
+            inOrder.verify(writeBehindService).stageBuyingPower(PORTFOLIO_ID, new BigDecimal("4000.00"));
+            verifyNoInteractions(buyingPowerRepository, balanceUpdateRepository);
+        }
+
+        @Test
+        @DisplayName("Should start from the initial buying power of a portfolio that is not indexed")
+        void shouldStageAdditionToNewPortfolio() {
+            // Arrange
+            when(portfolioIndex.getBuyingPower(PORTFOLIO_ID)).thenReturn(null);
+
+            // Act
+            buyingPowerService.addBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            verify(writeBehindService).stageBuyingPower(PORTFOLIO_ID, new BigDecimal("6000.00"));
+            verify(portfolioIndex).updateBuyingPower(PORTFOLIO_ID, new BigDecimal("6000.00"));
+        }
+
+        @Test
+        @DisplayName("Should stage nothing when buying power is insufficient")
+        void shouldRejectInsufficientBuyingPower() {
+            // Arrange
+            when(portfolioIndex.getBuyingPower(PORTFOLIO_ID)).thenReturn(INITIAL_BUYING_POWER);
+
+            // Act & Assert
+            assertThrows(InsufficientBuyingPowerException.class,
+                    () -> buyingPowerService.deductBuyingPower(PORTFOLIO_ID, EXCESSIVE_AMOUNT));
+            verify(writeBehindService, never()).stageBuyingPower(any(), any());
+            verify(portfolioIndex, never()).updateBuyingPower(any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Deferred Settlement Tests")
+    class DeferredSettlementTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(buyingPowerService, "WRITE_MODE", WriteMode.DEFERRED);
+            ReflectionTestUtils.setField(buyingPowerService, "INITIAL_BUYING_POWER", INITIAL_BUYING_POWER);
+        }
+
+        @Test
+        @DisplayName("Should settle against the index under the portfolio lock and record the change")
+        void shouldRecordDeduction() {
+            // Arrange
+            when(portfolioIndex.getBuyingPower(PORTFOLIO_ID)).thenReturn(INITIAL_BUYING_POWER);
+
+            // Act
+            buyingPowerService.deductBuyingPower(PORTFOLIO_ID, VALID_AMOUNT);
+
+            // Assert
+            var inOrder = inOrder(writeBehindService, portfolioIndex, deferredSettlementService);
+            inOrder.verify(writeBehindService).lockPortfolio(PORTFOLIO_ID);
+            inOrder.verify(portfolioIndex).getBuyingPower(PORTFOLIO_ID);
+            inOrder.verify(deferredSettlementService).recordBuyingPower(PORTFOLIO_ID, new BigDecimal("-1000.00"));
+            inOrder.verify(portfolioIndex).updateBuyingPower(PORTFOLIO_ID, new BigDecimal("4000.00"));
+            verify(writeBehindService, never()).stageBuyingPower(any(), any());
+            verifyNoInteractions(buyingPowerRepository, balanceUpdateRepository);
+        }
+
+        @Test
+        @DisplayName("Should record nothing when buying power is insufficient")
+        void shouldRejectInsufficientBuyingPower() {
+            // Arrange
+            when(portfolioIndex.getBuyingPower(PORTFOLIO_ID)).thenReturn(INITIAL_BUYING_POWER);
+
+            // Act & Assert
+            assertThrows(InsufficientBuyingPowerException.class,
+                    () -> buyingPowerService.deductBuyingPower(PORTFOLIO_ID, EXCESSIVE_AMOUNT));
+            verifyNoInteractions(deferredSettlementService);
+            verify(portfolioIndex, never()).updateBuyingPower(any(), any());
+        }
+    }
 }
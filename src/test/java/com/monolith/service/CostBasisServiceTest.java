@@ -0,0 +1,291 @@
+package com.monolith.service;
+
+import com.monolith.repository.BalanceUpdateRepository;
+import com.monolith.repository.InventoryEntityId;
+import com.monolith.repository.PersistOrUpdateRepository;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.repository.PositionCostRepository;
+import com.monolith.repository.VersionedPositionCost;
+import com.monolith.valuation.ValuationEngine;
+import com.monolith.writebehind.WriteBehindService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CostBasisServiceTest {
+
+    @Mock
+    private PositionCostRepository positionCostRepository;
+
+    @Mock
+    private PersistOrUpdateRepository persistOrUpdateRepository;
+
+    @Mock
+    private BalanceUpdateRepository balanceUpdateRepository;
+
+    @Mock
+    private WriteBehindService writeBehindService;
+
+    @Mock
+    private ValuationEngine valuationEngine;
+
+    @InjectMocks
+    private CostBasisService costBasisService;
+
+    @Nested
+    @DisplayName("Record Buy Tests")
+    class RecordBuyTests {
+
+        @Test
+        @DisplayName("Should start average cost at the first execution price")
+        void shouldStartAverageCostAtFirstPrice() {
+            // Arrange
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.empty());
+            when(positionCostRepository.save(any(PositionCostEntity.class))).then(returnsFirstArg());
+
+            // Act
+            PositionCostEntity result = costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, PRICE_NVIDIA);
+
+            // Assert
+            assertThat(result.getQuantity()).isEqualByComparingTo("10");
+            assertThat(result.getAverageCost()).isEqualByComparingTo("100.00");
+            assertThat(result.getRealizedPnl()).isEqualByComparingTo("0");
+        }
+
+        @Test
+        @DisplayName("Should blend subsequent buys into the average cost")
+        void shouldBlendAverageCost() {
+            // Arrange
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    new BigDecimal("100.00"), BigDecimal.ZERO);
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.of(current));
+            when(positionCostRepository.save(any(PositionCostEntity.class))).then(returnsFirstArg());
+
+            // Act
+            PositionCostEntity result = costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA,
+                    new BigDecimal("30"), new BigDecimal("120.00"));
+
+            // Assert
+            assertThat(result.getQuantity()).isEqualByComparingTo("40");
+            assertThat(result.getAverageCost()).isEqualByComparingTo("115.00");
+        }
+    }
+
+    @Nested
+    @DisplayName("Record Sell Tests")
+    class RecordSellTests {
+
+        @Test
+        @DisplayName("Should realize P&L against the average cost and keep it unchanged")
+        void shouldRealizePnl() {
+            // Arrange
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    new BigDecimal("100.00"), new BigDecimal("5.00"));
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.of(current));
+            when(positionCostRepository.save(any(PositionCostEntity.class))).then(returnsFirstArg());
+
+            // Act
+            PositionCostEntity result = costBasisService.recordSell(PORTFOLIO_ID, ISIN_NVIDIA,
+                    new BigDecimal("4"), new BigDecimal("110.00"));
+
+            // Assert
+            assertThat(result.getQuantity()).isEqualByComparingTo("6");
+            assertThat(result.getAverageCost()).isEqualByComparingTo("100.00");
+            assertThat(result.getRealizedPnl()).isEqualByComparingTo("45.00");
+        }
+
+        @Test
+        @DisplayName("Should realize P&L only on the quantity the position cost accounts for")
+        void shouldRealizePnlOnTrackedQuantityOnly() {
+            // Arrange
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("4"),
+                    new BigDecimal("100.00"), BigDecimal.ZERO);
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.of(current));
+            when(positionCostRepository.save(any(PositionCostEntity.class))).then(returnsFirstArg());
+
+            // Act
+            PositionCostEntity result = costBasisService.recordSell(PORTFOLIO_ID, ISIN_NVIDIA,
+                    BigDecimal.TEN, new BigDecimal("110.00"));
+
+            // Assert
+            assertThat(result.getQuantity()).isEqualByComparingTo("0");
+            assertThat(result.getRealizedPnl()).isEqualByComparingTo("40.00");
+        }
+
+        @Test
+        @DisplayName("Should realize no P&L on a position with an unknown average cost")
+        void shouldSkipPnlForUnknownBasis() {
+            // Arrange
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    null, BigDecimal.ZERO);
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.of(current));
+            when(positionCostRepository.save(any(PositionCostEntity.class))).then(returnsFirstArg());
+
+            // Act
+            PositionCostEntity result = costBasisService.recordSell(PORTFOLIO_ID, ISIN_NVIDIA,
+                    new BigDecimal("4"), new BigDecimal("110.00"));
+
+            // Assert
+            assertThat(result.getQuantity()).isEqualByComparingTo("6");
+            assertThat(result.isBasisKnown()).isFalse();
+            assertThat(result.getRealizedPnl()).isEqualByComparingTo("0");
+        }
+
+        @Test
+        @DisplayName("Should track the cost again once a position with an unknown average cost is flat")
+        void shouldKnowBasisAgainWhenFlat() {
+            // Arrange
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    null, BigDecimal.ZERO);
+
+            // Act
+            PositionCostEntity flat = CostBasisService.applySell(current, BigDecimal.TEN, new BigDecimal("110.00"));
+            PositionCostEntity result = CostBasisService.applyBuy(flat, BigDecimal.TEN, PRICE_NVIDIA);
+
+            // Assert
+            assertThat(result.getAverageCost()).isEqualByComparingTo("100.00");
+        }
+    }
+
+    @Nested
+    @DisplayName("Reporting Tests")
+    class ReportingTests {
+
+        @Test
+        @DisplayName("Should serve committed costs from memory and publish them to valuation")
+        void shouldServeCommittedCosts() {
+            // Arrange
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.empty());
+            when(positionCostRepository.save(any(PositionCostEntity.class))).then(returnsFirstArg());
+
+            // Act
+            costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, PRICE_NVIDIA);
+
+            // Assert
+            assertThat(costBasisService.getPositionCost(PORTFOLIO_ID, ISIN_NVIDIA).getAverageCost())
+                    .isEqualByComparingTo("100.00");
+            assertThat(costBasisService.getPositionCosts(PORTFOLIO_ID)).hasSize(1);
+            verify(valuationEngine).onCostBasisChanged(eq(PORTFOLIO_ID), eq(ISIN_NVIDIA), any(BigDecimal.class));
+        }
+    }
+
+    @Nested
+    @DisplayName("Persist Write Tests")
+    class PersistWriteTests {
+
+        @Test
+        @DisplayName("Should persist the cost of a position that never traded")
+        void shouldPersistNewPositionCost() {
+            // Arrange
+            ReflectionTestUtils.setField(costBasisService, "WRITE_MODE", WriteMode.PERSIST);
+            when(positionCostRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.empty());
+            when(persistOrUpdateRepository.persistOrUpdate(any(PositionCostEntity.class), eq(false)))
+                    .then(returnsFirstArg());
+
+            // Act
+            PositionCostEntity result = costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, PRICE_NVIDIA);
+
+            // Assert
+            assertThat(result.getAverageCost()).isEqualByComparingTo("100.00");
+            verify(positionCostRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Optimistic Write Tests")
+    class OptimisticWriteTests {
+
+        @Test
+        @DisplayName("Should write the position cost conditionally on the version it was read at")
+        void shouldUpdateVersionedRow() {
+            // Arrange
+            ReflectionTestUtils.setField(costBasisService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    new BigDecimal("100.00"), BigDecimal.ZERO);
+            when(balanceUpdateRepository.findPositionCost(PORTFOLIO_ID, ISIN_NVIDIA))
+                    .thenReturn(new VersionedPositionCost(current, 3L));
+            when(balanceUpdateRepository.updatePositionCost(any(PositionCostEntity.class), eq(3L))).thenReturn(true);
+
+            // Act
+            PositionCostEntity result = costBasisService.recordSell(PORTFOLIO_ID, ISIN_NVIDIA,
+                    new BigDecimal("4"), new BigDecimal("110.00"));
+
+            // Assert
+            assertThat(result.getRealizedPnl()).isEqualByComparingTo("40.00");
+            verify(positionCostRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should fail a lost race with a retryable optimistic locking failure")
+        void shouldFailLostRace() {
+            // Arrange
+            ReflectionTestUtils.setField(costBasisService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            PositionCostEntity current = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    new BigDecimal("100.00"), BigDecimal.ZERO);
+            when(balanceUpdateRepository.findPositionCost(PORTFOLIO_ID, ISIN_NVIDIA))
+                    .thenReturn(new VersionedPositionCost(current, 3L));
+            when(balanceUpdateRepository.updatePositionCost(any(PositionCostEntity.class), eq(3L))).thenReturn(false);
+
+            // Act & Assert
+            assertThatThrownBy(() -> costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, PRICE_NVIDIA))
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+            assertThat(costBasisService.getPositionCost(PORTFOLIO_ID, ISIN_NVIDIA)).isNull();
+        }
+
+        @Test
+        @DisplayName("Should insert the position cost of a position that never traded")
+        void shouldInsertNewRow() {
+            // Arrange
+            ReflectionTestUtils.setField(costBasisService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            when(balanceUpdateRepository.findPositionCost(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(null);
+
+            // Act
+            PositionCostEntity result = costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, PRICE_NVIDIA);
+
+            // Assert
+            assertThat(result.getAverageCost()).isEqualByComparingTo("100.00");
+            verify(balanceUpdateRepository).insertPositionCost(result);
+        }
+    }
+
+    @Nested
+    @DisplayName("Write-Behind Tests")
+    class WriteBehindTests {
+
+        @Test
+        @DisplayName("Should stage the position cost with the balances instead of writing it")
+        void shouldStagePositionCost() {
+            // Arrange
+            ReflectionTestUtils.setField(costBasisService, "WRITE_MODE", WriteMode.WRITE_BEHIND);
+            costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, PRICE_NVIDIA);
+
+            // Act
+            PositionCostEntity result = costBasisService.recordBuy(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN,
+                    new BigDecimal("120.00"));
+
+            // Assert
+            assertThat(result.getQuantity()).isEqualByComparingTo("20");
+            assertThat(result.getAverageCost()).isEqualByComparingTo("110.00");
+            verify(writeBehindService, times(2)).lockPortfolio(PORTFOLIO_ID);
+            verify(writeBehindService).stagePositionCost(result);
+            verifyNoInteractions(positionCostRepository);
+        }
+    }
+}
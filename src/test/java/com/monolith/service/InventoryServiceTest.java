@@ -1,19 +1,34 @@
 package com.monolith.service;
 
 import com.monolith.exception.InsufficientInventoryException;
+import com.monolith.index.PortfolioIndex;
+import com.monolith.index.PositionKey;
+import com.monolith.repository.BalanceUpdateRepository;
 import com.monolith.repository.InventoryEntity;
 import com.monolith.repository.InventoryEntityId;
+import com.monolith.repository.InventoryPageRepository;
+import com.monolith.repository.InventoryQueryRepository;
 import com.monolith.repository.InventoryRepository;
+import com.monolith.repository.PersistOrUpdateRepository;
+import com.monolith.repository.VersionedValue;
+import com.monolith.settlement.DeferredSettlementService;
+import com.monolith.writebehind.WriteBehindService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import static com.monolith.utils.TestUtils.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +41,27 @@ class InventoryServiceTest {
     @Mock
     private InventoryRepository inventoryRepository;
 
+    @Mock
+    private InventoryPageRepository inventoryPageRepository;
+
+    @Mock
+    private InventoryQueryRepository inventoryQueryRepository;
+
+    @Mock
+    private BalanceUpdateRepository balanceUpdateRepository;
+
+    @Mock
+    private PersistOrUpdateRepository persistOrUpdateRepository;
+
+    @Mock
+    private PortfolioIndex portfolioIndex;
+
+    @Mock
+    private WriteBehindService writeBehindService;
+
+    @Mock
+    private DeferredSettlementService deferredSettlementService;
+
     @InjectMocks
     private InventoryService inventoryService;
 
@@ -289,4 +325,246 @@ class InventoryServiceTest {
             assertTrue(exception.getMessage().contains(ISIN_NVIDIA));
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Optimistic Write Tests")
+    class OptimisticWriteTests {
+
+        @Test
+        @DisplayName("Should delete a position sold to zero only at the version it read")
+        void shouldDeleteWithVersionCheck() {
+            // Arrange
+            ReflectionTestUtils.setField(inventoryService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            when(balanceUpdateRepository.findPosition(PORTFOLIO_ID, ISIN_NVIDIA))
+                    .thenReturn(new VersionedValue(DEFAULT_QUANTITY, 3));
+            when(balanceUpdateRepository.deletePosition(PORTFOLIO_ID, ISIN_NVIDIA, 3)).thenReturn(true);
+
+            // Act
+            InventoryEntity result = inventoryService.removeFromInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            assertNull(result);
+            verify(balanceUpdateRepository).deletePosition(PORTFOLIO_ID, ISIN_NVIDIA, 3);
+            verify(portfolioIndex).addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY.negate());
+            verifyNoInteractions(inventoryRepository);
+        }
+
+        @Test
+        @DisplayName("Should fail fast when a concurrent buy changed the position")
+        void shouldFailOnVersionConflict() {
+            // Arrange
+            ReflectionTestUtils.setField(inventoryService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            when(balanceUpdateRepository.findPosition(PORTFOLIO_ID, ISIN_NVIDIA))
+                    .thenReturn(new VersionedValue(DEFAULT_QUANTITY, 3));
+            when(balanceUpdateRepository.updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("15.00"), 3))
+                    .thenReturn(false);
+
+            // Act & Assert
+            assertThrows(OptimisticLockingFailureException.class,
+                    () -> inventoryService.addToInventory(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("5")));
+            verifyNoInteractions(portfolioIndex);
+        }
+    }
+
+    @Nested
+    @DisplayName("Atomic Write Tests")
+    class AtomicWriteTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(inventoryService, "WRITE_MODE", WriteMode.ATOMIC);
+        }
+
+        @Test
+        @DisplayName("Should add as an in-database increment")
+        void shouldAddAsIncrement() {
+            // Act
+            InventoryEntity result = inventoryService.addToInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            assertNull(result);
+            verify(balanceUpdateRepository).addPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+            verify(portfolioIndex).addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+            verifyNoInteractions(inventoryRepository);
+        }
+
+        @Test
+        @DisplayName("Should remove with a guarded decrement and drop the sold-out row")
+        void shouldRemoveAsDecrement() {
+            // Arrange
+            when(balanceUpdateRepository.removePosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY)).thenReturn(true);
+
+            // Act
+            inventoryService.removeFromInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            verify(balanceUpdateRepository, never()).findPosition(any(), any());
+            verify(balanceUpdateRepository).deleteEmptyPosition(PORTFOLIO_ID, ISIN_NVIDIA);
+            verify(portfolioIndex).addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY.negate());
+        }
+
+        @Test
+        @DisplayName("Should report the available quantity when the guarded decrement matched no row")
+        void shouldReportInsufficient() {
+            // Arrange
+            BigDecimal excessive = DEFAULT_QUANTITY.add(BigDecimal.ONE);
+            when(balanceUpdateRepository.removePosition(PORTFOLIO_ID, ISIN_NVIDIA, excessive)).thenReturn(false);
+            when(balanceUpdateRepository.findPosition(PORTFOLIO_ID, ISIN_NVIDIA))
+                    .thenReturn(new VersionedValue(DEFAULT_QUANTITY, 3));
+
+            // Act & Assert
+            assertThrows(InsufficientInventoryException.class,
+                    () -> inventoryService.removeFromInventory(PORTFOLIO_ID, ISIN_NVIDIA, excessive));
+            verify(balanceUpdateRepository, never()).deleteEmptyPosition(any(), any());
+            verifyNoInteractions(portfolioIndex);
+        }
+    }
+
+    @Nested
+    @DisplayName("Persist Write Tests")
+    class PersistWriteTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(inventoryService, "WRITE_MODE", WriteMode.PERSIST);
+        }
+
+        @Test
+        @DisplayName("Should persist a position the read did not find")
+        void shouldPersistNewPosition() {
+            // Arrange
+            when(inventoryRepository.findById(any(InventoryEntityId.class))).thenReturn(Optional.empty());
+
+            // Act
+            inventoryService.addToInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            verify(persistOrUpdateRepository).persistOrUpdate(any(InventoryEntity.class), eq(false));
+            verify(inventoryRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should tell new from existing positions in a grouped save by the index")
+        @SuppressWarnings("unchecked")
+        void shouldUseIndexForGroupedSave() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(DEFAULT_QUANTITY);
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_APPLE)).thenReturn(null);
+
+            // Act
+            inventoryService.savePositions(Map.of(
+                    new PositionKey(PORTFOLIO_ID, ISIN_NVIDIA), BigDecimal.ONE,
+                    new PositionKey(PORTFOLIO_ID, ISIN_APPLE), BigDecimal.TEN),
+                    Map.of(new PositionKey(PORTFOLIO_ID, ISIN_NVIDIA), DEFAULT_QUANTITY));
+
+            // Assert
+            ArgumentCaptor<Predicate<InventoryEntity>> exists = ArgumentCaptor.forClass(Predicate.class);
+            verify(persistOrUpdateRepository).persistOrUpdateAll(anyCollection(), exists.capture());
+            assertTrue(exists.getValue().test(new InventoryEntity(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ONE)));
+            assertFalse(exists.getValue().test(new InventoryEntity(PORTFOLIO_ID, ISIN_APPLE, BigDecimal.TEN)));
+            verify(inventoryRepository, never()).saveAll(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Write-Behind Tests")
+    class WriteBehindTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(inventoryService, "WRITE_MODE", WriteMode.WRITE_BEHIND);
+        }
+
+        @Test
+        @DisplayName("Should add to the indexed position under the portfolio lock and stage the result")
+        void shouldStageAddition() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(DEFAULT_QUANTITY);
+
+            // Act
+            InventoryEntity result = inventoryService.addToInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            BigDecimal expected = DEFAULT_QUANTITY.add(DEFAULT_QUANTITY);
+            assertEquals(expected, result.getQuantity());
+            var inOrder = inOrder(writeBehindService, portfolioIndex);
+            inOrder.verify(writeBehindService).lockPortfolio(PORTFOLIO_ID);
+            inOrder.verify(portfolioIndex).getPosition(PORTFOLIO_ID, ISIN_NVIDIA);
+            inOrder.verify(writeBehindService).stagePosition(PORTFOLIO_ID, ISIN_NVIDIA, expected);
+            verifyNoInteractions(inventoryRepository);
+        }
+
+        @Test
+        @DisplayName("Should stage a zero quantity when the position is sold out")
+        void shouldStageSoldOutPosition() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(DEFAULT_QUANTITY);
+
+            // Act
+            InventoryEntity result = inventoryService.removeFromInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            assertNull(result);
+            verify(writeBehindService).stagePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO);
+            verify(portfolioIndex).addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY.negate());
+            verifyNoInteractions(inventoryRepository);
+        }
+
+        @Test
+        @DisplayName("Should stage nothing when inventory is insufficient")
+        void shouldRejectInsufficientInventory() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(null);
+
+            // Act & Assert
+            assertThrows(InsufficientInventoryException.class,
+                    () -> inventoryService.removeFromInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY));
+            verify(writeBehindService, never()).stagePosition(any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Deferred Settlement Tests")
+    class DeferredSettlementTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(inventoryService, "WRITE_MODE", WriteMode.DEFERRED);
+        }
+
+        @Test
+        @DisplayName("Should add to the indexed position under the portfolio lock and record the change")
+        void shouldRecordAddition() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(DEFAULT_QUANTITY);
+
+            // Act
+            InventoryEntity result = inventoryService.addToInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            assertEquals(DEFAULT_QUANTITY.add(DEFAULT_QUANTITY), result.getQuantity());
+            var inOrder = inOrder(writeBehindService, portfolioIndex, deferredSettlementService);
+            inOrder.verify(writeBehindService).lockPortfolio(PORTFOLIO_ID);
+            inOrder.verify(portfolioIndex).getPosition(PORTFOLIO_ID, ISIN_NVIDIA);
+            inOrder.verify(deferredSettlementService).recordPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+            verify(writeBehindService, never()).stagePosition(any(), any(), any());
+            verifyNoInteractions(inventoryRepository);
+        }
+
+        @Test
+        @DisplayName("Should record the sold quantity when the position is sold out")
+        void shouldRecordSoldOutPosition() {
+            // Arrange
+            when(portfolioIndex.getPosition(PORTFOLIO_ID, ISIN_NVIDIA)).thenReturn(DEFAULT_QUANTITY);
+
+            // Act
+            InventoryEntity result = inventoryService.removeFromInventory(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY);
+
+            // Assert
+            assertNull(result);
+            verify(deferredSettlementService).recordPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY.negate());
+            verify(portfolioIndex).addToPosition(PORTFOLIO_ID, ISIN_NVIDIA, DEFAULT_QUANTITY.negate());
+            verifyNoInteractions(inventoryRepository);
+        }
+    }
+}
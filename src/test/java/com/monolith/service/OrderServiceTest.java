@@ -2,8 +2,14 @@ package com.monolith.service;
 
 import com.monolith.dto.OrderRequest;
 import com.monolith.exception.OrderNotFoundException;
+import com.monolith.repository.OrderArchiveRepository;
 import com.monolith.repository.OrderEntity;
+import com.monolith.repository.OrderHistoryRepository;
 import com.monolith.repository.OrderRepository;
+import com.monolith.repository.OrderStatusRepository;
+import com.monolith.writebehind.WriteBehindService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -11,9 +17,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static com.monolith.OrderSide.BUY;
@@ -23,6 +34,7 @@ import static com.monolith.utils.TestUtils.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +43,30 @@ public class OrderServiceTest {
     @Mock
     private OrderRepository orderRepository;
 
+    @Mock
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Mock
+    private OrderStatusRepository orderStatusRepository;
+
+    @Mock
+    private OrderArchiveRepository orderArchiveRepository;
+
+    @Mock
+    private WriteBehindService writeBehindService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private OrderCache orderCache = new OrderCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    @Mock
+    private List<OrderListener> orderListeners;
+
+    @Mock
+    private OrderListener orderListener;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -132,6 +168,22 @@ public class OrderServiceTest {
             // Verify
             verify(orderRepository).findById(orderId);
         }
+
+        @Test
+        @DisplayName("Should find an order moved to the archive")
+        void shouldFindArchivedOrder() {
+            // Arrange
+            OrderEntity archivedOrder = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.empty());
+            when(orderArchiveRepository.findById(ORDER_ID)).thenReturn(Optional.of(archivedOrder));
+
+            // Act
+            OrderEntity result = orderService.getOrder(ORDER_ID);
+
+            // Assert
+            assertThat(result).isEqualTo(archivedOrder);
+        }
     }
 
     @Nested
@@ -172,7 +224,8 @@ public class OrderServiceTest {
             
             assertThat(exception.getMessage())
                     .isEqualTo("Order " + ORDER_ID + " cannot be executed because it's in " + EXECUTED + " status");
-            
+            assertThat(exception.getStackTrace()).isEmpty();
+
             // Verify
             verify(orderRepository).findById(ORDER_ID);
         }
@@ -394,4 +447,320 @@ public class OrderServiceTest {
             verify(orderRepository).save(any(OrderEntity.class));
         }
     }
+
+    @Nested
+    @DisplayName("Order Cache Tests")
+    class OrderCacheTests {
+
+        @Test
+        @DisplayName("Should serve a repeated lookup from the cache")
+        void shouldServeRepeatedLookupFromCache() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+
+            // Act
+            orderService.getOrder(ORDER_ID);
+            OrderEntity result = orderService.getOrder(ORDER_ID);
+
+            // Assert
+            assertThat(result).isSameAs(order);
+            verify(orderRepository, times(1)).findById(ORDER_ID);
+        }
+
+        @Test
+        @DisplayName("Should remember an order that was not found")
+        void shouldCacheNotFound() {
+            // Arrange
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.empty());
+            when(orderArchiveRepository.findById(ORDER_ID)).thenReturn(Optional.empty());
+
+            // Act & Assert
+            assertThrows(OrderNotFoundException.class, () -> orderService.getOrder(ORDER_ID));
+            assertThrows(OrderNotFoundException.class, () -> orderService.getOrder(ORDER_ID));
+            verify(orderRepository, times(1)).findById(ORDER_ID);
+            verify(orderArchiveRepository, times(1)).findById(ORDER_ID);
+        }
+
+        @Test
+        @DisplayName("Should serve a created order without reading it back")
+        void shouldWriteThroughOnCreate() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.save(any(OrderEntity.class))).thenReturn(order);
+
+            // Act
+            orderService.createOrder(createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY), PRICE_NVIDIA);
+            OrderEntity result = orderService.getOrder(ORDER_ID);
+
+            // Assert
+            assertThat(result).isSameAs(order);
+            verify(orderRepository, never()).findById(any());
+        }
+
+        @Test
+        @DisplayName("Should replace a cached order when it is cancelled")
+        void shouldWriteThroughOnCancel() {
+            // Arrange
+            OrderEntity createdOrder = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity cancelledOrder = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(
+                    Optional.of(createdOrder),
+                    Optional.of(createMockOrderEntity(
+                            ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA)));
+            when(orderRepository.save(any(OrderEntity.class))).thenReturn(cancelledOrder);
+            orderService.getOrder(ORDER_ID);
+
+            // Act
+            orderService.cancelOrder(ORDER_ID);
+            OrderEntity result = orderService.getOrder(ORDER_ID);
+
+            // Assert
+            assertThat(result.getStatus()).isEqualTo(CANCELLED);
+            assertThat(createdOrder.getStatus()).isEqualTo(CREATED);
+            verify(orderRepository, times(2)).findById(ORDER_ID);
+        }
+
+        @Test
+        @DisplayName("Should replace a cached order when its execution is finalized")
+        void shouldWriteThroughOnFinalize() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity executedOrder = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.save(any(OrderEntity.class))).thenReturn(executedOrder);
+
+            // Act
+            orderService.finalizeOrderExecution(order);
+            OrderEntity result = orderService.getOrder(ORDER_ID);
+
+            // Assert
+            assertThat(result).isSameAs(executedOrder);
+            verify(orderRepository, never()).findById(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Order Listener Tests")
+    class OrderListenerTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(orderService, "orderListeners", List.of(orderListener));
+        }
+
+        @Test
+        @DisplayName("Should announce a created order")
+        void shouldAnnounceCreatedOrder() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.save(any(OrderEntity.class))).thenReturn(order);
+
+            // Act
+            orderService.createOrder(createOrderRequest(PORTFOLIO_ID, ISIN_NVIDIA, BUY, DEFAULT_QUANTITY), PRICE_NVIDIA);
+
+            // Assert
+            verify(orderListener).onOrderCreated(order);
+            verify(orderListener, never()).onOrderClosed(any());
+        }
+
+        @Test
+        @DisplayName("Should announce a cancelled and an executed order as closed")
+        void shouldAnnounceClosedOrders() {
+            // Arrange
+            OrderEntity cancelledOrder = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CANCELLED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity executedOrder = createMockOrderEntity(
+                    ORDER_ID + 1, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED, SELL, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA)));
+            when(orderRepository.save(any(OrderEntity.class))).thenReturn(cancelledOrder, executedOrder);
+
+            // Act
+            orderService.cancelOrder(ORDER_ID);
+            orderService.finalizeOrderExecution(createMockOrderEntity(
+                    ORDER_ID + 1, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, SELL, DEFAULT_QUANTITY, PRICE_NVIDIA));
+
+            // Assert
+            verify(orderListener).onOrderClosed(cancelledOrder);
+            verify(orderListener).onOrderClosed(executedOrder);
+            verify(orderListener, never()).onOrderCreated(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Cancel Orders Tests")
+    class CancelOrdersTests {
+
+        @Test
+        @DisplayName("Should cancel the open orders and skip the closed ones")
+        void shouldCancelOnlyOpenOrders() {
+            // Arrange
+            OrderEntity openOrder = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity executedOrder = createMockOrderEntity(
+                    ORDER_ID + 1, PORTFOLIO_ID, ISIN_NVIDIA, EXECUTED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findAllById(List.of(ORDER_ID, ORDER_ID + 1))).thenReturn(List.of(openOrder, executedOrder));
+
+            // Act
+            List<OrderEntity> cancelled = orderService.cancelOrders(List.of(ORDER_ID, ORDER_ID + 1));
+
+            // Assert
+            assertThat(cancelled).containsExactly(openOrder);
+            assertThat(openOrder.getStatus()).isEqualTo(CANCELLED);
+            assertThat(executedOrder.getStatus()).isEqualTo(EXECUTED);
+            verify(orderRepository).saveAll(List.of(openOrder));
+            assertThat(orderService.getOrder(ORDER_ID).getStatus()).isEqualTo(CANCELLED);
+        }
+
+        @Test
+        @DisplayName("Should skip an order executed concurrently in the native write modes")
+        void shouldSkipOrderThatLostTheTransition() {
+            // Arrange
+            ReflectionTestUtils.setField(orderService, "WRITE_MODE", WriteMode.OPTIMISTIC);
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findAllById(List.of(ORDER_ID))).thenReturn(List.of(order));
+            when(orderStatusRepository.transitionAll(List.of(order), CREATED, CANCELLED)).thenReturn(List.of());
+
+            // Act
+            List<OrderEntity> cancelled = orderService.cancelOrders(List.of(ORDER_ID));
+
+            // Assert
+            assertThat(cancelled).isEmpty();
+            verify(orderRepository, never()).saveAll(any());
+        }
+
+        @Test
+        @DisplayName("Should move all open orders in one batched transition in the native write modes")
+        void shouldTransitionOpenOrdersInOneBatch() {
+            // Arrange
+            ReflectionTestUtils.setField(orderService, "WRITE_MODE", WriteMode.ATOMIC);
+            OrderEntity first = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity second = createMockOrderEntity(
+                    ORDER_ID + 1, PORTFOLIO_ID, ISIN_APPLE, CREATED, SELL, DEFAULT_QUANTITY, PRICE_APPLE);
+            when(orderRepository.findAllById(List.of(ORDER_ID, ORDER_ID + 1))).thenReturn(List.of(first, second));
+            when(orderStatusRepository.transitionAll(List.of(first, second), CREATED, CANCELLED))
+                    .thenReturn(List.of(first, second));
+
+            // Act
+            List<OrderEntity> cancelled = orderService.cancelOrders(List.of(ORDER_ID, ORDER_ID + 1));
+
+            // Assert
+            assertThat(cancelled).containsExactly(first, second);
+            verify(orderStatusRepository, never()).transition(any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Write-Behind Tests")
+    class WriteBehindTests {
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(orderService, "WRITE_MODE", WriteMode.WRITE_BEHIND);
+        }
+
+        @Test
+        @DisplayName("Should show a status that is not flushed yet")
+        void shouldOverlayPendingStatus() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+            when(writeBehindService.getPendingStatus(ORDER_ID)).thenReturn(EXECUTED);
+            when(orderStatusRepository.detachWithStatus(order, EXECUTED)).thenAnswer(invocation -> {
+                order.setStatus(EXECUTED);
+                return order;
+            });
+
+            // Act
+            OrderEntity result = orderService.getOrder(ORDER_ID);
+
+            // Assert
+            assertThat(result.getStatus()).isEqualTo(EXECUTED);
+        }
+
+        @Test
+        @DisplayName("Should reject executing an order whose cancellation is not flushed yet")
+        void shouldRejectExecutionOfPendingCancellation() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+            when(writeBehindService.getPendingStatus(ORDER_ID)).thenReturn(CANCELLED);
+            when(orderStatusRepository.detachWithStatus(order, CANCELLED)).thenAnswer(invocation -> {
+                order.setStatus(CANCELLED);
+                return order;
+            });
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () -> orderService.getOrderForExecution(ORDER_ID));
+            verify(writeBehindService).lockPortfolio(PORTFOLIO_ID);
+        }
+
+        @Test
+        @DisplayName("Should re-read the status when a flush ran since the order was read")
+        void shouldRereadStatusAfterFlush() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+            when(writeBehindService.getFlushCount()).thenReturn(1L, 2L);
+            when(orderStatusRepository.findStatus(ORDER_ID)).thenReturn(EXECUTED);
+            when(orderStatusRepository.detachWithStatus(order, EXECUTED)).thenAnswer(invocation -> {
+                order.setStatus(EXECUTED);
+                return order;
+            });
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () -> orderService.cancelOrder(ORDER_ID));
+        }
+
+        @Test
+        @DisplayName("Should stage the cancellation of open orders in one pass and skip pending executions")
+        void shouldStageBulkCancellation() {
+            // Arrange
+            OrderEntity open = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            OrderEntity executing = createMockOrderEntity(
+                    ORDER_ID + 1, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderRepository.findAllById(List.of(ORDER_ID, ORDER_ID + 1))).thenReturn(List.of(open, executing));
+            when(writeBehindService.getPendingStatus(ORDER_ID)).thenReturn(null);
+            when(writeBehindService.getPendingStatus(ORDER_ID + 1)).thenReturn(EXECUTED);
+
+            // Act
+            List<OrderEntity> cancelled = orderService.cancelOrders(List.of(ORDER_ID, ORDER_ID + 1));
+
+            // Assert
+            assertThat(cancelled).containsExactly(open);
+            verify(writeBehindService).lockPortfolios(List.of(PORTFOLIO_ID));
+            verify(writeBehindService).stageOrderStatus(ORDER_ID, CANCELLED);
+            verify(writeBehindService, never()).stageOrderStatus(eq(ORDER_ID + 1), any());
+            verify(orderStatusRepository).detachAllWithStatus(List.of(open), CANCELLED);
+        }
+
+        @Test
+        @DisplayName("Should stage the final status instead of saving the order")
+        void shouldStageFinalStatus() {
+            // Arrange
+            OrderEntity order = createMockOrderEntity(
+                    ORDER_ID, PORTFOLIO_ID, ISIN_NVIDIA, CREATED, BUY, DEFAULT_QUANTITY, PRICE_NVIDIA);
+            when(orderStatusRepository.detachWithStatus(order, EXECUTED)).thenReturn(order);
+
+            // Act
+            orderService.finalizeOrderExecution(order);
+
+            // Assert
+            verify(writeBehindService).stageOrderStatus(ORDER_ID, EXECUTED);
+            verify(orderRepository, never()).save(any());
+        }
+    }
 }
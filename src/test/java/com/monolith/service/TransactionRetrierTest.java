@@ -0,0 +1,101 @@
+package com.monolith.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionRetrierTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionRetrier transactionRetrier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionRetrier = new TransactionRetrier(transactionManager, meterRegistry, 3, 1, 2);
+    }
+
+    @Test
+    @DisplayName("Should rerun the transaction after a lost race and roll back each failed attempt")
+    void shouldRetryConcurrencyFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = transactionRetrier.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("version changed");
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(meterRegistry.get("trading.transaction.retries").counter().count()).isEqualTo(2);
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Should give up after the maximum number of attempts")
+    void shouldGiveUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> transactionRetrier.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("version changed");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("trading.transaction.retries.exhausted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not retry business failures")
+    void shouldNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> transactionRetrier.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("Order 1 cannot be executed");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should run every attempt at the requested isolation level")
+    void shouldRetryAtIsolationLevel() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = transactionRetrier.execute(Isolation.SERIALIZABLE, () -> {
+            if (attempts.incrementAndGet() < 2) {
+                throw new CannotAcquireLockException("could not serialize access");
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        verify(transactionManager, times(2)).getTransaction(argThat(definition ->
+                definition.getIsolationLevel() == TransactionDefinition.ISOLATION_SERIALIZABLE));
+    }
+}
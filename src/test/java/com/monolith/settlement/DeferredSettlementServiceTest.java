@@ -0,0 +1,126 @@
+package com.monolith.settlement;
+
+import com.monolith.index.PortfolioIndex;
+import com.monolith.repository.SettlementLedgerRepository;
+import com.monolith.repository.SettlementNet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Runs the settlement batches against the migrated schema of the active storage profile.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DeferredSettlementService.class, SettlementLedgerRepository.class, SimpleMeterRegistry.class})
+class DeferredSettlementServiceTest {
+
+    private static final String PORTFOLIO_ID = "settlement-portfolio";
+
+    @Autowired
+    private DeferredSettlementService deferredSettlementService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private PortfolioIndex portfolioIndex;
+
+    @Test
+    @DisplayName("Should net the entries into one change per balance and record the batch")
+    void shouldNetEntriesIntoBalances() {
+        // Arrange
+        deferredSettlementService.recordBuyingPower(PORTFOLIO_ID, new BigDecimal("-1000.00"));
+        deferredSettlementService.recordBuyingPower(PORTFOLIO_ID, new BigDecimal("-500.50"));
+        deferredSettlementService.recordBuyingPower(PORTFOLIO_ID, new BigDecimal("200.00"));
+        deferredSettlementService.recordPosition(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("10.00"));
+        deferredSettlementService.recordPosition(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("5.00"));
+
+        // Act
+        List<SettlementNet> nets = ownNets(deferredSettlementService.settle(SettlementReason.END_OF_DAY));
+
+        // Assert
+        assertThat(nets).extracting(SettlementNet::getIsin, SettlementNet::getDelta, SettlementNet::getEntries)
+                .containsExactlyInAnyOrder(
+                        tuple(ISIN_NVIDIA, new BigDecimal("15.00"), 2),
+                        tuple(null, new BigDecimal("-1300.50"), 3));
+        assertThat(buyingPower()).isEqualByComparingTo("3699.50");
+        assertThat(position()).isEqualByComparingTo("15.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM settlement_entry "
+                + "WHERE portfolio_id = ? AND batch_id IS NULL", Integer.class, PORTFOLIO_ID)).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT b.reason FROM settlement_batch b JOIN settlement_net n "
+                + "ON n.batch_id = b.id WHERE n.portfolio_id = ? AND b.settled_at IS NOT NULL", String.class, PORTFOLIO_ID))
+                .containsOnly("END_OF_DAY");
+        assertThat(jdbcTemplate.queryForObject("SELECT balance FROM settlement_net "
+                + "WHERE portfolio_id = ? AND isin IS NULL", BigDecimal.class, PORTFOLIO_ID)).isEqualByComparingTo("3699.50");
+    }
+
+    @Test
+    @DisplayName("Should add the net to existing balances and delete a position netted to zero")
+    void shouldApplyNetsToExistingBalances() {
+        // Arrange
+        jdbcTemplate.update("INSERT INTO buying_power_entity (portfolio_id, amount, version) VALUES (?, 100.00, 0)",
+                PORTFOLIO_ID);
+        jdbcTemplate.update("INSERT INTO inventory_entity (portfolio_id, isin, quantity, version) VALUES (?, ?, 10.00, 0)",
+                PORTFOLIO_ID, ISIN_NVIDIA);
+        deferredSettlementService.recordBuyingPower(PORTFOLIO_ID, new BigDecimal("50.00"));
+        deferredSettlementService.recordPosition(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("-10.00"));
+
+        // Act
+        deferredSettlementService.settle(SettlementReason.INTERVAL);
+
+        // Assert
+        assertThat(buyingPower()).isEqualByComparingTo("150.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory_entity WHERE portfolio_id = ?",
+                Integer.class, PORTFOLIO_ID)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT balance FROM settlement_net "
+                + "WHERE portfolio_id = ? AND isin = ?", BigDecimal.class, PORTFOLIO_ID, ISIN_NVIDIA)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should leave no batch when nothing is pending")
+    void shouldSkipEmptyBatch() {
+        // Arrange
+        deferredSettlementService.recordBuyingPower(PORTFOLIO_ID, new BigDecimal("-10.00"));
+        deferredSettlementService.recordBuyingPower(PORTFOLIO_ID, BigDecimal.ZERO);
+        deferredSettlementService.settle(SettlementReason.INTERVAL);
+        Integer batches = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM settlement_batch", Integer.class);
+
+        // Act
+        List<SettlementNet> nets = deferredSettlementService.settle(SettlementReason.INTERVAL);
+
+        // Assert
+        assertThat(nets).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM settlement_batch", Integer.class)).isEqualTo(batches);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM settlement_entry WHERE portfolio_id = ?",
+                Integer.class, PORTFOLIO_ID)).isEqualTo(1);
+    }
+
+    // Other tests may leave unsettled entries in a shared database
+    private static List<SettlementNet> ownNets(List<SettlementNet> nets) {
+        return nets.stream().filter(net -> net.getPortfolioId().equals(PORTFOLIO_ID)).toList();
+    }
+
+    private BigDecimal buyingPower() {
+        return jdbcTemplate.queryForObject("SELECT amount FROM buying_power_entity WHERE portfolio_id = ?",
+                BigDecimal.class, PORTFOLIO_ID);
+    }
+
+    private BigDecimal position() {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM inventory_entity WHERE portfolio_id = ? AND isin = ?",
+                BigDecimal.class, PORTFOLIO_ID, ISIN_NVIDIA);
+    }
+}
@@ -0,0 +1,52 @@
+package com.monolith.utils;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.Profiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Points the postgres profile at a PostgreSQL started for the test JVM unless DB_HOST names a server.
+ * The server is shared by all application contexts of the run and stopped when the JVM exits.
+ */
+public class EmbeddedPostgresEnvironment implements EnvironmentPostProcessor {
+
+    private static EmbeddedPostgres postgres;
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.acceptsProfiles(Profiles.of("postgres")) || environment.containsProperty("DB_HOST")) {
+            return;
+        }
+        environment.getPropertySources().addFirst(new MapPropertySource("embeddedPostgres", Map.of(
+                "DB_HOST", "localhost",
+                "DB_PORT", start().getPort(),
+                "DB_NAME", "postgres",
+                "DB_USER", "postgres",
+                "DB_PASSWORD", "postgres")));
+    }
+
+    private static synchronized EmbeddedPostgres start() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start the embedded PostgreSQL", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                    // The data directory is temporary
+                }
+            }));
+        }
+        return postgres;
+    }
+}
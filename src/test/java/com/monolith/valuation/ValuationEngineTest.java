@@ -0,0 +1,169 @@
+package com.monolith.valuation;
+
+import com.monolith.MarketDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.monolith.utils.TestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ValuationEngineTest {
+
+    private static final String OTHER_PORTFOLIO_ID = "portfolio-id-2";
+
+    @Mock
+    private MarketDataService marketDataService;
+
+    @InjectMocks
+    private ValuationEngine valuationEngine;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(marketDataService.getPrice(ISIN_NVIDIA)).thenReturn(PRICE_NVIDIA);
+        lenient().when(marketDataService.getPrice(ISIN_APPLE)).thenReturn(PRICE_APPLE);
+    }
+
+    @Nested
+    @DisplayName("Position Change Tests")
+    class PositionChangeTests {
+
+        @Test
+        @DisplayName("Should value new positions at the current mark")
+        void shouldValueNewPositions() {
+            // Act
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_APPLE, BigDecimal.ZERO, BigDecimal.ONE);
+
+            // Assert
+            PortfolioValuation valuation = valuationEngine.getValuation(PORTFOLIO_ID);
+            assertThat(valuation.getMarketValue()).isEqualByComparingTo("1200.00");
+            assertThat(valuation.getPositions()).hasSize(2);
+        }
+
+        @Test
+        @DisplayName("Should report unrealized P&L against the published cost basis")
+        void shouldUsePublishedCostBasis() {
+            // Arrange
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onCostBasisChanged(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("950.00"));
+
+            // Act
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, new BigDecimal("4"));
+            valuationEngine.onCostBasisChanged(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("380.00"));
+
+            // Assert
+            PortfolioValuation valuation = valuationEngine.getValuation(PORTFOLIO_ID);
+            assertThat(valuation.getMarketValue()).isEqualByComparingTo("400.00");
+            assertThat(valuation.getCostBasis()).isEqualByComparingTo("380.00");
+            assertThat(valuation.getUnrealizedPnl()).isEqualByComparingTo("20.00");
+        }
+
+        @Test
+        @DisplayName("Should leave a position with an unknown cost basis out of cost basis and unrealized P&L")
+        void shouldNotValueUnknownCostBasis() {
+            // Arrange
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_APPLE, BigDecimal.ZERO, BigDecimal.ONE);
+            valuationEngine.onCostBasisChanged(PORTFOLIO_ID, ISIN_APPLE, new BigDecimal("150.00"));
+
+            // Act
+            valuationEngine.onCostBasisChanged(PORTFOLIO_ID, ISIN_NVIDIA, null);
+
+            // Assert
+            PortfolioValuation valuation = valuationEngine.getValuation(PORTFOLIO_ID);
+            assertThat(valuation.getMarketValue()).isEqualByComparingTo("1200.00");
+            assertThat(valuation.getCostBasis()).isEqualByComparingTo("150.00");
+            assertThat(valuation.getUnrealizedPnl()).isEqualByComparingTo("50.00");
+            PositionValuation nvidia = valuation.getPositions().get(1);
+            assertThat(nvidia.getIsin()).isEqualTo(ISIN_NVIDIA);
+            assertThat(nvidia.getCostBasis()).isNull();
+            assertThat(nvidia.getUnrealizedPnl()).isNull();
+        }
+
+        @Test
+        @DisplayName("Should drop closed positions")
+        void shouldDropClosedPositions() {
+            // Act
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN, BigDecimal.ZERO);
+
+            // Assert
+            PortfolioValuation valuation = valuationEngine.getValuation(PORTFOLIO_ID);
+            assertThat(valuation.getMarketValue()).isEqualByComparingTo("0");
+            assertThat(valuation.getCostBasis()).isEqualByComparingTo("0");
+            assertThat(valuation.getPositions()).isEmpty();
+            assertThat(valuationEngine.getTopByExposure(10)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Price Change Tests")
+    class PriceChangeTests {
+
+        @Test
+        @DisplayName("Should revalue only holders of the repriced ISIN")
+        void shouldRevalueHolders() {
+            // Arrange
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onCostBasisChanged(PORTFOLIO_ID, ISIN_NVIDIA, new BigDecimal("1000.00"));
+            valuationEngine.onPositionChanged(OTHER_PORTFOLIO_ID, ISIN_APPLE, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onCostBasisChanged(OTHER_PORTFOLIO_ID, ISIN_APPLE, new BigDecimal("2000.00"));
+
+            // Act
+            valuationEngine.onPriceChanged(ISIN_NVIDIA, new BigDecimal("90.00"));
+
+            // Assert
+            assertThat(valuationEngine.getValuation(PORTFOLIO_ID).getUnrealizedPnl()).isEqualByComparingTo("-100.00");
+            assertThat(valuationEngine.getValuation(OTHER_PORTFOLIO_ID).getUnrealizedPnl()).isEqualByComparingTo("0");
+        }
+
+        @Test
+        @DisplayName("Should pick up moved prices on refresh")
+        void shouldRefreshPrices() {
+            // Arrange
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            when(marketDataService.getPrice(ISIN_NVIDIA)).thenReturn(new BigDecimal("105.00"));
+
+            // Act
+            valuationEngine.refreshPrices();
+
+            // Assert
+            assertThat(valuationEngine.getValuation(PORTFOLIO_ID).getMarketValue()).isEqualByComparingTo("1050.00");
+        }
+    }
+
+    @Nested
+    @DisplayName("Top Exposure Tests")
+    class TopExposureTests {
+
+        @Test
+        @DisplayName("Should rank portfolios by exposure after price changes")
+        void shouldRankByExposure() {
+            // Arrange
+            valuationEngine.onPositionChanged(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.ZERO, BigDecimal.TEN);
+            valuationEngine.onPositionChanged(OTHER_PORTFOLIO_ID, ISIN_APPLE, BigDecimal.ZERO, new BigDecimal("4"));
+
+            // Act
+            List<PortfolioExposure> before = valuationEngine.getTopByExposure(1);
+            valuationEngine.onPriceChanged(ISIN_APPLE, new BigDecimal("300.00"));
+            List<PortfolioExposure> after = valuationEngine.getTopByExposure(2);
+
+            // Assert
+            assertThat(before).extracting(PortfolioExposure::getPortfolioId).containsExactly(PORTFOLIO_ID);
+            assertThat(after).extracting(PortfolioExposure::getPortfolioId)
+                    .containsExactly(OTHER_PORTFOLIO_ID, PORTFOLIO_ID);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.monolith.writebehind;
+
+import com.monolith.index.PositionKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static com.monolith.utils.TestUtils.PORTFOLIO_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should replay records in order, later values replacing earlier ones")
+    void shouldReplayRecordsInOrder() throws IOException {
+        // Arrange
+        WriteBehindJournal journal = new WriteBehindJournal(directory, false);
+        journal.prepare(1, writes(new BigDecimal("4000.00"), BigDecimal.TEN));
+        journal.commit(1);
+        PendingWrites second = writes(new BigDecimal("3000.00"), BigDecimal.ZERO);
+        second.orderStatuses.put(1L, EXECUTED);
+        journal.prepare(2, second);
+        journal.commit(2);
+        List<Path> segments = journal.rotate();
+
+        // Act
+        PendingWrites replayed = new PendingWrites();
+        int transactions = WriteBehindJournal.replay(segments, replayed);
+
+        // Assert
+        assertThat(segments).hasSize(1);
+        assertThat(transactions).isEqualTo(2);
+        assertThat(replayed.buyingPowers).containsEntry(PORTFOLIO_ID, new BigDecimal("3000.00"));
+        assertThat(replayed.positions).containsEntry(new PositionKey(PORTFOLIO_ID, ISIN_NVIDIA), BigDecimal.ZERO);
+        assertThat(replayed.orderStatuses).containsEntry(1L, EXECUTED);
+    }
+
+    @Test
+    @DisplayName("Should stop at a record torn by a crash")
+    void shouldStopAtTornRecord() throws IOException {
+        // Arrange
+        WriteBehindJournal journal = new WriteBehindJournal(directory, false);
+        journal.prepare(1, writes(new BigDecimal("4000.00"), BigDecimal.TEN));
+        journal.commit(1);
+        journal.prepare(2, writes(new BigDecimal("3000.00"), BigDecimal.ONE));
+        journal.commit(2);
+        List<Path> segments = journal.rotate();
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // Act
+        PendingWrites replayed = new PendingWrites();
+        int transactions = WriteBehindJournal.replay(segments, replayed);
+
+        // Assert
+        assertThat(transactions).isEqualTo(1);
+        assertThat(replayed.buyingPowers).containsEntry(PORTFOLIO_ID, new BigDecimal("4000.00"));
+    }
+
+    @Test
+    @DisplayName("Should start a new segment after a rotation and keep numbering across restarts")
+    void shouldNumberSegmentsAcrossRestarts() throws IOException {
+        // Arrange
+        WriteBehindJournal journal = new WriteBehindJournal(directory, false);
+        journal.prepare(1, writes(BigDecimal.ONE, BigDecimal.ONE));
+        journal.commit(1);
+        journal.rotate();
+        journal.prepare(2, writes(BigDecimal.TEN, BigDecimal.TEN));
+        journal.commit(2);
+        journal.close();
+
+        // Act
+        WriteBehindJournal restarted = new WriteBehindJournal(directory, false);
+        List<Path> segments = restarted.existingSegments();
+        PendingWrites replayed = new PendingWrites();
+        WriteBehindJournal.replay(segments, replayed);
+
+        // Assert
+        assertThat(segments).extracting(segment -> segment.getFileName().toString())
+                .containsExactly("segment-0.journal", "segment-1.journal");
+        assertThat(replayed.buyingPowers).containsEntry(PORTFOLIO_ID, BigDecimal.TEN);
+    }
+
+    @Test
+    @DisplayName("Should replay only transactions marked committed")
+    void shouldReplayOnlyCommittedTransactions() throws IOException {
+        // Arrange
+        WriteBehindJournal journal = new WriteBehindJournal(directory, false);
+        journal.prepare(1, writes(new BigDecimal("4000.00"), BigDecimal.TEN));
+        journal.prepare(2, writes(new BigDecimal("3000.00"), BigDecimal.ONE));
+        journal.abort(2);
+        journal.prepare(3, writes(new BigDecimal("2000.00"), BigDecimal.ZERO));
+        journal.rotate();
+        journal.commit(1);
+        List<Path> segments = journal.rotate();
+
+        // Act
+        PendingWrites replayed = new PendingWrites();
+        int transactions = WriteBehindJournal.replay(segments, replayed);
+
+        // Assert
+        assertThat(transactions).isEqualTo(1);
+        assertThat(replayed.buyingPowers).containsEntry(PORTFOLIO_ID, new BigDecimal("4000.00"));
+        assertThat(replayed.positions).containsEntry(new PositionKey(PORTFOLIO_ID, ISIN_NVIDIA), BigDecimal.TEN);
+    }
+
+    private static PendingWrites writes(BigDecimal buyingPower, BigDecimal quantity) {
+        PendingWrites writes = new PendingWrites();
+        writes.buyingPowers.put(PORTFOLIO_ID, buyingPower);
+        writes.positions.put(new PositionKey(PORTFOLIO_ID, ISIN_NVIDIA), quantity);
+        return writes;
+    }
+}
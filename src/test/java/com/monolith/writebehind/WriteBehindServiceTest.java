@@ -0,0 +1,198 @@
+package com.monolith.writebehind;
+
+import com.monolith.index.PortfolioIndex;
+import com.monolith.index.PositionKey;
+import com.monolith.repository.PositionCostEntity;
+import com.monolith.repository.SettlementBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.Map;
+
+import static com.monolith.OrderStatus.EXECUTED;
+import static com.monolith.utils.TestUtils.ISIN_NVIDIA;
+import static com.monolith.utils.TestUtils.PORTFOLIO_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindServiceTest {
+
+    @TempDir
+    Path journalDir;
+
+    private static final String DATABASE = "jdbc:h2:file:./data/broker";
+    private static final PositionKey POSITION = new PositionKey(PORTFOLIO_ID, ISIN_NVIDIA);
+    // Backfilled position without a known cost basis
+    private static final PositionCostEntity POSITION_COST = new PositionCostEntity(PORTFOLIO_ID, ISIN_NVIDIA,
+            BigDecimal.TEN, null, BigDecimal.ZERO);
+
+    private final PortfolioIndex portfolioIndex = mock(PortfolioIndex.class);
+    private final SettlementBatchRepository settlementBatchRepository = mock(SettlementBatchRepository.class);
+    private final FailingCommitTransactionManager transactionManager = new FailingCommitTransactionManager();
+
+    private WriteBehindService writeBehindService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        writeBehindService = newService(DATABASE);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        writeBehindService.close();
+    }
+
+    @Test
+    @DisplayName("Should flush the rows of a committed transaction")
+    void shouldFlushCommittedRows() {
+        // Arrange
+        settle();
+
+        // Act
+        writeBehindService.flush();
+
+        // Assert
+        verify(settlementBatchRepository).upsertBuyingPowers(Map.of(PORTFOLIO_ID, new BigDecimal("3000.00")));
+        verify(settlementBatchRepository).updateOrderStatuses(Map.of(1L, EXECUTED));
+        verify(settlementBatchRepository).upsertPositionCosts(Map.of(POSITION, POSITION_COST));
+    }
+
+    @Test
+    @DisplayName("Should replay the committed rows a crash left in the journal, position costs included")
+    void shouldReplayAfterCrash() throws Exception {
+        // Arrange
+        settle();
+        WriteBehindService crashed = writeBehindService;
+
+        // Act
+        writeBehindService = newService(DATABASE + ";WRITE_DELAY=0");
+
+        // Assert
+        verify(settlementBatchRepository).upsertBuyingPowers(Map.of(PORTFOLIO_ID, new BigDecimal("3000.00")));
+        verify(settlementBatchRepository).upsertPositionCosts(argThat(costs ->
+                costs.get(POSITION).getAverageCost() == null
+                        && costs.get(POSITION).getQuantity().compareTo(BigDecimal.TEN) == 0));
+        verify(portfolioIndex).updatePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN);
+        crashed.close();
+    }
+
+    @Test
+    @DisplayName("Should refuse to replay a journal into another database")
+    void shouldRefuseJournalOfOtherDatabase() throws Exception {
+        // Arrange
+        settle();
+
+        // Act & Assert
+        assertThatThrownBy(() -> newService("jdbc:h2:mem:broker-2"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(DATABASE);
+        verify(settlementBatchRepository, never()).upsertBuyingPowers(anyMap());
+    }
+
+    @Test
+    @DisplayName("Should leave no journal behind after a clean shutdown")
+    void shouldDeleteJournalOnCleanShutdown() throws Exception {
+        // Arrange
+        settle();
+
+        // Act
+        writeBehindService.close();
+        writeBehindService = newService("jdbc:h2:mem:broker-2");
+
+        // Assert
+        verify(settlementBatchRepository, times(1)).upsertBuyingPowers(anyMap());
+    }
+
+    @Test
+    @DisplayName("Should neither flush nor replay the rows of a transaction whose commit fails after they were journaled")
+    void shouldDropRowsOfFailedCommit() throws Exception {
+        // Arrange
+        transactionManager.failCommit = true;
+        assertThatThrownBy(this::settle).isInstanceOf(TransactionSystemException.class);
+        transactionManager.failCommit = false;
+
+        // Act
+        writeBehindService.flush();
+        writeBehindService.close();
+        writeBehindService = newService(DATABASE);
+
+        // Assert
+        assertThat(writeBehindService.getPendingStatus(1L)).isNull();
+        verify(settlementBatchRepository, never()).upsertBuyingPowers(anyMap());
+        verify(settlementBatchRepository, never()).writePositions(anyMap());
+        verify(settlementBatchRepository, never()).updateOrderStatuses(anyMap());
+    }
+
+    private void settle() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            writeBehindService.lockPortfolio(PORTFOLIO_ID);
+            writeBehindService.stageBuyingPower(PORTFOLIO_ID, new BigDecimal("3000.00"));
+            writeBehindService.stagePosition(PORTFOLIO_ID, ISIN_NVIDIA, BigDecimal.TEN);
+            writeBehindService.stageOrderStatus(1L, EXECUTED);
+            writeBehindService.stagePositionCost(POSITION_COST);
+        });
+    }
+
+    private WriteBehindService newService(String url) throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getURL()).thenReturn(url);
+
+        WriteBehindService service = new WriteBehindService(portfolioIndex, settlementBatchRepository,
+                transactionManager, dataSource, new SimpleMeterRegistry(), journalDir, false, 1000, 16);
+        service.recover();
+        return service;
+    }
+
+    /**
+     * Runs synchronizations like a real transaction manager, and fails the commit itself on request.
+     */
+    private static class FailingCommitTransactionManager extends AbstractPlatformTransactionManager {
+        private volatile boolean failCommit;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (failCommit) {
+                throw new TransactionSystemException("Connection lost on commit");
+            }
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}